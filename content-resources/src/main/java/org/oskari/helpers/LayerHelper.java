@@ -112,7 +112,8 @@ public class LayerHelper {
                 // only update layers when new projection is added
                 .filter(layer -> !LayerJSONFormatter.getSRSs(layer.getAttributes(), layer.getCapabilities()).contains(srsForNewAppsetup))
                 .collect(Collectors.toList());
-        CapabilitiesService.updateCapabilities(layers, systemSRSlist);
+        // projections changed -> the capabilities need to be parsed even if the document hasn't changed
+        CapabilitiesService.updateCapabilities(layers, systemSRSlist, true);
         // Save updated capabilities to db
         for (OskariLayer layer : layers) {
             try {
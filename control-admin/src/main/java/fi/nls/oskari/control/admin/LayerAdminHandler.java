@@ -17,6 +17,7 @@ import fi.nls.oskari.map.layer.DataProviderService;
 import fi.nls.oskari.map.layer.OskariLayerService;
 import fi.nls.oskari.map.style.VectorStyleHelper;
 import fi.nls.oskari.map.style.VectorStyleService;
+import fi.nls.oskari.map.view.util.AppSetupResponseCache;
 import fi.nls.oskari.service.OskariComponentManager;
 import fi.nls.oskari.service.ServiceRuntimeException;
 import fi.nls.oskari.util.GetLayerKeywords;
@@ -68,6 +69,7 @@ public class LayerAdminHandler extends AbstractLayerAdminHandler {
 
     private void flushLayerListCache() {
         CacheManager.getCache(GetMapLayerGroupsHandler.CACHE_NAME).flush(true);
+        AppSetupResponseCache.flush();
     }
 
     private VectorStyleService getVectorStyleService() {
@@ -11,6 +11,7 @@ import fi.nls.oskari.domain.map.OskariLayer;
 import fi.nls.oskari.log.LogFactory;
 import fi.nls.oskari.log.Logger;
 import fi.nls.oskari.map.layer.OskariLayerService;
+import fi.nls.oskari.map.view.util.AppSetupResponseCache;
 import fi.nls.oskari.service.OskariComponentManager;
 import fi.nls.oskari.service.ServiceException;
 import fi.nls.oskari.service.ServiceRuntimeException;
@@ -178,6 +179,7 @@ public class LayerPermissionHandler extends AbstractLayerAdminHandler {
 
     private void flushLayerListCache() {
         CacheManager.getCache(GetMapLayerGroupsHandler.CACHE_NAME).flush(true);
+        AppSetupResponseCache.flush();
     }
 
     private JSONArray parseJSONArray(final String jsonArray) throws ActionParamsException {
@@ -1,7 +1,9 @@
 package fi.nls.oskari.control.admin;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -75,17 +77,20 @@ public class UpdateCapabilitiesHandler extends RestActionHandler {
         params.requireAdminUser();
         List<OskariLayer> layers = getLayersToUpdate(params);
 
-        List<CapabilitiesUpdateResult> result = CapabilitiesService.updateCapabilities(layers, getSystemCRSs());
-        List<String> updatedLayers = result.stream()
+        // admin requested the update -> parse the capabilities even if the document hasn't changed
+        List<CapabilitiesUpdateResult> result = CapabilitiesService.updateCapabilities(layers, getSystemCRSs(), true);
+        Map<String, CapabilitiesUpdateResult> updatedLayers = result.stream()
                 .filter(res -> res.getErrorMessage() == null)
-                .map(l -> l.getLayerId())
-                .collect(Collectors.toList());
+                .collect(Collectors.toMap(res -> res.getLayerId(), res -> res, (a, b) -> a));
 
+        List<CapabilitiesUpdateResult> saved = new ArrayList<>();
         for (OskariLayer layer : layers) {
-            if (!updatedLayers.contains("" + layer.getId())) {
+            CapabilitiesUpdateResult updated = updatedLayers.get("" + layer.getId());
+            if (updated == null) {
                 continue;
             }
             layerService.update(layer);
+            saved.add(updated);
             AuditLog.user(params.getClientIp(), params.getUser())
                     .withParam("id", layer.getId())
                     .withParam("name", layer.getName(PropertyUtil.getDefaultLanguage()))
@@ -94,6 +99,7 @@ public class UpdateCapabilitiesHandler extends RestActionHandler {
                     .withMsg("Capabilities update")
                     .updated(AuditLog.ResourceType.MAPLAYER);
         }
+        CapabilitiesService.storeFingerprints(saved);
         JSONObject response = createResponse(result, params);
         ResponseHelper.writeResponse(params, response);
     }
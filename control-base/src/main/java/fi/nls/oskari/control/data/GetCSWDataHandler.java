@@ -6,7 +6,7 @@ import fi.nls.oskari.control.ActionHandler;
 import fi.nls.oskari.control.ActionParameters;
 import fi.nls.oskari.control.ActionParamsException;
 import fi.nls.oskari.csw.domain.CSWIsoRecord;
-import fi.nls.oskari.csw.service.CSWService;
+import fi.nls.oskari.csw.service.CSWRecordCache;
 import fi.nls.oskari.domain.Role;
 import fi.nls.oskari.domain.geo.Point;
 import fi.nls.oskari.domain.map.OskariLayer;
@@ -53,6 +53,8 @@ public class GetCSWDataHandler extends ActionHandler {
     public static final String KEY_ENVELOPES = "envelopes";
     public static final String KEY_SRS = "srs";
     public static final String KEY_GEOM = "geom";
+    public static final String KEY_BROWSEGRAPHICS = "browseGraphics";
+    public static final String KEY_FILENAME = "fileName";
     public static final String KEY_SOUTHBOUNDLATITUDE = "southBoundLatitude";
     public static final String KEY_WESTBOUNDLONGITUDE = "westBoundLongitude";
     public static final String KEY_EASTBOUNDLONGITUDE = "eastBoundLongitude";
@@ -115,22 +117,17 @@ public class GetCSWDataHandler extends ActionHandler {
         final String lang = params.getRequiredParam(LANG_PARAM);
 
         CSWIsoRecord record;
-        CSWService service;
         try {
-            service = new CSWService(url);
-        } catch (Exception e) {
-            throw new ActionException("Failed to initialize CSWService:" + e.getMessage());
-        }
-        try {
-            record = service.getRecordById(uuid, lang);
+            record = CSWRecordCache.getRecord(url, uuid, lang);
         } catch (Exception e) {
             throw new ActionException("Failed to query service: " + e.getMessage());
         }
 
         JSONObject result;
         if (record != null) {
-            prefixImageFilenames(record, uuid, lang);
+            // the record is shared through the cache so modify the JSON instead of the record
             result = record.toJSON();
+            prefixImageFilenames(result, uuid, lang);
         } else {
             result = new JSONObject();
         }
@@ -158,7 +155,7 @@ public class GetCSWDataHandler extends ActionHandler {
         return layer.getCapabilities().optString(LayerCapabilitiesOGC.METADATA_UUID, null);
     }
     
-    private void prefixImageFilenames(CSWIsoRecord record, final String uuid, final String locale) {
+    private void prefixImageFilenames(JSONObject result, final String uuid, final String locale) {
         // This only works for GN2 for paikkatietohakemisto.fi
         // GN2-style: http://geonetwork.nls.fi/geonetwork/srv/fi/resources.get.uuid?access=public&uuid=7ac131b9-a307-4aa1-b27a-009e91f6bd45&fname=Pohjak_Ylihrm_s.png
         // GN3-style: http://www.paikkatietohakemisto.fi/geonetwork/srv/api/records/7ac131b9-a307-4aa1-b27a-009e91f6bd45/attachments/Pohjak_Ylihrm_s.png
@@ -167,18 +164,19 @@ public class GetCSWDataHandler extends ActionHandler {
             url = PropertyUtil.get(PROPERTY_IMAGE_PREFIX + "en");
         }
         String prefix = url + "&uuid=" + uuid + "&fname=";
-        List<CSWIsoRecord.Identification> is = record.getIdentifications();
-        for (CSWIsoRecord.Identification i : is) {
-            List<CSWIsoRecord.BrowseGraphic> gs = i.getBrowseGraphics();
-            for (CSWIsoRecord.BrowseGraphic g : gs) {
-                String fname = g.getFileName();
+        JSONArray is = JSONHelper.getJSONArray(result, KEY_IDENTIFICATIONS);
+        for (int i = 0; is != null && i < is.length(); i++) {
+            JSONArray gs = JSONHelper.getJSONArray(JSONHelper.getJSONObject(is, i), KEY_BROWSEGRAPHICS);
+            for (int j = 0; gs != null && j < gs.length(); j++) {
+                JSONObject g = JSONHelper.getJSONObject(gs, j);
+                String fname = JSONHelper.getStringFromJSON(g, KEY_FILENAME, null);
                 final boolean replaceImageURL = fname != null
                         && !fname.isEmpty()
                         && !fname.startsWith("http://")
                         && !fname.startsWith("https://");
 
                 if (replaceImageURL) {
-                    g.setFileName(prefix + fname);
+                    JSONHelper.putValue(g, KEY_FILENAME, prefix + fname);
                 }
             }
         }
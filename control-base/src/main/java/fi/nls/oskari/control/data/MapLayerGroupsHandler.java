@@ -23,6 +23,7 @@ import fi.nls.oskari.domain.map.OskariLayer;
 import fi.nls.oskari.map.layer.OskariLayerService;
 import fi.nls.oskari.map.layer.group.link.OskariLayerGroupLinkService;
 import fi.nls.oskari.map.layer.group.link.OskariLayerGroupLinkServiceMybatisImpl;
+import fi.nls.oskari.map.view.util.AppSetupResponseCache;
 import fi.nls.oskari.util.JSONHelper;
 import fi.nls.oskari.util.PropertyUtil;
 import fi.nls.oskari.util.ResponseHelper;
@@ -67,6 +68,7 @@ public class MapLayerGroupsHandler extends RestActionHandler {
 
 	private void flushLayerListCache() {
         CacheManager.getCache(GetMapLayerGroupsHandler.CACHE_NAME).flush(true);
+        AppSetupResponseCache.flush();
     }
 
 	/**
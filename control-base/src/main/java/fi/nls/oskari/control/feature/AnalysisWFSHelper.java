@@ -32,6 +32,7 @@ import org.oskari.permissions.PermissionService;
 import org.oskari.permissions.model.PermissionType;
 import org.oskari.permissions.model.ResourceType;
 import org.oskari.service.user.UserLayerService;
+import org.oskari.service.user.UserLayerTile;
 import org.oskari.service.wfs.client.CachingOskariWFSClient;
 import org.oskari.service.wfs.client.OskariWFSClient;
 
@@ -185,4 +186,14 @@ public class AnalysisWFSHelper extends UserLayerService {
             throw new ServiceException("Failed to get features. ", e);
         }
     }
+
+    @Override
+    public boolean supportsMVT(String layerId) {
+        return isUserContentLayer(layerId);
+    }
+
+    @Override
+    public byte[] getMVT(String layerId, UserLayerTile tile) throws ServiceException {
+        return analysisDbService.getMVT(parseId(layerId), tile);
+    }
 }
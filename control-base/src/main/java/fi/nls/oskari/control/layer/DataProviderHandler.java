@@ -21,6 +21,7 @@ import fi.nls.oskari.domain.map.DataProvider;
 import fi.nls.oskari.domain.map.OskariLayer;
 import fi.nls.oskari.map.layer.DataProviderService;
 import fi.nls.oskari.map.layer.OskariLayerService;
+import fi.nls.oskari.map.view.util.AppSetupResponseCache;
 import fi.nls.oskari.util.PropertyUtil;
 import fi.nls.oskari.util.ResponseHelper;
 
@@ -131,6 +132,7 @@ public class DataProviderHandler extends RestActionHandler {
 
     private void flushLayerListCache() {
         CacheManager.getCache(GetMapLayerGroupsHandler.CACHE_NAME).flush(true);
+        AppSetupResponseCache.flush();
     }
 
     @Override
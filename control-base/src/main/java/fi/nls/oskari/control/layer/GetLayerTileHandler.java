@@ -3,8 +3,6 @@ package fi.nls.oskari.control.layer;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
 import fi.nls.oskari.annotation.OskariActionRoute;
-import fi.nls.oskari.cache.Cache;
-import fi.nls.oskari.cache.CacheManager;
 import fi.nls.oskari.control.*;
 import fi.nls.oskari.domain.map.OskariLayer;
 import fi.nls.oskari.log.LogFactory;
@@ -19,7 +17,7 @@ import fi.nls.oskari.util.ResponseHelper;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import org.oskari.capabilities.CapabilitiesService;
+import org.oskari.capabilities.LayerCapabilitiesCache;
 import org.oskari.capabilities.ogc.LayerCapabilitiesWMTS;
 import org.oskari.capabilities.ogc.wmts.ResourceUrl;
 import org.oskari.permissions.PermissionService;
@@ -50,7 +48,6 @@ public class GetLayerTileHandler extends ActionHandler {
     private static final String METRICS_PREFIX = "Oskari.GetLayerTile";
     private PermissionHelper permissionHelper;
     private Collection<LayerAccessHandler> layerAccessHandlers;
-    private Cache<String> cache_WMTS_URL;
 
     // WMTS rest layers params
     private static final String KEY_STYLE = "STYLE";
@@ -67,7 +64,6 @@ public class GetLayerTileHandler extends ActionHandler {
 
         Map<String, LayerAccessHandler> handlerComponents = OskariComponentManager.getComponentsOfType(LayerAccessHandler.class);
         this.layerAccessHandlers = handlerComponents.values();
-        cache_WMTS_URL = CacheManager.getCache(GetLayerTileHandler.class.getSimpleName() + "_WMTS_URL");
     }
 
     /**
@@ -212,24 +208,13 @@ public class GetLayerTileHandler extends ActionHandler {
     }
 
     private String getWMTSUrl(OskariLayer layer) {
-        String cacheKey = "" + layer.getId();
-        String resourceUrl = cache_WMTS_URL.get(cacheKey);
-        if (resourceUrl != null) {
-            // empty means we parsed and there was no resource url
-            return resourceUrl;
+        LayerCapabilitiesWMTS caps = LayerCapabilitiesCache.get(layer);
+        ResourceUrl url = caps == null ? null : caps.getResourceUrl("tile");
+        if (url == null || url.getTemplate() == null) {
+            // empty means there was no resource url
+            return "";
         }
-        LayerCapabilitiesWMTS caps = CapabilitiesService.fromJSON(layer.getCapabilities().toString(), OskariLayer.TYPE_WMTS);
-        ResourceUrl url = caps.getResourceUrl("tile");
-        String valueToCache = "";
-        if (url != null) {
-            valueToCache = url.getTemplate();
-        }
-        if (valueToCache == null) {
-            // just in case we have something wonky going on in the capabilities
-            valueToCache = "";
-        }
-        cache_WMTS_URL.put(cacheKey, valueToCache);
-        return valueToCache;
+        return url.getTemplate();
     }
 
     private Map<String, String> getUrlParams(HttpServletRequest httpRequest) {
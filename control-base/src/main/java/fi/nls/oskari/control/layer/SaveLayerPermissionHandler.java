@@ -19,6 +19,7 @@ import org.oskari.permissions.model.Permission;
 import org.oskari.permissions.model.PermissionExternalType;
 import org.oskari.permissions.model.Resource;
 import org.oskari.permissions.model.ResourceType;
+import fi.nls.oskari.map.view.util.AppSetupResponseCache;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -100,6 +101,7 @@ public class SaveLayerPermissionHandler extends RestActionHandler {
 
     private void flushLayerListCache() {
         CacheManager.getCache(GetMapLayerGroupsHandler.CACHE_NAME).flush(true);
+        AppSetupResponseCache.flush();
     }
 }
 
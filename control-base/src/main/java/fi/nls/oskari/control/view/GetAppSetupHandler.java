@@ -1,5 +1,6 @@
 package fi.nls.oskari.control.view;
 
+import com.codahale.metrics.Timer;
 import fi.nls.oskari.annotation.OskariActionRoute;
 import fi.nls.oskari.control.*;
 import fi.nls.oskari.control.view.modifier.bundle.BundleHandler;
@@ -12,6 +13,7 @@ import fi.nls.oskari.domain.map.view.ViewTypes;
 import fi.nls.oskari.log.LogFactory;
 import fi.nls.oskari.log.Logger;
 import fi.nls.oskari.map.view.*;
+import fi.nls.oskari.map.view.util.AppSetupResponseCache;
 import fi.nls.oskari.map.view.util.ViewHelper;
 import fi.nls.oskari.util.*;
 import fi.nls.oskari.view.modifier.ModifierException;
@@ -30,6 +32,7 @@ public class GetAppSetupHandler extends ActionHandler {
 
     private ViewService viewService = null;
     private BundleService bundleService = null;
+    private ViewUsageTracker usageTracker = null;
 
     private static final Logger log = LogFactory.getLogger(GetAppSetupHandler.class);
 
@@ -43,6 +46,7 @@ public class GetAppSetupHandler extends ActionHandler {
     private static final String KEY_ENV = "env";
     private static final String KEY_STARTUP = "startupSequence";
     private static final String KEY_CONFIGURATION = "configuration";
+    private static final String METRICS_PREFIX = "Oskari.GetAppSetup.modifier";
 
     public static final String COOKIE_SAVED_STATE = "oskaristate";
 
@@ -68,6 +72,8 @@ public class GetAppSetupHandler extends ActionHandler {
         if(bundleService == null) {
             setBundleService(new BundleServiceMybatisImpl());
         }
+        usageTracker = new ViewUsageTracker(viewService);
+        usageTracker.start();
         // Returns names of @OskariViewModifier annotated classes of type ParamHandler from classpath
         paramHandlers.addAll(ParamControl.getHandlerKeys());
 
@@ -119,6 +125,13 @@ public class GetAppSetupHandler extends ActionHandler {
         }
     }
 
+    @Override
+    public void teardown() {
+        if (usageTracker != null) {
+            usageTracker.stop();
+        }
+    }
+
     public void handleAction(final ActionParameters params) throws ActionException {
         // oldId => support for migrated published maps
         final long oldId = params.getHttpParam(PARAM_OLD_ID, -1);
@@ -182,6 +195,17 @@ public class GetAppSetupHandler extends ActionHandler {
         // Update view for latest usage timestamp and opened count number
         updateUsageData(view);
 
+        // published maps look the same for all guest users -> serve modified config from cache if possible
+        final boolean cacheable = isCacheable(view, params.getUser(), ignoreSavedState);
+        final String cacheKey = cacheable ? getCacheKey(params, view, referer, oldId) : null;
+        if (cacheable) {
+            final JSONObject cached = AppSetupResponseCache.get(cacheKey);
+            if (cached != null) {
+                writeResponse(params, view, cached.optJSONArray(KEY_STARTUP), cached.optJSONObject(KEY_CONFIGURATION));
+                return;
+            }
+        }
+
         // JSON presentation of view
         final JSONObject configuration = getConfiguration(view);
         final JSONArray startupSequence = getStartupSequence(view);
@@ -224,7 +248,7 @@ public class GetAppSetupHandler extends ActionHandler {
             modifierParams.setParamValue(value);
             try {
                 if (value != null
-                        && ParamControl.handleParam(paramKey, modifierParams)) {
+                        && handleParam(paramKey, modifierParams)) {
                     locationModified++;
                     log.debug("Parameter", paramKey, "with value", value,
                             "modified map location");
@@ -248,7 +272,7 @@ public class GetAppSetupHandler extends ActionHandler {
             final String bundleid = bundle.optString("bundlename");
             if (bundleHandlers.containsKey(bundleid)) {
                 log.debug("Modifying bundle", bundleid);
-                try {
+                try (Timer.Context ignored = getModifierTimer("bundle", bundleid).time()) {
                     bundleHandlers.get(bundleid).modifyBundle(modifierParams);
                 } catch (ModifierException e) {
                     log.error(e, "Unable to modify bundle:", bundle);
@@ -256,7 +280,18 @@ public class GetAppSetupHandler extends ActionHandler {
             }
         }
 
-        // write response
+        if (cacheable) {
+            final JSONObject cached = new JSONObject();
+            JSONHelper.putValue(cached, KEY_STARTUP, startupSequence);
+            JSONHelper.putValue(cached, KEY_CONFIGURATION, configuration);
+            AppSetupResponseCache.put(cacheKey, cached);
+        }
+        writeResponse(params, view, startupSequence, configuration);
+    }
+
+    private void writeResponse(final ActionParameters params, final View view,
+                               final JSONArray startupSequence, final JSONObject configuration) throws ActionException {
+        // env is user specific so it's never cached
         try {
             JSONObject appSetup = new JSONObject();
             appSetup.put(KEY_ENV, EnvHelper.getEnvironmentJSON(params, view));
@@ -268,6 +303,50 @@ public class GetAppSetupHandler extends ActionHandler {
         }
     }
 
+    private boolean handleParam(final String paramKey, final ModifierParams modifierParams) throws ModifierException {
+        try (Timer.Context ignored = getModifierTimer("param", paramKey).time()) {
+            return ParamControl.handleParam(paramKey, modifierParams);
+        }
+    }
+
+    private Timer getModifierTimer(final String type, final String key) {
+        return ActionControl.getMetrics().timer(METRICS_PREFIX + "." + type + "." + key);
+    }
+
+    /**
+     * Only published maps for guest users are cached. Saved state is user specific and
+     * registered users might get additional bundles/content based on their roles.
+     */
+    private boolean isCacheable(final View view, final User user, final boolean ignoreSavedState) {
+        return AppSetupResponseCache.isEnabled()
+                && ignoreSavedState
+                && user.isGuest()
+                && ViewTypes.PUBLISHED.equals(view.getType());
+    }
+
+    private String getCacheKey(final ActionParameters params, final View view, final String referer, final long oldId) {
+        final List<String> roles = new ArrayList<>();
+        for (Role role : params.getUser().getRoles()) {
+            roles.add(role.getName());
+        }
+        Collections.sort(roles);
+        final StringBuilder paramValues = new StringBuilder();
+        for (String paramKey : paramHandlers) {
+            final String value = params.getHttpParam(paramKey);
+            if (value != null) {
+                paramValues.append(paramKey).append('=').append(value).append('&');
+            }
+        }
+        return AppSetupResponseCache.getKey(view.getId(),
+                params.getLocale().getLanguage(),
+                String.join(",", roles),
+                referer,
+                EnvHelper.getAPIurl(params),
+                EnvHelper.isSecure(params),
+                oldId != -1,
+                paramValues);
+    }
+
     /**
      * Check whether cookie srs matches the view's native srs
      * @return
@@ -282,13 +361,12 @@ public class GetAppSetupHandler extends ActionHandler {
             return true;
         }
     }
-    private boolean updateUsageData(final View view)  {
-        try {
-            viewService.updateViewUsage(view);
-            return true;
-        } catch (Exception e) {
-            return false;
+    private void updateUsageData(final View view)  {
+        if (usageTracker == null) {
+            return;
         }
+        // collected in memory and written to db periodically
+        usageTracker.recordUsage(view.getId());
     }
 
     private JSONObject getConfiguration(final View view) throws ActionException {
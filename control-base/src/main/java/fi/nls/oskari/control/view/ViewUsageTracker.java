@@ -0,0 +1,162 @@
+package fi.nls.oskari.control.view;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import fi.nls.oskari.control.ActionControl;
+import fi.nls.oskari.log.LogFactory;
+import fi.nls.oskari.log.Logger;
+import fi.nls.oskari.map.view.ViewService;
+import fi.nls.oskari.util.PropertyUtil;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects view usage counts in memory and writes them to the database in batches
+ * so loading a view doesn't require a DB write on each request.
+ * Usage data collected after the latest flush is lost if the JVM crashes so the flush interval
+ * (property "actionhandler.GetAppSetup.usage.flushInterval" in seconds, defaults to 30)
+ * determines the maximum loss window.
+ */
+public class ViewUsageTracker {
+
+    private static final Logger LOG = LogFactory.getLogger(ViewUsageTracker.class);
+
+    private static final String PROP_FLUSH_INTERVAL = "actionhandler.GetAppSetup.usage.flushInterval";
+    private static final String METRICS_PENDING = "Oskari.GetAppSetup.usage.pending";
+
+    private final ViewService service;
+    private final ConcurrentHashMap<Long, LongAdder> counters = new ConcurrentHashMap<>();
+    private final LongAdder pending = new LongAdder();
+    private ScheduledExecutorService scheduler;
+    private Thread shutdownHook;
+
+    public ViewUsageTracker(ViewService service) {
+        this.service = service;
+    }
+
+    /**
+     * Starts the background task that flushes collected usage data periodically
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        int interval = Math.max(1, PropertyUtil.getOptional(PROP_FLUSH_INTERVAL, 30));
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "oskari-view-usage");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushSafely, interval, interval, TimeUnit.SECONDS);
+        shutdownHook = new Thread(this::flushSafely, "oskari-view-usage-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+
+        MetricRegistry metrics = ActionControl.getMetrics();
+        metrics.remove(METRICS_PENDING);
+        metrics.register(METRICS_PENDING, (Gauge<Long>) this::getPendingCount);
+    }
+
+    /**
+     * Stops the background task and writes any pending usage data to the database
+     */
+    public synchronized void stop() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        scheduler = null;
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException ignored) {
+            // JVM is already shutting down and the hook will flush the data
+        }
+        shutdownHook = null;
+        ActionControl.getMetrics().remove(METRICS_PENDING);
+        flushSafely();
+    }
+
+    /**
+     * Records a single usage for the view. Doesn't touch the database.
+     * @param viewId id of the view that was loaded
+     */
+    public void recordUsage(long viewId) {
+        LongAdder adder = counters.computeIfAbsent(viewId, id -> new LongAdder());
+        adder.increment();
+        if (counters.get(viewId) != adder) {
+            // flush() evicted the adder while we were using it -> move the count to the current one
+            moveCount(viewId, adder);
+        }
+        pending.increment();
+    }
+
+    /**
+     * @return number of view loads that have not yet been written to the database
+     */
+    public long getPendingCount() {
+        return pending.sum();
+    }
+
+    /**
+     * Writes collected usage counts to the database. If the write fails the counts are kept
+     * for the next flush and the exception is passed on.
+     */
+    public synchronized void flush() {
+        if (counters.isEmpty()) {
+            return;
+        }
+        final Map<Long, Long> usage = new HashMap<>();
+        for (Map.Entry<Long, LongAdder> entry : counters.entrySet()) {
+            // reset instead of remove so concurrent recordUsage() calls keep counting to the same adder
+            LongAdder adder = entry.getValue();
+            long count = adder.sumThenReset();
+            if (count > 0) {
+                usage.put(entry.getKey(), count);
+                pending.add(-count);
+            } else if (counters.remove(entry.getKey(), adder)) {
+                // views that are no longer used don't accumulate in memory
+                moveCount(entry.getKey(), adder);
+            }
+        }
+        if (usage.isEmpty()) {
+            return;
+        }
+        try {
+            service.updateViewUsage(usage);
+        } catch (RuntimeException e) {
+            usage.forEach((viewId, count) -> {
+                counters.computeIfAbsent(viewId, id -> new LongAdder()).add(count);
+                pending.add(count);
+            });
+            throw e;
+        }
+    }
+
+    /**
+     * Moves usage recorded to an evicted adder back to the map so it's written on the next flush
+     */
+    private void moveCount(long viewId, LongAdder evicted) {
+        long count = evicted.sumThenReset();
+        if (count > 0) {
+            counters.computeIfAbsent(viewId, id -> new LongAdder()).add(count);
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (Exception e) {
+            LOG.warn(e, "Couldn't write view usage data");
+        }
+    }
+}
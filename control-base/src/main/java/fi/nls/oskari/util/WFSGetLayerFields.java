@@ -3,7 +3,7 @@ package fi.nls.oskari.util;
 import fi.nls.oskari.domain.map.OskariLayer;
 import fi.nls.oskari.service.ServiceException;
 import org.json.JSONObject;
-import org.oskari.capabilities.CapabilitiesService;
+import org.oskari.capabilities.LayerCapabilitiesCache;
 import org.oskari.capabilities.ogc.LayerCapabilitiesWFS;
 
 // TODO: move this code to the handler (not used anywhere else)
@@ -37,7 +37,7 @@ public class WFSGetLayerFields {
         if (!OskariLayer.TYPE_WFS.equals(layer.getType())) {
             throw new ServiceException("Unsupported type: " + layer.getType());
         }
-        LayerCapabilitiesWFS caps = CapabilitiesService.fromJSON(layer.getCapabilities().toString(), layer.getType());
+        LayerCapabilitiesWFS caps = LayerCapabilitiesCache.get(layer);
 
         JSONObject types = new JSONObject();
         caps.getFeatureProperties().stream().forEach(prop -> {
@@ -0,0 +1,60 @@
+package fi.nls.oskari.control.view;
+
+import fi.nls.oskari.map.view.ViewService;
+import fi.nls.oskari.service.ServiceRuntimeException;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.*;
+
+public class ViewUsageTrackerTest {
+
+    @Test
+    public void testUsageIsFlushedInBatch() {
+        ViewService service = mock(ViewService.class);
+        ViewUsageTracker tracker = new ViewUsageTracker(service);
+        tracker.recordUsage(1);
+        tracker.recordUsage(1);
+        tracker.recordUsage(2);
+        assertEquals(3, tracker.getPendingCount());
+        verify(service, never()).updateViewUsage(anyMap());
+
+        tracker.flush();
+        Map<Long, Long> expected = new HashMap<>();
+        expected.put(1L, 2L);
+        expected.put(2L, 1L);
+        verify(service, times(1)).updateViewUsage(expected);
+        assertEquals(0, tracker.getPendingCount());
+
+        // nothing to write
+        tracker.flush();
+        verifyNoMoreInteractions(service);
+    }
+
+    @Test
+    public void testUsageIsKeptWhenWriteFails() {
+        ViewService service = mock(ViewService.class);
+        doThrow(new ServiceRuntimeException("DB down")).doNothing().when(service).updateViewUsage(anyMap());
+        ViewUsageTracker tracker = new ViewUsageTracker(service);
+        tracker.recordUsage(1);
+        tracker.recordUsage(1);
+        try {
+            tracker.flush();
+            fail("Exception should be passed on");
+        } catch (ServiceRuntimeException expected) {
+            // flushSafely() logs this
+        }
+        assertEquals(2, tracker.getPendingCount());
+
+        tracker.recordUsage(1);
+        tracker.flush();
+        verify(service, times(1)).updateViewUsage(Collections.singletonMap(1L, 3L));
+        assertEquals(0, tracker.getPendingCount());
+    }
+}
@@ -1,7 +1,9 @@
 package org.oskari.control.mvt;
 
 import java.io.IOException;
+import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 import fi.nls.oskari.control.feature.AbstractWFSFeaturesHandler;
@@ -21,6 +23,7 @@ import org.oskari.service.mvt.SimpleFeaturesMVTEncoder;
 import org.oskari.service.mvt.TileCoord;
 import org.oskari.service.mvt.WFSTileGrid;
 import org.oskari.service.user.UserLayerService;
+import org.oskari.service.user.UserLayerTile;
 
 import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
@@ -37,6 +40,10 @@ import fi.nls.oskari.control.ActionParameters;
 import fi.nls.oskari.control.ActionParamsException;
 
 import fi.nls.oskari.domain.map.OskariLayer;
+import fi.nls.oskari.log.LogFactory;
+import fi.nls.oskari.log.Logger;
+import fi.nls.oskari.map.geometry.ProjectionHelper;
+import fi.nls.oskari.service.ServiceException;
 import fi.nls.oskari.service.ServiceRuntimeException;
 import fi.nls.oskari.util.IOHelper;
 import fi.nls.oskari.util.ResponseHelper;
@@ -45,6 +52,8 @@ import org.oskari.service.mvt.WFSTileGridProperties;
 @OskariActionRoute("GetWFSVectorTile")
 public class GetWFSVectorTileHandler extends AbstractWFSFeaturesHandler {
 
+    private static final Logger LOG = LogFactory.getLogger(GetWFSVectorTileHandler.class);
+
     protected static final String MVT_CONTENT_TYPE = "application/vnd.mapbox-vector-tile";
     protected static final String PARAM_Z = "z";
     protected static final String PARAM_X = "x";
@@ -68,12 +77,17 @@ public class GetWFSVectorTileHandler extends AbstractWFSFeaturesHandler {
     private static final int TILE_BUFFER = 256;
     private static final int TILE_BUFFER_POINT = 1024;
 
+    // undefined_function and undefined_object: PostGIS without ST_AsMVT() (with feature id) or PostgreSQL without jsonb
+    private static final Set<String> SQLSTATE_MVT_UNSUPPORTED = new HashSet<>(Arrays.asList("42883", "42704"));
+
     private static final int CACHE_LIMIT = 256;
     private static final long CACHE_EXPIRATION = TimeUnit.MINUTES.toMillis(5);
 
     private ComputeOnceCache<byte[]> tileCache;
     private WFSTileGridProperties tileGridProperties;
     private Map<String, Integer> cacheZLevels;
+    // content processors whose database can't create the tiles so we don't try it on every request
+    private final Set<Class<?>> databaseTilesUnsupported = ConcurrentHashMap.newKeySet();
 
     @Override
     public void init() {
@@ -210,6 +224,12 @@ public class GetWFSVectorTileHandler extends AbstractWFSFeaturesHandler {
     private byte[] createTile(String id, OskariLayer layer, CoordinateReferenceSystem crs,
             WFSTileGrid grid, int targetZ, int z, int x, int y,
             Optional<UserLayerService> contentProcessor) {
+        if (contentProcessor.isPresent() && useDatabaseTiles(id, contentProcessor.get())) {
+            byte[] encoded = getTileFromDatabase(id, layer, crs, grid, z, x, y, contentProcessor.get());
+            if (encoded != null) {
+                return gzip(encoded);
+            }
+        }
         List<TileCoord> tilesToLoad = getTilesToLoad(targetZ, z, x, y);
 
         DefaultFeatureCollection sfc = new DefaultFeatureCollection();
@@ -224,6 +244,51 @@ public class GetWFSVectorTileHandler extends AbstractWFSFeaturesHandler {
         int buffer = isOnlyPointFeatures(sfc) ? TILE_BUFFER_POINT : TILE_BUFFER;
 
         byte[] encoded = SimpleFeaturesMVTEncoder.encodeToByteArray(sfc, mvtLayer, bbox, extent, buffer);
+        return gzip(encoded);
+    }
+
+    protected boolean useDatabaseTiles(String id, UserLayerService contentProcessor) {
+        return contentProcessor.supportsMVT(id) && !databaseTilesUnsupported.contains(contentProcessor.getClass());
+    }
+
+    /**
+     * Lets the database encode the tile for user content that is stored in PostGIS so the features
+     * don't need to be read and encoded here.
+     * If the database doesn't support creating the tiles it's not tried again for the content processor.
+     * @return uncompressed MVT or null if the tile couldn't be created in the database
+     */
+    protected byte[] getTileFromDatabase(String id, OskariLayer layer, CoordinateReferenceSystem crs,
+            WFSTileGrid grid, int z, int x, int y, UserLayerService contentProcessor) {
+        double[] bbox = grid.getTileExtent(new TileCoord(z, x, y));
+        UserLayerTile tile = new UserLayerTile(bbox, ProjectionHelper.getSRID(CRS.toSRS(crs)),
+                layer.getName(), TILE_EXTENT, TILE_BUFFER, TILE_BUFFER_POINT);
+        try {
+            return contentProcessor.getMVT(id, tile);
+        } catch (ServiceException e) {
+            if (isMVTUnsupported(e)) {
+                databaseTilesUnsupported.add(contentProcessor.getClass());
+                LOG.warn("Database doesn't support creating vector tiles for", contentProcessor.getClass().getSimpleName(),
+                        "- encoding features instead:", e.getMessage());
+            } else {
+                LOG.warn(e, "Failed to create tile in database for layer:", id, "- encoding features instead");
+            }
+            return null;
+        }
+    }
+
+    /**
+     * @return true if the failure was caused by missing database functions instead of f.ex. a connection problem
+     */
+    private static boolean isMVTUnsupported(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLException && SQLSTATE_MVT_UNSUPPORTED.contains(((SQLException) t).getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private byte[] gzip(byte[] encoded) {
         try {
             return IOHelper.gzip(encoded).toByteArray();
         } catch (IOException e) {
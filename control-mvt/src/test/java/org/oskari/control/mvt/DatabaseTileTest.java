@@ -0,0 +1,127 @@
+package org.oskari.control.mvt;
+
+import fi.nls.oskari.control.feature.AnalysisWFSHelper;
+import fi.nls.oskari.util.PropertyUtil;
+import fi.nls.test.util.TestHelper;
+import no.ecc.vectortile.VectorTileDecoder;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.CRS;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.oskari.service.mvt.SimpleFeaturesMVTEncoder;
+import org.oskari.service.user.UserLayerTile;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static fi.nls.oskari.map.geometry.ProjectionHelper.getSRID;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Tiles encoded in the database with ST_AsMVT() should have the same features and properties
+ * as tiles encoded in Java from the same content. Requires a PostGIS database (see TestHelper.dbAvailable()).
+ */
+public class DatabaseTileTest {
+
+    private static final String LAYER = "test";
+    private static final double[] BBOX = { 0, 0, 10000, 10000 };
+    private static final int EXTENT = 4096;
+    private static final int BUFFER = 256;
+
+    private static DataSource ds;
+    private static long analysisId;
+
+    @BeforeClass
+    public static void init() throws SQLException {
+        assumeTrue(TestHelper.dbAvailable());
+        ds = TestHelper.getDBforUnitTest();
+        try (Connection c = ds.getConnection()) {
+            try (PreparedStatement ps = c.prepareStatement(
+                    "INSERT INTO analysis (name, uuid) VALUES ('DatabaseTileTest', 'test') RETURNING id");
+                 ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                analysisId = rs.getLong(1);
+            }
+            try (PreparedStatement ps = c.prepareStatement(
+                    "INSERT INTO analysis_data (analysis_id, uuid, t1, n1, d1, updated, geometry) " +
+                    "VALUES (?, 'test', ?, ?, current_date, current_timestamp, ST_GeomFromText(?, ?))")) {
+                insertAnalysisData(ps, "point", 2, "POINT(1000 1000)");
+                insertAnalysisData(ps, null, null, "POLYGON((2000 2000, 4000 2000, 4000 4000, 2000 4000, 2000 2000))");
+            }
+        }
+    }
+
+    private static void insertAnalysisData(PreparedStatement ps, String t1, Integer n1, String wkt) throws SQLException {
+        ps.setLong(1, analysisId);
+        ps.setString(2, t1);
+        ps.setObject(3, n1);
+        ps.setString(4, wkt);
+        ps.setInt(5, getNativeSRID());
+        ps.executeUpdate();
+    }
+
+    @AfterClass
+    public static void delete() throws SQLException {
+        if (ds != null) {
+            try (Connection c = ds.getConnection();
+                 PreparedStatement data = c.prepareStatement("DELETE FROM analysis_data WHERE analysis_id = ?");
+                 PreparedStatement analysis = c.prepareStatement("DELETE FROM analysis WHERE id = ?")) {
+                data.setLong(1, analysisId);
+                data.executeUpdate();
+                analysis.setLong(1, analysisId);
+                analysis.executeUpdate();
+            }
+        }
+        PropertyUtil.clearProperties();
+    }
+
+    @Test
+    public void testAnalysisTileProperties() throws Exception {
+        AnalysisWFSHelper helper = new AnalysisWFSHelper();
+        String layerId = "analysis_" + analysisId;
+        CoordinateReferenceSystem crs = CRS.decode("EPSG:" + getNativeSRID(), true);
+
+        SimpleFeatureCollection features = helper.getFeatures(layerId, null,
+                new ReferencedEnvelope(BBOX[0], BBOX[2], BBOX[1], BBOX[3], crs), crs);
+        byte[] javaTile = SimpleFeaturesMVTEncoder.encodeToByteArray(features, LAYER, BBOX, EXTENT, BUFFER);
+        byte[] dbTile = helper.getMVT(layerId,
+                new UserLayerTile(BBOX, getNativeSRID(), LAYER, EXTENT, BUFFER, BUFFER));
+
+        Map<String, Map<String, Object>> expected = getProperties(javaTile);
+        Map<String, Map<String, Object>> actual = getProperties(dbTile);
+        assertEquals("Both tiles should have the features", 2, expected.size());
+        assertEquals(expected, actual);
+    }
+
+    /**
+     * @return properties of the features by "_oid". Numbers are compared as doubles since the encoders
+     * might pick a different type for the same value.
+     */
+    private static Map<String, Map<String, Object>> getProperties(byte[] tile) throws Exception {
+        Map<String, Map<String, Object>> features = new HashMap<>();
+        for (VectorTileDecoder.Feature feature : new VectorTileDecoder().decode(tile)) {
+            Map<String, Object> properties = new HashMap<>();
+            feature.getAttributes().forEach((key, value) ->
+                    properties.put(key, value instanceof Number ? ((Number) value).doubleValue() : value));
+            String oid = (String) properties.get("_oid");
+            if (feature.getId() != 0) {
+                assertEquals("Feature id should match _oid", oid, Long.toString(feature.getId()));
+            }
+            features.put(oid, properties);
+        }
+        return features;
+    }
+
+    private static int getNativeSRID() {
+        return getSRID(PropertyUtil.get("oskari.native.srs", "EPSG:3857"));
+    }
+}
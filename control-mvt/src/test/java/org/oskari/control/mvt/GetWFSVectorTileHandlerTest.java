@@ -1,13 +1,30 @@
 package org.oskari.control.mvt;
 
 import static org.junit.Assert.assertEquals;
-
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.SQLException;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 
+import fi.nls.oskari.domain.map.OskariLayer;
+import fi.nls.oskari.service.ServiceException;
+import org.geotools.referencing.CRS;
 import org.junit.Test;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.oskari.service.mvt.TileCoord;
+import org.oskari.service.mvt.WFSTileGrid;
+import org.oskari.service.user.UserLayerService;
+import org.oskari.service.user.UserLayerTile;
 
 public class GetWFSVectorTileHandlerTest {
 
@@ -128,4 +145,40 @@ public class GetWFSVectorTileHandlerTest {
         }
     }
 
+    @Test
+    public void testDatabaseTilesNotRetriedWhenUnsupported() throws Exception {
+        String id = "analysis_1";
+        UserLayerService processor = mock(UserLayerService.class);
+        when(processor.supportsMVT(id)).thenReturn(true);
+        // PostGIS without ST_AsMVT()
+        when(processor.getMVT(eq(id), any(UserLayerTile.class))).thenThrow(new ServiceException("Failed",
+                new SQLException("function st_asmvt(record, text, integer, unknown, unknown) does not exist", "42883")));
+
+        GetWFSVectorTileHandler handler = new GetWFSVectorTileHandler();
+        assertTrue(handler.useDatabaseTiles(id, processor));
+        assertNull(getTile(handler, id, processor));
+        assertFalse("Database tiles shouldn't be tried again", handler.useDatabaseTiles(id, processor));
+        verify(processor, times(1)).getMVT(eq(id), any(UserLayerTile.class));
+    }
+
+    @Test
+    public void testDatabaseTilesRetriedAfterOtherFailures() throws Exception {
+        String id = "analysis_1";
+        UserLayerService processor = mock(UserLayerService.class);
+        when(processor.supportsMVT(id)).thenReturn(true);
+        when(processor.getMVT(eq(id), any(UserLayerTile.class))).thenThrow(new ServiceException("Failed",
+                new SQLException("An I/O error occurred while sending to the backend.", "08006")));
+
+        GetWFSVectorTileHandler handler = new GetWFSVectorTileHandler();
+        assertNull(getTile(handler, id, processor));
+        assertTrue("Database tiles should be tried again", handler.useDatabaseTiles(id, processor));
+    }
+
+    private byte[] getTile(GetWFSVectorTileHandler handler, String id, UserLayerService processor) throws Exception {
+        CoordinateReferenceSystem crs = CRS.decode("EPSG:3067", true);
+        WFSTileGrid grid = new WFSTileGrid(new double[] { -548576, 6291456, -548576 + (8192*256), 6291456 + (8192*256) }, 15);
+        OskariLayer layer = new OskariLayer();
+        layer.setName("test");
+        return handler.getTileFromDatabase(id, layer, crs, grid, 8, 100, 100, processor);
+    }
 }
@@ -34,6 +34,7 @@ import org.oskari.geojson.GeoJSONFeatureCollection;
 import org.oskari.geojson.GeoJSONReader;
 import org.oskari.myplaces.service.mybatis.MyPlacesFeaturesServiceMybatisImpl;
 import org.oskari.service.user.UserLayerService;
+import org.oskari.service.user.UserLayerTile;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -225,4 +226,14 @@ public class MyPlacesWFSHelper extends UserLayerService {
         SimpleFeatureCollection featureCollection = featureService.getFeatures(categoryId, bbox, crs);
         return featureCollection != null ? featureCollection : new EmptyFeatureCollection(null);
     }
+
+    @Override
+    public boolean supportsMVT(String layerId) {
+        return isUserContentLayer(layerId) && featureService.supportsMVT();
+    }
+
+    @Override
+    public byte[] getMVT(String layerId, UserLayerTile tile) throws ServiceException {
+        return featureService.getMVT(parseId(layerId), tile);
+    }
 }
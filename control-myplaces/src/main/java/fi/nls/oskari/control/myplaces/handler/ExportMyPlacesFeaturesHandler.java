@@ -3,26 +3,41 @@ package fi.nls.oskari.control.myplaces.handler;
 import fi.nls.oskari.annotation.OskariActionRoute;
 import fi.nls.oskari.control.ActionException;
 import fi.nls.oskari.control.ActionParameters;
+import fi.nls.oskari.control.ActionParamsException;
 import fi.nls.oskari.domain.User;
 import fi.nls.oskari.log.LogFactory;
 import fi.nls.oskari.log.Logger;
+import fi.nls.oskari.myplaces.service.MyPlacesFeatureWriter;
 import fi.nls.oskari.service.ServiceException;
+import fi.nls.oskari.util.IOHelper;
 import fi.nls.oskari.util.PropertyUtil;
-import org.json.JSONObject;
+import org.oskari.myplaces.export.GeoJSONMyPlacesWriter;
+import org.oskari.myplaces.export.GeoPackageMyPlacesWriter;
 
 import javax.servlet.http.HttpServletResponse;
 import java.io.*;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.zip.GZIPOutputStream;
 
+/**
+ * Exports the places of a category as GeoJSON (default) or GeoPackage (format=gpkg).
+ * The places are streamed from the database to the response so the export isn't built in memory.
+ * The response is gzipped if the client accepts it.
+ */
 @OskariActionRoute("ExportMyPlacesLayerFeatures")
 public class ExportMyPlacesFeaturesHandler extends MyPlacesFeaturesHandler {
     private final static Logger LOG = LogFactory.getLogger(ExportMyPlacesFeaturesHandler.class);
     private static final String PARAM_SRS = "srs";
     private static final String PARAM_LAYER_ID = "categoryId";
     private static final String PARAM_INDENT = "indent";
-    private static final String FILE_EXT = "geojson";
-    private static final String FILE_TYPE = "application/json";
+    private static final String PARAM_FORMAT = "format";
+    private static final String FORMAT_GEOJSON = "geojson";
+    private static final String FORMAT_GPKG = "gpkg";
+    private static final String GEOJSON_TYPE = "application/json";
+    private static final String GPKG_TYPE = "application/geopackage+sqlite3";
+    private static final String GPKG_TABLE = "myplaces";
+    private static final int BUFFER_SIZE = 8192;
 
     private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
@@ -34,29 +49,43 @@ public class ExportMyPlacesFeaturesHandler extends MyPlacesFeaturesHandler {
         final String layerId = params.getRequiredParam(PARAM_LAYER_ID);
         final int indent = params.getHttpParam(PARAM_INDENT, -1);
         final boolean prettify = indent > 0 && indent <= 8;
-        try {
-
-            JSONObject featureCollection = getFeatures(user, layerId, srs);
-            String layerName = getLayerName(layerId);
-            String timestamp = LocalDate.now().format(TIME_FORMAT);
-            String fileName = layerName + "_" + timestamp + "." + FILE_EXT;
-            HttpServletResponse response = params.getResponse();
-            response.setContentType(FILE_TYPE);
-            response.setHeader("Content-Disposition", "attachment; filename=" + fileName);
-
-            try (OutputStream out = response.getOutputStream()) {
-                try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(out))) {
-                    String stringified = prettify ? featureCollection.toString(indent) : featureCollection.toString();
-                    bw.write(stringified);
-                }
-            } catch (Exception e) {
-                LOG.warn(e);
-                throw new ActionException("Failed to write JSON");
-            }
+        final String format = params.getHttpParam(PARAM_FORMAT, FORMAT_GEOJSON).toLowerCase();
+        if (!FORMAT_GEOJSON.equals(format) && !FORMAT_GPKG.equals(format)) {
+            throw new ActionParamsException("Unsupported format: " + format);
+        }
+        final long categoryId = getCategoryId(user, layerId);
+
+        String layerName = getLayerName(layerId);
+        String timestamp = LocalDate.now().format(TIME_FORMAT);
+        String fileName = layerName + "_" + timestamp + "." + format;
+        HttpServletResponse response = params.getResponse();
+        response.setContentType(FORMAT_GPKG.equals(format) ? GPKG_TYPE : GEOJSON_TYPE);
+        response.setHeader("Content-Disposition", "attachment; filename=" + fileName);
+        final boolean gzip = acceptsGzip(params);
+        if (gzip) {
+            response.setHeader("Content-Encoding", IOHelper.ENCODING_GZIP);
+        }
+
+        try (OutputStream out = gzip
+                    ? new GZIPOutputStream(response.getOutputStream(), BUFFER_SIZE)
+                    : new BufferedOutputStream(response.getOutputStream(), BUFFER_SIZE);
+             MyPlacesFeatureWriter writer = FORMAT_GPKG.equals(format)
+                    ? new GeoPackageMyPlacesWriter(out, GPKG_TABLE)
+                    : new GeoJSONMyPlacesWriter(out, prettify ? indent : 0)) {
+            int count = getFeatureService().writeFeaturesByCategoryId(categoryId, srs, writer);
+            LOG.debug("Exported", count, "places from category:", categoryId);
         } catch (ServiceException e) {
             LOG.warn(e);
             throw new ActionException("Failed to export features");
+        } catch (IOException e) {
+            LOG.warn(e);
+            throw new ActionException("Failed to write export");
         }
     }
 
+    private boolean acceptsGzip(ActionParameters params) {
+        String accepted = params.getRequest().getHeader(IOHelper.HEADER_ACCEPT_ENCODING);
+        return accepted != null && accepted.contains(IOHelper.ENCODING_GZIP);
+    }
+
 }
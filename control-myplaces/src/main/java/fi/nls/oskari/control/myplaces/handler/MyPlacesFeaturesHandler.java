@@ -92,12 +92,24 @@ public class MyPlacesFeaturesHandler extends RestActionHandler {
         }
         LOG.debug("Get MyPlaces by layer id, uuid:", user.getUuid(),
                 "layerId:", layerId, "crs:", crs);
+        return featureService.getFeaturesByCategoryId(getCategoryId(user, layerId), crs);
+    }
+
+    /**
+     * @return category id parsed from layerId
+     * @throws ActionDeniedException if user can't access features of the category
+     */
+    protected long getCategoryId(User user, String layerId) throws ActionDeniedException {
         long categoryId = Long.parseLong(layerId);
         if (!service.canModifyCategory(user, categoryId)) {
             throw new ActionDeniedException(
                     "Tried to GET features from category: " + categoryId);
         }
-        return featureService.getFeaturesByCategoryId(categoryId, crs);
+        return categoryId;
+    }
+
+    protected MyPlacesFeaturesService getFeatureService() {
+        return featureService;
     }
     protected String getLayerName (String layerId) {
         long categoryId = Long.parseLong(layerId);
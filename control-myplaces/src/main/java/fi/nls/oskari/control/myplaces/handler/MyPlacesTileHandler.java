@@ -1,19 +1,45 @@
 package fi.nls.oskari.control.myplaces.handler;
 
 import fi.nls.oskari.annotation.OskariActionRoute;
+import fi.nls.oskari.control.ActionDeniedException;
 import fi.nls.oskari.control.ActionException;
 import fi.nls.oskari.control.ActionHandler;
 import fi.nls.oskari.control.ActionParameters;
+import fi.nls.oskari.control.ActionParamsException;
+import fi.nls.oskari.domain.map.MyPlaceCategory;
 import fi.nls.oskari.log.LogFactory;
 import fi.nls.oskari.log.Logger;
+import fi.nls.oskari.map.geometry.ProjectionHelper;
+import fi.nls.oskari.map.geometry.WKTHelper;
+import fi.nls.oskari.myplaces.MyPlacesService;
+import fi.nls.oskari.myplaces.service.MyPlacesFeaturesService;
+import fi.nls.oskari.service.OskariComponentManager;
 import fi.nls.oskari.service.ProxyService;
+import fi.nls.oskari.service.ServiceException;
+import fi.nls.oskari.util.PropertyUtil;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.geometry.jts.JTS;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.CRS;
+import org.json.JSONObject;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.operation.MathTransform;
+import org.oskari.myplaces.service.mybatis.MyPlacesFeaturesServiceMybatisImpl;
+import org.oskari.myplaces.tile.MyPlacesTileCache;
+import org.oskari.myplaces.tile.MyPlacesTileRenderer;
 
 import javax.servlet.http.HttpServletResponse;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Routes myplaces tiles for current user.
- * Uses ProxyService with service key "myplacestile".
+ * Uses ProxyService with service key "myplacestile" by default.
+ * With myplaces.tile.native=true the tiles are rendered from the myplaces database
+ * with the category style and cached until places of the category are modified.
  * Handler returns binary response with content type "image/png".
  */
 @OskariActionRoute("MyPlacesTile")
@@ -22,9 +48,46 @@ public class MyPlacesTileHandler extends ActionHandler {
     private final static Logger log = LogFactory.getLogger(MyPlacesTileHandler.class);
 
     final private static String SERVICE_KEY = "myplacestile";
+    private static final String PROP_NATIVE = "myplaces.tile.native";
+
+    private static final String PARAM_CATEGORY_ID = "myCat";
+    private static final String PARAM_BBOX = "BBOX";
+    private static final String PARAM_WIDTH = "WIDTH";
+    private static final String PARAM_HEIGHT = "HEIGHT";
+    private static final String PARAM_SRS = "SRS";
+    private static final String PARAM_CRS = "CRS";
+    private static final String PARAM_VERSION = "VERSION";
+    private static final int MAX_SIZE = 2048;
+
+    private boolean renderNative;
+    private MyPlacesService service;
+    private MyPlacesFeaturesService featureService;
+
+    @Override
+    public void init() {
+        super.init();
+        renderNative = PropertyUtil.getOptional(PROP_NATIVE, false);
+        if (renderNative) {
+            service = OskariComponentManager.getComponentOfType(MyPlacesService.class);
+            featureService = new MyPlacesFeaturesServiceMybatisImpl();
+        }
+    }
 
     public void handleAction(ActionParameters params) throws ActionException {
+        final byte[] image = renderNative ? render(params) : proxy(params);
+        try {
+            final HttpServletResponse response = params.getResponse();
+            // Cache for hour
+            response.setHeader("Cache-Control", "must-revalidate, max-age=3600");
+            response.setContentType("image/png");
+            final OutputStream os = response.getOutputStream();
+            os.write(image);
+        } catch (Exception e) {
+            throw new ActionException("Failed to create image", e);
+        }
+    }
 
+    private byte[] proxy(ActionParameters params) throws ActionException {
         log.debug("Proxying to", SERVICE_KEY);
         // proxy config handles making external request with credentials
         final byte[] proxyResponse = ProxyService.proxyBinary(SERVICE_KEY, params);
@@ -33,16 +96,107 @@ public class MyPlacesTileHandler extends ActionHandler {
         } else {
             log.debug("Got empty response!");
         }
+        return proxyResponse;
+    }
+
+    private byte[] render(ActionParameters params) throws ActionException {
+        final long categoryId = params.getRequiredParamLong(PARAM_CATEGORY_ID);
+        final int width = params.getRequiredParamInt(PARAM_WIDTH);
+        final int height = params.getRequiredParamInt(PARAM_HEIGHT);
+        if (width <= 0 || height <= 0 || width > MAX_SIZE || height > MAX_SIZE) {
+            throw new ActionParamsException("Invalid image size");
+        }
+        final String version = params.getHttpParam(PARAM_VERSION, "1.1.1");
+        final String srs = params.getHttpParam(PARAM_CRS, params.getHttpParam(PARAM_SRS));
+        if (srs == null) {
+            throw new ActionParamsException("Missing SRS");
+        }
+        final String bboxParam = params.getRequiredParam(PARAM_BBOX);
+
+        MyPlaceCategory category = service.findCategory(categoryId);
+        if (category == null) {
+            throw new ActionParamsException("Unknown category: " + categoryId);
+        }
+        if (!category.isOwnedBy(params.getUser().getUuid()) && !category.isPublished()) {
+            throw new ActionDeniedException("Tried to get tile from category " + categoryId);
+        }
+
+        MyPlacesTileCache.CategoryTiles tiles = MyPlacesTileCache.get(categoryId);
+        if (tiles == null) {
+            JSONObject style = category.getWFSLayerOptions().getDefaultFeatureStyle();
+            tiles = MyPlacesTileCache.create(categoryId, new MyPlacesTileRenderer(style));
+        }
+        final String key = String.join("|", srs, bboxParam, Integer.toString(width), Integer.toString(height));
+        byte[] tile = tiles.get(key);
+        if (tile != null) {
+            return tile;
+        }
 
         try {
-            final HttpServletResponse response = params.getResponse();
-            // Cache for hour
-            response.setHeader("Cache-Control", "must-revalidate, max-age=3600");
-            response.setContentType("image/png");
-            final OutputStream os = response.getOutputStream();
-            os.write(proxyResponse);
+            Envelope bbox = parseBBOX(bboxParam, srs, version);
+            tile = render(categoryId, tiles.getRenderer(), bbox, WKTHelper.getCRS(srs), width, height);
+        } catch (ServiceException e) {
+            throw new ActionException("Failed to render tile", e);
+        }
+        tiles.put(key, tile);
+        return tile;
+    }
+
+    private Envelope parseBBOX(String bbox, String srs, String version) throws ActionParamsException {
+        String[] parts = bbox.split(",");
+        if (parts.length != 4) {
+            throw new ActionParamsException("Invalid BBOX");
+        }
+        double[] values = new double[4];
+        try {
+            for (int i = 0; i < 4; i++) {
+                values[i] = Double.parseDouble(parts[i]);
+            }
+        } catch (NumberFormatException e) {
+            throw new ActionParamsException("Invalid BBOX");
+        }
+        if ("1.3.0".equals(version) && isFirstAxisNorth(srs)) {
+            return new Envelope(values[1], values[3], values[0], values[2]);
+        }
+        return new Envelope(values[0], values[2], values[1], values[3]);
+    }
+
+    private boolean isFirstAxisNorth(String srs) {
+        try {
+            return ProjectionHelper.isFirstAxisNorth(CRS.decode(srs));
         } catch (Exception e) {
-            throw new ActionException("Failed to create image", e);
+            return false;
+        }
+    }
+
+    private byte[] render(long categoryId, MyPlacesTileRenderer renderer, Envelope bbox,
+                          CoordinateReferenceSystem crs, int width, int height) throws ServiceException {
+        try {
+            // include features just outside the tile that are drawn partly on it
+            Envelope query = new Envelope(bbox);
+            query.expandBy(bbox.getWidth() / width * renderer.getMargin(), bbox.getHeight() / height * renderer.getMargin());
+
+            CoordinateReferenceSystem nativeCrs = WKTHelper.getCRS(PropertyUtil.get("oskari.native.srs", "EPSG:3857"));
+            boolean transform = !CRS.equalsIgnoreMetadata(crs, nativeCrs);
+            ReferencedEnvelope nativeQuery = new ReferencedEnvelope(query, crs);
+            if (transform) {
+                nativeQuery = nativeQuery.transform(nativeCrs, true);
+            }
+            MathTransform toRequest = transform ? CRS.findMathTransform(nativeCrs, crs, true) : null;
+
+            List<Geometry> geometries = new ArrayList<>();
+            try (SimpleFeatureIterator it = featureService.getFeatures((int) categoryId, nativeQuery, nativeCrs).features()) {
+                while (it.hasNext()) {
+                    Geometry geom = (Geometry) it.next().getDefaultGeometry();
+                    geometries.add(toRequest == null ? geom : JTS.transform(geom, toRequest));
+                }
+            }
+            log.debug("Rendering", geometries.size(), "places from category:", categoryId);
+            return renderer.render(geometries, bbox, width, height);
+        } catch (ServiceException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ServiceException("Failed to render tile", e);
         }
     }
 
@@ -1,7 +1,6 @@
 package fi.nls.oskari.control.statistics;
 
 import fi.nls.oskari.annotation.OskariActionRoute;
-import fi.nls.oskari.cache.JedisManager;
 import fi.nls.oskari.control.ActionException;
 import fi.nls.oskari.control.ActionHandler;
 import fi.nls.oskari.control.ActionParameters;
@@ -9,13 +8,14 @@ import fi.nls.oskari.control.ActionParamsException;
 import fi.nls.oskari.control.statistics.data.*;
 import fi.nls.oskari.control.statistics.plugins.*;
 import fi.nls.oskari.domain.User;
-import fi.nls.oskari.util.JSONHelper;
 import fi.nls.oskari.util.ResponseHelper;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -49,12 +49,12 @@ public class GetIndicatorDataHandler extends ActionHandler {
             throw new ActionParamsException("Invalid parameter value for key: "
                     + PARAM_SELECTORS + " - expected JSON object");
         }
-        JSONObject response = getIndicatorDataJSON(params.getUser(),
+        byte[] response = getIndicatorData(params.getUser(),
                 pluginId, indicatorId, layerId, selectorsJSON);
-        ResponseHelper.writeResponse(params, response);
+        ResponseHelper.writeResponse(params, HttpServletResponse.SC_OK, ResponseHelper.CONTENT_TYPE_JSON_UTF8, response);
     }
 
-    private JSONObject getIndicatorDataJSON(User user, long pluginId, String indicatorId,
+    private byte[] getIndicatorData(User user, long pluginId, String indicatorId,
             long layerId, JSONObject selectorJSON) throws ActionException {
         StatisticalDatasourcePlugin plugin = PLUGIN_MANAGER.getPlugin(pluginId);
         if (plugin == null) {
@@ -69,7 +69,7 @@ public class GetIndicatorDataHandler extends ActionHandler {
 
         String cacheKey = StatisticsHelper.getIndicatorDataCacheKey(pluginId, indicatorId, layerId, selectorJSON);
         if (plugin.canCache()) {
-            JSONObject cached = getFromCache(cacheKey);
+            byte[] cached = StatisticsResponseCache.get(cacheKey);
             if (cached != null) {
                 return cached;
             }
@@ -83,10 +83,10 @@ public class GetIndicatorDataHandler extends ActionHandler {
         StatisticalIndicatorDataModel selectors = StatisticsHelper.getIndicatorDataModel(selectorJSON);
         try {
             Map<String, IndicatorValue> values = plugin.getIndicatorValues(indicator, selectors, layer);
-            JSONObject response = toJSON(values);
+            byte[] response = toJSON(values).toString().getBytes(StandardCharsets.UTF_8);
 
             if (plugin.canCache()) {
-                JedisManager.setex(cacheKey, JedisManager.EXPIRY_TIME_DAY, response.toString());
+                StatisticsResponseCache.put(cacheKey, response);
             }
 
             return response;
@@ -99,12 +99,6 @@ public class GetIndicatorDataHandler extends ActionHandler {
         }
     }
 
-    private JSONObject getFromCache(String cacheKey) {
-        String cachedData = JedisManager.get(cacheKey);
-        return JSONHelper.createJSONObject(cachedData);
-    }
-
-
     private JSONObject toJSON(Map<String, IndicatorValue> values) throws ActionException {
         try {
             JSONObject json = new JSONObject();
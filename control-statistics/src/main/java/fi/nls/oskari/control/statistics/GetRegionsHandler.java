@@ -1,7 +1,6 @@
 package fi.nls.oskari.control.statistics;
 
 import fi.nls.oskari.annotation.OskariActionRoute;
-import fi.nls.oskari.cache.JedisManager;
 import fi.nls.oskari.control.*;
 import fi.nls.oskari.control.statistics.db.RegionSet;
 import fi.nls.oskari.service.OskariComponentManager;
@@ -16,7 +15,9 @@ import org.opengis.geometry.MismatchedDimensionException;
 import org.opengis.referencing.FactoryException;
 import org.opengis.referencing.operation.TransformException;
 
+import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 /**
@@ -38,6 +39,7 @@ public class GetRegionsHandler extends ActionHandler {
 
     private static final String CACHE_KEY_PREFIX = "oskari:stats:regionset:";
     private static final String KEY_REGIONS = "regions";
+    private static final String PARAM_RESOLUTION = "resolution";
 
     private RegionSetService service;
 
@@ -55,8 +57,13 @@ public class GetRegionsHandler extends ActionHandler {
     public void handleAction(ActionParameters ap) throws ActionException {
         final int layerId = ap.getRequiredParamInt("regionset");
         final String srs = ap.getRequiredParam(ActionConstants.PARAM_SRS);
-        JSONObject response = getRegionInfoJSON(layerId, srs);
-        ResponseHelper.writeResponse(ap, response);
+        // 0 = full resolution geometries, larger values return simplified geometries
+        final int resolution = ap.getHttpParam(PARAM_RESOLUTION, RegionSetHelper.RESOLUTION_FULL);
+        if (resolution < RegionSetHelper.RESOLUTION_FULL || resolution > RegionSetHelper.MAX_RESOLUTION) {
+            throw new ActionParamsException("Invalid value for " + PARAM_RESOLUTION + ". Expected 0-" + RegionSetHelper.MAX_RESOLUTION);
+        }
+        byte[] response = getRegionInfo(layerId, srs, resolution);
+        ResponseHelper.writeResponse(ap, HttpServletResponse.SC_OK, ResponseHelper.CONTENT_TYPE_JSON_UTF8, response);
     }
 
     /**
@@ -65,33 +72,66 @@ public class GetRegionsHandler extends ActionHandler {
      * @throws ActionException
      */
     public JSONObject getRegionInfoJSON(long layerId, final String srs) throws ActionException {
+        try {
+            return new JSONObject(new String(getRegionInfo(layerId, srs, RegionSetHelper.RESOLUTION_FULL), StandardCharsets.UTF_8));
+        } catch (JSONException e) {
+            throw new ActionException("Failed to parse regionset", e);
+        }
+    }
+
+    /**
+     * Same as getRegionInfoJSON() but returns the serialized response so it can be written
+     * to the client without parsing it again when it's cached.
+     * Generates and caches the response for all resolution levels on cache miss.
+     * @param layerId regionset id
+     * @param srs projection for geometries
+     * @param resolution 0 for full resolution geometries, up to RegionSetHelper.MAX_RESOLUTION for simplified ones
+     * @return UTF-8 encoded JSON
+     * @throws ActionException
+     */
+    public byte[] getRegionInfo(long layerId, final String srs, final int resolution) throws ActionException {
         final RegionSet regionset = service.getRegionSet(layerId);
 
         if (regionset == null) {
             throw new ActionParamsException("Regionset not found");
         }
-        return requestRegionInfoJSON(layerId, regionset, srs);
+        final byte[] cachedData = StatisticsResponseCache.get(getCacheKey(layerId, srs, resolution));
+        if (cachedData != null) {
+            return cachedData;
+        }
+        byte[] response = null;
+        final List<List<Region>> levels = requestRegions(regionset, srs);
+        for (int level = 0; level < levels.size(); level++) {
+            final byte[] json = toJSON(levels.get(level)).toString().getBytes(StandardCharsets.UTF_8);
+            StatisticsResponseCache.put(getCacheKey(layerId, srs, level), json);
+            if (level == resolution) {
+                response = json;
+            }
+        }
+        return response;
     }
 
-    public JSONObject requestRegionInfoJSON(long id, RegionSet regionset, final String srs) throws ActionException {
-        final String cacheKey = CACHE_KEY_PREFIX + id + ":" + srs;
-        final String cachedData = JedisManager.get(cacheKey);
-        if (cachedData != null && !cachedData.isEmpty()) {
-            try {
-                return new JSONObject(cachedData);
-            } catch (JSONException e) {
-                // Failed serializing. Skipping the cache.
-            }
+    private String getCacheKey(long layerId, String srs, int resolution) {
+        final String key = CACHE_KEY_PREFIX + layerId + ":" + srs;
+        if (resolution == RegionSetHelper.RESOLUTION_FULL) {
+            return key;
         }
+        return key + ":" + resolution;
+    }
+
+    private JSONObject toJSON(List<Region> result) {
         final JSONObject response = new JSONObject();
         final JSONArray regions = new JSONArray();
         JSONHelper.putValue(response, KEY_REGIONS, regions);
+        for (Region region : result) {
+            regions.put(region.toJSON());
+        }
+        return response;
+    }
 
+    private List<List<Region>> requestRegions(RegionSet regionset, final String srs) throws ActionException {
         try {
-            final List<Region> result = RegionSetHelper.getRegions(regionset, srs);
-            for (Region region : result) {
-                regions.put(region.toJSON());
-            }
+            return RegionSetHelper.getRegionsForAllResolutions(regionset, srs);
         } catch (IOException e) {
             throw new ActionException("Couldn't connect to regionset provider.", e);
         } catch (ServiceException e) {
@@ -103,9 +143,6 @@ public class GetRegionsHandler extends ActionHandler {
         } catch (TransformException e) {
             throw new ActionException("Failed to perform transformation", e);
         }
-
-        JedisManager.setex(cacheKey, JedisManager.EXPIRY_TIME_DAY, response.toString());
-        return response;
     }
 
 }
@@ -6,7 +6,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
-import fi.nls.oskari.cache.JedisManager;
 import fi.nls.oskari.control.statistics.data.*;
 import fi.nls.oskari.control.statistics.util.CacheKeys;
 import org.json.JSONArray;
@@ -60,7 +59,7 @@ public class StatisticsHelper {
 
     public static void flushDataFromCache(long pluginId, String indicatorId, long layerId, JSONObject selectorJSON) {
         String cacheKey = getIndicatorDataCacheKey(pluginId, indicatorId, layerId, selectorJSON);
-        JedisManager.del(cacheKey);
+        StatisticsResponseCache.remove(cacheKey);
     }
 
     public static StatisticalIndicatorDataModel getIndicatorDataModel(JSONObject selectorJSON) {
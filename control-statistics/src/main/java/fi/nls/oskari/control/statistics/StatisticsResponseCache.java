@@ -0,0 +1,75 @@
+package fi.nls.oskari.control.statistics;
+
+import fi.nls.oskari.cache.ByteArrayCache;
+import fi.nls.oskari.cache.CacheManager;
+import fi.nls.oskari.cache.JedisManager;
+import fi.nls.oskari.util.PropertyUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local cache in front of Redis for serialized statistics responses (indicator data and regionsets).
+ * Values are stored as UTF-8 encoded JSON so they can be written to the response as is.
+ *
+ * The local cache is cluster aware through Cache so removing a key notifies the other nodes.
+ *
+ * Configuration:
+ * - statistics.cache.maxMB - total size of responses cached locally (defaults to 64)
+ * - statistics.cache.maxKB - responses larger than this are only cached in Redis (defaults to 8192)
+ * - oskari.cache.limit.fi.nls.oskari.control.statistics.StatisticsResponseCache - number of responses cached locally
+ */
+public class StatisticsResponseCache {
+
+    private static final ByteArrayCache CACHE = CacheManager.getCache(StatisticsResponseCache.class.getName(),
+            () -> new ByteArrayCache(
+                    PropertyUtil.getOptional("statistics.cache.maxMB", 64) * 1024L * 1024L,
+                    PropertyUtil.getOptional("statistics.cache.maxKB", 8192) * 1024));
+
+    static {
+        CACHE.setExpiration(TimeUnit.HOURS.toMillis(1));
+    }
+
+    private StatisticsResponseCache() {}
+
+    /**
+     * Returns the response from local cache or Redis if not cached locally.
+     * @param key cache key
+     * @return serialized response or null if not cached
+     */
+    public static byte[] get(String key) {
+        byte[] value = CACHE.get(key);
+        if (value != null) {
+            return value;
+        }
+        value = JedisManager.get(toBytes(key));
+        if (value == null || value.length == 0) {
+            return null;
+        }
+        CACHE.put(key, value);
+        return value;
+    }
+
+    /**
+     * Stores the response to local cache and Redis
+     * @param key cache key
+     * @param value serialized response
+     */
+    public static void put(String key, byte[] value) {
+        JedisManager.setex(toBytes(key), JedisManager.EXPIRY_TIME_DAY, value);
+        CACHE.put(key, value);
+    }
+
+    /**
+     * Removes the response from Redis and from local caches on all nodes
+     * @param key cache key
+     */
+    public static void remove(String key) {
+        JedisManager.del(key);
+        CACHE.remove(key);
+    }
+
+    private static byte[] toBytes(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -9,6 +9,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
 import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
@@ -33,8 +37,8 @@ import org.oskari.map.userlayer.service.UserLayerDbServiceMybatisImpl;
 import org.oskari.map.userlayer.service.UserLayerException;
 
 import fi.nls.oskari.annotation.OskariActionRoute;
+import fi.nls.oskari.domain.User;
 import fi.nls.oskari.domain.map.userlayer.UserLayer;
-import fi.nls.oskari.domain.map.userlayer.UserLayerData;
 import fi.nls.oskari.log.LogFactory;
 import fi.nls.oskari.log.Logger;
 import fi.nls.oskari.service.ServiceException;
@@ -58,6 +62,10 @@ import fi.nls.oskari.util.ResponseHelper;
  * (both use EPSG:4326,lon,lat coordinates). For MIF and SHP we try to detect the coordinate
  * reference system automatically. If the detection fails (for example there's no .prj file
  * in the SHP case) we use client submitted value ('sourceEpsg' parameter) as a fallback.
+ *
+ * The zip is extracted while handling the request and the import is run by UserLayerImportService.
+ * By default the response is written when the import is done. With 'async=true' parameter the response
+ * contains the import job status with an id that can be used to poll GetUserLayerImportStatus.
  */
 @OskariActionRoute("CreateUserLayer")
 public class CreateUserLayerHandler extends RestActionHandler {
@@ -86,6 +94,9 @@ public class CreateUserLayerHandler extends RestActionHandler {
     private static final int MAX_SIZE_MEMORY = 128 * KB;
 
     private static final int MAX_RETRY_RANDOM_UUID = 100;
+    private static final String TEMP_DIR_PREFIX = "oskari-userlayer-";
+    private static final long STALE_TEMP_DIR_AGE_MS = TimeUnit.DAYS.toMillis(1);
+    private static final String PARAM_ASYNC = "async";
 
     private final DiskFileItemFactory diskFileItemFactory = new DiskFileItemFactory(MAX_SIZE_MEMORY, null);
     private String targetEPSG = "EPSG:4326";
@@ -93,6 +104,7 @@ public class CreateUserLayerHandler extends RestActionHandler {
     private long unzippiedFileSizeLimit = -1;
 
     private UserLayerDbService userLayerService;
+    private UserLayerImportService importService;
 
     public void setUserLayerService(UserLayerDbService userLayerService) {
         this.userLayerService = userLayerService;
@@ -103,6 +115,14 @@ public class CreateUserLayerHandler extends RestActionHandler {
         if (userLayerService == null) {
             userLayerService = new UserLayerDbServiceMybatisImpl();
         }
+        importService = UserLayerImportService.getInstance();
+        UserLayerImportService.removeStaleDirectories(new File(System.getProperty("java.io.tmpdir")),
+                TEMP_DIR_PREFIX, STALE_TEMP_DIR_AGE_MS);
+    }
+
+    @Override
+    public void teardown() {
+        UserLayerImportService.shutdown();
     }
 
     @Override
@@ -117,11 +137,15 @@ public class CreateUserLayerHandler extends RestActionHandler {
         }
 
         String sourceEPSG = params.getHttpParam(PARAM_SOURCE_EPSG_KEY);
+        boolean async = params.getHttpParam(PARAM_ASYNC, false);
+        // request is not available when the import is run so collect what's needed from it here
+        final User user = params.getUser();
+        final String clientIp = params.getClientIp();
+        final String mapSrs = params.getHttpParam(ActionConstants.PARAM_SRS);
         List<FileItem> fileItems = getFileItems(params.getRequest());
-        SimpleFeatureCollection fc;
-        Map<String, String> formParams;
         Set<String> validFiles = new HashSet<>();
         FileItem zipFile = null;
+        UserLayerImportJob job;
         try {
             CoordinateReferenceSystem sourceCRS = decodeCRS(sourceEPSG);
             CoordinateReferenceSystem targetCRS = decodeCRS(targetEPSG);
@@ -132,33 +156,39 @@ public class CreateUserLayerHandler extends RestActionHandler {
             log.debug("Using value from field:", zipFile.getFieldName(), "as the zip file");
             Charset cs = determineCharsetForZipFileNames(zipFile);
             validFiles = checkZip(zipFile, cs);
-            fc = parseFeatures(zipFile, cs, validFiles, sourceCRS, targetCRS);
-            formParams = getFormParams(fileItems);
+            Map<String, String> formParams = getFormParams(fileItems);
             log.debug("Parsed form parameters:", formParams);
-            UserLayer userLayer = store(fc, params.getUser().getUuid(), formParams);
-
-            AuditLog.user(params.getClientIp(), params.getUser())
-                    .withParam("filename", zipFile.getName())
-                    .withParam("id", userLayer.getId())
-                    .added(AuditLog.ResourceType.USERLAYER);
-
-            writeResponse(params, userLayer);
-        } catch (UserLayerException e) {
-            if (!validFiles.isEmpty()){ // avoid to override with empty list
-                e.addContent(UserLayerException.InfoType.FILES, validFiles);
+            File dir = makeRandomTempDirectory();
+            File mainFile;
+            try {
+                mainFile = unZip(zipFile, cs, validFiles, dir);
+            } catch (ServiceException e) {
+                UserLayerImportJob.deleteDir(dir);
+                throw e;
             }
-            log.error("User uuid:", params.getUser().getUuid(),
-                    "zip:", zipFile == null ? "no file" : zipFile.getName(),
-                    "info:", e.getOptions().toString());
-
-            AuditLog.user(params.getClientIp(), params.getUser())
-                    .withParam("filename", zipFile.getName())
-                    .withMsg(e.getMessage())
-                    .errored(AuditLog.ResourceType.USERLAYER);
-
+            final String fileName = zipFile.getName();
+            final Set<String> files = validFiles;
+            job = new UserLayerImportJob(user.getUuid(), dir, progress -> {
+                try {
+                    UserLayer userLayer = parseFeatures(mainFile, sourceCRS, targetCRS,
+                            fc -> store(fc, user.getUuid(), formParams, progress));
+                    AuditLog.user(clientIp, user)
+                            .withParam("filename", fileName)
+                            .withParam("id", userLayer.getId())
+                            .added(AuditLog.ResourceType.USERLAYER);
+                    return createResponse(userLayer, mapSrs);
+                } catch (UserLayerException e) {
+                    onImportFailed(e, user, clientIp, fileName, files);
+                    throw e;
+                }
+            });
+        } catch (UserLayerException e) {
+            onImportFailed(e, user, clientIp, zipFile == null ? null : zipFile.getName(), validFiles);
             throw new ActionParamsException(e.getMessage(), e.getOptions());
+        } catch (ServiceException e) {
+            throw new ActionParamsException(e.getMessage());
         } catch (ActionException e) {
-            log.error("User uuid:", params.getUser().getUuid(),
+            log.error("User uuid:", user.getUuid(),
                     "zip:", zipFile == null ? "no file" : zipFile.getName(),
                     "files found ("+ validFiles.size() + ") including:",
                     validFiles.stream().collect(Collectors.joining(",")));
@@ -166,6 +196,42 @@ public class CreateUserLayerHandler extends RestActionHandler {
         } finally {
             fileItems.forEach(FileItem::delete);
         }
+
+        Future<JSONObject> result = importService.submit(job);
+        if (async) {
+            // client polls GetUserLayerImportStatus with the job id
+            ResponseHelper.writeResponse(params, job.toJSON());
+            return;
+        }
+        try {
+            ResponseHelper.writeResponse(params, result.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ActionException("Interrupted while importing userlayer");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UserLayerException) {
+                throw new ActionParamsException(cause.getMessage(), ((UserLayerException) cause).getOptions());
+            }
+            if (cause instanceof ActionException) {
+                throw (ActionException) cause;
+            }
+            throw new ActionException("Failed to import userlayer: " + cause.getMessage());
+        }
+    }
+
+    private void onImportFailed(UserLayerException e, User user, String clientIp, String fileName, Set<String> validFiles) {
+        if (!validFiles.isEmpty()){ // avoid to override with empty list
+            e.addContent(UserLayerException.InfoType.FILES, validFiles);
+        }
+        log.error("User uuid:", user.getUuid(),
+                "zip:", fileName == null ? "no file" : fileName,
+                "info:", e.getOptions() == null ? e.getMessage() : e.getOptions().toString());
+
+        AuditLog.user(clientIp, user)
+                .withParam("filename", fileName)
+                .withMsg(e.getMessage())
+                .errored(AuditLog.ResourceType.USERLAYER);
     }
 
     private Charset determineCharsetForZipFileNames(FileItem zipFile) throws ActionException {
@@ -288,17 +354,18 @@ public class CreateUserLayerHandler extends RestActionHandler {
                         f -> new String(f.get(), StandardCharsets.UTF_8)));
     }
 
-    private SimpleFeatureCollection parseFeatures(FileItem zipFile,
-            Charset cs, Set<String> validFiles,
+    /**
+     * Passes the parsed features to the handler. Features are read from the files
+     * while the handler processes them.
+     */
+    private <T> T parseFeatures(File mainFile,
             CoordinateReferenceSystem sourceCRS,
-            CoordinateReferenceSystem targetCRS) throws UserLayerException, ActionParamsException {
-        File dir = null;
+            CoordinateReferenceSystem targetCRS,
+            FeatureCollectionParser.Handler<T> handler) throws UserLayerException, ActionParamsException {
         FeatureCollectionParser parser = null;
         try {
-            dir = makeRandomTempDirectory();
-            File mainFile = unZip(zipFile, cs, validFiles, dir);
             parser = getParser(mainFile);
-            return parser.parse(mainFile, sourceCRS, targetCRS);
+            return parser.parse(mainFile, sourceCRS, targetCRS, handler);
         }catch (UserLayerException e) {
             if (parser != null) {
                 e.addContent(UserLayerException.InfoType.PARSER, parser.getSuffix().toLowerCase());
@@ -306,32 +373,16 @@ public class CreateUserLayerHandler extends RestActionHandler {
             throw e;
         }catch (ServiceException e) {
             throw new ActionParamsException (e.getMessage());
-        } finally {
-            // Clean up
-            if (dir != null) {
-                deleteDir(dir);
-            }
         }
     }
 
-    private void deleteDir(File file) {
-        File[] contents = file.listFiles();
-        // If file is non-empty directory recursive delete contents
-        if (contents != null) {
-            for (File f : contents) {
-                deleteDir(f);
-            }
-        }
-        file.delete();
-    }
-
     private File makeRandomTempDirectory() throws ServiceException {
         try {
             File tmpFile = File.createTempFile("temp", null);
             File tmpDir = tmpFile.getParentFile();
             tmpFile.delete();
             for (int i = 0; i < MAX_RETRY_RANDOM_UUID; i++) {
-                String randomId = UUID.randomUUID().toString().substring(0, 24);
+                String randomId = TEMP_DIR_PREFIX + UUID.randomUUID().toString().substring(0, 24);
                 File dir = new File(tmpDir, randomId);
                 if (dir.exists()) {
                     log.info("Temp directory exists already, trying another");
@@ -398,24 +449,16 @@ public class CreateUserLayerHandler extends RestActionHandler {
         return FeatureCollectionParsers.getByFileExt(ext);
     }
 
-    private UserLayer store(SimpleFeatureCollection fc, String uuid, Map<String, String> formParams)
+    private UserLayer store(SimpleFeatureCollection fc, String uuid, Map<String, String> formParams, LongConsumer progress)
             throws UserLayerException {
-            UserLayer userLayer = createUserLayer(fc, uuid, formParams);
-            List<UserLayerData> userLayerDataList = UserLayerDataService.createUserLayerData(fc, uuid);
-            userLayer.setFeatures_count(userLayerDataList.size());
-            userLayer.setFeatures_skipped(fc.size() - userLayerDataList.size());
-            userLayerService.insertUserLayerAndData(userLayer, userLayerDataList);
-            return userLayer;
-    }
-
-    private UserLayer createUserLayer(SimpleFeatureCollection fc, String uuid, Map<String, String> formParams) {
         JSONObject locale = JSONHelper.createJSONObject(formParams.get(KEY_LOCALE));
         JSONObject style = JSONHelper.createJSONObject(formParams.get(KEY_STYLE));
-        return UserLayerDataService.createUserLayer(fc, uuid, locale, style);
+        UserLayer userLayer = UserLayerDataService.createUserLayer(fc.getSchema(), uuid, locale, style);
+        userLayerService.insertUserLayerAndData(userLayer, fc, progress);
+        return userLayer;
     }
 
-    private void writeResponse(ActionParameters params, UserLayer ulayer) {
-        String mapSrs = params.getHttpParam(ActionConstants.PARAM_SRS);
+    private JSONObject createResponse(UserLayer ulayer, String mapSrs) {
         JSONObject userLayer = UserLayerDataService.parseUserLayer2JSON(ulayer, mapSrs);
 
         JSONHelper.putValue(userLayer, "featuresCount", ulayer.getFeatures_count());
@@ -427,7 +470,7 @@ public class CreateUserLayerHandler extends RestActionHandler {
             JSONHelper.putValue(featuresSkipped, "featuresSkipped", ulayer.getFeatures_skipped());
             JSONHelper.putValue(userLayer, "warning", featuresSkipped);
         }
-        ResponseHelper.writeResponse(params, userLayer);
+        return userLayer;
     }
 
 }
@@ -0,0 +1,30 @@
+package org.oskari.control.userlayer;
+
+import fi.nls.oskari.annotation.OskariActionRoute;
+import fi.nls.oskari.control.ActionException;
+import fi.nls.oskari.control.ActionHandler;
+import fi.nls.oskari.control.ActionParameters;
+import fi.nls.oskari.control.ActionParamsException;
+import fi.nls.oskari.util.ResponseHelper;
+import org.json.JSONObject;
+
+/**
+ * Returns the status of an userlayer import started with CreateUserLayer using 'async=true'.
+ * The layer JSON is included in the response when the import has been completed.
+ */
+@OskariActionRoute("GetUserLayerImportStatus")
+public class GetUserLayerImportStatusHandler extends ActionHandler {
+
+    private static final String PARAM_ID = "id";
+
+    @Override
+    public void handleAction(ActionParameters params) throws ActionException {
+        params.requireLoggedInUser();
+        final String jobId = params.getRequiredParam(PARAM_ID);
+        JSONObject status = UserLayerImportService.getInstance().getStatus(jobId, params.getUser().getUuid());
+        if (status == null) {
+            throw new ActionParamsException("Userlayer import not found: " + jobId);
+        }
+        ResponseHelper.writeResponse(params, status);
+    }
+}
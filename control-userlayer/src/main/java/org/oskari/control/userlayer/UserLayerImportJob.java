@@ -0,0 +1,167 @@
+package org.oskari.control.userlayer;
+
+import fi.nls.oskari.log.LogFactory;
+import fi.nls.oskari.log.Logger;
+import fi.nls.oskari.util.JSONHelper;
+import org.json.JSONObject;
+import org.oskari.map.userlayer.service.UserLayerException;
+
+import java.io.File;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.function.LongConsumer;
+
+/**
+ * Userlayer import that is run by UserLayerImportService. The uploaded zip has already been extracted
+ * to a temp directory when the job is created. The directory is removed when the job finishes.
+ */
+public class UserLayerImportJob implements Callable<JSONObject> {
+
+    private static final Logger LOG = LogFactory.getLogger(UserLayerImportJob.class);
+
+    public static final String KEY_ID = "id";
+    public static final String KEY_STATUS = "status";
+    public static final String KEY_FEATURES = "featuresProcessed";
+    public static final String KEY_ERROR = "error";
+    public static final String KEY_LAYER = "layer";
+    public static final String KEY_UPDATED = "updated";
+    public static final String KEY_USER = "user";
+
+    public enum Status {
+        QUEUED, PROCESSING, COMPLETED, FAILED;
+
+        public boolean isFinished() {
+            return this == COMPLETED || this == FAILED;
+        }
+    }
+
+    @FunctionalInterface
+    public interface Task {
+        /**
+         * @param progress should be called with the number of features processed
+         * @return userlayer JSON for the client
+         */
+        JSONObject run(LongConsumer progress) throws Exception;
+    }
+
+    public interface Listener {
+        void onStatusChange(UserLayerImportJob job);
+    }
+
+    private final String id = UUID.randomUUID().toString();
+    private final String uuid;
+    private final File dir;
+    private final Task task;
+    private Listener listener;
+
+    private volatile Status status = Status.QUEUED;
+    private volatile long featuresProcessed;
+    private volatile JSONObject error;
+    private volatile JSONObject layer;
+
+    public UserLayerImportJob(String uuid, File dir, Task task) {
+        this.uuid = uuid;
+        this.dir = dir;
+        this.task = task;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public long getFeaturesProcessed() {
+        return featuresProcessed;
+    }
+
+    void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public JSONObject call() throws Exception {
+        setStatus(Status.PROCESSING);
+        try {
+            layer = task.run(this::onProgress);
+            setStatus(Status.COMPLETED);
+            return layer;
+        } catch (UserLayerException e) {
+            fail(e.getOptions() != null ? e.getOptions() : JSONHelper.createJSONObject(KEY_ERROR, e.getMessage()));
+            throw e;
+        } catch (Exception e) {
+            LOG.warn(e, "Userlayer import failed:", id);
+            fail(JSONHelper.createJSONObject(KEY_ERROR, e.getMessage()));
+            throw e;
+        } finally {
+            cleanup();
+        }
+    }
+
+    /**
+     * Marks the job failed without running it. Used when the job can't be run.
+     */
+    void fail(JSONObject error) {
+        this.error = error;
+        setStatus(Status.FAILED);
+    }
+
+    /**
+     * Removes the temp directory with the extracted files
+     */
+    void cleanup() {
+        deleteDir(dir);
+    }
+
+    private void onProgress(long count) {
+        featuresProcessed = count;
+        notifyListener();
+    }
+
+    private void setStatus(Status status) {
+        this.status = status;
+        notifyListener();
+    }
+
+    private void notifyListener() {
+        if (listener != null) {
+            listener.onStatusChange(this);
+        }
+    }
+
+    public JSONObject toJSON() {
+        JSONObject json = new JSONObject();
+        JSONHelper.putValue(json, KEY_ID, id);
+        JSONHelper.putValue(json, KEY_USER, uuid);
+        JSONHelper.putValue(json, KEY_STATUS, status.name().toLowerCase());
+        JSONHelper.putValue(json, KEY_FEATURES, featuresProcessed);
+        JSONHelper.putValue(json, KEY_UPDATED, System.currentTimeMillis());
+        if (error != null) {
+            JSONHelper.putValue(json, KEY_ERROR, error);
+        }
+        if (layer != null) {
+            JSONHelper.putValue(json, KEY_LAYER, layer);
+        }
+        return json;
+    }
+
+    static void deleteDir(File file) {
+        if (file == null) {
+            return;
+        }
+        File[] contents = file.listFiles();
+        // If file is non-empty directory recursive delete contents
+        if (contents != null) {
+            for (File f : contents) {
+                deleteDir(f);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,284 @@
+package org.oskari.control.userlayer;
+
+import fi.nls.oskari.cache.JedisManager;
+import fi.nls.oskari.control.ActionDeniedException;
+import fi.nls.oskari.log.LogFactory;
+import fi.nls.oskari.log.Logger;
+import fi.nls.oskari.util.JSONHelper;
+import fi.nls.oskari.util.PropertyUtil;
+import org.json.JSONObject;
+import org.oskari.cluster.ClusterManager;
+
+import java.io.File;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs userlayer imports with a bounded pool of workers and keeps track of their status.
+ *
+ * Configuration:
+ * - userlayer.import.workers - number of imports processed at the same time (defaults to 2)
+ * - userlayer.import.queue - number of imports that can wait for a worker (defaults to 20)
+ * - userlayer.import.user.limit - number of queued or running imports per user (defaults to 2)
+ *
+ * In a clustered environment the job status is shared through Redis so it can be queried from any node.
+ * The node that received the upload owns the job and keeps an owner key alive in Redis until the job is finished.
+ * If the owner key expires before the job is finished the node has gone down and the job is reported as failed.
+ *
+ * Statuses of unfinished jobs are kept in memory until the job finishes. Statuses of finished jobs are kept
+ * for an hour after the job finished and are purged whenever another job finishes.
+ */
+public class UserLayerImportService implements UserLayerImportJob.Listener {
+
+    private static final Logger LOG = LogFactory.getLogger(UserLayerImportService.class);
+
+    private static final String KEY_PREFIX = "oskari:userlayer:import:";
+    private static final String KEY_OWNER_SUFFIX = ":owner";
+    private static final int STATUS_TTL_SECONDS = 60 * 60;
+    private static final int OWNER_TTL_SECONDS = 60;
+    // status is written to Redis at most this often while processing
+    private static final long PUBLISH_INTERVAL_MS = 1000;
+    private static final String ERROR_OWNER_LOST = "owner_lost";
+    private static final String ERROR_BUSY = "import_busy";
+    private static final String ERROR_USER_LIMIT = "import_user_limit";
+
+    private static UserLayerImportService instance;
+
+    private final ThreadPoolExecutor executor;
+    private final int userLimit;
+    private final ConcurrentHashMap<String, AtomicInteger> activePerUser = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Long> lastPublished = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, UserLayerImportJob> queued = new ConcurrentHashMap<>();
+    // unfinished jobs on this node
+    private final ConcurrentHashMap<String, UserLayerImportJob> owned = new ConcurrentHashMap<>();
+    private ScheduledExecutorService heartbeat;
+    private final ConcurrentHashMap<String, StoredStatus> statuses = new ConcurrentHashMap<>();
+
+    UserLayerImportService(int workers, int queueSize, int userLimit) {
+        this.userLimit = userLimit;
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                r -> {
+                    Thread t = new Thread(r, "oskari-userlayer-import-" + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        if (ClusterManager.isClustered()) {
+            heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "oskari-userlayer-import-owner");
+                t.setDaemon(true);
+                return t;
+            });
+            heartbeat.scheduleWithFixedDelay(this::refreshOwnership, OWNER_TTL_SECONDS / 3, OWNER_TTL_SECONDS / 3, TimeUnit.SECONDS);
+        }
+    }
+
+    public static synchronized UserLayerImportService getInstance() {
+        if (instance == null) {
+            instance = new UserLayerImportService(
+                    Math.max(1, PropertyUtil.getOptional("userlayer.import.workers", 2)),
+                    Math.max(1, PropertyUtil.getOptional("userlayer.import.queue", 20)),
+                    PropertyUtil.getOptional("userlayer.import.user.limit", 2));
+        }
+        return instance;
+    }
+
+    /**
+     * Stops the workers. Jobs waiting in the queue are cancelled and their temp directories removed.
+     */
+    public static synchronized void shutdown() {
+        if (instance == null) {
+            return;
+        }
+        instance.executor.shutdownNow();
+        if (instance.heartbeat != null) {
+            instance.heartbeat.shutdownNow();
+        }
+        for (UserLayerImportJob job : instance.queued.values()) {
+            LOG.info("Cancelled queued userlayer import:", job.getId());
+            job.cleanup();
+        }
+        instance = null;
+    }
+
+    /**
+     * Queues the job for processing.
+     * @throws ActionDeniedException if the user has too many imports in progress or the queue is full.
+     *   The temp directory of the job is removed in this case.
+     */
+    public Future<JSONObject> submit(UserLayerImportJob job) throws ActionDeniedException {
+        final String uuid = job.getUuid();
+        AtomicInteger active = activePerUser.computeIfAbsent(uuid, k -> new AtomicInteger());
+        if (userLimit > 0 && active.incrementAndGet() > userLimit) {
+            active.decrementAndGet();
+            job.cleanup();
+            throw new ActionDeniedException("Too many userlayer imports in progress",
+                    JSONHelper.createJSONObject(UserLayerImportJob.KEY_ERROR, ERROR_USER_LIMIT));
+        }
+        job.setListener(this);
+        onStatusChange(job);
+        queued.put(job.getId(), job);
+        try {
+            return executor.submit(() -> {
+                queued.remove(job.getId());
+                try {
+                    return job.call();
+                } finally {
+                    release(uuid);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            queued.remove(job.getId());
+            release(uuid);
+            job.cleanup();
+            job.fail(JSONHelper.createJSONObject(UserLayerImportJob.KEY_ERROR, ERROR_BUSY));
+            throw new ActionDeniedException("Server is busy processing userlayer imports",
+                    JSONHelper.createJSONObject(UserLayerImportJob.KEY_ERROR, ERROR_BUSY));
+        }
+    }
+
+    private void release(String uuid) {
+        AtomicInteger active = activePerUser.get(uuid);
+        if (active != null && active.decrementAndGet() <= 0) {
+            activePerUser.remove(uuid, active);
+        }
+    }
+
+    /**
+     * Returns the status of the job if it was started by the given user
+     * @param jobId job id
+     * @param uuid user uuid
+     * @return status JSON or null if not found
+     */
+    public JSONObject getStatus(String jobId, String uuid) {
+        JSONObject status = null;
+        StoredStatus stored = statuses.get(jobId);
+        if (stored != null) {
+            if (stored.isExpired(System.currentTimeMillis())) {
+                statuses.remove(jobId, stored);
+            } else {
+                status = stored.status;
+            }
+        }
+        if (status == null && ClusterManager.isClustered()) {
+            status = readFromRedis(jobId);
+        }
+        if (status == null || !status.optString(UserLayerImportJob.KEY_USER).equals(uuid)) {
+            return null;
+        }
+        return status;
+    }
+
+    private JSONObject readFromRedis(String jobId) {
+        JSONObject status = JSONHelper.createJSONObject(JedisManager.get(KEY_PREFIX + jobId));
+        if (status == null) {
+            return null;
+        }
+        UserLayerImportJob.Status phase = UserLayerImportJob.Status.valueOf(
+                status.optString(UserLayerImportJob.KEY_STATUS).toUpperCase());
+        if (!phase.isFinished() && JedisManager.get(KEY_PREFIX + jobId + KEY_OWNER_SUFFIX) == null) {
+            // the node processing the job is gone
+            JSONHelper.putValue(status, UserLayerImportJob.KEY_STATUS, UserLayerImportJob.Status.FAILED.name().toLowerCase());
+            JSONHelper.putValue(status, UserLayerImportJob.KEY_ERROR, JSONHelper.createJSONObject(UserLayerImportJob.KEY_ERROR, ERROR_OWNER_LOST));
+        }
+        return status;
+    }
+
+    @Override
+    public void onStatusChange(UserLayerImportJob job) {
+        final String jobId = job.getId();
+        final UserLayerImportJob.Status phase = job.getStatus();
+        final JSONObject status = job.toJSON();
+        if (phase.isFinished()) {
+            long now = System.currentTimeMillis();
+            statuses.put(jobId, new StoredStatus(status, now + TimeUnit.SECONDS.toMillis(STATUS_TTL_SECONDS)));
+            purgeExpiredStatuses(now);
+        } else {
+            statuses.put(jobId, new StoredStatus(status, Long.MAX_VALUE));
+        }
+        if (!ClusterManager.isClustered()) {
+            return;
+        }
+        final String ownerKey = KEY_PREFIX + jobId + KEY_OWNER_SUFFIX;
+        if (phase == UserLayerImportJob.Status.QUEUED) {
+            // jobs are run on the node that received the upload
+            if (!JedisManager.setnx(ownerKey, OWNER_TTL_SECONDS, ClusterManager.getId())) {
+                LOG.warn("Userlayer import", jobId, "is already owned by another node");
+            }
+            owned.put(jobId, job);
+        } else if (phase == UserLayerImportJob.Status.PROCESSING) {
+            long now = System.currentTimeMillis();
+            Long previous = lastPublished.put(jobId, now);
+            if (previous != null && now - previous < PUBLISH_INTERVAL_MS) {
+                // progress is published frequently, don't flood Redis
+                lastPublished.put(jobId, previous);
+                return;
+            }
+        }
+        JedisManager.setex(KEY_PREFIX + jobId, STATUS_TTL_SECONDS, status.toString());
+        if (phase.isFinished()) {
+            owned.remove(jobId);
+            lastPublished.remove(jobId);
+            JedisManager.del(ownerKey);
+        }
+    }
+
+    /**
+     * Removes statuses of jobs that finished more than STATUS_TTL_SECONDS before the given time
+     */
+    void purgeExpiredStatuses(long now) {
+        statuses.values().removeIf(stored -> stored.isExpired(now));
+    }
+
+    /**
+     * Keeps the owner keys of jobs on this node alive
+     */
+    private void refreshOwnership() {
+        for (String jobId : owned.keySet()) {
+            JedisManager.setex(KEY_PREFIX + jobId + KEY_OWNER_SUFFIX, OWNER_TTL_SECONDS, ClusterManager.getId());
+        }
+    }
+
+    /**
+     * Removes temp directories left behind by imports that were interrupted by a server restart
+     * @param tmpDir directory where the import directories are created
+     * @param prefix name prefix of import directories
+     * @param maxAgeMs directories older than this are removed
+     */
+    static void removeStaleDirectories(File tmpDir, String prefix, long maxAgeMs) {
+        File[] dirs = tmpDir.listFiles(f -> f.isDirectory() && f.getName().startsWith(prefix));
+        if (dirs == null) {
+            return;
+        }
+        long limit = System.currentTimeMillis() - maxAgeMs;
+        for (File dir : dirs) {
+            if (dir.lastModified() < limit) {
+                LOG.info("Removing stale userlayer import directory:", dir.getName());
+                UserLayerImportJob.deleteDir(dir);
+            }
+        }
+    }
+
+    private static class StoredStatus {
+        private final JSONObject status;
+        // Long.MAX_VALUE until the job is finished
+        private final long expires;
+
+        StoredStatus(JSONObject status, long expires) {
+            this.status = status;
+            this.expires = expires;
+        }
+
+        boolean isExpired(long now) {
+            return expires <= now;
+        }
+    }
+}
@@ -27,6 +27,7 @@ import org.oskari.geojson.GeoJSONFeatureCollection;
 import org.oskari.map.userlayer.service.UserLayerDataService;
 import org.oskari.map.userlayer.service.UserLayerDbService;
 import org.oskari.service.user.UserLayerService;
+import org.oskari.service.user.UserLayerTile;
 import org.oskari.service.wfs.client.CachingOskariWFSClient;
 import org.oskari.service.wfs.client.OskariWFSClient;
 
@@ -132,11 +133,15 @@ public class UserLayerWFSHelper extends UserLayerService {
     }
 
     protected UserLayer getLayer(int id) {
+        return getService().getUserLayerById(id);
+    }
+
+    private UserLayerDbService getService() {
         if (service == null) {
             // might cause problems with timing of components being initialized if done in init/constructor
             service = OskariComponentManager.getComponentOfType(UserLayerDbService.class);
         }
-        return service.getUserLayerById(id);
+        return service;
     }
 
     protected OskariLayer getBaseLayer() {
@@ -168,4 +173,14 @@ public class UserLayerWFSHelper extends UserLayerService {
             throw new ServiceException("Failed to get features. ", e);
         }
     }
+
+    @Override
+    public boolean supportsMVT(String layerId) {
+        return isUserContentLayer(layerId);
+    }
+
+    @Override
+    public byte[] getMVT(String layerId, UserLayerTile tile) throws ServiceException {
+        return getService().getMVT(parseId(layerId), tile);
+    }
 }
@@ -0,0 +1,99 @@
+package org.oskari.control.userlayer;
+
+import fi.nls.oskari.control.ActionDeniedException;
+import fi.nls.oskari.util.JSONHelper;
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class UserLayerImportServiceTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testUserLimitAndStatus() throws Exception {
+        UserLayerImportService service = new UserLayerImportService(1, 5, 1);
+        CountDownLatch latch = new CountDownLatch(1);
+
+        File dir = tmp.newFolder();
+        UserLayerImportJob job = new UserLayerImportJob("user1", dir, progress -> {
+            latch.await(10, TimeUnit.SECONDS);
+            progress.accept(42);
+            return JSONHelper.createJSONObject("id", "userlayer_1");
+        });
+        Future<JSONObject> result = service.submit(job);
+
+        File dir2 = tmp.newFolder();
+        try {
+            service.submit(new UserLayerImportJob("user1", dir2, progress -> new JSONObject()));
+            fail("User should be limited to one import at a time");
+        } catch (ActionDeniedException expected) {
+            assertFalse("Temp dir of rejected job is removed", dir2.exists());
+        }
+
+        latch.countDown();
+        assertEquals("userlayer_1", result.get(10, TimeUnit.SECONDS).getString("id"));
+        assertFalse("Temp dir is removed after import", dir.exists());
+
+        JSONObject status = service.getStatus(job.getId(), "user1");
+        assertEquals("completed", status.getString(UserLayerImportJob.KEY_STATUS));
+        assertEquals(42, status.getLong(UserLayerImportJob.KEY_FEATURES));
+        assertTrue(status.has(UserLayerImportJob.KEY_LAYER));
+        assertNull("Other users can't see the status", service.getStatus(job.getId(), "user2"));
+
+        // user can import again after the previous one is done
+        Future<JSONObject> next = service.submit(new UserLayerImportJob("user1", tmp.newFolder(), progress -> new JSONObject()));
+        next.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testFailedImport() throws Exception {
+        UserLayerImportService service = new UserLayerImportService(1, 5, 1);
+        UserLayerImportJob job = new UserLayerImportJob("user1", tmp.newFolder(), progress -> {
+            throw new IllegalStateException("Broken file");
+        });
+        try {
+            service.submit(job).get(10, TimeUnit.SECONDS);
+            fail("Import should fail");
+        } catch (Exception expected) {
+            JSONObject status = service.getStatus(job.getId(), "user1");
+            assertEquals("failed", status.getString(UserLayerImportJob.KEY_STATUS));
+            assertEquals("Broken file", status.getJSONObject(UserLayerImportJob.KEY_ERROR).getString(UserLayerImportJob.KEY_ERROR));
+        }
+    }
+
+    @Test
+    public void testFinishedStatusIsPurged() throws Exception {
+        UserLayerImportService service = new UserLayerImportService(2, 5, 1);
+        CountDownLatch latch = new CountDownLatch(1);
+        UserLayerImportJob running = new UserLayerImportJob("user1", tmp.newFolder(), progress -> {
+            latch.await(10, TimeUnit.SECONDS);
+            return new JSONObject();
+        });
+        UserLayerImportJob done = new UserLayerImportJob("user2", tmp.newFolder(), progress -> new JSONObject());
+        Future<JSONObject> result = service.submit(running);
+        service.submit(done).get(10, TimeUnit.SECONDS);
+
+        // purging later than the status TTL only removes finished jobs
+        service.purgeExpiredStatuses(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(2));
+        assertNull("Finished status is purged", service.getStatus(done.getId(), "user2"));
+        assertTrue("Unfinished status is kept", service.getStatus(running.getId(), "user1") != null);
+
+        latch.countDown();
+        result.get(10, TimeUnit.SECONDS);
+        assertEquals("completed", service.getStatus(running.getId(), "user1").getString(UserLayerImportJob.KEY_STATUS));
+    }
+}
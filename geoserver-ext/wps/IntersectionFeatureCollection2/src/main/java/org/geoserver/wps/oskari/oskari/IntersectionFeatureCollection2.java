@@ -20,9 +20,11 @@ package org.geoserver.wps.oskari.oskari;
 import org.geoserver.wps.gs.GeoServerProcess;
 import org.locationtech.jts.densify.Densifier;
 import org.locationtech.jts.geom.*;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.index.strtree.STRtree;
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureIterator;
-import org.geotools.factory.CommonFactoryFinder;
 import org.geotools.feature.AttributeTypeBuilder;
 import org.geotools.feature.collection.DecoratingSimpleFeatureCollection;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
@@ -35,8 +37,6 @@ import org.geotools.referencing.CRS;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.AttributeDescriptor;
-import org.opengis.filter.Filter;
-import org.opengis.filter.FilterFactory2;
 import org.opengis.referencing.FactoryException;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.opengis.referencing.operation.MathTransform;
@@ -44,6 +44,8 @@ import org.opengis.referencing.operation.TransformException;
 
 import java.util.*;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * A process providing the intersection between two feature collections
@@ -59,6 +61,13 @@ public class IntersectionFeatureCollection2 implements GeoServerProcess {
     private static final Logger logger = Logger
             .getLogger("org.geoserver.wps.oskari.oskari.IntersectionFeatureCollection2");
 
+    /**
+     * Set system property oskari.wps.intersection2.parallel=true to compute intersections
+     * of the first collection features in parallel
+     */
+    static final boolean PARALLEL = Boolean.getBoolean("oskari.wps.intersection2.parallel");
+    static final int PARALLEL_BATCH_SIZE = 256;
+
     // Skip gml attributes
     private static final List<String> SKIP_GML_FIELDS = Arrays.asList(
              "metaDataProperty", "description", "boundedBy", "name");
@@ -304,6 +313,7 @@ public class IntersectionFeatureCollection2 implements GeoServerProcess {
         // added
         SimpleFeatureBuilder fb;
         AttributeDescriptor geomType = null;
+        SecondFeatureIndex index;
 
         public IntersectedFeatureCollection(SimpleFeatureCollection delegate,
                                             List<String> firstAttributes, SimpleFeatureCollection features,
@@ -398,43 +408,107 @@ public class IntersectionFeatureCollection2 implements GeoServerProcess {
             }
         }
 
+        /**
+         * The index over the second collection is shared by all iterators of this collection
+         */
+        synchronized SecondFeatureIndex getIndex() {
+            if (index == null) {
+                index = new SecondFeatureIndex(features);
+            }
+            return index;
+        }
+
         @Override
         public SimpleFeatureIterator features() {
-            return new IntersectedFeatureIterator(delegate.features(), delegate, features,
-                    delegate.getSchema(), features.getSchema(), firstAttributes, sndAttributes,
+            return new IntersectedFeatureIterator(delegate.features(), delegate, features, getIndex(),
+                    firstAttributes, sndAttributes, geomType,
                     intersectionMode, percentagesEnabled, areasEnabled, fb);
         }
     }
 
     /**
-     * Builds the intersections while streaming
+     * In-memory STRtree over the features of the second collection. Built once per execution
+     * instead of querying the second collection with an intersects filter for each feature
+     * of the first collection. Query results are in the order of the second collection.
      */
-    static class IntersectedFeatureIterator implements SimpleFeatureIterator {
-        SimpleFeatureIterator delegate;
+    static class SecondFeatureIndex {
+        private final STRtree tree = new STRtree();
 
-        SimpleFeatureCollection firstFeatures;
+        SecondFeatureIndex(SimpleFeatureCollection features) {
+            SimpleFeatureIterator it = features.features();
+            try {
+                int i = 0;
+                while (it.hasNext()) {
+                    SimpleFeature feature = it.next();
+                    Geometry geom = (Geometry) feature.getDefaultGeometry();
+                    if (geom != null && !geom.isEmpty()) {
+                        tree.insert(geom.getEnvelopeInternal(), new IndexedFeature(i, feature, geom));
+                    }
+                    i++;
+                }
+            } finally {
+                it.close();
+            }
+            tree.build();
+        }
 
-        SimpleFeatureCollection secondFeatures;
+        @SuppressWarnings("unchecked")
+        List<IndexedFeature> query(Envelope env) {
+            List<IndexedFeature> result = tree.query(env);
+            result.sort(Comparator.comparingInt(f -> f.index));
+            return result;
+        }
+    }
 
-        SimpleFeatureCollection subFeatureCollection;
+    static class IndexedFeature {
+        final int index;
+        final SimpleFeature feature;
+        final Geometry geometry;
 
-        SimpleFeatureBuilder fb;
-
-        SimpleFeature next;
+        IndexedFeature(int index, SimpleFeature feature, Geometry geometry) {
+            this.index = index;
+            this.feature = feature;
+            this.geometry = geometry;
+        }
+    }
 
-        SimpleFeature first;
+    /**
+     * Result geometry and the dynamic attributes for a pair of intersecting features
+     */
+    static class Intersection {
+        final Geometry geometry;
+        final SimpleFeature first;
+        final SimpleFeature second;
+        double percentageA;
+        double percentageB;
+        double areaA;
+        double areaB;
+
+        Intersection(Geometry geometry, SimpleFeature first, SimpleFeature second) {
+            this.geometry = geometry;
+            this.first = first;
+            this.second = second;
+        }
+    }
 
-        Integer iterationIndex = 0;
+    /**
+     * Builds the intersections while streaming. Candidates from the second collection are found
+     * from the index and tested with a prepared geometry of the first feature.
+     * If PARALLEL is enabled features of the first collection are processed in batches in parallel,
+     * the output order stays the same.
+     */
+    static class IntersectedFeatureIterator implements SimpleFeatureIterator {
+        SimpleFeatureIterator delegate;
 
-        boolean complete = true;
+        SimpleFeatureCollection firstFeatures;
 
-        boolean added = false;
+        SimpleFeatureCollection secondFeatures;
 
-        SimpleFeatureCollection intersectedGeometries;
+        SecondFeatureIndex index;
 
-        SimpleFeatureIterator iterator;
+        SimpleFeatureBuilder fb;
 
-        String dataGeomName;
+        Deque<Intersection> pending = new ArrayDeque<>();
 
         List<String> retainAttributesFst = null;
 
@@ -451,9 +525,9 @@ public class IntersectionFeatureCollection2 implements GeoServerProcess {
 
         public IntersectedFeatureIterator(SimpleFeatureIterator delegate,
                                           SimpleFeatureCollection firstFeatures, SimpleFeatureCollection secondFeatures,
-                                          SimpleFeatureType firstFeatureCollectionSchema,
-                                          SimpleFeatureType secondFeatureCollectionSchema,
+                                          SecondFeatureIndex index,
                                           List<String> retainAttributesFstPar, List<String> retainAttributesSndPar,
+                                          AttributeDescriptor geomType,
                                           IntersectionMode intersectionMode, boolean percentagesEnabled, boolean areasEnabled,
                                           SimpleFeatureBuilder sfb) {
             this.retainAttributesFst = retainAttributesFstPar;
@@ -461,35 +535,12 @@ public class IntersectionFeatureCollection2 implements GeoServerProcess {
             this.delegate = delegate;
             this.firstFeatures = firstFeatures;
             this.secondFeatures = secondFeatures;
+            this.index = index;
+            this.geomType = geomType;
             this.percentagesEnabled = percentagesEnabled;
             this.areasEnabled = areasEnabled;
             this.intersectionMode = intersectionMode;
-
-            logger.fine("Creating schema");
-            // create the geometry attribute descriptor for the result
-            //          SimpleFeatureTypeBuilder tb = new SimpleFeatureTypeBuilder();
-            if (intersectionMode == IntersectionMode.FIRST) {
-                geomType = firstFeatureCollectionSchema.getGeometryDescriptor();
-            }
-            if (intersectionMode == IntersectionMode.SECOND) {
-                geomType = secondFeatureCollectionSchema.getGeometryDescriptor();
-            }
-            if (intersectionMode == IntersectionMode.SECOND_CONTAINS) {
-                geomType = secondFeatureCollectionSchema.getGeometryDescriptor();
-            }
-             if (intersectionMode == IntersectionMode.SECOND_CLIP) {
-                geomType = secondFeatureCollectionSchema.getGeometryDescriptor();
-            }
-            if (intersectionMode == IntersectionMode.INTERSECTION) {
-                geomType = getIntersectionType(firstFeatures, secondFeatures);
-            }
-
             this.fb = sfb;
-            subFeatureCollection = this.secondFeatures;
-
-            this.dataGeomName = this.firstFeatures.getSchema().getGeometryDescriptor()
-                    .getLocalName();
-            logger.fine("Schema created");
         }
 
 
@@ -498,95 +549,75 @@ public class IntersectionFeatureCollection2 implements GeoServerProcess {
         }
 
         public boolean hasNext() {
-            //   logger.info("qui");
             logger.finer("HAS NEXT");
-            while ((next == null && delegate.hasNext()) || (next == null && added)) {
-                //     logger.info("qui nel while");
-                if (complete) {
-                    first = delegate.next();
-                    intersectedGeometries = null;
+            while (pending.isEmpty() && delegate.hasNext()) {
+                int batchSize = PARALLEL ? PARALLEL_BATCH_SIZE : 1;
+                List<SimpleFeature> batch = new ArrayList<>(batchSize);
+                while (batch.size() < batchSize && delegate.hasNext()) {
+                    batch.add(delegate.next());
+                }
+                Stream<SimpleFeature> stream = PARALLEL ? batch.parallelStream() : batch.stream();
+                List<List<Intersection>> results = stream
+                        .map(this::intersect)
+                        .collect(Collectors.toList());
+                for (List<Intersection> result : results) {
+                    pending.addAll(result);
+                }
+            }
+            return !pending.isEmpty();
+        }
+
+        /**
+         * Computes the intersections of one feature of the first collection.
+         * Doesn't modify the iterator state so features can be processed in parallel.
+         */
+        private List<Intersection> intersect(SimpleFeature first) {
+            Geometry currentGeom = (Geometry) first.getDefaultGeometry();
+            if (currentGeom == null) {
+                return Collections.emptyList();
+            }
+            List<IndexedFeature> candidates = index.query(currentGeom.getEnvelopeInternal());
+            if (candidates.isEmpty()) {
+                return Collections.emptyList();
+            }
+            PreparedGeometry prepared = PreparedGeometryFactory.prepare(currentGeom);
+            List<Intersection> result = new ArrayList<>();
+            for (IndexedFeature second : candidates) {
+                if (!prepared.intersects(second.geometry)) {
+                    continue;
                 }
-                //               logger.info("qui dopo check if (complete)");
-                //logger.finer("control HAS NEXT");
-                for (Object attribute : first.getAttributes()) {
-                    if (attribute instanceof Geometry
-                            && attribute.equals(first.getDefaultGeometry())) {
-                        Geometry currentGeom = (Geometry) attribute;
-
-                        if (intersectedGeometries == null && !added) {
-
-                            intersectedGeometries = filteredCollection(currentGeom,
-                                    subFeatureCollection);
-
-                            iterator = intersectedGeometries.features();
-                        }
-                        try {
-                            while (iterator.hasNext()) {
-                                added = false;
-                                SimpleFeature second = iterator.next();
-                                if (currentGeom.intersects(
-                                        ((Geometry) second.getDefaultGeometry()))) {
-                                    // compute geometry
-                                    if (intersectionMode == IntersectionMode.INTERSECTION) {
-                                        attribute = currentGeom.intersection((Geometry) second
-                                                .getDefaultGeometry());
-
-                                        GeometryFilterImpl filter = new GeometryFilterImpl(geomType
-                                                .getType().getBinding());
-                                        ((Geometry) attribute).apply(filter);
-                                        attribute = filter.getGeometry();
-                                    } else if (intersectionMode == IntersectionMode.FIRST) {
-                                        attribute = currentGeom;
-                                    } else if (intersectionMode == IntersectionMode.SECOND) {
-                                        attribute = (Geometry) second.getDefaultGeometry();
-                                    } else if (intersectionMode == IntersectionMode.SECOND_CONTAINS) {
-                                        // Only contains
-                                        attribute = null;
-                                        if (currentGeom.contains(((Geometry) second.getDefaultGeometry())))
-                                            attribute = (Geometry) second.getDefaultGeometry();
-                                    } else if (intersectionMode == IntersectionMode.SECOND_CLIP) {
-                                        attribute = (Geometry) currentGeom.intersection((Geometry) second.getDefaultGeometry());
-                                    }
-                                    if (attribute != null && ((Geometry) attribute).getNumGeometries() > 0) {
-                                        fb.add(attribute);
-                                        fb.set("INTERSECTION_ID", id++);
-                                        // add the non geometric attributes
-                                        addAttributeValues(first, retainAttributesFst, fb);
-                                        addAttributeValues(second, retainAttributesSnd, fb);
-                                        // add the dynamic attributes
-                                        if (percentagesEnabled) {
-                                            addPercentages(currentGeom, second);
-                                        }
-                                        if (areasEnabled) {
-                                            addAreas(currentGeom, second);
-                                        }
-
-                                        // build the feature
-                                        next = fb.buildFeature(iterationIndex.toString());
-
-                                        // update iterator status
-                                        if (iterator.hasNext()) {
-                                            complete = false;
-                                            added = true;
-                                            iterationIndex++;
-                                            return next != null;
-                                        }
-                                        iterationIndex++;
-                                    }
-
-                                }
-                                complete = false;
-                            }
-                            complete = true;
-                        } finally {
-                            if (!added) {
-                                iterator.close();
-                            }
-                        }
+                // compute geometry
+                Geometry geometry = null;
+                if (intersectionMode == IntersectionMode.INTERSECTION) {
+                    GeometryFilterImpl filter = new GeometryFilterImpl(geomType.getType().getBinding());
+                    currentGeom.intersection(second.geometry).apply(filter);
+                    geometry = filter.getGeometry();
+                } else if (intersectionMode == IntersectionMode.FIRST) {
+                    geometry = currentGeom;
+                } else if (intersectionMode == IntersectionMode.SECOND) {
+                    geometry = second.geometry;
+                } else if (intersectionMode == IntersectionMode.SECOND_CONTAINS) {
+                    // Only contains
+                    if (prepared.contains(second.geometry)) {
+                        geometry = second.geometry;
                     }
+                } else if (intersectionMode == IntersectionMode.SECOND_CLIP) {
+                    geometry = currentGeom.intersection(second.geometry);
+                }
+                if (geometry == null || geometry.getNumGeometries() == 0) {
+                    continue;
+                }
+                Intersection intersection = new Intersection(geometry, first, second.feature);
+                // compute the dynamic attributes
+                if (percentagesEnabled) {
+                    addPercentages(currentGeom, second.geometry, intersection);
                 }
+                if (areasEnabled) {
+                    addAreas(currentGeom, second.geometry, intersection);
+                }
+                result.add(intersection);
             }
-            return next != null;
+            return result;
         }
 
 
@@ -605,63 +636,55 @@ public class IntersectionFeatureCollection2 implements GeoServerProcess {
             }
         }
 
-        private void addAreas(Geometry currentGeom, SimpleFeature second) {
+        private void addAreas(Geometry currentGeom, Geometry second, Intersection intersection) {
             CoordinateReferenceSystem firstCRS = firstFeatures.getSchema().getCoordinateReferenceSystem();
             CoordinateReferenceSystem secondCRS = secondFeatures.getSchema().getCoordinateReferenceSystem();
 
             try {
-                double areaA = IntersectionFeatureCollection2.reprojectAndDensify(currentGeom,
+                intersection.areaA = IntersectionFeatureCollection2.reprojectAndDensify(currentGeom,
                         firstCRS, null).getArea();
-                double areaB = IntersectionFeatureCollection2.reprojectAndDensify(
-                        (Geometry) second.getDefaultGeometry(), secondCRS, null).getArea();
-                fb.set("areaA", areaA);
-                fb.set("areaB", areaB);
+                intersection.areaB = IntersectionFeatureCollection2.reprojectAndDensify(
+                        second, secondCRS, null).getArea();
             } catch (Exception e) {
-                System.out.println("" + e);
-                fb.set("areaA", -1);
-                fb.set("areaB", -1);
+                logger.warning("Failed to compute areas: " + e);
+                intersection.areaA = -1;
+                intersection.areaB = -1;
             }
         }
 
-        private void addPercentages(Geometry currentGeom, SimpleFeature second) {
+        private void addPercentages(Geometry currentGeom, Geometry second, Intersection intersection) {
             CoordinateReferenceSystem firstCRS = firstFeatures.getSchema().getCoordinateReferenceSystem();
 
             CoordinateReferenceSystem secondCRS = secondFeatures.getSchema().getCoordinateReferenceSystem();
 
+            intersection.percentageA = IntersectionFeatureCollection2.getIntersectionArea(currentGeom,
+                    firstCRS, second, secondCRS, true);
 
-            double percentageA = IntersectionFeatureCollection2.getIntersectionArea(currentGeom,
-                    firstCRS, (Geometry) second.getDefaultGeometry(), secondCRS, true);
-
-            double percentageB = IntersectionFeatureCollection2.getIntersectionArea(currentGeom,
-                    firstCRS, (Geometry) second.getDefaultGeometry(), secondCRS, false);
-
-            fb.set("percentageA", percentageA);
-
-            fb.set("percentageB", percentageB);
-
+            intersection.percentageB = IntersectionFeatureCollection2.getIntersectionArea(currentGeom,
+                    firstCRS, second, secondCRS, false);
         }
 
         public SimpleFeature next() throws NoSuchElementException {
             if (!hasNext()) {
                 throw new NoSuchElementException("hasNext() returned false!");
             }
-
-            SimpleFeature result = next;
-            next = null;
-            return result;
-        }
-
-        private SimpleFeatureCollection filteredCollection(Geometry currentGeom,
-                                                           SimpleFeatureCollection subFeatureCollection) {
-            FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2(null);
-            Filter intersectFilter = ff.intersects(ff.property(dataGeomName),
-                    ff.literal(currentGeom));
-            SimpleFeatureCollection subFeatureCollectionIntersection = this.subFeatureCollection
-                    .subCollection(intersectFilter);
-            if (subFeatureCollectionIntersection.size() == 0) {
-                subFeatureCollectionIntersection = subFeatureCollection;
+            Intersection intersection = pending.poll();
+            fb.add(intersection.geometry);
+            fb.set("INTERSECTION_ID", id);
+            // add the non geometric attributes
+            addAttributeValues(intersection.first, retainAttributesFst, fb);
+            addAttributeValues(intersection.second, retainAttributesSnd, fb);
+            // add the dynamic attributes
+            if (percentagesEnabled) {
+                fb.set("percentageA", intersection.percentageA);
+                fb.set("percentageB", intersection.percentageB);
+            }
+            if (areasEnabled) {
+                fb.set("areaA", intersection.areaA);
+                fb.set("areaB", intersection.areaB);
             }
-            return subFeatureCollectionIntersection;
+            // build the feature
+            return fb.buildFeature(Integer.toString(id++));
         }
 
     }
@@ -68,15 +68,34 @@ public class GeoJSONWriter {
         feature.put(GeoJSON.TYPE, GeoJSON.FEATURE);
 
         GeometryAttribute ga = f.getDefaultGeometryProperty();
-        Name gaName = null;
         if (ga != null) {
-            gaName = ga.getName();
             Geometry geom = (Geometry) ga.getValue();
             if (geom != null) {
                 feature.put(GeoJSON.GEOMETRY, writeGeometry(geom));
             }
         }
 
+        JSONObject properties = writeProperties(f);
+        if (properties != null) {
+            feature.put(GeoJSON.PROPERTIES, properties);
+        }
+
+        String id = f.getID();
+        if (id != null && !id.isEmpty()) {
+            feature.put(GeoJSON.ID, id);
+        }
+
+        return feature;
+    }
+
+    /**
+     * Writes the non-geometry properties of the feature
+     * @return properties or null if the feature has no properties besides the default geometry
+     */
+    public JSONObject writeProperties(SimpleFeature f)
+            throws JSONException {
+        GeometryAttribute ga = f.getDefaultGeometryProperty();
+        Name gaName = ga != null ? ga.getName() : null;
         JSONObject properties = null;
         for (Property p : f.getProperties()) {
             Name name = p.getName();
@@ -97,16 +116,7 @@ public class GeoJSONWriter {
                 properties.put(name.getLocalPart(), value);
             }
         }
-        if (properties != null) {
-            feature.put(GeoJSON.PROPERTIES, properties);
-        }
-
-        String id = f.getID();
-        if (id != null && !id.isEmpty()) {
-            feature.put(GeoJSON.ID, id);
-        }
-
-        return feature;
+        return properties;
     }
 
     public JSONObject writeGeometry(Geometry geom)
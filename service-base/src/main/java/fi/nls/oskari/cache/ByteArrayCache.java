@@ -0,0 +1,102 @@
+package fi.nls.oskari.cache;
+
+import java.util.LinkedHashMap;
+
+/**
+ * Cache for serialized values that is bounded by the total size of the values in addition to the
+ * amount of items. Values larger than the item limit are not cached at all. When the total size
+ * is exceeded the oldest values are removed from this node without notifying the cluster.
+ */
+public class ByteArrayCache extends Cache<byte[]> {
+
+    private final long maxBytes;
+    private final int maxItemBytes;
+    // sizes of cached values in insertion order, guarded by this
+    private final LinkedHashMap<String, Integer> sizes = new LinkedHashMap<>();
+    private long bytes;
+
+    /**
+     * @param maxBytes max total size of cached values
+     * @param maxItemBytes values larger than this are not cached
+     */
+    public ByteArrayCache(long maxBytes, int maxItemBytes) {
+        this.maxBytes = maxBytes;
+        this.maxItemBytes = maxItemBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public int getMaxItemBytes() {
+        return maxItemBytes;
+    }
+
+    /**
+     * @return total size of the cached values
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public boolean put(final String name, final byte[] item) {
+        if (item != null && item.length > maxItemBytes) {
+            // too large to keep in memory, don't leave a previous value behind
+            if (getKeys().contains(name)) {
+                remove(name);
+            }
+            return false;
+        }
+        synchronized (this) {
+            boolean overflowing = super.put(name, item);
+            if (item == null) {
+                return overflowing;
+            }
+            if (overflowing) {
+                // the oldest item was dropped by the limit for amount of items
+                sizes.keySet().retainAll(getKeys());
+                bytes = sizes.values().stream().mapToLong(Integer::longValue).sum();
+            }
+            Integer previous = sizes.remove(name);
+            if (previous != null) {
+                bytes -= previous;
+            }
+            sizes.put(name, item.length);
+            bytes += item.length;
+            evict();
+            return overflowing;
+        }
+    }
+
+    private void evict() {
+        while (bytes > maxBytes && !sizes.isEmpty()) {
+            String eldest = sizes.keySet().iterator().next();
+            bytes -= sizes.remove(eldest);
+            // might flush the whole cache if it has expired, which also clears the sizes
+            super.removeSilent(eldest);
+        }
+    }
+
+    @Override
+    protected synchronized byte[] removeSilent(final String name) {
+        byte[] value = super.removeSilent(name);
+        Integer size = sizes.remove(name);
+        if (size != null) {
+            bytes -= size;
+        }
+        return value;
+    }
+
+    @Override
+    protected boolean flushSilent(final boolean force) {
+        boolean flushed = super.flushSilent(force);
+        if (flushed) {
+            synchronized (this) {
+                sizes.clear();
+                bytes = 0;
+            }
+        }
+        return flushed;
+    }
+}
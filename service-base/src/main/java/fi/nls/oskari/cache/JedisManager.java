@@ -7,8 +7,11 @@ import fi.nls.oskari.util.ConversionHelper;
 import fi.nls.oskari.util.PropertyUtil;
 import redis.clients.jedis.*;
 import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.params.SetParams;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -31,6 +34,11 @@ public class JedisManager {
     private static final String KEY_REDIS_POOL_SIZE = "redis.pool.size";
     private static Boolean isClustered = null;
 
+    private static final String SCRIPT_DEL_IF_EQUALS =
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end";
+    private static final String SCRIPT_EXPIRE_IF_EQUALS =
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('expire', KEYS[1], ARGV[2]) else return 0 end";
+
     /**
      * Blocking construction of instances from other classes by making constructor private
      */
@@ -249,6 +257,29 @@ public class JedisManager {
         }
     }
 
+    /**
+     * Thread-safe SET with NX and EX for Redis. Sets the value only if the key doesn't exist.
+     *
+     * @param key
+     * @param seconds
+     * @param value
+     * @return true if the value was set, false if the key already existed or Redis couldn't be reached
+     */
+    public static boolean setnx(String key, int seconds, String value) {
+        try (Jedis jedis = instance.getJedis()) {
+            if (jedis == null) {
+                return false;
+            }
+            return "OK".equals(jedis.set(key, value, SetParams.setParams().nx().ex(seconds)));
+        } catch(JedisConnectionException e) {
+            log.error("Failed to set", key);
+            return false;
+        } catch (Exception e) {
+            log.error("Setting", key, "to Redis failed:", e.getMessage());
+            return false;
+        }
+    }
+
     /**
      * Thread-safe byte[] SETEX for Redis
      *
@@ -424,6 +455,46 @@ public class JedisManager {
         }
     }
 
+    /**
+     * Deletes the key only if it has the given value. Used for releasing locks so a node doesn't remove
+     * a lock that has expired and been taken by another node.
+     *
+     * @param key
+     * @param value
+     * @return true if the key was deleted
+     */
+    public static boolean delIfEquals(String key, String value) {
+        return evalIfEquals(SCRIPT_DEL_IF_EQUALS, key, value);
+    }
+
+    /**
+     * Sets the expiration of the key only if it has the given value. Used for keeping locks alive.
+     *
+     * @param key
+     * @param seconds
+     * @param value
+     * @return true if the expiration was updated
+     */
+    public static boolean expireIfEquals(String key, int seconds, String value) {
+        return evalIfEquals(SCRIPT_EXPIRE_IF_EQUALS, key, value, Integer.toString(seconds));
+    }
+
+    private static boolean evalIfEquals(String script, String key, String... args) {
+        try (Jedis jedis = instance.getJedis()) {
+            if (jedis == null) {
+                return false;
+            }
+            Object result = jedis.eval(script, Collections.singletonList(key), Arrays.asList(args));
+            return result instanceof Long && (Long) result == 1L;
+        } catch(JedisConnectionException e) {
+            log.error("Failed to eval for", key);
+            return false;
+        } catch (Exception e) {
+            log.error("Eval for", key, "failed:", e.getMessage());
+            return false;
+        }
+    }
+
     /**
      * Thread-safe Long DEL with key set
      *
@@ -489,6 +560,26 @@ public class JedisManager {
         return -1;
     }
 
+    /**
+     * Returns all elements of the list without removing them.
+     * @param key the list key
+     * @return list of items, empty if the list doesn't exist or Redis couldn't be reached
+     */
+    public static List<String> getList(String key) {
+        try (Jedis jedis = instance.getJedis()){
+            if (jedis == null) {
+                return Collections.emptyList();
+            }
+            List<String> value = jedis.lrange(key, 0, -1);
+            return value == null ? Collections.emptyList() : value;
+        } catch(JedisConnectionException e) {
+            log.error("Failed to lrange", key);
+        } catch (Exception e) {
+            log.error("Getting list", key + " failed miserably");
+        }
+        return Collections.emptyList();
+    }
+
     /**
      * Removes and returns the last element from the list.
      * @param key
@@ -530,6 +621,35 @@ public class JedisManager {
         return null;
     }
 
+    /**
+     * Removes and returns up to count items from the head of the list in a single transaction.
+     * Uses LRANGE + LTRIM so it works with Redis versions that don't support LPOP with count.
+     * @param key the list key
+     * @param count max number of items to return
+     * @return list of items, empty if the list is empty or doesn't exist
+     */
+    public static List<String> popList(String key, int count) {
+        if (count < 1) {
+            return Collections.emptyList();
+        }
+        try (Jedis jedis = instance.getJedis()){
+            if (jedis == null) {
+                return Collections.emptyList();
+            }
+            Transaction transaction = jedis.multi();
+            Response<List<String>> items = transaction.lrange(key, 0, count - 1);
+            transaction.ltrim(key, count, -1);
+            transaction.exec();
+            List<String> value = items.get();
+            return value == null ? Collections.emptyList() : value;
+        } catch(JedisConnectionException e) {
+            log.error("Failed to lrange", key);
+        } catch (Exception e) {
+            log.error("Popping from list", key + " failed miserably");
+        }
+        return Collections.emptyList();
+    }
+
     /**
      * Thread-safe PUBLISH
      *
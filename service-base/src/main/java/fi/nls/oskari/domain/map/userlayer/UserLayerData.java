@@ -15,6 +15,7 @@ public class UserLayerData {
     private String  geometry;
 
     private String wkt;
+    private byte[] wkb;
     private int databaseSRID;
     private OffsetDateTime created;
     private OffsetDateTime updated;
@@ -80,6 +81,14 @@ public class UserLayerData {
         this.wkt = wkt;
     }
 
+    public byte[] getWkb() {
+        return wkb;
+    }
+
+    public void setWkb(byte[] wkb) {
+        this.wkb = wkb;
+    }
+
     public OffsetDateTime getCreated() {
         return created;
     }
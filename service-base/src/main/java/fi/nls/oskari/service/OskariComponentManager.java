@@ -8,11 +8,15 @@ import java.util.*;
 
 /**
  * Manages any OskariComponents registrated on the classpath.
+ *
+ * Registered components are kept in an immutable registry that is indexed by every class and
+ * interface the components implement. Modifications build a new registry and publish it so
+ * lookups don't need locking.
  */
 public class OskariComponentManager {
 
     private final static Logger LOG = LogFactory.getLogger(OskariComponentManager.class);
-    private static final List<OskariComponent> COMPONENTS = new ArrayList<OskariComponent>();
+    private static volatile Registry REGISTRY = Registry.EMPTY;
 
     /**
      * Registers a OskariComponent with the given key after instantiating a class with the given className.
@@ -32,10 +36,16 @@ public class OskariComponentManager {
      * @param handler
      */
     public static void addComponent(final OskariComponent handler) {
+        if (initComponent(handler)) {
+            publish(handler);
+        }
+    }
+
+    private static boolean initComponent(final OskariComponent handler) {
         try {
             handler.init();
-            COMPONENTS.add(handler);
             LOG.debug("OskariComponent added:", handler.getClass().getCanonicalName());
+            return true;
         }
         catch (ComponentSkippedRuntimeException ex) {
             LOG.warn("OskariComponent skipped:", handler.getClass().getCanonicalName(), "Msg:", ex.getMessage());
@@ -44,6 +54,13 @@ public class OskariComponentManager {
             LOG.error("OskariComponent init failed! Skipping", handler.getClass().getCanonicalName(), "Msg:", ex.getMessage());
             LOG.debug(ex);
         }
+        return false;
+    }
+
+    private synchronized static void publish(final OskariComponent handler) {
+        List<OskariComponent> components = new ArrayList<>(REGISTRY.components);
+        components.add(handler);
+        REGISTRY = new Registry(components);
     }
 
     /**
@@ -79,14 +96,28 @@ public class OskariComponentManager {
                 .forEach(loadedImpl -> addComponent(loadedImpl));
          */
     }
-    public synchronized static <MOD extends OskariComponent> MOD getComponentOfType(final Class<MOD> clazz) {
-        Map<String, MOD> map = getComponentsOfType(clazz);
-        if(map.isEmpty()) {
+
+    private static Registry getRegistry() {
+        Registry registry = REGISTRY;
+        if (registry.components.isEmpty()) {
+            synchronized (OskariComponentManager.class) {
+                if (REGISTRY.components.isEmpty()) {
+                    addDefaultComponents();
+                }
+                registry = REGISTRY;
+            }
+        }
+        return registry;
+    }
+
+    public static <MOD extends OskariComponent> MOD getComponentOfType(final Class<MOD> clazz) {
+        OskariComponent comp = getRegistry().firstByType.get(clazz);
+        if(comp == null) {
             throw new NoSuchElementException("Coudldn't find component of type " + clazz.getName());
         }
         // just pick the first one
-        // TODO: error handling (nullpointer) and possibly prioritize implementations
-        return map.values().iterator().next();
+        // TODO: possibly prioritize implementations
+        return (MOD) comp;
     }
 
     /**
@@ -94,31 +125,25 @@ public class OskariComponentManager {
      * @param clazz A OskariComponent subclass we are interested in
      * @return unmodifiable map of components matching the given type
      */
-    public synchronized static <MOD extends OskariComponent> Map<String, MOD> getComponentsOfType(final Class clazz) {
-        if(COMPONENTS.isEmpty()) {
-            addDefaultComponents();
+    public static <MOD extends OskariComponent> Map<String, MOD> getComponentsOfType(final Class clazz) {
+        Map<String, OskariComponent> mods = getRegistry().byType.get(clazz);
+        if (mods == null) {
+            return Collections.emptyMap();
         }
-        final HashMap<String, MOD> mods = new HashMap<String, MOD>();
-        for(OskariComponent comp : COMPONENTS) {
-            if(clazz.isInstance(comp)) {
-                mods.put(comp.getName(), (MOD)comp);
-            }
-        }
-        return Collections.unmodifiableMap(mods);
+        return (Map<String, MOD>) mods;
     }
 
-    public static void removeComponentsOfType(final Class clazz) {
-        final Map<String, OskariComponent> comps = getComponentsOfType(clazz);
-        for(OskariComponent c: comps.values()) {
-            COMPONENTS.remove(c);
-        }
+    public synchronized static void removeComponentsOfType(final Class clazz) {
+        List<OskariComponent> components = new ArrayList<>(getRegistry().components);
+        components.removeIf(c -> clazz.isInstance(c));
+        REGISTRY = new Registry(components);
     }
 
     /**
      * Cleanup method. Calls teardown on all registered components.
      */
-    public static void teardown() {
-        for( OskariComponent comp : COMPONENTS) {
+    public synchronized static void teardown() {
+        for( OskariComponent comp : REGISTRY.components) {
             try {
                 comp.teardown();
             }
@@ -126,6 +151,59 @@ public class OskariComponentManager {
                 LOG.error(ex, "OskariComponent teardown failed! Skipping", comp.getClass().getCanonicalName());
             }
         }
-        COMPONENTS.clear();
+        REGISTRY = Registry.EMPTY;
+    }
+
+    /**
+     * Immutable snapshot of the registered components with a lookup by type.
+     * Built from the components in registration order so a component registered later with
+     * the same name overrides the earlier one like before.
+     */
+    private static class Registry {
+        private static final Registry EMPTY = new Registry(Collections.emptyList());
+
+        private final List<OskariComponent> components;
+        private final Map<Class<?>, Map<String, OskariComponent>> byType;
+        private final Map<Class<?>, OskariComponent> firstByType;
+
+        private Registry(List<OskariComponent> components) {
+            this.components = Collections.unmodifiableList(components);
+            Map<Class<?>, HashMap<String, OskariComponent>> index = new HashMap<>();
+            for (OskariComponent comp : components) {
+                String name = comp.getName();
+                for (Class<?> type : getTypes(comp.getClass())) {
+                    index.computeIfAbsent(type, t -> new HashMap<>()).put(name, comp);
+                }
+            }
+            Map<Class<?>, Map<String, OskariComponent>> byType = new HashMap<>(index.size() * 2);
+            Map<Class<?>, OskariComponent> firstByType = new HashMap<>(index.size() * 2);
+            for (Map.Entry<Class<?>, HashMap<String, OskariComponent>> entry : index.entrySet()) {
+                Map<String, OskariComponent> mods = entry.getValue();
+                byType.put(entry.getKey(), Collections.unmodifiableMap(mods));
+                firstByType.put(entry.getKey(), mods.values().iterator().next());
+            }
+            this.byType = byType;
+            this.firstByType = firstByType;
+        }
+
+        /**
+         * @return the class, its superclasses and all interfaces they implement
+         */
+        private static Set<Class<?>> getTypes(Class<?> clazz) {
+            Set<Class<?>> types = new HashSet<>();
+            Deque<Class<?>> queue = new ArrayDeque<>();
+            queue.add(clazz);
+            while (!queue.isEmpty()) {
+                Class<?> type = queue.poll();
+                if (!types.add(type)) {
+                    continue;
+                }
+                if (type.getSuperclass() != null) {
+                    queue.add(type.getSuperclass());
+                }
+                queue.addAll(Arrays.asList(type.getInterfaces()));
+            }
+            return types;
+        }
     }
 }
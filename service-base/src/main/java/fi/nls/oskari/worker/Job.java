@@ -51,4 +51,13 @@ public interface Job<T>  {
 	 *         otherwise.
 	 */
     public boolean goNext(final boolean hasNext);
+
+    /**
+     * Jobs with higher priority are run before queued jobs with lower priority.
+     *
+     * @return priority, defaults to 0
+     */
+    default int getPriority() {
+        return 0;
+    }
 }
\ No newline at end of file
@@ -1,147 +1,329 @@
 package fi.nls.oskari.worker;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import fi.nls.oskari.log.LogFactory;
 import fi.nls.oskari.log.Logger;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * Manages workers for different kind of jobs
+ * Manages workers for different kind of jobs.
+ *
+ * Jobs are identified by their key: adding a job replaces (and terminates) any queued or running job with the same key.
+ * Queued jobs are run in order of Job.getPriority() (higher first) and in the order they were added within the same
+ * priority. The queue is a lock-free skip list, workers wait on a semaphore that is released once for each added job.
+ * When the queue is full the RejectionPolicy of the queue decides what happens to the new job.
  */
 public class JobQueue
 {
 	private static final Logger log = LogFactory.getLogger(JobQueue.class);
-			
+
+    public enum RejectionPolicy {
+        /** Throws RejectedExecutionException from add() */
+        ABORT,
+        /** Drops the new job, add() returns false */
+        DISCARD,
+        /** Drops the queued job that would be run last to make room for the new job */
+        DISCARD_LAST,
+        /** Runs the new job in the thread calling add() */
+        CALLER_RUNS
+    }
+
     private final int nWorkers;
+    private final int capacity;
+    private final RejectionPolicy rejectionPolicy;
     private final Worker[] workers;
-    private final Map<String, Job> jobs;
-    private final LinkedList<Job> queue;
+    // queued and running jobs by key
+    private final Map<String, QueuedJob> jobs = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<QueuedJob> queue = new ConcurrentSkipListSet<>();
+    // permits >= queued jobs, workers skip permits of jobs that were removed from the queue
+    private final Semaphore available = new Semaphore(0);
+    private final AtomicInteger queueSize = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile boolean shutdown = false;
 
-    private long maxQueueLength = 0;
-    private long maxJobLength = 0;
-    private long minJobLength = Long.MAX_VALUE;
-    private long jobCount = 0;
-    private long avgRuntime = 0;
-    private String firstCrashedJob = null;
-    private long crashedJobCount = 0;
+    private final LongAccumulator maxQueueLength = new LongAccumulator(Math::max, 0);
+    private final LongAccumulator maxJobLength = new LongAccumulator(Math::max, 0);
+    private final LongAccumulator minJobLength = new LongAccumulator(Math::min, Long.MAX_VALUE);
+    private final LongAdder jobCount = new LongAdder();
+    private final LongAdder totalRuntime = new LongAdder();
+    private final LongAdder timedJobCount = new LongAdder();
+    private final LongAdder rejectedJobCount = new LongAdder();
+    private final LongAdder cancelledJobCount = new LongAdder();
+    private final LongAdder crashedJobCount = new LongAdder();
+    private final AtomicReference<String> firstCrashedJob = new AtomicReference<>();
 
     /**
-     * Initializes a queue and workers
-     * 
+     * Initializes an unbounded queue and workers
+     *
      * @param nWorkers
      */
     public JobQueue(int nWorkers)
     {
+        this(nWorkers, Integer.MAX_VALUE, RejectionPolicy.ABORT);
+    }
+
+    /**
+     * Initializes a bounded queue and workers
+     *
+     * @param nWorkers
+     * @param capacity max amount of jobs waiting in the queue (running jobs are not counted)
+     * @param rejectionPolicy what to do with new jobs when the queue is full
+     */
+    public JobQueue(int nWorkers, int capacity, RejectionPolicy rejectionPolicy)
+    {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
         this.nWorkers = nWorkers;
-        queue = new LinkedList<Job>();
+        this.capacity = capacity;
+        this.rejectionPolicy = Objects.requireNonNull(rejectionPolicy);
         workers = new Worker[this.nWorkers];
-        jobs = new HashMap<String, Job>();
 
         for (int i = 0; i < this.nWorkers; i++) {
         	workers[i] = new Worker();
         	workers[i].start();
         }
     }
+
     public long getMaxQueueLength() {
-        return maxQueueLength;
+        return maxQueueLength.get();
     }
 
     public long getMaxJobLength() {
-        return maxJobLength;
+        return maxJobLength.get();
     }
 
     public long getMinJobLength() {
-        return minJobLength;
+        return minJobLength.get();
     }
 
     public long getJobCount() {
-        return jobCount;
+        return jobCount.sum();
     }
 
     public long getAvgRuntime() {
-        return avgRuntime;
+        long count = timedJobCount.sum();
+        return count == 0 ? 0 : totalRuntime.sum() / count;
     }
+
     public long getQueueSize() {
-        return queue.size();
+        return queueSize.get();
+    }
+
+    public int getCapacity() {
+        return capacity;
     }
 
     public String getFirstCrashedJob() {
-        return firstCrashedJob;
+        return firstCrashedJob.get();
     }
 
     public long getCrashedJobCount() {
-        return crashedJobCount;
+        return crashedJobCount.sum();
+    }
+
+    public long getRejectedJobCount() {
+        return rejectedJobCount.sum();
+    }
+
+    public long getCancelledJobCount() {
+        return cancelledJobCount.sum();
     }
 
     public List<String> getQueuedJobNames() {
-        List<String> names = new ArrayList<String>(queue.size());
-        for(Job j : queue) {
-            names.add(j.getKey());
+        List<String> names = new ArrayList<String>(queueSize.get());
+        for(QueuedJob j : queue) {
+            names.add(j.job.getKey());
         }
         return names;
     }
 
+    /**
+     * Registers gauges for the queue statistics
+     *
+     * @param registry for example ActionControl.getMetrics()
+     * @param prefix for metric names like "Oskari.jobs.print"
+     */
+    public void registerMetrics(MetricRegistry registry, String prefix) {
+        register(registry, MetricRegistry.name(prefix, "queue", "size"), this::getQueueSize);
+        register(registry, MetricRegistry.name(prefix, "queue", "max"), this::getMaxQueueLength);
+        register(registry, MetricRegistry.name(prefix, "jobs", "count"), this::getJobCount);
+        register(registry, MetricRegistry.name(prefix, "jobs", "rejected"), this::getRejectedJobCount);
+        register(registry, MetricRegistry.name(prefix, "jobs", "cancelled"), this::getCancelledJobCount);
+        register(registry, MetricRegistry.name(prefix, "jobs", "crashed"), this::getCrashedJobCount);
+        register(registry, MetricRegistry.name(prefix, "runtime", "avg"), this::getAvgRuntime);
+        register(registry, MetricRegistry.name(prefix, "runtime", "max"), this::getMaxJobLength);
+        register(registry, MetricRegistry.name(prefix, "runtime", "min"),
+                () -> timedJobCount.sum() == 0 ? 0 : getMinJobLength());
+    }
+
+    private void register(MetricRegistry registry, String name, Gauge<Long> gauge) {
+        // replace gauges of a previous queue with the same prefix
+        registry.remove(name);
+        registry.register(name, gauge);
+    }
+
     public void cleanup(boolean force) {
-        for(Job j : queue) {
-            if(force) {
-                remove(j);
-            }
+        if(!force) {
+            return;
+        }
+        for(QueuedJob j : queue) {
+            cancel(j);
         }
     }
 
     /**
-     * Adds a new job into queue and notifies workers
-     * 
+     * Adds a new job into queue and notifies workers. A queued or running job with the same key is cancelled.
+     *
      * @param job
+     * @return false if the job was discarded because the queue is full
+     * @throws RejectedExecutionException if the queue is full and the rejection policy is ABORT
+     *  or the queue has been shut down
      */
-    public void add(Job job) {
-        // removed previous job with same key
-        remove(job);
-    	String key = job.getKey();
-    	jobs.put(key, job);
-        synchronized(queue) {
-            queue.addLast(job);
-            queue.notify();
+    public boolean add(Job job) {
+        if (shutdown) {
+            throw new RejectedExecutionException("Queue has been shut down");
         }
-        if(maxQueueLength < queue.size()) {
-            maxQueueLength = queue.size();
+    	String key = job.getKey();
+        // removed previous job with same key, frees its place in the queue
+        cancel(key);
+        if (!reserve()) {
+            switch (rejectionPolicy) {
+                case DISCARD_LAST:
+                    // reserves the slot of the dropped job
+                    if (discardLast()) {
+                        break;
+                    }
+                    // nothing left to discard -> discard the new job
+                case DISCARD:
+                    rejectedJobCount.increment();
+                    log.debug("Queue full, discarded", key);
+                    return false;
+                case CALLER_RUNS:
+                    rejectedJobCount.increment();
+                    log.debug("Queue full, running in caller thread", key);
+                    runJob(replace(key, new QueuedJob(job, sequence.incrementAndGet())));
+                    return true;
+                default:
+                    rejectedJobCount.increment();
+                    throw new RejectedExecutionException("Queue full, rejected job: " + key);
+            }
         }
+        QueuedJob queued = replace(key, new QueuedJob(job, sequence.incrementAndGet()));
+        queue.add(queued);
+        available.release();
+        maxQueueLength.accumulate(queueSize.get());
         log.debug("Added", key);
+        return true;
     }
 
-    public void addJobCount() {
-        jobCount++;
+    private boolean reserve() {
+        while (true) {
+            int size = queueSize.get();
+            if (size >= capacity) {
+                return false;
+            }
+            if (queueSize.compareAndSet(size, size + 1)) {
+                return true;
+            }
+        }
     }
 
-    public void setupTimingStatistics(long runTimeMS) {
-        if(runTimeMS > maxJobLength) {
-            maxJobLength = runTimeMS;
-        }
-        if(runTimeMS < minJobLength) {
-            minJobLength = runTimeMS;
-        }
-        if(avgRuntime == 0) {
-            avgRuntime = runTimeMS;
+    private boolean discardLast() {
+        QueuedJob last;
+        while ((last = queue.pollLast()) != null) {
+            if (last.markRemoved()) {
+                // slot is reused for the new job so the size isn't decremented
+                jobs.remove(last.job.getKey(), last);
+                last.job.terminate();
+                rejectedJobCount.increment();
+                log.debug("Queue full, discarded", last.job.getKey());
+                return true;
+            }
         }
-        else {
-            avgRuntime = ((avgRuntime * (jobCount -1)) + runTimeMS) / jobCount;
+        return false;
+    }
+
+    /**
+     * Registers the job with its key and cancels the previous job with the same key
+     */
+    private QueuedJob replace(String key, QueuedJob queued) {
+        QueuedJob previous = jobs.put(key, queued);
+        if (previous != null) {
+            cancel(previous);
         }
+        return queued;
     }
 
     /**
      * Removes a job from queue and terminates a running job
-     * 
+     *
      * @param job
      */
     public void remove(Job job) {
-    	String key = job.getKey();
-    	Job processedJob = jobs.get(key);
-		if(processedJob != null)
-			processedJob.terminate();
-        synchronized(queue) {
-        	queue.remove(job);
+        cancel(job.getKey());
+    }
+
+    /**
+     * Removes the job with the key from queue or terminates it if it's running
+     *
+     * @param key
+     * @return true if there was a queued or running job with the key
+     */
+    public boolean cancel(String key) {
+        QueuedJob queued = jobs.remove(key);
+        if (queued == null) {
+            return false;
+        }
+        cancel(queued);
+        return true;
+    }
+
+    private void cancel(QueuedJob queued) {
+        jobs.remove(queued.job.getKey(), queued);
+        queued.job.terminate();
+        if (queued.markRemoved()) {
+            // wasn't picked up by a worker yet
+            queue.remove(queued);
+            queueSize.decrementAndGet();
+        }
+        cancelledJobCount.increment();
+        log.debug("Removed", queued.job.getKey());
+    }
+
+    /**
+     * Cancels queued and running jobs and stops the workers.
+     */
+    public void shutdown() {
+        shutdown = true;
+        for (QueuedJob queued : jobs.values()) {
+            cancel(queued);
+        }
+        for (Worker worker : workers) {
+            worker.interrupt();
         }
-        log.debug("Removed", key);
+    }
+
+    public void addJobCount() {
+        jobCount.increment();
+    }
+
+    public void setupTimingStatistics(long runTimeMS) {
+        maxJobLength.accumulate(runTimeMS);
+        minJobLength.accumulate(runTimeMS);
+        totalRuntime.add(runTimeMS);
+        timedJobCount.increment();
     }
 
     public void onJobSuccess(final Job job, final Object value) {
@@ -162,63 +344,97 @@ public class JobQueue
             log.debug(value, "Stacktrace");
         }
     }
-    
+
+    private void runJob(QueuedJob queued) {
+        final Job r = queued.job;
+        final long startTime = System.nanoTime();
+        addJobCount();
+        boolean notified = false;
+        try {
+            final Object o = r.run();
+            onJobSuccess(r, o);
+            notified = true;
+        } catch (Exception e) {
+            onJobFailed(r, e);
+            notified = true;
+        }
+        catch (OutOfMemoryError e) {
+            crashedJobCount.increment();
+            log.error("OutOfMemory while running job:", r.getKey(), "- message", e.getMessage());
+            firstCrashedJob.compareAndSet(null, r.getKey());
+            onJobFailed(r, e);
+            notified = true;
+            throw e;
+        }
+        finally {
+            if(!notified) {
+                onJobFailed(r, null);
+            }
+            r.teardown();
+            // only remove the job if it hasn't been replaced with a new one
+            jobs.remove(r.getKey(), queued);
+            log.debug("Finished", r.getKey());
+            final long runTimeMS = (System.nanoTime() - startTime) / 1000000L;
+            setupTimingStatistics(runTimeMS);
+        }
+    }
+
+    /**
+     * Job in the queue, ordered by priority and then by the order they were added
+     */
+    private static class QueuedJob implements Comparable<QueuedJob> {
+        private final Job job;
+        private final int priority;
+        private final long sequence;
+        // set when the job is taken from the queue by a worker or removed
+        private final AtomicInteger taken = new AtomicInteger();
+
+        QueuedJob(Job job, long sequence) {
+            this.job = job;
+            this.priority = job.getPriority();
+            this.sequence = sequence;
+        }
+
+        boolean markRemoved() {
+            return taken.compareAndSet(0, 1);
+        }
+
+        @Override
+        public int compareTo(QueuedJob o) {
+            if (priority != o.priority) {
+                return Integer.compare(o.priority, priority);
+            }
+            return Long.compare(sequence, o.sequence);
+        }
+    }
+
     /**
      * Defines a worker thread for queue's job
      */
-    private class Worker extends Thread { 
-    	
+    private class Worker extends Thread {
+
     	/**
     	 * Processes queues jobs
-    	 * 
+    	 *
     	 * Waits for the queue to have some jobs.
     	 * Always takes the first job available, runs it and removes it from queue.
-    	 * 
+    	 *
     	 */
         public void run() {
-            Job r;
-
-            while (true) {
-                synchronized(queue) {
-                    while (queue.isEmpty()) {
-                        try {
-                            queue.wait();
-                        } catch (InterruptedException ignored) { }
-                    }
-                    r = queue.removeFirst();
-                }
-                final long startTime = System.nanoTime();
-                addJobCount();
-                boolean notified = false;
+            while (!shutdown) {
                 try {
-                    final Object o = r.run();
-                    onJobSuccess(r, o);
-                    notified = true;
-                } catch (Exception e) {
-                    onJobFailed(r, e);
-                    notified = true;
+                    available.acquire();
+                } catch (InterruptedException ignored) {
+                    continue;
                 }
-                catch (OutOfMemoryError e) {
-                    crashedJobCount++;
-                    log.error("OutOfMemory while running job:", r.getKey(), "- message", e.getMessage());
-                    if(firstCrashedJob == null) {
-                        firstCrashedJob = r.getKey();
-                    }
-                    onJobFailed(r, e);
-                    notified = true;
-                    throw e;
-                }
-                finally {
-                    if(!notified) {
-                        onJobFailed(r, null);
-                    }
-                    r.teardown();
-                    jobs.remove(r.getKey());
-                    log.debug("Finished", r.getKey());
-                    final long runTimeMS = (System.nanoTime() - startTime) / 1000000L;
-                    setupTimingStatistics(runTimeMS);
+                QueuedJob r = queue.pollFirst();
+                if (r == null || !r.markRemoved()) {
+                    // removed or discarded after it was added
+                    continue;
                 }
+                queueSize.decrementAndGet();
+                runJob(r);
             }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,222 @@
+package org.oskari.xml;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Helpers for parsing large XML documents with StAX without building a DOM or a String of the whole document.
+ * The readers are not namespace aware to match XmlHelper so elements are matched with local names
+ * and a missing namespace declaration doesn't fail the parsing.
+ *
+ * The methods expect the reader to be positioned on a START_ELEMENT and leave it on the matching END_ELEMENT
+ * so they can be combined like:
+ * <pre>
+ * while (XmlStreamHelper.nextChildElement(reader)) {
+ *     switch (XmlStreamHelper.getLocalName(reader)) {
+ *         case "Title": title = XmlStreamHelper.readText(reader); break;
+ *         default: XmlStreamHelper.skipElement(reader);
+ *     }
+ * }
+ * </pre>
+ */
+public class XmlStreamHelper {
+
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory xif = XMLInputFactory.newInstance();
+        xif.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+        xif.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        xif.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        xif.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return xif;
+    }
+
+    /**
+     * Creates a reader for the data positioned on the root element. Uses the encoding from the XML prolog,
+     * the given encoding or UTF-8 in that order. Whitespace before the XML prolog is skipped like
+     * XmlHelper.parseXML(String) trims it away.
+     * @param data
+     * @param encoding used when the XML prolog doesn't declare one, may be null
+     * @return
+     * @throws XMLStreamException
+     */
+    public static XMLStreamReader createReader(byte[] data, String encoding) throws XMLStreamException {
+        int start = 0;
+        while (start < data.length && isWhitespace(data[start])) {
+            start++;
+        }
+        XMLStreamReader reader = FACTORY.createXMLStreamReader(new ByteArrayInputStream(data, start, data.length - start));
+        if (reader.getCharacterEncodingScheme() == null && encoding != null) {
+            reader.close();
+            reader = FACTORY.createXMLStreamReader(new ByteArrayInputStream(data, start, data.length - start), encoding);
+        }
+        return toRootElement(reader);
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    /**
+     * Creates a reader for the stream positioned on the root element.
+     * @param in
+     * @return
+     * @throws XMLStreamException
+     */
+    public static XMLStreamReader createReader(InputStream in) throws XMLStreamException {
+        return toRootElement(FACTORY.createXMLStreamReader(in));
+    }
+
+    /**
+     * Closes the reader ignoring any errors. The underlying input is not closed by the reader.
+     * @param reader
+     */
+    public static void close(XMLStreamReader reader) {
+        if (reader == null) {
+            return;
+        }
+        try {
+            reader.close();
+        } catch (XMLStreamException ignored) {
+        }
+    }
+
+    private static XMLStreamReader toRootElement(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.getEventType() != XMLStreamConstants.START_ELEMENT) {
+            if (!reader.hasNext()) {
+                throw new XMLStreamException("No root element");
+            }
+            reader.next();
+        }
+        return reader;
+    }
+
+    /**
+     * Moves to the next child element of the current element.
+     * @param reader positioned on the parent START_ELEMENT or the END_ELEMENT of the previous child
+     * @return true when positioned on a child START_ELEMENT, false when on the parent END_ELEMENT
+     * @throws XMLStreamException
+     */
+    public static boolean nextChildElement(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                return true;
+            }
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Skips the current element and all of its children.
+     * @param reader positioned on START_ELEMENT, left on the matching END_ELEMENT
+     * @throws XMLStreamException
+     */
+    public static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Reads the text content of the current element and its children like org.w3c.dom.Node.getTextContent().
+     * @param reader positioned on START_ELEMENT, left on the matching END_ELEMENT
+     * @return text content (not trimmed)
+     * @throws XMLStreamException
+     */
+    public static String readText(XMLStreamReader reader) throws XMLStreamException {
+        StringBuilder text = null;
+        String first = null;
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    depth--;
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                case XMLStreamConstants.ENTITY_REFERENCE:
+                    String value = reader.getText();
+                    if (first == null) {
+                        first = value;
+                    } else {
+                        if (text == null) {
+                            text = new StringBuilder(first);
+                        }
+                        text.append(value);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (text != null) {
+            return text.toString();
+        }
+        return first == null ? "" : first;
+    }
+
+    /**
+     * @return local name of the current element ignoring the namespace prefix
+     */
+    public static String getLocalName(XMLStreamReader reader) {
+        return stripPrefix(reader.getLocalName());
+    }
+
+    /**
+     * @param reader positioned on START_ELEMENT
+     * @param localName local name of the attribute ignoring the namespace prefix
+     * @return attribute value or null if the element doesn't have the attribute
+     */
+    public static String getAttributeValue(XMLStreamReader reader, String localName) {
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            if (localName.equals(stripPrefix(reader.getAttributeLocalName(i)))) {
+                return reader.getAttributeValue(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns attributes of the current element by local name like org.oskari.xml.XmlHelper.getAttributesAsMap().
+     * Namespace declarations are included with the prefix as key since the reader is not namespace aware.
+     * @param reader positioned on START_ELEMENT
+     * @return
+     */
+    public static Map<String, String> getAttributesAsMap(XMLStreamReader reader) {
+        Map<String, String> attributes = new HashMap<>();
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            attributes.put(stripPrefix(reader.getAttributeLocalName(i)), reader.getAttributeValue(i));
+        }
+        return attributes;
+    }
+
+    private static String stripPrefix(String name) {
+        int i = name.indexOf(':');
+        if (i < 0) {
+            return name;
+        }
+        return name.substring(i + 1);
+    }
+}
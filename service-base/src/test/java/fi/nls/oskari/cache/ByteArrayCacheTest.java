@@ -0,0 +1,55 @@
+package fi.nls.oskari.cache;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ByteArrayCacheTest {
+
+    @Test
+    public void testLargeItemsAreNotCached() {
+        ByteArrayCache cache = CacheManager.getCache("ByteArrayCacheLargeItems", () -> new ByteArrayCache(100, 10));
+        cache.put("small", new byte[10]);
+        assertNotNull(cache.get("small"));
+
+        cache.put("large", new byte[11]);
+        assertNull("Items over the item limit are not cached", cache.get("large"));
+
+        cache.put("small", new byte[11]);
+        assertNull("Previous value is removed when replaced with a large one", cache.get("small"));
+        assertEquals(0, cache.getBytes());
+    }
+
+    @Test
+    public void testOldestItemsAreRemovedOverTotalSize() {
+        ByteArrayCache cache = CacheManager.getCache("ByteArrayCacheTotalSize", () -> new ByteArrayCache(25, 10));
+        cache.put("first", new byte[10]);
+        cache.put("second", new byte[10]);
+        assertEquals(20, cache.getBytes());
+
+        cache.put("third", new byte[10]);
+        assertNull("Oldest item is removed", cache.get("first"));
+        assertNotNull(cache.get("second"));
+        assertNotNull(cache.get("third"));
+        assertEquals(20, cache.getBytes());
+
+        // replacing counts the new size only
+        cache.put("third", new byte[5]);
+        assertEquals(15, cache.getBytes());
+        cache.remove("second");
+        assertEquals(5, cache.getBytes());
+        cache.flush(true);
+        assertEquals(0, cache.getBytes());
+    }
+
+    @Test
+    public void testCountLimitKeepsSizesInSync() {
+        ByteArrayCache cache = CacheManager.getCache("ByteArrayCacheCountLimit", () -> new ByteArrayCache(100, 10));
+        cache.setLimit(2);
+        cache.put("first", new byte[10]);
+        cache.put("second", new byte[10]);
+        cache.put("third", new byte[10]);
+        assertEquals(2, cache.getSize());
+        assertEquals(20, cache.getBytes());
+    }
+}
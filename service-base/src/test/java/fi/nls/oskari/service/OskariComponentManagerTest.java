@@ -0,0 +1,86 @@
+package fi.nls.oskari.service;
+
+import fi.nls.oskari.annotation.Oskari;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class OskariComponentManagerTest {
+
+    @After
+    public void teardown() {
+        OskariComponentManager.teardown();
+    }
+
+    @Test
+    public void testLookupByInterfaceAndClass() {
+        FirstSearch first = new FirstSearch();
+        SecondSearch second = new SecondSearch();
+        Other other = new Other();
+        OskariComponentManager.addComponent(first);
+        OskariComponentManager.addComponent(second);
+        OskariComponentManager.addComponent(other);
+
+        Map<String, OskariComponent> searches = OskariComponentManager.getComponentsOfType(Search.class);
+        assertEquals(2, searches.size());
+        assertSame(first, searches.get("first"));
+        assertSame(second, searches.get("second"));
+
+        assertEquals(2, OskariComponentManager.getComponentsOfType(AbstractSearch.class).size());
+        assertSame(second, OskariComponentManager.getComponentOfType(SecondSearch.class));
+        assertSame(other, OskariComponentManager.getComponentOfType(Other.class));
+        assertEquals(3, OskariComponentManager.getComponentsOfType(OskariComponent.class).size());
+    }
+
+    @Test
+    public void testRemoveComponentsOfType() {
+        OskariComponentManager.addComponent(new FirstSearch());
+        OskariComponentManager.addComponent(new SecondSearch());
+        OskariComponentManager.addComponent(new Other());
+
+        OskariComponentManager.removeComponentsOfType(Search.class);
+        assertTrue(OskariComponentManager.getComponentsOfType(Search.class).isEmpty());
+        assertEquals(1, OskariComponentManager.getComponentsOfType(OskariComponent.class).size());
+    }
+
+    @Test
+    public void testLaterComponentWithSameNameOverrides() {
+        OskariComponentManager.addComponent(new FirstSearch());
+        FirstSearch replacement = new FirstSearch();
+        OskariComponentManager.addComponent(replacement);
+
+        assertSame(replacement, OskariComponentManager.getComponentOfType(AbstractSearch.class));
+        assertEquals(1, OskariComponentManager.getComponentsOfType(Search.class).size());
+    }
+
+    @Test
+    public void testFailingInitIsSkipped() {
+        OskariComponentManager.addComponent(new Other());
+        OskariComponentManager.addComponent(new FailingSearch());
+        assertTrue(OskariComponentManager.getComponentsOfType(Search.class).isEmpty());
+    }
+
+    interface Search {}
+
+    static abstract class AbstractSearch extends OskariComponent implements Search {}
+
+    @Oskari("first")
+    static class FirstSearch extends AbstractSearch {}
+
+    @Oskari("second")
+    static class SecondSearch extends AbstractSearch {}
+
+    static class FailingSearch extends AbstractSearch {
+        @Override
+        public void init() {
+            throw new IllegalStateException("Not configured");
+        }
+    }
+
+    static class Other extends OskariComponent {}
+}
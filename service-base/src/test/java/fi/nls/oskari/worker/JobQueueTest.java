@@ -2,7 +2,18 @@ package fi.nls.oskari.worker;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class JobQueueTest {
 	private class TestJob extends AbstractJob<String> {
@@ -56,6 +67,148 @@ public class JobQueueTest {
 		Thread.sleep(500); // wait that pool gives turn..
 		assertTrue("Should be stopped", job.goNext() == false);
 		assertTrue("Should run", job3.isStarted() == true);
+		jobs.shutdown();
+		assertTrue("Should be stopped", job3.goNext() == false);
+	}
+
+
+	private class RecordingJob extends AbstractJob<String> {
+		private final String key;
+		private final int priority;
+		private final List<String> done;
+
+		RecordingJob(String key, int priority, List<String> done) {
+			this.key = key;
+			this.priority = priority;
+			this.done = done;
+		}
+
+		@Override
+		public String run() {
+			done.add(key);
+			return key;
+		}
+
+		@Override
+		public String getKey() {
+			return key;
+		}
+
+		@Override
+		public int getPriority() {
+			return priority;
+		}
+	}
+
+	private TestJob blockWorker(JobQueue jobs) throws InterruptedException {
+		TestJob blocker = new TestJob(0);
+		jobs.add(blocker);
+		for (int i = 0; i < 50 && !blocker.isStarted(); i++) {
+			Thread.sleep(10);
+		}
+		assertTrue("Blocker should run", blocker.isStarted());
+		return blocker;
 	}
 
+	private void waitUntilDone(JobQueue jobs, long count) throws InterruptedException {
+		for (int i = 0; i < 100 && (jobs.getQueueSize() > 0 || jobs.getJobCount() < count); i++) {
+			Thread.sleep(10);
+		}
+		// the job counter is updated before running the job
+		Thread.sleep(50);
+	}
+
+	@Test
+	public void testPriorityAndKeys() throws InterruptedException {
+		JobQueue jobs = new JobQueue(1);
+		List<String> done = Collections.synchronizedList(new ArrayList<>());
+		TestJob blocker = blockWorker(jobs);
+
+		jobs.add(new RecordingJob("low", 0, done));
+		jobs.add(new RecordingJob("high", 5, done));
+		jobs.add(new RecordingJob("low2", 0, done));
+		// replaces the queued job with the same key
+		jobs.add(new RecordingJob("low", 0, done));
+		assertEquals(Arrays.asList("high", "low2", "low"), jobs.getQueuedJobNames());
+		assertEquals(3, jobs.getQueueSize());
+
+		assertTrue(jobs.cancel("low2"));
+		assertFalse(jobs.cancel("low2"));
+		jobs.remove(blocker);
+		waitUntilDone(jobs, 3);
+
+		assertEquals(Arrays.asList("high", "low"), done);
+		assertEquals(0, jobs.getQueueSize());
+		assertEquals(3, jobs.getMaxQueueLength());
+		assertEquals(3, jobs.getJobCount());
+		// replaced "low", "low2" and the blocker
+		assertEquals(3, jobs.getCancelledJobCount());
+		jobs.shutdown();
+	}
+
+	@Test
+	public void testRejectionPolicies() throws InterruptedException {
+		List<String> done = Collections.synchronizedList(new ArrayList<>());
+
+		JobQueue abort = new JobQueue(1, 1, JobQueue.RejectionPolicy.ABORT);
+		blockWorker(abort);
+		assertTrue(abort.add(new RecordingJob("a", 0, done)));
+		try {
+			abort.add(new RecordingJob("b", 0, done));
+			fail("Should throw");
+		} catch (RejectedExecutionException expected) {}
+		// same key replaces the queued job instead of being rejected
+		assertTrue(abort.add(new RecordingJob("a", 0, done)));
+		assertEquals(1, abort.getRejectedJobCount());
+		abort.shutdown();
+
+		JobQueue discard = new JobQueue(1, 1, JobQueue.RejectionPolicy.DISCARD);
+		blockWorker(discard);
+		assertTrue(discard.add(new RecordingJob("a", 0, done)));
+		assertFalse(discard.add(new RecordingJob("b", 0, done)));
+		assertEquals(Collections.singletonList("a"), discard.getQueuedJobNames());
+		discard.shutdown();
+
+		JobQueue discardLast = new JobQueue(1, 2, JobQueue.RejectionPolicy.DISCARD_LAST);
+		blockWorker(discardLast);
+		discardLast.add(new RecordingJob("a", 1, done));
+		discardLast.add(new RecordingJob("b", 0, done));
+		assertTrue(discardLast.add(new RecordingJob("c", 2, done)));
+		assertEquals(Arrays.asList("c", "a"), discardLast.getQueuedJobNames());
+		assertEquals(2, discardLast.getQueueSize());
+		discardLast.shutdown();
+
+		JobQueue callerRuns = new JobQueue(1, 1, JobQueue.RejectionPolicy.CALLER_RUNS);
+		blockWorker(callerRuns);
+		callerRuns.add(new RecordingJob("a", 0, done));
+		assertTrue(callerRuns.add(new RecordingJob("b", 0, done)));
+		assertEquals(Collections.singletonList("b"), done);
+		callerRuns.shutdown();
+	}
+
+	@Test
+	public void testConcurrentAdds() throws InterruptedException {
+		JobQueue jobs = new JobQueue(4);
+		List<String> done = Collections.synchronizedList(new ArrayList<>());
+		int threads = 8;
+		int perThread = 250;
+		CountDownLatch latch = new CountDownLatch(threads);
+		for (int t = 0; t < threads; t++) {
+			final int id = t;
+			new Thread(() -> {
+				for (int i = 0; i < perThread; i++) {
+					jobs.add(new RecordingJob(id + "-" + i, i % 3, done));
+				}
+				latch.countDown();
+			}).start();
+		}
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		waitUntilDone(jobs, threads * perThread);
+		assertEquals(threads * perThread, done.size());
+		assertEquals(threads * perThread, jobs.getJobCount());
+		assertEquals(0, jobs.getQueueSize());
+		assertTrue(jobs.getMinJobLength() <= jobs.getAvgRuntime());
+		assertTrue(jobs.getAvgRuntime() <= jobs.getMaxJobLength());
+		jobs.shutdown();
+	}
 }
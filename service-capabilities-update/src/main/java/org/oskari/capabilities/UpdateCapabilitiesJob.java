@@ -15,6 +15,7 @@ import fi.nls.oskari.map.layer.OskariLayerService;
 import fi.nls.oskari.map.layer.OskariLayerServiceMybatisImpl;
 import fi.nls.oskari.map.view.ViewService;
 import fi.nls.oskari.map.view.AppSetupServiceMybatisImpl;
+import fi.nls.oskari.map.view.util.AppSetupResponseCache;
 import fi.nls.oskari.map.view.util.ViewHelper;
 import fi.nls.oskari.service.ServiceException;
 import fi.nls.oskari.worker.ScheduledJob;
@@ -29,6 +30,7 @@ import fi.nls.oskari.worker.ScheduledJob;
 public class UpdateCapabilitiesJob extends ScheduledJob {
 
     private static final Logger LOG = LogFactory.getLogger(UpdateCapabilitiesJob.class);
+    private static final int SLOWEST_COUNT = 10;
 
     private final OskariLayerService layerService;
     private final ViewService viewService;
@@ -60,17 +62,42 @@ public class UpdateCapabilitiesJob extends ScheduledJob {
                 .filter(layer -> shouldUpdate(layer))
                 .collect(Collectors.toList());
 
-        List<CapabilitiesUpdateResult> result = CapabilitiesService.updateCapabilities(layersToUpdate, systemCRSs);
-        List<String> updatedLayers = result.stream()
-                .filter(res -> res.getErrorMessage() == null)
+        CapabilitiesUpdateReport report = new CapabilitiesUpdater().update(layersToUpdate, systemCRSs);
+        List<CapabilitiesUpdateResult> updatedResults = report.getResults().stream()
+                .filter(res -> res.getErrorMessage() == null && !res.isUnchanged())
+                .collect(Collectors.toList());
+        Set<String> updatedLayers = updatedResults.stream()
                 .map(l -> l.getLayerId())
+                .collect(Collectors.toSet());
+
+        List<OskariLayer> layersToSave = layersToUpdate.stream()
+                .filter(layer -> updatedLayers.contains("" + layer.getId()))
                 .collect(Collectors.toList());
+        layerService.updateAll(layersToSave);
+        if (!layersToSave.isEmpty()) {
+            // cached GetAppSetup responses include the capabilities of selected layers
+            AppSetupResponseCache.flush();
+        }
+        // only skip unchanged documents on the next run once the layers have been saved
+        CapabilitiesService.storeFingerprints(updatedResults);
+
+        logReport(report, layersToSave.size());
+    }
 
-        for (OskariLayer layer : layersToUpdate) {
-            if (!updatedLayers.contains("" + layer.getId())) {
-                continue;
-            }
-            layerService.update(layer);
+    private void logReport(CapabilitiesUpdateReport report, int updatedCount) {
+        long failedServices = report.getServices().stream()
+                .filter(service -> service.getError() != null)
+                .count();
+        long unchangedCount = report.getResults().stream()
+                .filter(res -> res.isUnchanged())
+                .count();
+        LOG.info("Updated capabilities for", updatedCount, "/", report.getResults().size(), "layers from",
+                report.getServices().size(), "services in", report.getDurationMs(), "ms. Unchanged layers:", unchangedCount,
+                "Failed services:", failedServices);
+        if (LOG.isDebugEnabled()) {
+            report.getServices().forEach(service -> LOG.debug("Service:", service, "waited:", service.getWaitMs(), "ms"));
+        } else if (!report.getServices().isEmpty()) {
+            LOG.info("Slowest services:", report.getSlowest(SLOWEST_COUNT));
         }
     }
 
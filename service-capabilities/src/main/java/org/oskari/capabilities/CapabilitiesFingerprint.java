@@ -0,0 +1,82 @@
+package org.oskari.capabilities;
+
+import fi.nls.oskari.domain.map.OskariLayer;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Identifies the capabilities document that was last used to update layers of a service.
+ * Used to skip parsing and saving the capabilities when the document hasn't changed.
+ */
+class CapabilitiesFingerprint {
+
+    private final String hash;
+    private final String etag;
+    private final String lastModified;
+    private final String crsKey;
+    private final Set<String> layerIds;
+
+    CapabilitiesFingerprint(RawCapabilitiesResponse response, Set<String> systemCRSs, Collection<String> layerIds) {
+        this(response.getHash(), response.getETag(), response.getLastModified(), getCrsKey(systemCRSs), layerIds);
+    }
+
+    private CapabilitiesFingerprint(String hash, String etag, String lastModified, String crsKey, Collection<String> layerIds) {
+        this.hash = hash;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.crsKey = crsKey;
+        this.layerIds = Collections.unmodifiableSet(new HashSet<>(layerIds));
+    }
+
+    /**
+     * @return fingerprint of the same document for the given layers
+     */
+    CapabilitiesFingerprint withLayerIds(Collection<String> ids) {
+        return new CapabilitiesFingerprint(hash, etag, lastModified, crsKey, ids);
+    }
+
+    String getHash() {
+        return hash;
+    }
+
+    String getETag() {
+        return etag;
+    }
+
+    String getLastModified() {
+        return lastModified;
+    }
+
+    Set<String> getLayerIds() {
+        return layerIds;
+    }
+
+    /**
+     * @return true if all the layers were updated from this document with the same system projections
+     */
+    boolean covers(List<OskariLayer> layers, Set<String> systemCRSs) {
+        if (hash == null || !crsKey.equals(getCrsKey(systemCRSs))) {
+            return false;
+        }
+        return layers.stream().allMatch(layer -> layerIds.contains(Integer.toString(layer.getId())));
+    }
+
+    /**
+     * @return true if the fingerprint is for the same document with the same system projections
+     */
+    boolean isSameDocument(CapabilitiesFingerprint other) {
+        return other != null && hash != null && hash.equals(other.hash) && crsKey.equals(other.crsKey);
+    }
+
+    private static String getCrsKey(Set<String> systemCRSs) {
+        if (systemCRSs == null) {
+            return "";
+        }
+        return new TreeSet<>(systemCRSs).toString();
+    }
+}
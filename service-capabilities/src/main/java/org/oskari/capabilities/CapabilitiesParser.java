@@ -10,12 +10,17 @@ import fi.nls.oskari.util.PropertyUtil;
 
 import java.io.IOException;
 import java.net.HttpURLConnection;
+import java.util.HashMap;
 import java.util.Map;
 
 public abstract class CapabilitiesParser extends OskariComponent {
 
     // timeout capabilities request after 30 seconds (configurable)
     private static final int TIMEOUT_MS = PropertyUtil.getOptional("capabilities.timeout", 30) * 1000;
+    private static final String HEADER_ETAG = "ETag";
+    private static final String HEADER_LAST_MODIFIED = "Last-Modified";
+    private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    private static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
     private static final Cache<RawCapabilitiesResponse> XML_CACHE = CacheManager.getCache(CapabilitiesParser.class.getName());
     static {
         // 10minutes
@@ -87,17 +92,45 @@ public abstract class CapabilitiesParser extends OskariComponent {
      * @throws ServiceException
      */
     public RawCapabilitiesResponse fetchCapabilities(String capabilitiesUrl, String user, String pass, String expectedContentType) throws IOException, ServiceException {
+        return fetchCapabilities(capabilitiesUrl, user, pass, expectedContentType, null, null);
+    }
+
+    /**
+     * Returns raw capabilities from the service as is or null if the service responds that the document
+     * hasn't been modified. Sends a conditional request when etag or lastModified is given.
+     * @param capabilitiesUrl full url to the capabilties document
+     * @param user credentials to use to access url
+     * @param pass credentials to use to access url
+     * @param expectedContentType the logic checks content type for the response
+     * @param etag ETag of the previous response (optional)
+     * @param lastModified Last-Modified of the previous response (optional)
+     * @return
+     * @throws IOException
+     * @throws ServiceException
+     */
+    public RawCapabilitiesResponse fetchCapabilities(String capabilitiesUrl, String user, String pass, String expectedContentType,
+                                                     String etag, String lastModified) throws IOException, ServiceException {
         String cacheKey = capabilitiesUrl + "_" + user;
         RawCapabilitiesResponse response = XML_CACHE.get(cacheKey);
         if (response != null) {
             return response;
         }
-        HttpURLConnection conn = IOHelper.getConnection(capabilitiesUrl, user, pass);
+        Map<String, String> headers = new HashMap<>();
+        if (etag != null) {
+            headers.put(HEADER_IF_NONE_MATCH, etag);
+        }
+        if (lastModified != null) {
+            headers.put(HEADER_IF_MODIFIED_SINCE, lastModified);
+        }
+        HttpURLConnection conn = IOHelper.getConnection(capabilitiesUrl, user, pass, null, headers);
         IOHelper.addIdentifierHeaders(conn);
-        conn = IOHelper.followRedirect(conn, user, pass, 5);
+        conn = IOHelper.followRedirect(conn, user, pass, null, headers, 5);
         conn.setReadTimeout(TIMEOUT_MS);
 
         int sc = conn.getResponseCode();
+        if (sc == HttpURLConnection.HTTP_NOT_MODIFIED && !headers.isEmpty()) {
+            return null;
+        }
         if (sc == HttpURLConnection.HTTP_FORBIDDEN || sc == HttpURLConnection.HTTP_UNAUTHORIZED) {
             throw new ServiceUnauthorizedException("Wrong credentials for service on " + capabilitiesUrl);
         }
@@ -112,6 +145,8 @@ public abstract class CapabilitiesParser extends OskariComponent {
         }
         response = new RawCapabilitiesResponse(conn.getURL().toString());
         response.setContentType(contentType);
+        response.setETag(conn.getHeaderField(HEADER_ETAG));
+        response.setLastModified(conn.getHeaderField(HEADER_LAST_MODIFIED));
         String encoding = IOHelper.getCharset(conn);
         response.setResponse(IOHelper.readBytes(conn), encoding);
         XML_CACHE.put(cacheKey, response);
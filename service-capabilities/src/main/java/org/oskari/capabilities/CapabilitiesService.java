@@ -2,18 +2,22 @@ package org.oskari.capabilities;
 
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import fi.nls.oskari.cache.Cache;
+import fi.nls.oskari.cache.CacheManager;
 import fi.nls.oskari.domain.map.OskariLayer;
 import fi.nls.oskari.log.LogFactory;
 import fi.nls.oskari.log.Logger;
 import fi.nls.oskari.service.OskariComponentManager;
 import fi.nls.oskari.service.ServiceException;
 import fi.nls.oskari.service.ServiceRuntimeException;
+import fi.nls.oskari.util.PropertyUtil;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.oskari.capabilities.ogc.OGCCapabilitiesParser;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static java.util.stream.Collectors.groupingBy;
@@ -21,8 +25,12 @@ import static java.util.stream.Collectors.groupingBy;
 public class CapabilitiesService {
     private static final Logger LOG = LogFactory.getLogger(CapabilitiesService.class);
     private static final ObjectMapper MAPPER = new ObjectMapper();
+    // capabilities document used for the latest update per service, kept in memory only
+    private static final Cache<CapabilitiesFingerprint> FINGERPRINTS = CacheManager.getCache(CapabilitiesService.class.getName() + ".fingerprints");
     static {
         MAPPER.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        // the scheduled update is run daily by default so keep fingerprints for a week (configurable)
+        FINGERPRINTS.setExpiration(TimeUnit.DAYS.toMillis(PropertyUtil.getOptional("capabilities.fingerprint.days", 7)));
     }
 
     /**
@@ -87,15 +95,52 @@ public class CapabilitiesService {
 
     /**
      * Updates capabilities for a collection of layers. This is optimized for mass update so we don't query the same
-     * capabilities for each layer.
+     * capabilities for each layer. Layers of services that haven't changed since the latest stored fingerprint are
+     * not modified (see updateCapabilities(List, Set, boolean)).
      * @param layers
      * @param systemCRSs
      * @return
      */
     public static List<CapabilitiesUpdateResult> updateCapabilities(List<OskariLayer> layers, Set<String> systemCRSs) {
+        return updateCapabilities(layers, systemCRSs, false);
+    }
+
+    /**
+     * Updates capabilities for a collection of layers. This is optimized for mass update so we don't query the same
+     * capabilities for each layer.
+     * Only modifies the objects. After the layers have been saved to the database storeFingerprints() should be
+     * called with the results of the saved layers so the next update can skip unchanged capabilities documents.
+     * @param layers
+     * @param systemCRSs
+     * @param force true to parse the capabilities even if the document hasn't changed (like when an admin requests the update)
+     * @return
+     */
+    public static List<CapabilitiesUpdateResult> updateCapabilities(List<OskariLayer> layers, Set<String> systemCRSs, boolean force) {
         List<CapabilitiesUpdateResult> results = new ArrayList<>(layers.size());
+        Map<ServiceConnectInfo, List<OskariLayer>> layersByUTV = groupByService(layers, results);
 
-        Map<ServiceConnectInfo, List<OskariLayer>> layersByUTV = layers.stream()
+        for (ServiceConnectInfo utv : layersByUTV.keySet()) {
+            List<OskariLayer> layersFromOneService = layersByUTV.get(utv);
+            ServiceCapabilities serviceCaps;
+            try {
+                serviceCaps = fetchCapabilities(utv, layersFromOneService, systemCRSs, force);
+            } catch (IOException | ServiceException e) {
+                results.addAll(errorResults(utv, layersFromOneService, e));
+                continue;
+            }
+            results.addAll(updateCapabilities(utv, layersFromOneService, serviceCaps, systemCRSs));
+        }
+        return results;
+    }
+
+    /**
+     * Groups layers by service. Adds an error result for layers that have no parser for the layer type.
+     * @param layers
+     * @param results list to add errors to
+     * @return
+     */
+    protected static Map<ServiceConnectInfo, List<OskariLayer>> groupByService(List<OskariLayer> layers, List<CapabilitiesUpdateResult> results) {
+        return layers.stream()
                 .filter(layer -> {
                     boolean hasParser = getParser(layer.getType()) != null;
                     if (!hasParser) {
@@ -104,48 +149,136 @@ public class CapabilitiesService {
                     return hasParser;
                 })
                 .collect(groupingBy(layer -> ServiceConnectInfo.fromLayer(layer)));
+    }
 
-        for (ServiceConnectInfo utv : layersByUTV.keySet()) {
-            List<OskariLayer> layersFromOneService = layersByUTV.get(utv);
-            Map<String, LayerCapabilities> serviceCaps;
-            try {
-                if (getParser(utv.getType()).isPreferSingleLayer()) {
-                    // WFS-layers are faster to update per layer since they make additional requests per featuretype
-                    serviceCaps = new HashMap<>(layersFromOneService.size());
-                    for (OskariLayer layer : layersFromOneService) {
-                        String name = layer.getName();
-                        serviceCaps.put(name, getLayerFromService(utv, name));
-                    }
-                } else {
-                    serviceCaps = getLayersFromService(utv);
-                }
-            } catch (IOException | ServiceException e) {
-                layersFromOneService.stream().forEach(layer -> {
-                    if (e instanceof IOException) {
-                        results.add(CapabilitiesUpdateResult.err(layer, CapabilitiesUpdateResult.ERR_FAILED_TO_FETCH_CAPABILITIES + "/" + utv.getUrl()));
-                    } else {
-                        results.add(CapabilitiesUpdateResult.err(layer, CapabilitiesUpdateResult.ERR_FAILED_TO_PARSE_CAPABILITIES + "/" + e.getMessage()));
-                    }
-                });
-                continue;
+    /**
+     * Fetches and parses capabilities for the layers of one service. Doesn't modify the layers.
+     * For OGC services that are parsed as a whole a conditional request is sent and the document is only
+     * parsed if it has changed since the layers were last updated from it.
+     * @param utv
+     * @param layersFromOneService
+     * @param systemCRSs
+     * @param force true to always parse the document
+     * @return
+     * @throws IOException
+     * @throws ServiceException
+     */
+    protected static ServiceCapabilities fetchCapabilities(ServiceConnectInfo utv, List<OskariLayer> layersFromOneService,
+                                                           Set<String> systemCRSs, boolean force)
+            throws IOException, ServiceException {
+        CapabilitiesParser parser = getParser(utv.getType());
+        if (parser.isPreferSingleLayer()) {
+            // WFS-layers are faster to update per layer since they make additional requests per featuretype
+            Map<String, LayerCapabilities> serviceCaps = new HashMap<>(layersFromOneService.size());
+            for (OskariLayer layer : layersFromOneService) {
+                String name = layer.getName();
+                serviceCaps.put(name, getLayerFromService(utv, name));
             }
+            return new ServiceCapabilities(serviceCaps, null);
+        }
+        if (!(parser instanceof OGCCapabilitiesParser)) {
+            return new ServiceCapabilities(getLayersFromService(utv), null);
+        }
+        OGCCapabilitiesParser ogcParser = (OGCCapabilitiesParser) parser;
+        CapabilitiesFingerprint previous = force ? null : FINGERPRINTS.get(getFingerprintKey(utv));
+        boolean covered = previous != null && previous.covers(layersFromOneService, systemCRSs);
+        String url = ogcParser.contructCapabilitiesUrl(utv.getUrl(), utv.getVersion());
+        RawCapabilitiesResponse response = ogcParser.fetchCapabilities(url, utv.getUser(), utv.getPass(),
+                ogcParser.getExpectedContentType(utv.getVersion()),
+                covered ? previous.getETag() : null,
+                covered ? previous.getLastModified() : null);
+        if (response == null || (covered && previous.getHash().equals(response.getHash()))) {
+            LOG.debug("Capabilities not modified for service, url:", utv.getUrl(), "type:", utv.getType(), "version:", utv.getVersion());
+            return ServiceCapabilities.UNCHANGED;
+        }
+        Set<String> layerNames = layersFromOneService.stream()
+                .map(OskariLayer::getName)
+                .collect(Collectors.toSet());
+        return new ServiceCapabilities(ogcParser.getLayersFromService(utv, response, layerNames), response);
+    }
 
-            layersFromOneService.stream().forEach(layer -> {
-                LayerCapabilities capsForSingleLayer = serviceCaps.get(layer.getName());
-                if (capsForSingleLayer == null) {
-                    LOG.warn("Error finding layer with name:", layer.getName(), "from Capabilities for service, url:", utv.getUrl(),
-                            "type:", utv.getType(), "version:", utv.getVersion());
-                    results.add(CapabilitiesUpdateResult.err(layer, CapabilitiesUpdateResult.ERR_LAYER_NOT_FOUND_IN_CAPABILITIES+ "/" + layer.getName() + " from " + utv.getUrl()));
-                    return;
-                }
-                layer.setCapabilities(toJSON(capsForSingleLayer, systemCRSs));
-                layer.setCapabilitiesLastUpdated(new Date());
-                results.add(CapabilitiesUpdateResult.ok(layer));
-            });
+    /**
+     * Updates capabilities JSON for the layers of one service from the parsed service capabilities.
+     * Successful results carry the fingerprint of the document so it can be stored with storeFingerprints()
+     * once the layers have been saved.
+     * @return result for each layer
+     */
+    protected static List<CapabilitiesUpdateResult> updateCapabilities(ServiceConnectInfo utv, List<OskariLayer> layersFromOneService,
+            ServiceCapabilities serviceCaps, Set<String> systemCRSs) {
+        if (serviceCaps.isUnchanged()) {
+            return layersFromOneService.stream()
+                    .map(layer -> CapabilitiesUpdateResult.unchanged(layer))
+                    .collect(Collectors.toList());
+        }
+        List<CapabilitiesUpdateResult> results = new ArrayList<>(layersFromOneService.size());
+        layersFromOneService.stream().forEach(layer -> {
+            LayerCapabilities capsForSingleLayer = serviceCaps.getLayers().get(layer.getName());
+            if (capsForSingleLayer == null) {
+                LOG.warn("Error finding layer with name:", layer.getName(), "from Capabilities for service, url:", utv.getUrl(),
+                        "type:", utv.getType(), "version:", utv.getVersion());
+                results.add(CapabilitiesUpdateResult.err(layer, CapabilitiesUpdateResult.ERR_LAYER_NOT_FOUND_IN_CAPABILITIES+ "/" + layer.getName() + " from " + utv.getUrl()));
+                return;
+            }
+            layer.setCapabilities(toJSON(capsForSingleLayer, systemCRSs));
+            layer.setCapabilitiesLastUpdated(new Date());
+            results.add(CapabilitiesUpdateResult.ok(layer));
+        });
+        if (serviceCaps.getResponse() != null) {
+            String key = getFingerprintKey(utv);
+            CapabilitiesFingerprint fingerprint = new CapabilitiesFingerprint(serviceCaps.getResponse(), systemCRSs,
+                    Collections.emptySet());
+            results.stream()
+                    .filter(res -> res.getErrorMessage() == null)
+                    .forEach(res -> res.setFingerprint(key, fingerprint));
         }
         return results;
     }
 
+    /**
+     * Remembers the capabilities documents that the layers were updated from. Should only be called
+     * with results of layers that have been successfully saved to the database so a failed save doesn't
+     * make the next update skip the layers.
+     * @param savedResults results of saved layers
+     */
+    public static void storeFingerprints(Collection<CapabilitiesUpdateResult> savedResults) {
+        Map<String, List<CapabilitiesUpdateResult>> resultsByService = savedResults.stream()
+                .filter(res -> res.getFingerprint() != null)
+                .collect(groupingBy(res -> res.getFingerprintKey()));
+        resultsByService.forEach((key, results) -> {
+            CapabilitiesFingerprint document = results.get(0).getFingerprint();
+            Set<String> layerIds = results.stream()
+                    .map(res -> res.getLayerId())
+                    .collect(Collectors.toSet());
+            CapabilitiesFingerprint previous = FINGERPRINTS.get(key);
+            if (document.isSameDocument(previous)) {
+                // layers of the same service might be updated at different rates
+                layerIds.addAll(previous.getLayerIds());
+            }
+            FINGERPRINTS.put(key, document.withLayerIds(layerIds));
+        });
+    }
+
+    static CapabilitiesFingerprint getFingerprint(ServiceConnectInfo utv) {
+        return FINGERPRINTS.get(getFingerprintKey(utv));
+    }
+
+    private static String getFingerprintKey(ServiceConnectInfo utv) {
+        return utv.getType() + "_" + utv.getVersion() + "_" + utv.getUrl() + "_" + utv.getUser();
+    }
+
+    /**
+     * @return error result for each layer of a service that failed to update
+     */
+    protected static List<CapabilitiesUpdateResult> errorResults(ServiceConnectInfo utv, List<OskariLayer> layersFromOneService, Exception e) {
+        return layersFromOneService.stream().map(layer -> {
+            if (e instanceof IOException) {
+                return CapabilitiesUpdateResult.err(layer, CapabilitiesUpdateResult.ERR_FAILED_TO_FETCH_CAPABILITIES + "/" + utv.getUrl());
+            } else {
+                return CapabilitiesUpdateResult.err(layer, CapabilitiesUpdateResult.ERR_FAILED_TO_PARSE_CAPABILITIES + "/" + e.getMessage());
+            }
+        }).collect(Collectors.toList());
+    }
+
     /**
      * Serializes LayerCapabilities to JSON that can be saved in oskari_maplayer.capabilities.
      * @param caps
@@ -289,4 +422,37 @@ public class CapabilitiesService {
         }
         return crs;
     }
+
+    /**
+     * Parsed capabilities for the layers of one service
+     */
+    protected static class ServiceCapabilities {
+        protected static final ServiceCapabilities UNCHANGED = new ServiceCapabilities(null, null);
+
+        private final Map<String, LayerCapabilities> layers;
+        private final RawCapabilitiesResponse response;
+
+        protected ServiceCapabilities(Map<String, LayerCapabilities> layers, RawCapabilitiesResponse response) {
+            this.layers = layers;
+            this.response = response;
+        }
+
+        /**
+         * @return true if the capabilities document hasn't changed since the layers were last updated
+         */
+        public boolean isUnchanged() {
+            return this == UNCHANGED;
+        }
+
+        public Map<String, LayerCapabilities> getLayers() {
+            return layers;
+        }
+
+        /**
+         * @return the parsed capabilities document or null if it's not used to detect changes
+         */
+        public RawCapabilitiesResponse getResponse() {
+            return response;
+        }
+    }
 }
@@ -0,0 +1,119 @@
+package org.oskari.capabilities;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Results of updating capabilities for multiple services with timing per service
+ */
+public class CapabilitiesUpdateReport {
+
+    private final List<CapabilitiesUpdateResult> results = new ArrayList<>();
+    private final List<ServiceReport> services = new ArrayList<>();
+    private long durationMs;
+
+    void addResults(List<CapabilitiesUpdateResult> results) {
+        this.results.addAll(results);
+    }
+
+    void addService(ServiceReport service) {
+        services.add(service);
+    }
+
+    void setDurationMs(long durationMs) {
+        this.durationMs = durationMs;
+    }
+
+    /**
+     * @return result for each layer
+     */
+    public List<CapabilitiesUpdateResult> getResults() {
+        return Collections.unmodifiableList(results);
+    }
+
+    public List<ServiceReport> getServices() {
+        return Collections.unmodifiableList(services);
+    }
+
+    /**
+     * @return total duration of the update
+     */
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    /**
+     * @param count max number of services to return
+     * @return services that took longest to update
+     */
+    public List<ServiceReport> getSlowest(int count) {
+        List<ServiceReport> sorted = new ArrayList<>(services);
+        sorted.sort(Comparator.comparingLong(ServiceReport::getDurationMs).reversed());
+        return sorted.subList(0, Math.min(count, sorted.size()));
+    }
+
+    public static class ServiceReport {
+        private final String url;
+        private final String type;
+        private final String version;
+        private final int layerCount;
+        private final long waitMs;
+        private final long durationMs;
+        private final String error;
+
+        ServiceReport(ServiceConnectInfo service, int layerCount, long waitMs, long durationMs, String error) {
+            this.url = service.getUrl();
+            this.type = service.getType();
+            this.version = service.getVersion();
+            this.layerCount = layerCount;
+            this.waitMs = waitMs;
+            this.durationMs = durationMs;
+            this.error = error;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public int getLayerCount() {
+            return layerCount;
+        }
+
+        /**
+         * @return time waited for a free slot (per-host limit) before fetching
+         */
+        public long getWaitMs() {
+            return waitMs;
+        }
+
+        /**
+         * @return time taken to fetch and parse capabilities
+         */
+        public long getDurationMs() {
+            return durationMs;
+        }
+
+        /**
+         * @return null if capabilities were updated
+         */
+        public String getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            return type + " " + version + " " + url + " layers: " + layerCount + " took: " + durationMs + "ms"
+                    + (error == null ? "" : " error: " + error);
+        }
+    }
+}
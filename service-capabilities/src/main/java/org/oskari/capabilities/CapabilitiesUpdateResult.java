@@ -8,21 +8,34 @@ public class CapabilitiesUpdateResult {
     protected static final String ERR_FAILED_TO_FETCH_CAPABILITIES = "Failed to get Capabilities data";
     protected static final String ERR_LAYER_NOT_FOUND_IN_CAPABILITIES = "Could not find layer from Capabilities";
     protected static final String ERR_FAILED_TO_PARSE_CAPABILITIES = "Failed to parse Capabilities";
+    protected static final String ERR_TIMEOUT = "Timed out updating Capabilities";
 
     private final String layerId;
     private final String errorMessage;
+    private final boolean unchanged;
+    // capabilities document the layer was updated from, stored by CapabilitiesService.storeFingerprints()
+    private String fingerprintKey;
+    private CapabilitiesFingerprint fingerprint;
 
-    private CapabilitiesUpdateResult(OskariLayer layer, String errorMessage) {
+    private CapabilitiesUpdateResult(OskariLayer layer, String errorMessage, boolean unchanged) {
         this.layerId = Integer.toString(layer.getId());
         this.errorMessage = errorMessage;
+        this.unchanged = unchanged;
     }
 
     public static CapabilitiesUpdateResult ok(OskariLayer layer) {
-        return new CapabilitiesUpdateResult(layer, null);
+        return new CapabilitiesUpdateResult(layer, null, false);
+    }
+
+    /**
+     * Capabilities of the service haven't changed since the layer was last updated. The layer is not modified.
+     */
+    public static CapabilitiesUpdateResult unchanged(OskariLayer layer) {
+        return new CapabilitiesUpdateResult(layer, null, true);
     }
 
     public static CapabilitiesUpdateResult err(OskariLayer layer, String errorMessage) {
-        return new CapabilitiesUpdateResult(layer, errorMessage);
+        return new CapabilitiesUpdateResult(layer, errorMessage, false);
     }
 
     public String getLayerId() {
@@ -33,4 +46,24 @@ public class CapabilitiesUpdateResult {
         return errorMessage;
     }
 
+    /**
+     * @return true if the layer was skipped since the capabilities haven't changed
+     */
+    public boolean isUnchanged() {
+        return unchanged;
+    }
+
+    void setFingerprint(String key, CapabilitiesFingerprint fingerprint) {
+        this.fingerprintKey = key;
+        this.fingerprint = fingerprint;
+    }
+
+    String getFingerprintKey() {
+        return fingerprintKey;
+    }
+
+    CapabilitiesFingerprint getFingerprint() {
+        return fingerprint;
+    }
+
 }
\ No newline at end of file
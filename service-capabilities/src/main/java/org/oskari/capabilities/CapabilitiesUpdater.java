@@ -0,0 +1,221 @@
+package org.oskari.capabilities;
+
+import fi.nls.oskari.domain.map.OskariLayer;
+import fi.nls.oskari.log.LogFactory;
+import fi.nls.oskari.log.Logger;
+import fi.nls.oskari.service.ServiceException;
+import fi.nls.oskari.util.PropertyUtil;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Updates capabilities for layers of multiple services concurrently. Capabilities are fetched and
+ * parsed for each service in a thread pool while the layers are updated in the calling thread.
+ *
+ * Configuration:
+ * - capabilities.update.threads - number of services to update at the same time (defaults to 4)
+ * - capabilities.update.threads.host - number of services on the same host to update at the same time (defaults to 2)
+ * - capabilities.update.timeout - seconds to wait for a single service before giving up (defaults to 120)
+ */
+public class CapabilitiesUpdater {
+
+    private static final Logger LOG = LogFactory.getLogger(CapabilitiesUpdater.class);
+
+    private final int threads;
+    private final int threadsPerHost;
+    private final long timeoutMs;
+
+    public CapabilitiesUpdater() {
+        this(PropertyUtil.getOptional("capabilities.update.threads", 4),
+                PropertyUtil.getOptional("capabilities.update.threads.host", 2),
+                TimeUnit.SECONDS.toMillis(PropertyUtil.getOptional("capabilities.update.timeout", 120)));
+    }
+
+    public CapabilitiesUpdater(int threads, int threadsPerHost, long timeoutMs) {
+        this.threads = Math.max(1, threads);
+        this.threadsPerHost = Math.max(1, threadsPerHost);
+        this.timeoutMs = timeoutMs;
+    }
+
+    /**
+     * Updates capabilities JSON for the layers given as parameter. Capabilities documents that haven't changed
+     * since the stored fingerprint are not parsed again.
+     * Only modifies the objects. Saving the modified layers to database is not done by this method.
+     * Call CapabilitiesService.storeFingerprints() with the results of the layers once they have been saved.
+     * @param layers
+     * @param systemCRSs
+     * @return results for each layer and timing for each service
+     */
+    public CapabilitiesUpdateReport update(List<OskariLayer> layers, Set<String> systemCRSs) {
+        long start = System.nanoTime();
+        CapabilitiesUpdateReport report = new CapabilitiesUpdateReport();
+        List<CapabilitiesUpdateResult> unsupported = new ArrayList<>();
+        Map<ServiceConnectInfo, List<OskariLayer>> layersByService = CapabilitiesService.groupByService(layers, unsupported);
+        report.addResults(unsupported);
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, layersByService.size())),
+                new UpdateThreadFactory());
+        ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(new UpdateThreadFactory());
+        try {
+            Map<String, Semaphore> hostLimits = new HashMap<>();
+            List<ServiceTask> tasks = new ArrayList<>(layersByService.size());
+            for (ServiceConnectInfo service : interleaveByHost(layersByService.keySet())) {
+                Semaphore hostLimit = hostLimits.computeIfAbsent(getHost(service.getUrl()), host -> new Semaphore(threadsPerHost));
+                ServiceTask task = new ServiceTask(service, layersByService.get(service), systemCRSs, hostLimit, watchdog);
+                tasks.add(task);
+                executor.execute(task);
+            }
+            for (ServiceTask task : tasks) {
+                collect(task, systemCRSs, report);
+            }
+        } finally {
+            executor.shutdownNow();
+            watchdog.shutdownNow();
+        }
+        report.setDurationMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return report;
+    }
+
+    private void collect(ServiceTask task, Set<String> systemCRSs, CapabilitiesUpdateReport report) {
+        ServiceConnectInfo service = task.service;
+        String error = null;
+        try {
+            CapabilitiesService.ServiceCapabilities serviceCaps = task.get();
+            report.addResults(CapabilitiesService.updateCapabilities(service, task.layers, serviceCaps, systemCRSs));
+        } catch (CancellationException e) {
+            LOG.warn("Timed out updating capabilities for service, url:", service.getUrl(), "type:", service.getType());
+            error = CapabilitiesUpdateResult.ERR_TIMEOUT;
+            report.addResults(task.layers.stream()
+                    .map(layer -> CapabilitiesUpdateResult.err(layer, CapabilitiesUpdateResult.ERR_TIMEOUT + "/" + service.getUrl()))
+                    .collect(Collectors.toList()));
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            error = cause.getMessage();
+            Exception ex;
+            if (cause instanceof IOException || cause instanceof ServiceException) {
+                ex = (Exception) cause;
+            } else if (cause instanceof Exception) {
+                ex = new ServiceException(cause.getMessage(), (Exception) cause);
+            } else {
+                // f.ex. OutOfMemoryError or StackOverflowError from a parser
+                ex = new ServiceException(String.valueOf(cause));
+            }
+            if (!(cause instanceof IOException || cause instanceof ServiceException)) {
+                LOG.warn(cause, "Unexpected error updating capabilities for service, url:", service.getUrl());
+            }
+            report.addResults(CapabilitiesService.errorResults(service, task.layers, ex));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            error = "Interrupted";
+            report.addResults(CapabilitiesService.errorResults(service, task.layers, new ServiceException(error)));
+        }
+        report.addService(new CapabilitiesUpdateReport.ServiceReport(service, task.layers.size(),
+                task.getWaitMs(), task.getDurationMs(), error));
+    }
+
+    /**
+     * Orders services so that consecutive services are on different hosts when possible
+     */
+    protected static List<ServiceConnectInfo> interleaveByHost(Collection<ServiceConnectInfo> services) {
+        Map<String, Deque<ServiceConnectInfo>> byHost = new LinkedHashMap<>();
+        for (ServiceConnectInfo service : services) {
+            byHost.computeIfAbsent(getHost(service.getUrl()), host -> new ArrayDeque<>()).add(service);
+        }
+        List<ServiceConnectInfo> ordered = new ArrayList<>(services.size());
+        while (!byHost.isEmpty()) {
+            Iterator<Deque<ServiceConnectInfo>> it = byHost.values().iterator();
+            while (it.hasNext()) {
+                Deque<ServiceConnectInfo> queue = it.next();
+                ordered.add(queue.poll());
+                if (queue.isEmpty()) {
+                    it.remove();
+                }
+            }
+        }
+        return ordered;
+    }
+
+    protected static String getHost(String url) {
+        try {
+            return new URL(url).getHost().toLowerCase();
+        } catch (MalformedURLException | NullPointerException e) {
+            return String.valueOf(url);
+        }
+    }
+
+    /**
+     * Fetches and parses capabilities for one service. The timeout is counted from the point
+     * the service gets a slot from the per-host limit. On timeout the task is cancelled so the
+     * update can continue with other services.
+     */
+    private class ServiceTask extends FutureTask<CapabilitiesService.ServiceCapabilities> {
+        private final ServiceConnectInfo service;
+        private final List<OskariLayer> layers;
+        private final Semaphore hostLimit;
+        private final ScheduledExecutorService watchdog;
+        private final long queued = System.nanoTime();
+        private volatile long started;
+        private volatile long finished;
+
+        ServiceTask(ServiceConnectInfo service, List<OskariLayer> layers, Set<String> systemCRSs, Semaphore hostLimit,
+                    ScheduledExecutorService watchdog) {
+            super(() -> CapabilitiesService.fetchCapabilities(service, layers, systemCRSs, false));
+            this.service = service;
+            this.layers = layers;
+            this.hostLimit = hostLimit;
+            this.watchdog = watchdog;
+        }
+
+        @Override
+        public void run() {
+            try {
+                hostLimit.acquire();
+            } catch (InterruptedException e) {
+                cancel(false);
+                return;
+            }
+            try {
+                started = System.nanoTime();
+                ScheduledFuture<?> timeout = watchdog.schedule(() -> cancel(true), timeoutMs, TimeUnit.MILLISECONDS);
+                try {
+                    super.run();
+                } finally {
+                    timeout.cancel(false);
+                }
+            } finally {
+                finished = System.nanoTime();
+                hostLimit.release();
+            }
+        }
+
+        long getWaitMs() {
+            long start = started == 0 ? System.nanoTime() : started;
+            return TimeUnit.NANOSECONDS.toMillis(start - queued);
+        }
+
+        long getDurationMs() {
+            if (started == 0) {
+                return 0;
+            }
+            long end = finished == 0 ? System.nanoTime() : finished;
+            return TimeUnit.NANOSECONDS.toMillis(end - started);
+        }
+    }
+
+    private static class UpdateThreadFactory implements ThreadFactory {
+        private static final AtomicInteger COUNTER = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "capabilities-update-" + COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
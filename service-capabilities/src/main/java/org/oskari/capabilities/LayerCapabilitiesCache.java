@@ -0,0 +1,98 @@
+package org.oskari.capabilities;
+
+import fi.nls.oskari.cache.Cache;
+import fi.nls.oskari.cache.CacheManager;
+import fi.nls.oskari.domain.map.OskariLayer;
+import org.json.JSONObject;
+
+import java.util.Date;
+import java.util.Objects;
+
+/**
+ * Keeps typed capabilities (LayerCapabilitiesWMS/WMTS/WFS) of layers so the capabilities JSON of a layer doesn't
+ * need to be deserialized on each request. Entries are keyed by layer id and are only used while the
+ * capabilitiesLastUpdated timestamp of the layer matches. OskariLayerService removes the entry when the layer
+ * is updated or deleted.
+ *
+ * Note! The returned objects are shared between requests and should not be modified.
+ */
+public class LayerCapabilitiesCache {
+
+    private static final Cache<CachedCapabilities> CACHE = CacheManager.getCache(LayerCapabilitiesCache.class.getName());
+
+    /**
+     * Returns the capabilities of the layer deserialized to the class of the layer type.
+     * @param layer
+     * @return capabilities or null if the layer doesn't have capabilities
+     */
+    public static <T extends LayerCapabilities> T get(OskariLayer layer) {
+        return get(layer, layer == null ? null : layer.getType());
+    }
+
+    /**
+     * Returns the capabilities of the layer deserialized to the class of the given type. Used when a layer of
+     * another type (like a user layer) is handled as WFS.
+     * @param layer
+     * @param type layer type like OskariLayer.TYPE_WFS
+     * @return capabilities or null if the layer doesn't have capabilities
+     */
+    public static <T extends LayerCapabilities> T get(OskariLayer layer, String type) {
+        if (layer == null) {
+            return null;
+        }
+        JSONObject json = layer.getCapabilities();
+        if (json == null) {
+            return null;
+        }
+        if (layer.getId() <= 0) {
+            // not a stored layer -> nothing to key the cache with
+            return CapabilitiesService.fromJSON(json.toString(), type);
+        }
+        String key = Integer.toString(layer.getId());
+        CachedCapabilities cached = CACHE.get(key);
+        if (cached != null && cached.isValidFor(layer, type)) {
+            return (T) cached.capabilities;
+        }
+        LayerCapabilities caps = CapabilitiesService.fromJSON(json.toString(), type);
+        CACHE.put(key, new CachedCapabilities(json, layer.getCapabilitiesLastUpdated(), type, caps));
+        return (T) caps;
+    }
+
+    /**
+     * Removes cached capabilities for the layer. Called when the layer is updated.
+     * @param layerId
+     */
+    public static void remove(int layerId) {
+        CACHE.remove(Integer.toString(layerId));
+    }
+
+    public static void flush() {
+        CACHE.flush(true);
+    }
+
+    private static class CachedCapabilities {
+        private final JSONObject source;
+        private final Date updated;
+        private final String type;
+        private final LayerCapabilities capabilities;
+
+        CachedCapabilities(JSONObject source, Date updated, String type, LayerCapabilities capabilities) {
+            this.source = source;
+            this.updated = updated;
+            this.type = type;
+            this.capabilities = capabilities;
+        }
+
+        boolean isValidFor(OskariLayer layer, String requestedType) {
+            if (!Objects.equals(type, requestedType)) {
+                return false;
+            }
+            if (source == layer.getCapabilities()) {
+                // same instance (from the layer cache) -> no need to compare timestamps
+                return true;
+            }
+            // layers loaded separately from the db have their own JSON instance but the same update timestamp
+            return updated != null && Objects.equals(updated, layer.getCapabilitiesLastUpdated());
+        }
+    }
+}
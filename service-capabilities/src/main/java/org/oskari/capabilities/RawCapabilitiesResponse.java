@@ -1,5 +1,7 @@
 package org.oskari.capabilities;
 
+import org.apache.commons.codec.digest.DigestUtils;
+
 import java.io.Serializable;
 
 public class RawCapabilitiesResponse implements Serializable {
@@ -8,6 +10,9 @@ public class RawCapabilitiesResponse implements Serializable {
     private byte[] response;
     private String encoding;
     private String contentType;
+    private String etag;
+    private String lastModified;
+    private String hash;
 
     public RawCapabilitiesResponse(String url) {
         this.url = url;
@@ -37,6 +42,39 @@ public class RawCapabilitiesResponse implements Serializable {
     public void setResponse(byte[] resp, String encoding) {
         this.response = resp;
         this.encoding = encoding;
+        this.hash = null;
+    }
+
+    /**
+     * @return value of ETag header from the service or null if not sent
+     */
+    public String getETag() {
+        return etag;
+    }
+
+    public void setETag(String etag) {
+        this.etag = etag;
+    }
+
+    /**
+     * @return value of Last-Modified header from the service or null if not sent
+     */
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(String lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * @return SHA-256 of the response bytes as hex or null if there's no response
+     */
+    public String getHash() {
+        if (hash == null && response != null) {
+            hash = DigestUtils.sha256Hex(response);
+        }
+        return hash;
     }
 
     @Override
@@ -1,18 +1,24 @@
 package org.oskari.capabilities.ogc;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import fi.nls.oskari.domain.map.OskariLayer;
 import org.oskari.capabilities.ogc.wmts.ResourceUrl;
 import org.oskari.capabilities.ogc.wmts.TileMatrixLink;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public class LayerCapabilitiesWMTS extends LayerCapabilitiesOGC {
 
     private List<ResourceUrl> resourceUrls;
     private List<TileMatrixLink> links;
+    // links grouped by short syntax EPSG-code of the tile matrix set for looking up links for a projection
+    private Map<String, List<TileMatrixLink>> linksByCrs = Collections.emptyMap();
     private Set<String> infoFormats;
 
     public void setInfoFormats(Set<String> infoFormats) {
@@ -60,5 +66,26 @@ public class LayerCapabilitiesWMTS extends LayerCapabilitiesOGC {
 
     public void setTileMatrixLinks(List<TileMatrixLink> links) {
         this.links = links;
+        if (links == null) {
+            linksByCrs = Collections.emptyMap();
+            return;
+        }
+        Map<String, List<TileMatrixLink>> byCrs = new HashMap<>();
+        for (TileMatrixLink link : links) {
+            if (link.getTileMatrixSet() == null) {
+                continue;
+            }
+            byCrs.computeIfAbsent(link.getTileMatrixSet().getShortCrs(), crs -> new ArrayList<>()).add(link);
+        }
+        linksByCrs = byCrs;
+    }
+
+    /**
+     * @param epsg projection in short syntax like "EPSG:3067"
+     * @return links to tile matrix sets in the projection in the same order as getTileMatrixLinks()
+     */
+    @JsonIgnore
+    public List<TileMatrixLink> getTileMatrixLinks(String epsg) {
+        return linksByCrs.getOrDefault(epsg, Collections.emptyList());
     }
 }
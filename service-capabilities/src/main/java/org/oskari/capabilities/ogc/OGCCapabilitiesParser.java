@@ -8,8 +8,10 @@ import org.oskari.capabilities.RawCapabilitiesResponse;
 import org.oskari.capabilities.ServiceConnectInfo;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 public abstract class OGCCapabilitiesParser extends CapabilitiesParser {
 
@@ -41,8 +43,44 @@ public abstract class OGCCapabilitiesParser extends CapabilitiesParser {
 
         String capabilitiesUrl = contructCapabilitiesUrl(src.getUrl(), src.getVersion());
         RawCapabilitiesResponse response = fetchCapabilities(capabilitiesUrl, src.getUser(), src.getPass(), getExpectedContentType(src.getVersion()));
-        String validResponse = validateResponse(response, src.getVersion());
-        Map<String, LayerCapabilities> layers = parseLayers(validResponse, src.getVersion(), src);
+        return getLayersFromService(src, response);
+    }
+
+    /**
+     * Parses only the requested layer from the capabilities document when the parser supports it.
+     */
+    public LayerCapabilities getLayerFromService(ServiceConnectInfo src, String layer) throws IOException, ServiceException {
+        if (layer == null || layer.isEmpty()) {
+            throw new ServiceException("No layer specified");
+        }
+        String capabilitiesUrl = contructCapabilitiesUrl(src.getUrl(), src.getVersion());
+        RawCapabilitiesResponse response = fetchCapabilities(capabilitiesUrl, src.getUser(), src.getPass(), getExpectedContentType(src.getVersion()));
+        return getLayersFromService(src, response, Collections.singleton(layer)).get(layer);
+    }
+
+    /**
+     * Parses all layer capabilities from an already fetched capabilities document.
+     * @param src connection info to the service
+     * @param response raw capabilities document of the service
+     * @return
+     * @throws ServiceException
+     */
+    public Map<String, LayerCapabilities> getLayersFromService(ServiceConnectInfo src, RawCapabilitiesResponse response) throws ServiceException {
+        return getLayersFromService(src, response, null);
+    }
+
+    /**
+     * Parses layer capabilities from an already fetched capabilities document.
+     * @param src connection info to the service
+     * @param response raw capabilities document of the service
+     * @param layerNames names of the layers that are needed or null for all layers. Parsers may skip other
+     *                   layers while parsing but the result can also include them.
+     * @return
+     * @throws ServiceException
+     */
+    public Map<String, LayerCapabilities> getLayersFromService(ServiceConnectInfo src, RawCapabilitiesResponse response,
+                                                               Set<String> layerNames) throws ServiceException {
+        Map<String, LayerCapabilities> layers = parseLayers(response, src, layerNames);
         layers.values().stream().forEach(l -> {
             l.setUrl(response.getUrl());
             // parser name == layer type
@@ -51,6 +89,13 @@ public abstract class OGCCapabilitiesParser extends CapabilitiesParser {
         return layers;
     }
 
+    // allow overriding for parsers that read the raw response as a stream instead of a String/DOM
+    protected Map<String, LayerCapabilities> parseLayers(RawCapabilitiesResponse response, ServiceConnectInfo src,
+                                                         Set<String> layerNames) throws ServiceException {
+        String validResponse = validateResponse(response, src.getVersion());
+        return parseLayers(validResponse, src.getVersion(), src);
+    }
+
     protected abstract Map<String, LayerCapabilities> parseLayers(String capabilities) throws ServiceException;
 
     // allow overriding for OGC API services etc
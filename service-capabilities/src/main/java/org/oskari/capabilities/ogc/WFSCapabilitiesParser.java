@@ -16,7 +16,9 @@ import org.oskari.capabilities.ogc.api.OGCAPIFeaturesService;
 import org.oskari.capabilities.ogc.wfs.DescribeFeatureTypeParser;
 import org.oskari.capabilities.ogc.wfs.DescribeFeatureTypeProvider;
 import org.oskari.capabilities.ogc.wfs.WFSCapsParser;
+import org.oskari.capabilities.ogc.wfs.WFSCapsStreamParser;
 
+import javax.xml.stream.XMLStreamReader;
 import java.io.IOException;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -78,13 +80,11 @@ public class WFSCapabilitiesParser extends OGCCapabilitiesParser {
             enhanceOGCAPIFeaturesCapabilitiesData(collection, src);
             return collection;
         }
-        String capabilitiesUrl = contructCapabilitiesUrl(src.getUrl(), src.getVersion());
-        RawCapabilitiesResponse response = fetchCapabilities(capabilitiesUrl, src.getUser(), src.getPass(), getExpectedContentType(src.getVersion()));
-        String validResponse = validateResponse(response, src.getVersion());
-        LayerCapabilities singleLayer = parseSingleLayer(validResponse, src, featureType);
-        singleLayer.setUrl(response.getUrl());
-        // parser name == layer type
-        singleLayer.setType(getName());
+        // only the requested featureType is parsed and described
+        LayerCapabilities singleLayer = super.getLayerFromService(src, featureType);
+        if (singleLayer == null) {
+            throw new ServiceException("Layer not found: " + featureType);
+        }
         return singleLayer;
     }
 
@@ -123,6 +123,24 @@ public class WFSCapabilitiesParser extends OGCCapabilitiesParser {
         }
     }
 
+    protected Map<String, LayerCapabilities> parseLayers(RawCapabilitiesResponse response, ServiceConnectInfo src,
+                                                         Set<String> layerNames) throws ServiceException {
+        if (OGC_API_VERSION.equals(src.getVersion())) {
+            return super.parseLayers(response, src, layerNames);
+        }
+        XMLStreamReader reader = XmlStreamHelper.createReader(response);
+        try {
+            List<LayerCapabilitiesWFS> caps = WFSCapsStreamParser.parseCapabilities(reader, layerNames);
+            // enhance with describe feature type data
+            caps.forEach(c -> enhanceCapabilitiesData(c, src));
+            return listToMap(caps);
+        } catch (Exception e) {
+            throw new ServiceException("Unable to parse layers for WFS capabilities", e);
+        } finally {
+            XmlStreamHelper.close(reader);
+        }
+    }
+
     public String contructCapabilitiesUrl(String url, String version) {
         if (OGC_API_VERSION.equals(version)) {
             return OGCAPIFeaturesService.constructUrl(url);
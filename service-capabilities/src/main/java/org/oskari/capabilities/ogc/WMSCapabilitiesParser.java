@@ -4,11 +4,16 @@ import fi.nls.oskari.annotation.Oskari;
 import fi.nls.oskari.domain.map.OskariLayer;
 import fi.nls.oskari.service.ServiceException;
 import org.oskari.capabilities.LayerCapabilities;
+import org.oskari.capabilities.RawCapabilitiesResponse;
+import org.oskari.capabilities.ServiceConnectInfo;
 import org.oskari.capabilities.ogc.wms.WMSCapsParser;
+import org.oskari.capabilities.ogc.wms.WMSCapsStreamParser;
 
+import javax.xml.stream.XMLStreamReader;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Oskari(OskariLayer.TYPE_WMS)
 public class WMSCapabilitiesParser extends OGCCapabilitiesParser {
@@ -29,6 +34,22 @@ public class WMSCapabilitiesParser extends OGCCapabilitiesParser {
         }
     }
 
+    protected Map<String, LayerCapabilities> parseLayers(RawCapabilitiesResponse response, ServiceConnectInfo src,
+                                                         Set<String> layerNames) throws ServiceException {
+        XMLStreamReader reader = XmlStreamHelper.createReader(response);
+        try {
+            // the whole tree is parsed since group layers are referenced as parents of the layers
+            List<LayerCapabilitiesWMS> layers = WMSCapsStreamParser.parseCapabilities(reader);
+            Map<String, LayerCapabilities> value = new HashMap<>();
+            addLayers(value, layers, null);
+            return value;
+        } catch (Exception e) {
+            throw new ServiceException("Unable to parse layers for WMS capabilities", e);
+        } finally {
+            XmlStreamHelper.close(reader);
+        }
+    }
+
     private void addLayers(Map<String, LayerCapabilities> value, List<LayerCapabilitiesWMS> layers, String parent) {
         if (layers == null) {
             return;
@@ -0,0 +1,32 @@
+package org.oskari.capabilities.ogc;
+
+import fi.nls.oskari.service.ServiceException;
+import org.oskari.capabilities.RawCapabilitiesResponse;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * StAX helpers for capabilities documents. The generic parts are in org.oskari.xml.XmlStreamHelper.
+ */
+public class XmlStreamHelper extends org.oskari.xml.XmlStreamHelper {
+
+    /**
+     * Creates a reader for the response positioned on the root element. Uses the encoding from the XML prolog,
+     * the encoding of the response or UTF-8 in that order like CapabilitiesValidator.
+     * @param response
+     * @return
+     * @throws ServiceException if the response is not XML
+     */
+    public static XMLStreamReader createReader(RawCapabilitiesResponse response) throws ServiceException {
+        byte[] data = response.getResponse();
+        if (data == null) {
+            throw new ServiceException("Empty response from: " + response.getUrl());
+        }
+        try {
+            return createReader(data, response.getEncoding());
+        } catch (XMLStreamException e) {
+            throw new ServiceException("Failed to parse XML from response", e);
+        }
+    }
+}
@@ -117,8 +117,11 @@ public class WFSCapsParser {
         if (boundingBox == null) {
             return null;
         }
-        String low = XmlHelper.getChildValue(boundingBox, "LowerCorner");
-        String up = XmlHelper.getChildValue(boundingBox, "UpperCorner");
+        return parseGeoGraphicBbox(XmlHelper.getChildValue(boundingBox, "LowerCorner"),
+                XmlHelper.getChildValue(boundingBox, "UpperCorner"));
+    }
+
+    protected static BoundingBox parseGeoGraphicBbox(String low, String up) {
         if (low == null || up == null) {
             return null;
         }
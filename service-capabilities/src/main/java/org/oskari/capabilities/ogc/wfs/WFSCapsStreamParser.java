@@ -0,0 +1,243 @@
+package org.oskari.capabilities.ogc.wfs;
+
+import org.oskari.capabilities.ogc.LayerCapabilitiesWFS;
+import org.oskari.capabilities.ogc.XmlStreamHelper;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.util.*;
+
+/**
+ * Parses WFS 1.1.0 and 2.0.0 capabilities with StAX producing the same results as WFSCapsParser.
+ * Feature types that are not requested are skipped.
+ */
+public class WFSCapsStreamParser extends WFSCapsParser {
+
+    /**
+     * @param reader positioned on the root element
+     * @param featureTypes names of feature types to parse or null to parse all of them
+     * @return
+     * @throws XMLStreamException
+     * @throws IllegalArgumentException if the document is not WFS capabilities or GetFeature is not supported
+     */
+    public static List<LayerCapabilitiesWFS> parseCapabilities(XMLStreamReader reader, Set<String> featureTypes)
+            throws XMLStreamException, IllegalArgumentException {
+        String rootEl = XmlStreamHelper.getLocalName(reader);
+        if (!"WFS_Capabilities".equals(rootEl)) {
+            throw new IllegalArgumentException("Unexpected XML element: '" + rootEl + "'");
+        }
+        String version = XmlStreamHelper.getAttributeValue(reader, "version");
+        boolean hasOpsMetadata = false;
+        boolean hasFeatureTypeList = false;
+        Set<String> outputFormats = null;
+        List<FeatureType> parsed = new ArrayList<>();
+        while (XmlStreamHelper.nextChildElement(reader)) {
+            String name = XmlStreamHelper.getLocalName(reader);
+            if ("OperationsMetadata".equals(name) && !hasOpsMetadata) {
+                hasOpsMetadata = true;
+                outputFormats = parseOperationsMetadata(reader);
+            } else if ("FeatureTypeList".equals(name) && !hasFeatureTypeList) {
+                hasFeatureTypeList = true;
+                parseFeatureTypes(reader, featureTypes, parsed);
+            } else {
+                XmlStreamHelper.skipElement(reader);
+            }
+        }
+        if (!hasOpsMetadata) {
+            throw new IllegalArgumentException("No OperationsMetadata element");
+        }
+        if (outputFormats == null) {
+            throw new IllegalArgumentException("No GetFeature operation support");
+        }
+        List<LayerCapabilitiesWFS> layers = new ArrayList<>(parsed.size());
+        for (FeatureType featureType : parsed) {
+            layers.add(featureType.toLayer(version, outputFormats));
+        }
+        return layers;
+    }
+
+    /**
+     * @return sorted output formats of GetFeature or null if GetFeature is not listed
+     */
+    private static Set<String> parseOperationsMetadata(XMLStreamReader reader) throws XMLStreamException {
+        Set<String> outputFormats = null;
+        while (XmlStreamHelper.nextChildElement(reader)) {
+            if (outputFormats == null
+                    && "Operation".equals(XmlStreamHelper.getLocalName(reader))
+                    && "GetFeature".equals(XmlStreamHelper.getAttributeValue(reader, "name"))) {
+                outputFormats = parseGetFeature(reader);
+            } else {
+                XmlStreamHelper.skipElement(reader);
+            }
+        }
+        return outputFormats;
+    }
+
+    private static Set<String> parseGetFeature(XMLStreamReader reader) throws XMLStreamException {
+        List<String> values = new ArrayList<>();
+        boolean found = false;
+        while (XmlStreamHelper.nextChildElement(reader)) {
+            if (!found
+                    && "Parameter".equals(XmlStreamHelper.getLocalName(reader))
+                    && "outputFormat".equals(XmlStreamHelper.getAttributeValue(reader, "name"))) {
+                found = true;
+                parseAllowedValues(reader, values);
+            } else {
+                XmlStreamHelper.skipElement(reader);
+            }
+        }
+        Collections.sort(values);
+        return new LinkedHashSet<>(values);
+    }
+
+    private static void parseAllowedValues(XMLStreamReader reader, List<String> values) throws XMLStreamException {
+        // 2.0.0 has values wrapped inside AllowedValues
+        // 1.1.0 has values directly inside outputFormatsParam
+        List<String> direct = new ArrayList<>();
+        List<String> wrapped = null;
+        while (XmlStreamHelper.nextChildElement(reader)) {
+            String name = XmlStreamHelper.getLocalName(reader);
+            if ("Value".equals(name)) {
+                direct.add(XmlStreamHelper.readText(reader));
+            } else if ("AllowedValues".equals(name) && wrapped == null) {
+                wrapped = new ArrayList<>();
+                while (XmlStreamHelper.nextChildElement(reader)) {
+                    if ("Value".equals(XmlStreamHelper.getLocalName(reader))) {
+                        wrapped.add(XmlStreamHelper.readText(reader));
+                    } else {
+                        XmlStreamHelper.skipElement(reader);
+                    }
+                }
+            } else {
+                XmlStreamHelper.skipElement(reader);
+            }
+        }
+        values.addAll(wrapped != null ? wrapped : direct);
+    }
+
+    private static void parseFeatureTypes(XMLStreamReader reader, Set<String> featureTypes, List<FeatureType> parsed)
+            throws XMLStreamException {
+        while (XmlStreamHelper.nextChildElement(reader)) {
+            if (!"FeatureType".equals(XmlStreamHelper.getLocalName(reader))) {
+                XmlStreamHelper.skipElement(reader);
+                continue;
+            }
+            FeatureType featureType = parseFeatureType(reader, featureTypes);
+            if (featureType != null) {
+                parsed.add(featureType);
+            }
+        }
+    }
+
+    /**
+     * @return null if the feature type was skipped
+     */
+    private static FeatureType parseFeatureType(XMLStreamReader reader, Set<String> featureTypes) throws XMLStreamException {
+        FeatureType featureType = new FeatureType();
+        featureType.attributes = XmlStreamHelper.getAttributesAsMap(reader);
+        while (XmlStreamHelper.nextChildElement(reader)) {
+            String name = XmlStreamHelper.getLocalName(reader);
+            switch (name) {
+                case "Name":
+                    featureType.values.putIfAbsent(name, XmlStreamHelper.readText(reader));
+                    if (featureTypes != null && !featureTypes.contains(featureType.values.get(name))) {
+                        XmlStreamHelper.skipElement(reader);
+                        return null;
+                    }
+                    break;
+                case "Title":
+                case "Abstract":
+                case "DefaultCRS":
+                case "DefaultSRS":
+                    featureType.values.putIfAbsent(name, XmlStreamHelper.readText(reader));
+                    break;
+                case "OtherCRS":
+                    featureType.otherCRS.add(XmlStreamHelper.readText(reader));
+                    break;
+                case "OtherSRS":
+                    featureType.otherSRS.add(XmlStreamHelper.readText(reader));
+                    break;
+                case "Keywords":
+                    if (featureType.keywords == null) {
+                        featureType.keywords = new HashSet<>();
+                        while (XmlStreamHelper.nextChildElement(reader)) {
+                            if ("Keyword".equals(XmlStreamHelper.getLocalName(reader))) {
+                                featureType.keywords.add(XmlStreamHelper.readText(reader));
+                            } else {
+                                XmlStreamHelper.skipElement(reader);
+                            }
+                        }
+                    } else {
+                        XmlStreamHelper.skipElement(reader);
+                    }
+                    break;
+                case "WGS84BoundingBox":
+                    if (featureType.hasBbox) {
+                        XmlStreamHelper.skipElement(reader);
+                        break;
+                    }
+                    featureType.hasBbox = true;
+                    while (XmlStreamHelper.nextChildElement(reader)) {
+                        String corner = XmlStreamHelper.getLocalName(reader);
+                        if ("LowerCorner".equals(corner) || "UpperCorner".equals(corner)) {
+                            featureType.values.putIfAbsent(corner, XmlStreamHelper.readText(reader));
+                        } else {
+                            XmlStreamHelper.skipElement(reader);
+                        }
+                    }
+                    break;
+                case "MetadataURL":
+                    if (featureType.values.containsKey(name)) {
+                        XmlStreamHelper.skipElement(reader);
+                        break;
+                    }
+                    String href = XmlStreamHelper.getAttributeValue(reader, "href");
+                    String text = XmlStreamHelper.readText(reader);
+                    // wfs 2.0.0 has href, 1.1.0 has the url as content
+                    featureType.values.put(name, href != null ? href : text.trim());
+                    break;
+                default:
+                    XmlStreamHelper.skipElement(reader);
+            }
+        }
+        if (featureTypes != null && !featureTypes.contains(featureType.values.get("Name"))) {
+            return null;
+        }
+        return featureType;
+    }
+
+    private static class FeatureType {
+        private Map<String, String> attributes;
+        private final Map<String, String> values = new HashMap<>();
+        private final List<String> otherCRS = new ArrayList<>();
+        private final List<String> otherSRS = new ArrayList<>();
+        private Set<String> keywords;
+        private boolean hasBbox;
+
+        private LayerCapabilitiesWFS toLayer(String version, Set<String> outputFormats) {
+            LayerCapabilitiesWFS value = new LayerCapabilitiesWFS(values.get("Name"), values.get("Title"));
+            value.setVersion(version);
+            value.setDescription(values.get("Abstract"));
+            value.setKeywords(keywords != null ? keywords : Collections.emptySet());
+            value.setBbox(hasBbox ? parseGeoGraphicBbox(values.get("LowerCorner"), values.get("UpperCorner")) : null);
+            Set<String> srs = new HashSet<>(1);
+            if ("2.0.0".equals(version)) {
+                srs.add(values.get("DefaultCRS"));
+                srs.addAll(otherCRS);
+            } else {
+                srs.add(values.get("DefaultSRS"));
+                srs.addAll(otherSRS);
+            }
+            value.setFormats(outputFormats);
+            value.setSrs(srs);
+
+            // <FeatureType xmlns:tilastointialueet="http://www.tilastointialueet.fi">
+            String bestGuessForNamespace = attributes.values()
+                    .stream().filter(a -> a.startsWith("http")).findFirst().orElse(null);
+            value.setNamespaceUri(bestGuessForNamespace);
+
+            value.setMetadataUrl(values.get("MetadataURL"));
+            return value;
+        }
+    }
+}
@@ -72,7 +72,10 @@ public class WMSCapsParser {
         if (boundingBox == null) {
             return null;
         }
-        Map<String, String> attrs = XmlHelper.getAttributesAsMap(boundingBox);
+        return parseBbox(XmlHelper.getAttributesAsMap(boundingBox), defaultSrs);
+    }
+
+    protected static BoundingBox parseBbox(Map<String, String> attrs, String defaultSrs) {
         double minX = Double.parseDouble(attrs.get("minx"));
         double minY = Double.parseDouble(attrs.get("miny"));
         double maxX = Double.parseDouble(attrs.get("maxx"));
@@ -81,8 +84,7 @@ public class WMSCapsParser {
     }
 
     protected static List<LayerStyle> parseStyles(Element layer) {
-        Map<String, LayerStyle> map = new HashMap<>(10);
-        XmlHelper.getChildElements(layer, "Style")
+        return getUniqueStyles(XmlHelper.getChildElements(layer, "Style")
                 .map(styleEl -> {
                     LayerStyle style = new LayerStyle();
                     style.setName(XmlHelper.getChildValue(styleEl, "Name"));
@@ -93,21 +95,26 @@ public class WMSCapsParser {
                         style.setLegend(XmlHelper.getAttributeValue(resource, "href"));
                     }
                     return style;
-                }).forEach(style -> {
-                    // Some layers might have multiple styles with same name
-                    // remove duplicates as name is used as unique identifier in requests
-                    String name = style.getName();
-                    LayerStyle existing = map.get(name);
-                    if (existing == null) {
-                        map.put(name, style);
-                    } else {
-                        String legend = style.getLegend();
-                        if (legend != null && !legend.isEmpty()) {
-                            // overwrite existing only if new one has a legend (don't care if old one did)
-                            map.put(name, style);
-                        }
-                    }
-                });
+                }).collect(Collectors.toList()));
+    }
+
+    protected static List<LayerStyle> getUniqueStyles(List<LayerStyle> parsed) {
+        Map<String, LayerStyle> map = new HashMap<>(10);
+        parsed.forEach(style -> {
+            // Some layers might have multiple styles with same name
+            // remove duplicates as name is used as unique identifier in requests
+            String name = style.getName();
+            LayerStyle existing = map.get(name);
+            if (existing == null) {
+                map.put(name, style);
+            } else {
+                String legend = style.getLegend();
+                if (legend != null && !legend.isEmpty()) {
+                    // overwrite existing only if new one has a legend (don't care if old one did)
+                    map.put(name, style);
+                }
+            }
+        });
         List<LayerStyle> styles = new ArrayList<>(map.values());
         return styles;
     }
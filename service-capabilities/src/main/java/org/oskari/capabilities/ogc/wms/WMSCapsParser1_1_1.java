@@ -90,14 +90,19 @@ public class WMSCapsParser1_1_1 extends WMSCapsParser {
         if (dimension == null || extent == null) {
             return null;
         }
+        return parseTimes(XmlHelper.getAttributeValue(extent, "name"),
+                XmlHelper.getAttributeValue(dimension, "units"),
+                extent.getTextContent());
+    }
+
+    protected static String[] parseTimes(String extentName, String units, String content) {
         // All parameter names are case-insensitive
-        if (!"time".equalsIgnoreCase(XmlHelper.getAttributeValue(extent, "name"))) {
+        if (!"time".equalsIgnoreCase(extentName)) {
             return null;
         }
-        if (!"ISO8601".equals(XmlHelper.getAttributeValue(dimension, "units"))) {
+        if (!"ISO8601".equals(units)) {
             return null;
         }
-        String content = extent.getTextContent();
         if (content.trim().isEmpty()) {
             return null;
         }
@@ -89,14 +89,19 @@ public class WMSCapsParser1_3_0 extends WMSCapsParser {
         if (dimension == null) {
             return null;
         }
+        return parseTimes(XmlHelper.getAttributeValue(dimension, "name"),
+                XmlHelper.getAttributeValue(dimension, "units"),
+                dimension.getTextContent());
+    }
+
+    protected static String[] parseTimes(String name, String units, String content) {
         // All parameter names are case-insensitive
-        if (!"time".equalsIgnoreCase(XmlHelper.getAttributeValue(dimension, "name"))) {
+        if (!"time".equalsIgnoreCase(name)) {
             return null;
         }
-        if (!"ISO8601".equals(XmlHelper.getAttributeValue(dimension, "units"))) {
+        if (!"ISO8601".equals(units)) {
             return null;
         }
-        String content = dimension.getTextContent();
         if (content.trim().isEmpty()) {
             return null;
         }
@@ -128,10 +133,18 @@ public class WMSCapsParser1_3_0 extends WMSCapsParser {
         if (boundingBox == null) {
             return null;
         }
-        double minX = Double.parseDouble(XmlHelper.getChildValue(boundingBox, "westBoundLongitude"));
-        double minY = Double.parseDouble(XmlHelper.getChildValue(boundingBox, "southBoundLatitude"));
-        double maxX = Double.parseDouble(XmlHelper.getChildValue(boundingBox, "eastBoundLongitude"));
-        double maxY = Double.parseDouble(XmlHelper.getChildValue(boundingBox, "northBoundLatitude"));
+        return parseGeoGraphicBbox(XmlHelper.getChildValue(boundingBox, "westBoundLongitude"),
+                XmlHelper.getChildValue(boundingBox, "southBoundLatitude"),
+                XmlHelper.getChildValue(boundingBox, "eastBoundLongitude"),
+                XmlHelper.getChildValue(boundingBox, "northBoundLatitude"),
+                defaultSrs);
+    }
+
+    protected static BoundingBox parseGeoGraphicBbox(String west, String south, String east, String north, String defaultSrs) {
+        double minX = Double.parseDouble(west);
+        double minY = Double.parseDouble(south);
+        double maxX = Double.parseDouble(east);
+        double maxY = Double.parseDouble(north);
         return new BoundingBox(minX, maxX, minY, maxY, defaultSrs);
     }
 
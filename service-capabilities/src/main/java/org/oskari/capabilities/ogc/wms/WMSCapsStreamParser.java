@@ -0,0 +1,328 @@
+package org.oskari.capabilities.ogc.wms;
+
+import org.oskari.capabilities.ogc.BoundingBox;
+import org.oskari.capabilities.ogc.LayerCapabilitiesWMS;
+import org.oskari.capabilities.ogc.LayerStyle;
+import org.oskari.capabilities.ogc.XmlStreamHelper;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.util.*;
+
+/**
+ * Parses WMS 1.1.1 and 1.3.0 capabilities with StAX producing the same results as WMSCapsParser.
+ * The whole layer tree is parsed since layers refer to their parents but nothing is kept from the
+ * document other than the layers.
+ */
+public class WMSCapsStreamParser extends WMSCapsParser {
+
+    /**
+     * @param reader positioned on the root element
+     * @return
+     * @throws XMLStreamException
+     * @throws IllegalArgumentException if the document is not WMS capabilities
+     */
+    public static List<LayerCapabilitiesWMS> parseCapabilities(XMLStreamReader reader)
+            throws XMLStreamException, IllegalArgumentException {
+        String rootEl = XmlStreamHelper.getLocalName(reader);
+        final String version;
+        if (WMSCapsParser1_1_1.ROOT_EL.equals(rootEl)) {
+            version = WMSCapsParser1_1_1.VERSION;
+        } else if (WMSCapsParser1_3_0.ROOT_EL.equals(rootEl)) {
+            version = WMSCapsParser1_3_0.VERSION;
+        } else {
+            throw new IllegalArgumentException("Unexpected XML element: '" + rootEl + "'");
+        }
+        Capability capability = null;
+        while (XmlStreamHelper.nextChildElement(reader)) {
+            if ("Capability".equals(XmlStreamHelper.getLocalName(reader)) && capability == null) {
+                capability = parseCapability(reader, version);
+            } else {
+                XmlStreamHelper.skipElement(reader);
+            }
+        }
+        if (capability == null) {
+            throw new IllegalArgumentException("No Capability element");
+        }
+        if (!capability.hasRequest) {
+            throw new IllegalArgumentException("No Request element");
+        }
+        if (!capability.hasGetMap) {
+            throw new IllegalArgumentException("No GetMap element");
+        }
+        // Request is listed before layers but the info formats are set after parsing to be safe
+        for (LayerCapabilitiesWMS layer : capability.queryable) {
+            layer.setInfoFormats(capability.infoFormats);
+        }
+        return capability.layers;
+    }
+
+    private static Capability parseCapability(XMLStreamReader reader, String version) throws XMLStreamException {
+        Capability capability = new Capability();
+        while (XmlStreamHelper.nextChildElement(reader)) {
+            switch (XmlStreamHelper.getLocalName(reader)) {
+                case "Request":
+                    if (capability.hasRequest) {
+                        XmlStreamHelper.skipElement(reader);
+                    } else {
+                        capability.hasRequest = true;
+                        parseRequest(reader, capability);
+                    }
+                    break;
+                case "Layer":
+                    capability.layers.add(parseLayer(reader, version, capability));
+                    break;
+                default:
+                    XmlStreamHelper.skipElement(reader);
+            }
+        }
+        return capability;
+    }
+
+    private static void parseRequest(XMLStreamReader reader, Capability capability) throws XMLStreamException {
+        boolean hasGetFeatureInfo = false;
+        while (XmlStreamHelper.nextChildElement(reader)) {
+            switch (XmlStreamHelper.getLocalName(reader)) {
+                case "GetMap":
+                    capability.hasGetMap = true;
+                    XmlStreamHelper.skipElement(reader);
+                    break;
+                case "GetFeatureInfo":
+                    if (hasGetFeatureInfo) {
+                        XmlStreamHelper.skipElement(reader);
+                        break;
+                    }
+                    hasGetFeatureInfo = true;
+                    while (XmlStreamHelper.nextChildElement(reader)) {
+                        if ("Format".equals(XmlStreamHelper.getLocalName(reader))) {
+                            capability.infoFormats.add(XmlStreamHelper.readText(reader));
+                        } else {
+                            XmlStreamHelper.skipElement(reader);
+                        }
+                    }
+                    break;
+                default:
+                    XmlStreamHelper.skipElement(reader);
+            }
+        }
+    }
+
+    private static LayerCapabilitiesWMS parseLayer(XMLStreamReader reader, String version, Capability capability)
+            throws XMLStreamException {
+        boolean is130 = WMSCapsParser1_3_0.VERSION.equals(version);
+        boolean isQueryable = "1".equals(XmlStreamHelper.getAttributeValue(reader, "queryable"));
+        Map<String, String> values = new HashMap<>();
+        Set<String> srs = new HashSet<>();
+        List<LayerStyle> styles = new ArrayList<>();
+        Set<String> keywords = Collections.emptySet();
+        boolean hasKeywordList = false;
+        BoundingBox latlonBox = null;
+        boolean hasLatLonBox = false;
+        List<BoundingBox> boxes = new ArrayList<>();
+        Map<String, String> scaleHint = null;
+        String[] dimension = null;
+        String[] extent = null;
+        List<LayerCapabilitiesWMS> children = new ArrayList<>();
+
+        while (XmlStreamHelper.nextChildElement(reader)) {
+            String name = XmlStreamHelper.getLocalName(reader);
+            switch (name) {
+                case "Name":
+                case "Title":
+                case "Abstract":
+                case "MinScaleDenominator":
+                case "MaxScaleDenominator":
+                    values.putIfAbsent(name, XmlStreamHelper.readText(reader));
+                    break;
+                case "CRS":
+                case "SRS":
+                    String crs = XmlStreamHelper.readText(reader);
+                    if (name.equals(is130 ? "CRS" : "SRS")) {
+                        srs.add(crs);
+                    }
+                    break;
+                case "Style":
+                    styles.add(parseStyle(reader));
+                    break;
+                case "KeywordList":
+                    if (hasKeywordList) {
+                        XmlStreamHelper.skipElement(reader);
+                    } else {
+                        hasKeywordList = true;
+                        keywords = parseKeywords(reader);
+                    }
+                    break;
+                case "EX_GeographicBoundingBox":
+                    if (is130 && !hasLatLonBox) {
+                        hasLatLonBox = true;
+                        latlonBox = parseGeographicBbox(reader);
+                    } else {
+                        XmlStreamHelper.skipElement(reader);
+                    }
+                    break;
+                case "LatLonBoundingBox":
+                    if (!is130 && !hasLatLonBox) {
+                        hasLatLonBox = true;
+                        latlonBox = parseBbox(XmlStreamHelper.getAttributesAsMap(reader), "EPSG:4326");
+                    }
+                    XmlStreamHelper.skipElement(reader);
+                    break;
+                case "BoundingBox":
+                    boxes.add(parseBbox(XmlStreamHelper.getAttributesAsMap(reader), "EPSG:4326"));
+                    XmlStreamHelper.skipElement(reader);
+                    break;
+                case "MetadataURL":
+                    if (is130 && !values.containsKey(name)) {
+                        values.put(name, parseOnlineResource(reader));
+                    } else {
+                        XmlStreamHelper.skipElement(reader);
+                    }
+                    break;
+                case "ScaleHint":
+                    if (scaleHint == null) {
+                        scaleHint = XmlStreamHelper.getAttributesAsMap(reader);
+                    }
+                    XmlStreamHelper.skipElement(reader);
+                    break;
+                case "Dimension":
+                    if (dimension == null) {
+                        dimension = new String[] {
+                                XmlStreamHelper.getAttributeValue(reader, "name"),
+                                XmlStreamHelper.getAttributeValue(reader, "units"),
+                                XmlStreamHelper.readText(reader)
+                        };
+                    } else {
+                        XmlStreamHelper.skipElement(reader);
+                    }
+                    break;
+                case "Extent":
+                    if (extent == null) {
+                        extent = new String[] {
+                                XmlStreamHelper.getAttributeValue(reader, "name"),
+                                XmlStreamHelper.readText(reader)
+                        };
+                    } else {
+                        XmlStreamHelper.skipElement(reader);
+                    }
+                    break;
+                case "Layer":
+                    children.add(parseLayer(reader, version, capability));
+                    break;
+                default:
+                    XmlStreamHelper.skipElement(reader);
+            }
+        }
+
+        LayerCapabilitiesWMS value = new LayerCapabilitiesWMS(values.get("Name"), values.get("Title"));
+        value.setVersion(version);
+        value.setSrs(srs);
+        if (isQueryable) {
+            capability.queryable.add(value);
+        }
+        value.setDescription(values.get("Abstract"));
+        value.setStyles(getUniqueStyles(styles));
+        value.setKeywords(keywords);
+        if (latlonBox == null) {
+            latlonBox = getBestMatch(boxes);
+        }
+        value.setBbox(latlonBox);
+        if (is130) {
+            value.setMetadataUrl(values.get("MetadataURL"));
+            value.setMinScale(values.get("MinScaleDenominator"));
+            value.setMaxScale(values.get("MaxScaleDenominator"));
+            if (dimension != null) {
+                value.setTimes(WMSCapsParser1_3_0.parseTimes(dimension[0], dimension[1], dimension[2]));
+            }
+        } else {
+            if (scaleHint != null) {
+                value.setMinScale(scaleHint.get("min"));
+                value.setMaxScale(scaleHint.get("max"));
+            }
+            if (dimension != null && extent != null) {
+                value.setTimes(WMSCapsParser1_1_1.parseTimes(extent[0], dimension[1], extent[1]));
+            }
+        }
+        value.setLayers(children);
+        return value;
+    }
+
+    private static LayerStyle parseStyle(XMLStreamReader reader) throws XMLStreamException {
+        LayerStyle style = new LayerStyle();
+        boolean hasLegend = false;
+        while (XmlStreamHelper.nextChildElement(reader)) {
+            switch (XmlStreamHelper.getLocalName(reader)) {
+                case "Name":
+                    String name = XmlStreamHelper.readText(reader);
+                    if (style.getName() == null) {
+                        style.setName(name);
+                    }
+                    break;
+                case "Title":
+                    String title = XmlStreamHelper.readText(reader);
+                    if (style.getTitle() == null) {
+                        style.setTitle(title);
+                    }
+                    break;
+                case "LegendURL":
+                    if (hasLegend) {
+                        XmlStreamHelper.skipElement(reader);
+                    } else {
+                        hasLegend = true;
+                        style.setLegend(parseOnlineResource(reader));
+                    }
+                    break;
+                default:
+                    XmlStreamHelper.skipElement(reader);
+            }
+        }
+        return style;
+    }
+
+    /**
+     * @return href of the first OnlineResource child
+     */
+    private static String parseOnlineResource(XMLStreamReader reader) throws XMLStreamException {
+        String href = null;
+        boolean found = false;
+        while (XmlStreamHelper.nextChildElement(reader)) {
+            if (!found && "OnlineResource".equals(XmlStreamHelper.getLocalName(reader))) {
+                found = true;
+                href = XmlStreamHelper.getAttributeValue(reader, "href");
+            }
+            XmlStreamHelper.skipElement(reader);
+        }
+        return href;
+    }
+
+    private static Set<String> parseKeywords(XMLStreamReader reader) throws XMLStreamException {
+        Set<String> keywords = new HashSet<>();
+        while (XmlStreamHelper.nextChildElement(reader)) {
+            if ("Keyword".equals(XmlStreamHelper.getLocalName(reader))) {
+                keywords.add(XmlStreamHelper.readText(reader));
+            } else {
+                XmlStreamHelper.skipElement(reader);
+            }
+        }
+        return keywords;
+    }
+
+    private static BoundingBox parseGeographicBbox(XMLStreamReader reader) throws XMLStreamException {
+        Map<String, String> values = new HashMap<>();
+        while (XmlStreamHelper.nextChildElement(reader)) {
+            values.putIfAbsent(XmlStreamHelper.getLocalName(reader), XmlStreamHelper.readText(reader));
+        }
+        return WMSCapsParser1_3_0.parseGeoGraphicBbox(values.get("westBoundLongitude"),
+                values.get("southBoundLatitude"),
+                values.get("eastBoundLongitude"),
+                values.get("northBoundLatitude"),
+                "EPSG:4326");
+    }
+
+    private static class Capability {
+        private boolean hasRequest;
+        private boolean hasGetMap;
+        private final Set<String> infoFormats = new HashSet<>();
+        private final List<LayerCapabilitiesWMS> layers = new ArrayList<>();
+        private final List<LayerCapabilitiesWMS> queryable = new ArrayList<>();
+    }
+}
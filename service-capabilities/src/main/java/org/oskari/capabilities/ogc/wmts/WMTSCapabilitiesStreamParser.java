@@ -0,0 +1,349 @@
+package org.oskari.capabilities.ogc.wmts;
+
+import fi.nls.oskari.log.LogFactory;
+import fi.nls.oskari.log.Logger;
+import fi.nls.oskari.util.ConversionHelper;
+import org.oskari.capabilities.ogc.LayerStyle;
+import org.oskari.capabilities.ogc.XmlStreamHelper;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.util.*;
+
+/**
+ * Parses WMTS capabilities with StAX producing the same results as WMTSCapabilitiesParserHelper.
+ * Layers that are not requested are skipped and TileMatrixSetLimits are only read for the requested layers.
+ * Each TileMatrixSet is parsed once and the same instance is referenced by all the layers linking to it.
+ */
+public class WMTSCapabilitiesStreamParser {
+
+    private static final Logger LOG = LogFactory.getLogger(WMTSCapabilitiesStreamParser.class);
+
+    /**
+     * @param reader positioned on the root element
+     * @param layerIds identifiers of layers to parse or null to parse all layers
+     * @return
+     * @throws XMLStreamException
+     * @throws IllegalArgumentException if the document is not WMTS capabilities
+     */
+    public static WMTSCapabilities parseCapabilities(XMLStreamReader reader, Set<String> layerIds)
+            throws XMLStreamException, IllegalArgumentException {
+        Map<String, TileMatrixSet> tileMatrixSets = null;
+        Map<String, WMTSCapabilitiesLayer> layers = null;
+        while (XmlStreamHelper.nextChildElement(reader)) {
+            if ("Contents".equals(XmlStreamHelper.getLocalName(reader)) && tileMatrixSets == null) {
+                tileMatrixSets = new HashMap<>();
+                layers = parseContents(reader, layerIds, tileMatrixSets);
+            } else {
+                XmlStreamHelper.skipElement(reader);
+            }
+        }
+        if (tileMatrixSets == null) {
+            throw new IllegalArgumentException("Unexpected XML: no Contents element");
+        }
+        return new WMTSCapabilities(tileMatrixSets, layers);
+    }
+
+    private static Map<String, WMTSCapabilitiesLayer> parseContents(XMLStreamReader reader, Set<String> layerIds,
+            Map<String, TileMatrixSet> tileMatrixSets) throws XMLStreamException {
+        // Layers are listed before TileMatrixSets so links are resolved after the whole Contents has been read
+        List<ParsedLayer> parsed = new ArrayList<>();
+        while (XmlStreamHelper.nextChildElement(reader)) {
+            switch (XmlStreamHelper.getLocalName(reader)) {
+                case "Layer":
+                    ParsedLayer layer = parseLayer(reader, layerIds);
+                    if (layer != null) {
+                        parsed.add(layer);
+                    }
+                    break;
+                case "TileMatrixSet":
+                    TileMatrixSet tms = parseTileMatrixSet(reader);
+                    tileMatrixSets.put(tms.getId(), tms);
+                    break;
+                default:
+                    XmlStreamHelper.skipElement(reader);
+            }
+        }
+        Map<String, WMTSCapabilitiesLayer> layers = new HashMap<>();
+        for (ParsedLayer layer : parsed) {
+            WMTSCapabilitiesLayer l = layer.toLayer(tileMatrixSets);
+            layers.put(l.getId(), l);
+        }
+        return layers;
+    }
+
+    private static TileMatrixSet parseTileMatrixSet(XMLStreamReader reader) throws XMLStreamException {
+        String identifier = null;
+        String crs = null;
+        // Keep a Set of TileMatrix id's we've encountered so far - don't allow duplicates
+        Set<String> ids = new HashSet<>();
+        List<TileMatrix> tileMatrices = new ArrayList<>();
+        while (XmlStreamHelper.nextChildElement(reader)) {
+            switch (XmlStreamHelper.getLocalName(reader)) {
+                case "Identifier":
+                    identifier = first(identifier, XmlStreamHelper.readText(reader));
+                    break;
+                case "SupportedCRS":
+                    crs = first(crs, XmlStreamHelper.readText(reader));
+                    break;
+                case "TileMatrix":
+                    TileMatrix tm = parseTileMatrix(reader);
+                    if (!ids.add(tm.getId())) {
+                        LOG.error("TileMatrix with id:", tm.getId(), "is specified multiple times!");
+                        break;
+                    }
+                    tileMatrices.add(tm);
+                    break;
+                default:
+                    XmlStreamHelper.skipElement(reader);
+            }
+        }
+        return new TileMatrixSet(identifier, crs, tileMatrices);
+    }
+
+    private static TileMatrix parseTileMatrix(XMLStreamReader reader) throws XMLStreamException {
+        Map<String, String> values = new HashMap<>();
+        while (XmlStreamHelper.nextChildElement(reader)) {
+            String name = XmlStreamHelper.getLocalName(reader);
+            switch (name) {
+                case "Identifier":
+                case "ScaleDenominator":
+                case "TopLeftCorner":
+                case "TileWidth":
+                case "TileHeight":
+                case "MatrixWidth":
+                case "MatrixHeight":
+                    values.putIfAbsent(name, XmlStreamHelper.readText(reader));
+                    break;
+                default:
+                    XmlStreamHelper.skipElement(reader);
+            }
+        }
+        return new TileMatrix(values.get("Identifier"),
+                Double.parseDouble(values.get("ScaleDenominator")),
+                parseTopLeftCorner(values.get("TopLeftCorner")),
+                parseInt(values.get("TileWidth")),
+                parseInt(values.get("TileHeight")),
+                parseInt(values.get("MatrixWidth")),
+                parseInt(values.get("MatrixHeight")));
+    }
+
+    private static double[] parseTopLeftCorner(String topLeftCorner) {
+        if (topLeftCorner == null) {
+            return null;
+        }
+        int i = topLeftCorner.indexOf(' ');
+        if (i < 0) {
+            return null;
+        }
+        return new double[] {
+                Double.parseDouble(topLeftCorner.substring(0, i)),
+                Double.parseDouble(topLeftCorner.substring(i + 1))
+        };
+    }
+
+    /**
+     * @return null if the layer was skipped
+     */
+    private static ParsedLayer parseLayer(XMLStreamReader reader, Set<String> layerIds) throws XMLStreamException {
+        ParsedLayer layer = new ParsedLayer();
+        while (XmlStreamHelper.nextChildElement(reader)) {
+            switch (XmlStreamHelper.getLocalName(reader)) {
+                case "Identifier":
+                    layer.identifier = first(layer.identifier, XmlStreamHelper.readText(reader));
+                    if (layerIds != null && !layerIds.contains(layer.identifier)) {
+                        // skip the rest of the layer, the expensive parts like TileMatrixSetLimits are after the Identifier
+                        XmlStreamHelper.skipElement(reader);
+                        return null;
+                    }
+                    break;
+                case "Title":
+                    layer.title = first(layer.title, XmlStreamHelper.readText(reader));
+                    break;
+                case "Style":
+                    layer.styles.add(parseStyle(reader));
+                    break;
+                case "Format":
+                    layer.formats.add(XmlStreamHelper.readText(reader));
+                    break;
+                case "InfoFormat":
+                    layer.infoFormats.add(XmlStreamHelper.readText(reader));
+                    break;
+                case "ResourceURL":
+                    layer.resourceUrls.add(new ResourceUrl(
+                            XmlStreamHelper.getAttributeValue(reader, "format"),
+                            XmlStreamHelper.getAttributeValue(reader, "resourceType"),
+                            XmlStreamHelper.getAttributeValue(reader, "template")));
+                    XmlStreamHelper.skipElement(reader);
+                    break;
+                case "TileMatrixSetLink":
+                    layer.links.add(parseLink(reader));
+                    break;
+                default:
+                    XmlStreamHelper.skipElement(reader);
+            }
+        }
+        if (layerIds != null && !layerIds.contains(layer.identifier)) {
+            return null;
+        }
+        return layer;
+    }
+
+    private static LayerStyle parseStyle(XMLStreamReader reader) throws XMLStreamException {
+        String isDefault = XmlStreamHelper.getAttributeValue(reader, "isDefault");
+        String identifier = null;
+        while (XmlStreamHelper.nextChildElement(reader)) {
+            if ("Identifier".equals(XmlStreamHelper.getLocalName(reader))) {
+                identifier = first(identifier, XmlStreamHelper.readText(reader));
+            } else {
+                XmlStreamHelper.skipElement(reader);
+            }
+        }
+        LayerStyle style = new LayerStyle();
+        style.setTitle(identifier);
+        style.setName(identifier);
+        style.setDefault(ConversionHelper.getBoolean(isDefault == null ? "false" : isDefault, false));
+        return style;
+    }
+
+    private static ParsedLink parseLink(XMLStreamReader reader) throws XMLStreamException {
+        ParsedLink link = new ParsedLink();
+        while (XmlStreamHelper.nextChildElement(reader)) {
+            switch (XmlStreamHelper.getLocalName(reader)) {
+                case "TileMatrixSet":
+                    link.tileMatrixSet = first(link.tileMatrixSet, XmlStreamHelper.readText(reader));
+                    break;
+                case "TileMatrixSetLimits":
+                    if (link.limits == null) {
+                        link.limits = parseLimits(reader);
+                    } else {
+                        XmlStreamHelper.skipElement(reader);
+                    }
+                    break;
+                default:
+                    XmlStreamHelper.skipElement(reader);
+            }
+        }
+        return link;
+    }
+
+    private static List<ParsedLimits> parseLimits(XMLStreamReader reader) throws XMLStreamException {
+        List<ParsedLimits> limits = new ArrayList<>();
+        while (XmlStreamHelper.nextChildElement(reader)) {
+            if (!"TileMatrixLimits".equals(XmlStreamHelper.getLocalName(reader))) {
+                XmlStreamHelper.skipElement(reader);
+                continue;
+            }
+            ParsedLimits limit = new ParsedLimits();
+            while (XmlStreamHelper.nextChildElement(reader)) {
+                switch (XmlStreamHelper.getLocalName(reader)) {
+                    case "TileMatrix":
+                        limit.tileMatrix = first(limit.tileMatrix, XmlStreamHelper.readText(reader));
+                        break;
+                    case "MinTileRow":
+                        limit.minTileRow = first(limit.minTileRow, XmlStreamHelper.readText(reader));
+                        break;
+                    case "MaxTileRow":
+                        limit.maxTileRow = first(limit.maxTileRow, XmlStreamHelper.readText(reader));
+                        break;
+                    case "MinTileCol":
+                        limit.minTileCol = first(limit.minTileCol, XmlStreamHelper.readText(reader));
+                        break;
+                    case "MaxTileCol":
+                        limit.maxTileCol = first(limit.maxTileCol, XmlStreamHelper.readText(reader));
+                        break;
+                    default:
+                        XmlStreamHelper.skipElement(reader);
+                }
+            }
+            limits.add(limit);
+        }
+        return limits;
+    }
+
+    private static TileMatrix findTileMatrix(TileMatrixSet tms, String ref) {
+        Map<String, TileMatrix> tileMatrices = tms.getTileMatrixMap();
+
+        TileMatrix tm = tileMatrices.get(ref);
+        if (tm != null) {
+            return tm;
+        }
+
+        // ref might be prefixed with the id of TileMatrixSet and ':', atleast MapCache does this
+        // We need to split from the last ':' as the ref might be something like "EPSG:3067:0"
+        int i = ref.lastIndexOf(':');
+        if (i > 0 && ref.startsWith(tms.getId())) {
+            return tileMatrices.get(ref.substring(i + 1));
+        }
+        return null;
+    }
+
+    private static int parseInt(String value) {
+        return Integer.parseInt(value.trim());
+    }
+
+    private static String first(String current, String value) {
+        return current != null ? current : value;
+    }
+
+    private static class ParsedLayer {
+        private String identifier;
+        private String title;
+        private final List<LayerStyle> styles = new ArrayList<>();
+        private final Set<String> formats = new HashSet<>();
+        private final Set<String> infoFormats = new HashSet<>();
+        private final List<ResourceUrl> resourceUrls = new ArrayList<>();
+        private final List<ParsedLink> links = new ArrayList<>();
+
+        private WMTSCapabilitiesLayer toLayer(Map<String, TileMatrixSet> tileMatrixSets) {
+            String defaultStyle = styles.stream()
+                    .filter(LayerStyle::isDefault)
+                    .map(LayerStyle::getName)
+                    .findFirst()
+                    .orElse(null);
+            List<TileMatrixLink> tileMatrixLinks = new ArrayList<>(links.size());
+            for (ParsedLink link : links) {
+                TileMatrixSet tms = tileMatrixSets.get(link.tileMatrixSet);
+                if (tms == null) {
+                    LOG.warn("Referred TileMatrixSet", link.tileMatrixSet, "does not appear in this GetCapabilities response");
+                    continue;
+                }
+                tileMatrixLinks.add(new TileMatrixLink(tms, link.toLimits(tms)));
+            }
+            return new WMTSCapabilitiesLayer(identifier, title, styles, defaultStyle,
+                    formats, infoFormats, resourceUrls, tileMatrixLinks);
+        }
+    }
+
+    private static class ParsedLink {
+        private String tileMatrixSet;
+        private List<ParsedLimits> limits;
+
+        private List<TileMatrixLimits> toLimits(TileMatrixSet tms) {
+            // <TileMatrixSetLimits> might not exist
+            if (limits == null) {
+                return null;
+            }
+            List<TileMatrixLimits> value = new ArrayList<>(limits.size());
+            for (ParsedLimits limit : limits) {
+                TileMatrix tm = findTileMatrix(tms, limit.tileMatrix);
+                if (tm == null) {
+                    LOG.warn("Referred TileMatrix", limit.tileMatrix, "does not appear in specified TileMatrixSet", tms.getId());
+                    continue;
+                }
+                value.add(new TileMatrixLimits(tm,
+                        parseInt(limit.minTileRow), parseInt(limit.maxTileRow),
+                        parseInt(limit.minTileCol), parseInt(limit.maxTileCol)));
+            }
+            return value;
+        }
+    }
+
+    private static class ParsedLimits {
+        private String tileMatrix;
+        private String minTileRow;
+        private String maxTileRow;
+        private String minTileCol;
+        private String maxTileCol;
+    }
+}
@@ -0,0 +1,94 @@
+package org.oskari.capabilities;
+
+import fi.nls.oskari.domain.map.OskariLayer;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CapabilitiesFingerprintTest {
+
+    private static final Set<String> SYSTEM_CRS = new HashSet<>(Arrays.asList("EPSG:3067", "EPSG:3857"));
+
+    @Test
+    public void testHash() {
+        RawCapabilitiesResponse response = createResponse("<Capabilities/>");
+        assertEquals(64, response.getHash().length());
+        assertEquals(response.getHash(), createResponse("<Capabilities/>").getHash());
+        assertNotEquals(response.getHash(), createResponse("<Capabilities></Capabilities>").getHash());
+    }
+
+    @Test
+    public void testCovers() {
+        CapabilitiesFingerprint fingerprint = new CapabilitiesFingerprint(createResponse("<Capabilities/>"),
+                SYSTEM_CRS, Arrays.asList("1", "2"));
+        assertTrue(fingerprint.covers(Arrays.asList(createLayer(1), createLayer(2)), SYSTEM_CRS));
+        assertTrue(fingerprint.covers(Collections.singletonList(createLayer(2)), new HashSet<>(Arrays.asList("EPSG:3857", "EPSG:3067"))));
+        assertFalse("New layer needs parsing", fingerprint.covers(Arrays.asList(createLayer(1), createLayer(3)), SYSTEM_CRS));
+        assertFalse("Projections changed", fingerprint.covers(Collections.singletonList(createLayer(1)), Collections.singleton("EPSG:3067")));
+    }
+
+    @Test
+    public void testSameDocument() {
+        CapabilitiesFingerprint first = new CapabilitiesFingerprint(createResponse("<Capabilities/>"),
+                SYSTEM_CRS, Collections.singletonList("1"));
+        CapabilitiesFingerprint second = new CapabilitiesFingerprint(createResponse("<Capabilities/>"),
+                SYSTEM_CRS, Collections.singletonList("2"));
+        CapabilitiesFingerprint changed = new CapabilitiesFingerprint(createResponse("<Capabilities version=\"2\"/>"),
+                SYSTEM_CRS, Collections.singletonList("1"));
+        assertTrue(first.isSameDocument(second));
+        assertFalse(first.isSameDocument(changed));
+        assertFalse(first.isSameDocument(null));
+    }
+
+    @Test
+    public void testStoredAfterSave() {
+        ServiceConnectInfo service = new ServiceConnectInfo("https://example.org/fingerprint", OskariLayer.TYPE_WMS, "1.3.0");
+        OskariLayer first = createLayer(1);
+        first.setName("first");
+        OskariLayer second = createLayer(2);
+        second.setName("second");
+        Map<String, LayerCapabilities> layers = new HashMap<>();
+        layers.put("first", new LayerCapabilities("first", "First"));
+        layers.put("second", new LayerCapabilities("second", "Second"));
+        CapabilitiesService.ServiceCapabilities caps = new CapabilitiesService.ServiceCapabilities(layers,
+                createResponse("<Capabilities/>"));
+
+        List<CapabilitiesUpdateResult> results = CapabilitiesService.updateCapabilities(service,
+                Arrays.asList(first, second), caps, SYSTEM_CRS);
+        assertNull("Fingerprint is stored only after the layers are saved", CapabilitiesService.getFingerprint(service));
+
+        CapabilitiesService.storeFingerprints(results.subList(0, 1));
+        CapabilitiesFingerprint stored = CapabilitiesService.getFingerprint(service);
+        assertTrue(stored.covers(Collections.singletonList(first), SYSTEM_CRS));
+        assertFalse("Layer that wasn't saved needs updating", stored.covers(Collections.singletonList(second), SYSTEM_CRS));
+
+        CapabilitiesService.storeFingerprints(results.subList(1, 2));
+        assertTrue("Layers saved separately from the same document",
+                CapabilitiesService.getFingerprint(service).covers(Arrays.asList(first, second), SYSTEM_CRS));
+    }
+
+    private static RawCapabilitiesResponse createResponse(String xml) {
+        RawCapabilitiesResponse response = new RawCapabilitiesResponse("https://example.org/wms");
+        response.setResponse(xml.getBytes(StandardCharsets.UTF_8), "UTF-8");
+        return response;
+    }
+
+    private static OskariLayer createLayer(int id) {
+        OskariLayer layer = new OskariLayer();
+        layer.setId(id);
+        return layer;
+    }
+}
@@ -0,0 +1,48 @@
+package org.oskari.capabilities;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+public class CapabilitiesUpdaterTest {
+
+    @Test
+    public void testInterleaveByHost() {
+        List<ServiceConnectInfo> services = Arrays.asList(
+                new ServiceConnectInfo("https://a.example.org/wms", "wmslayer", "1.3.0"),
+                new ServiceConnectInfo("https://a.example.org/wmts", "wmtslayer", "1.0.0"),
+                new ServiceConnectInfo("https://A.example.org/wfs", "wfslayer", "2.0.0"),
+                new ServiceConnectInfo("https://b.example.org/wms", "wmslayer", "1.3.0"),
+                new ServiceConnectInfo("not a url", "wmslayer", "1.3.0"));
+        List<String> ordered = CapabilitiesUpdater.interleaveByHost(services).stream()
+                .map(ServiceConnectInfo::getUrl)
+                .collect(Collectors.toList());
+        assertEquals(Arrays.asList(
+                "https://a.example.org/wms",
+                "https://b.example.org/wms",
+                "not a url",
+                "https://a.example.org/wmts",
+                "https://A.example.org/wfs"), ordered);
+    }
+
+    @Test
+    public void testSlowestServices() {
+        CapabilitiesUpdateReport report = new CapabilitiesUpdateReport();
+        report.addService(new CapabilitiesUpdateReport.ServiceReport(
+                new ServiceConnectInfo("https://a.example.org/wms", "wmslayer", "1.3.0"), 1, 0, 100, null));
+        report.addService(new CapabilitiesUpdateReport.ServiceReport(
+                new ServiceConnectInfo("https://b.example.org/wms", "wmslayer", "1.3.0"), 2, 0, 300, null));
+        report.addService(new CapabilitiesUpdateReport.ServiceReport(
+                new ServiceConnectInfo("https://c.example.org/wms", "wmslayer", "1.3.0"), 3, 0, 200, "Timed out"));
+
+        List<CapabilitiesUpdateReport.ServiceReport> slowest = report.getSlowest(2);
+        assertEquals(2, slowest.size());
+        assertEquals("https://b.example.org/wms", slowest.get(0).getUrl());
+        assertEquals("https://c.example.org/wms", slowest.get(1).getUrl());
+        assertEquals(3, report.getSlowest(10).size());
+    }
+}
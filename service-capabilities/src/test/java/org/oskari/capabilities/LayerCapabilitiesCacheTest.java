@@ -0,0 +1,53 @@
+package org.oskari.capabilities;
+
+import fi.nls.oskari.domain.map.OskariLayer;
+import fi.nls.oskari.util.JSONHelper;
+import org.junit.After;
+import org.junit.Test;
+import org.oskari.capabilities.ogc.LayerCapabilitiesWFS;
+
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class LayerCapabilitiesCacheTest {
+
+    private static final String CAPS = "{\"name\":\"test\",\"type\":\"wfslayer\",\"formats\":[\"application/json\"],\"maxFeatures\":100}";
+
+    @After
+    public void tearDown() {
+        LayerCapabilitiesCache.flush();
+    }
+
+    @Test
+    public void testCachedByUpdateTime() {
+        Date updated = new Date(1000);
+        LayerCapabilitiesWFS caps = LayerCapabilitiesCache.get(createLayer(1, updated));
+        assertEquals(100, caps.getMaxFeatures());
+        assertSame("Same update time should use cached value", caps, LayerCapabilitiesCache.get(createLayer(1, updated)));
+        assertNotSame("Updated capabilities should be parsed", caps, LayerCapabilitiesCache.get(createLayer(1, new Date(2000))));
+    }
+
+    @Test
+    public void testRemove() {
+        OskariLayer layer = createLayer(1, null);
+        LayerCapabilitiesWFS caps = LayerCapabilitiesCache.get(layer);
+        assertSame("Same JSON should use cached value", caps, LayerCapabilitiesCache.get(layer));
+        assertNotSame("Without update time a new JSON should be parsed", caps, LayerCapabilitiesCache.get(createLayer(1, null)));
+
+        caps = LayerCapabilitiesCache.get(layer);
+        LayerCapabilitiesCache.remove(layer.getId());
+        assertNotSame("Removed value should be parsed again", caps, LayerCapabilitiesCache.get(layer));
+    }
+
+    private static OskariLayer createLayer(int id, Date capabilitiesUpdated) {
+        OskariLayer layer = new OskariLayer();
+        layer.setId(id);
+        layer.setType(OskariLayer.TYPE_WFS);
+        layer.setCapabilities(JSONHelper.createJSONObject(CAPS));
+        layer.setCapabilitiesLastUpdated(capabilitiesUpdated);
+        return layer;
+    }
+}
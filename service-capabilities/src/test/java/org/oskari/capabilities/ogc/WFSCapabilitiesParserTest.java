@@ -8,11 +8,14 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import org.oskari.capabilities.CapabilitiesService;
 import org.oskari.capabilities.LayerCapabilities;
+import org.oskari.capabilities.RawCapabilitiesResponse;
 import org.oskari.capabilities.ServiceConnectInfo;
 import org.oskari.capabilities.ogc.api.OGCAPIFeatureItemsDescriber;
 import org.oskari.capabilities.ogc.wfs.DescribeFeatureTypeProvider;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
@@ -88,6 +91,24 @@ public class WFSCapabilitiesParserTest {
         assertEquals("Coverage should match", wkt, layerCaps.getBbox().getWKT());
     }
 
+    @Test
+    public void parseStatFi2_0_0FromResponse() throws Exception {
+        String version = "2.0.0";
+        String xml = ResourceHelper.readStringResource("WFSCapabilitiesParserTest-statfi-2_0_0-input.xml", this);
+        String expected = ResourceHelper.readStringResource("WFSCapabilitiesParserTest-statfi-expected.json", this);
+        RawCapabilitiesResponse response = new RawCapabilitiesResponse("https://mydomain.org");
+        response.setResponse(xml.getBytes(StandardCharsets.UTF_8), "UTF-8");
+
+        Map<String, LayerCapabilities> layers = getParser().getLayersFromService(getConnectInfo(version), response,
+                Collections.singleton("tilastointialueet:avi4500k"));
+        assertEquals("Should only parse the requested layer", 1, layers.size());
+        JSONObject json = CapabilitiesService.toJSON(layers.get("tilastointialueet:avi4500k"), SYSTEM_CRS);
+        assertEquals("Check version", version, json.remove("version"));
+        // expected JSON is from parsing the document without a service url
+        assertEquals("Check url", getConnectInfo(version).getUrl(), json.remove("url"));
+        assertTrue("JSON should match", JSONHelper.isEqual(json, JSONHelper.createJSONObject(expected)));
+    }
+
     @Test
     public void parseStatFi3_0_0() throws Exception {
         String version = "3.0.0";
@@ -1,5 +1,6 @@
 package org.oskari.capabilities.ogc;
 
+import fi.nls.oskari.domain.map.OskariLayer;
 import fi.nls.oskari.util.JSONHelper;
 import fi.nls.test.util.ResourceHelper;
 import org.json.JSONObject;
@@ -7,9 +8,12 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import org.oskari.capabilities.CapabilitiesService;
 import org.oskari.capabilities.LayerCapabilities;
+import org.oskari.capabilities.RawCapabilitiesResponse;
+import org.oskari.capabilities.ServiceConnectInfo;
 import org.oskari.capabilities.ogc.wms.WMSCapsParser1_1_1;
 import org.oskari.capabilities.ogc.wms.WMSCapsParser1_3_0;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 import static org.junit.Assert.*;
@@ -67,6 +71,23 @@ public class WMSCapabilitiesParserTest {
         assertEquals("Coverage should match", wkt, layerCaps.getBbox().getWKT());
     }
 
+    @Test
+    public void parseCp1_3_0FromResponse() throws Exception {
+        String xml = ResourceHelper.readStringResource("WMSCapabilitiesParserTest-cp_1_3_0-input.xml", this);
+        String expected = ResourceHelper.readStringResource("WMSCapabilitiesParserTest-cp-expected.json", this);
+        RawCapabilitiesResponse response = new RawCapabilitiesResponse("https://mydomain.org/wms");
+        response.setResponse(xml.getBytes(StandardCharsets.UTF_8), "UTF-8");
+        ServiceConnectInfo info = new ServiceConnectInfo("https://mydomain.org/wms", OskariLayer.TYPE_WMS, WMSCapsParser1_3_0.VERSION);
+
+        Map<String, LayerCapabilities> layers = parser.getLayersFromService(info, response);
+        assertEquals("Should find layers", 2, layers.size());
+        JSONObject json = CapabilitiesService.toJSON(layers.get("CP.CadastralBoundary"), SYSTEM_CRS);
+        assertEquals("Check version", WMSCapsParser1_3_0.VERSION, json.remove("version"));
+        // expected JSON is from parsing the document without a service url
+        assertEquals("Check url", "https://mydomain.org/wms", json.remove("url"));
+        assertTrue("JSON should match", JSONHelper.isEqual(json, JSONHelper.createJSONObject(expected)));
+    }
+
     @Test
     public void parseChloro1_1_1() throws Exception {
         String xml = ResourceHelper.readStringResource("WMSCapabilitiesParserTest-chloro_1_1_1-input.xml", this);
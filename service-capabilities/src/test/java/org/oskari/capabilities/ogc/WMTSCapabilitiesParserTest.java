@@ -8,7 +8,11 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import org.oskari.capabilities.CapabilitiesService;
 import org.oskari.capabilities.LayerCapabilities;
+import org.oskari.capabilities.RawCapabilitiesResponse;
+import org.oskari.capabilities.ServiceConnectInfo;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
@@ -54,6 +58,26 @@ public class WMTSCapabilitiesParserTest {
         assertTrue("JSON should match", JSONHelper.isEqual(json, JSONHelper.createJSONObject(expected)));
     }
 
+    @Test
+    public void testNASAParsingSingleLayerFromResponse() throws Exception {
+        String xml = ResourceHelper.readStringResource("WMTSCapabilitiesParserTest-nasa-input.xml", this);
+        String expected = ResourceHelper.readStringResource("WMTSCapabilitiesParserTest-nasa-expected.json", this);
+        RawCapabilitiesResponse response = new RawCapabilitiesResponse("https://mydomain.org/wmts");
+        response.setResponse(xml.getBytes(StandardCharsets.UTF_8), "UTF-8");
+        ServiceConnectInfo info = new ServiceConnectInfo("https://mydomain.org/wmts", OskariLayer.TYPE_WMTS, "1.0.0");
+
+        WMTSCapabilitiesParser parser = new WMTSCapabilitiesParser();
+        parser.init();
+        Map<String, LayerCapabilities> layers = parser.getLayersFromService(info, response, Collections.singleton("BlueMarble_NextGeneration"));
+        assertEquals("Should only parse the requested layer", 1, layers.size());
+        LayerCapabilities caps = layers.get("BlueMarble_NextGeneration");
+        assertEquals("Url should be set", "https://mydomain.org/wmts", caps.getUrl());
+        JSONObject json = CapabilitiesService.toJSON(caps, SYSTEM_CRS);
+        // expected JSON is from parsing the document without a service url
+        assertEquals("Check url", "https://mydomain.org/wmts", json.remove("url"));
+        assertTrue("JSON should match", JSONHelper.isEqual(json, JSONHelper.createJSONObject(expected)));
+    }
+
     @Test
     public void testASDIParsing() throws Exception {
         String xml = ResourceHelper.readStringResource("WMTSCapabilitiesParserTest-asdi-input.xml", this);
@@ -130,6 +154,8 @@ public class WMTSCapabilitiesParserTest {
         LayerCapabilitiesWMTS caps = CapabilitiesService.fromJSON(json.toString(), OskariLayer.TYPE_WMTS);
         // Deserialization back to objects succeeded \o/
         assertEquals("Only one tilematrix after filtering against CRS list for system", 1, caps.getTileMatrixLinks().size());
+        assertEquals("Links should be found by projection", 1, caps.getTileMatrixLinks("EPSG:3067").size());
+        assertTrue("No links for other projections", caps.getTileMatrixLinks("EPSG:3857").isEmpty());
     }
 
     @Test
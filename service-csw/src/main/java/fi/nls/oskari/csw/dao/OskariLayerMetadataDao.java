@@ -5,11 +5,16 @@ import fi.nls.oskari.log.LogFactory;
 import fi.nls.oskari.log.Logger;
 import fi.nls.oskari.mybatis.MyBatisHelper;
 import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ExecutorType;
 import org.apache.ibatis.session.SqlSession;
 import org.apache.ibatis.session.SqlSessionFactory;
 import org.apache.ibatis.session.SqlSessionFactoryBuilder;
 
 import javax.sql.DataSource;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Simple MyBatis Dao for saving CSW metadata for maplayers
@@ -48,4 +53,56 @@ public class OskariLayerMetadataDao {
             session.close();
         }
     }
+
+    /**
+     * @return distinct metadata ids referenced by maplayers
+     */
+    public List<String> findLayerMetadataIds() {
+        try (SqlSession session = factory.openSession()) {
+            return session.getMapper(OskariLayerMetadataDto.Mapper.class).findLayerMetadataIds();
+        } catch (Exception e) {
+            log.error(e, "Error listing metadata ids");
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Returns saved metadata without wkt and json. The metadataDateStamp field is populated instead.
+     * @return saved metadata keyed by metadata id
+     */
+    public Map<String, OskariLayerMetadataDto> findDateStamps() {
+        final Map<String, OskariLayerMetadataDto> result = new HashMap<>();
+        try (SqlSession session = factory.openSession()) {
+            for (OskariLayerMetadataDto dto : session.getMapper(OskariLayerMetadataDto.Mapper.class).findDateStamps()) {
+                result.putIfAbsent(dto.metadataId, dto);
+            }
+        } catch (Exception e) {
+            log.error(e, "Error listing saved metadata");
+        }
+        return result;
+    }
+
+    /**
+     * Saves metadata in one batch. Metadata with id is updated and metadata without id is inserted
+     * so the ids need to be resolved beforehand with findDateStamps().
+     * @param list
+     */
+    public void saveMetadata(List<OskariLayerMetadataDto> list) {
+        if (list.isEmpty()) {
+            return;
+        }
+        try (SqlSession session = factory.openSession(ExecutorType.BATCH)) {
+            final OskariLayerMetadataDto.Mapper mapper = session.getMapper(OskariLayerMetadataDto.Mapper.class);
+            for (OskariLayerMetadataDto dto : list) {
+                if (dto.id == null) {
+                    mapper.insert(dto);
+                } else {
+                    mapper.update(dto);
+                }
+            }
+            session.commit();
+        } catch (Exception e) {
+            log.error(e, "Error saving metadata");
+        }
+    }
 }
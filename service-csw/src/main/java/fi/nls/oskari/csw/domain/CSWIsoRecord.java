@@ -90,6 +90,16 @@ public class CSWIsoRecord {
         this.metadataDateStamp = metadataDateStamp;
     }
 
+    /**
+     * @return metadataDateStamp formatted like in toJSON() or null if not available
+     */
+    public String getMetadataDateStampAsString() {
+        if (metadataDateStamp == null) {
+            return null;
+        }
+        return metadataDateStamp.format(DATE_TIME_FORMAT);
+    }
+
     public String getMetadataStandardName() {
         return metadataStandardName;
     }
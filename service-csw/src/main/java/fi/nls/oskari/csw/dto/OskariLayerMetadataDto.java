@@ -5,6 +5,7 @@ import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.annotations.Update;
 
 import java.util.Calendar;
+import java.util.List;
 
 /**
  * A data transfer object for interacting with the ``oskari_maplayer_metadata`` database table.
@@ -15,6 +16,13 @@ public class OskariLayerMetadataDto {
         @Select("SELECT id, metadataid, wkt, json, ts FROM oskari_maplayer_metadata where metadataid=#{metadataId}")
         public OskariLayerMetadataDto find(final String metadataId);
 
+        @Select("SELECT DISTINCT metadataid FROM oskari_maplayer WHERE metadataid IS NOT NULL AND TRIM(metadataid) <> ''")
+        public List<String> findLayerMetadataIds();
+
+        // only the dateStamp is picked from the json since the whole document isn't needed for comparing
+        @Select("SELECT id, metadataid, SUBSTRING(json FROM '\"metadataDateStamp\":\"([^\"]*)\"') AS metadataDateStamp FROM oskari_maplayer_metadata")
+        public List<OskariLayerMetadataDto> findDateStamps();
+
         @Insert("INSERT INTO oskari_maplayer_metadata (metadataid, wkt, json, ts) VALUES (#{metadataId}, #{wkt}, #{json}, NOW())")
         public void insert(final OskariLayerMetadataDto metadata);
 
@@ -49,4 +57,9 @@ public class OskariLayerMetadataDto {
 
     public String json;
 
+    /**
+     * metadataDateStamp of the saved json, only populated by Mapper.findDateStamps()
+     */
+    public String metadataDateStamp;
+
 }
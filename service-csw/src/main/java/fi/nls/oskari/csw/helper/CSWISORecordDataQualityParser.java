@@ -15,7 +15,7 @@ import java.util.Map;
 public class CSWISORecordDataQualityParser {
 
     private static final Logger log = LogFactory.getLogger(CSWISORecordDataQualityParser.class);
-    private static XPathExpression pathToLocalizedValue = null;
+    private XPathExpression pathToLocalizedValue = null;
 
     //Lineage statement
     private XPathExpression XPATH_LINEAGE_STATEMENT = null;
@@ -23,6 +23,7 @@ public class CSWISORecordDataQualityParser {
     //Data quality node information
     private final XPath xpath = XPathFactory.newInstance().newXPath();
     private final Map<String, String> dataQualities = new LinkedMap();
+    private final Map<String, XPathExpression> dataQualityPaths = new LinkedMap();
     private XPathExpression XPATH_NAME_OF_MEASURE = null; //many
     private XPathExpression XPATH_MEASURE_IDENTIFICATION_CODE = null;
     private XPathExpression XPATH_MEASURE_IDENTIFICATION_AUTHORIZATION = null;
@@ -65,6 +66,9 @@ public class CSWISORecordDataQualityParser {
 
         try {
             xpath.setNamespaceContext(new CSWISORecordNamespaceContext());
+            for (Map.Entry<String, String> entry : dataQualities.entrySet()) {
+                dataQualityPaths.put(entry.getKey(), xpath.compile(entry.getValue()));
+            }
 
             //Lineage statement
             XPATH_LINEAGE_STATEMENT = xpath.compile("./gmd:lineage/gmd:LI_Lineage/gmd:statement");
@@ -125,10 +129,9 @@ public class CSWISORecordDataQualityParser {
             }
 
             // parse dataQualities (gmd:report)
-            for (Map.Entry<String, String> entry : dataQualities.entrySet()) {
+            for (Map.Entry<String, XPathExpression> entry : dataQualityPaths.entrySet()) {
                 String key = entry.getKey();
-                String value = entry.getValue();
-                XPathExpression pathToDQChildNode = xpath.compile(value);
+                XPathExpression pathToDQChildNode = entry.getValue();
                 NodeList dataQualityChildNodes = (NodeList) pathToDQChildNode.evaluate(parentNode, XPathConstants.NODESET);
 
                 if(dataQualityChildNodes == null || dataQualityChildNodes.getLength() < 1) {
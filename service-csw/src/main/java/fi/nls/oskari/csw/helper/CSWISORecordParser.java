@@ -20,6 +20,9 @@ import java.util.*;
 /**
  * Helper class for parsing search results for MetadataCatalogue:
  * Created by TMIKKOLAINEN on 2.9.2014.
+ *
+ * Compiling the XPath expressions is expensive so instances should be reused, but an instance
+ * must not be used by multiple threads at the same time (XPathExpression is not thread-safe).
  */
 public class CSWISORecordParser {
 
@@ -29,6 +32,7 @@ public class CSWISORecordParser {
     private static final Map<String, String> ISO3letterOskariLangMapping = new HashMap<>();
     private static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'kk:mm:ss"); // or ISO_DATE_TIME
     private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final int MAX_LOCALIZED_PATHS = 32;
 
     static {
         for (final String language : Locale.getISOLanguages()) {
@@ -39,6 +43,9 @@ public class CSWISORecordParser {
 
     GeometryFactory gf = new GeometryFactory(new PrecisionModel(), 4326);
     private XPath xpath = XPathFactory.newInstance().newXPath();
+    // compiled paths for localized values keyed by locale id of the document
+    private final Map<String, XPathExpression> localizedValuePaths = new HashMap<>();
+    private CSWISORecordDataQualityParser dataQualityParser;
 
     private XPathExpression XPATH_DATA_QUALITY = null;
     private XPathExpression XPATH_DISTRIBUTION_INFO = null;
@@ -273,8 +280,7 @@ public class CSWISORecordParser {
         String value;
         XPathExpression pathToLocalizedValue = null;
         if (locales != null && locales.containsKey(locale.getISO3Language())) {
-            pathToLocalizedValue = xpath.compile(
-                    "../gmd:PT_FreeText/gmd:textGroup/gmd:LocalisedCharacterString[@locale='#" + locales.get(locale.getISO3Language()) + "']");
+            pathToLocalizedValue = getPathToLocalizedValue(locales.get(locale.getISO3Language()));
         }
 
         nodeList = (NodeList) XPATH_DI_SI.evaluate(elem, XPathConstants.NODESET);
@@ -285,7 +291,9 @@ public class CSWISORecordParser {
         nodeList = (NodeList) XPATH_DATA_QUALITY.evaluate(elem, XPathConstants.NODESET);
         if (nodeList.getLength() > 0) {
             try {
-                CSWISORecordDataQualityParser dataQualityParser = new CSWISORecordDataQualityParser();
+                if (dataQualityParser == null) {
+                    dataQualityParser = new CSWISORecordDataQualityParser();
+                }
                 record.setDataQualityObject(dataQualityParser.parseDataQualities(nodeList, pathToLocalizedValue));
             }
             catch (Exception e) {
@@ -352,6 +360,22 @@ public class CSWISORecordParser {
         return record;
     }
 
+    /**
+     * The locale ids are usually the same in all records of a catalogue so the compiled paths are reused.
+     * The cache is bounded in case a catalogue uses a different id for each record.
+     */
+    private XPathExpression getPathToLocalizedValue(final String localeId) throws XPathExpressionException {
+        XPathExpression path = localizedValuePaths.get(localeId);
+        if (path == null) {
+            path = xpath.compile(
+                    "../gmd:PT_FreeText/gmd:textGroup/gmd:LocalisedCharacterString[@locale='#" + localeId + "']");
+            if (localizedValuePaths.size() < MAX_LOCALIZED_PATHS) {
+                localizedValuePaths.put(localeId, path);
+            }
+        }
+        return path;
+    }
+
     private void parseIdentifications(NodeList nodeList, List<CSWIsoRecord.Identification> identifications, MathTransform transform, XPathExpression pathToLocalizedValue) throws XPathExpressionException, ParseException, TransformException {
         CSWIsoRecord.Identification identification;
         Node node;
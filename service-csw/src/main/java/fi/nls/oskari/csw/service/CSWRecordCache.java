@@ -0,0 +1,120 @@
+package fi.nls.oskari.csw.service;
+
+import fi.nls.oskari.cache.CacheManager;
+import fi.nls.oskari.cache.ComputeOnceCache;
+import fi.nls.oskari.csw.domain.CSWIsoRecord;
+import fi.nls.oskari.log.LogFactory;
+import fi.nls.oskari.log.Logger;
+import fi.nls.oskari.service.ServiceRuntimeException;
+import fi.nls.oskari.util.PropertyUtil;
+
+import java.util.Collection;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Keeps metadata records fetched with GetRecordById so a record opened from metadata search results
+ * doesn't need to be requested and parsed again. Records are keyed by service url, uuid and language.
+ * Concurrent requests for the same record (including prefetches) result in a single GetRecordById request.
+ *
+ * Configurable by properties:
+ * - service.metadata.cache.minutes: how long records are kept (defaults to 30)
+ * - service.metadata.cache.limit: max amount of cached records (defaults to 500)
+ * - service.metadata.prefetch.threads: threads used for prefetching records (defaults to 2)
+ *
+ * Note! The returned records are shared between requests and should not be modified.
+ */
+public class CSWRecordCache {
+
+    private static final Logger LOG = LogFactory.getLogger(CSWRecordCache.class);
+
+    public static final String PROP_CACHE_MINUTES = "service.metadata.cache.minutes";
+    public static final String PROP_CACHE_LIMIT = "service.metadata.cache.limit";
+    public static final String PROP_PREFETCH_THREADS = "service.metadata.prefetch.threads";
+    // prefetches are skipped when this many are already waiting
+    private static final int PREFETCH_QUEUE_SIZE = 100;
+
+    private static final ComputeOnceCache<CSWIsoRecord> CACHE = CacheManager.getCache(CSWRecordCache.class.getName(),
+            () -> new ComputeOnceCache<>(PropertyUtil.getOptional(PROP_CACHE_LIMIT, 500),
+                    TimeUnit.MINUTES.toMillis(PropertyUtil.getOptional(PROP_CACHE_MINUTES, 30))));
+
+    private static ThreadPoolExecutor prefetcher;
+
+    private CSWRecordCache() {}
+
+    /**
+     * Returns the record from cache or requests it from the service.
+     * @param url CSW service url
+     * @param uuid metadata fileIdentifier
+     * @param lang language for localized values
+     * @return record or null if the service didn't return one
+     * @throws ServiceRuntimeException if the request failed
+     */
+    public static CSWIsoRecord getRecord(String url, String uuid, String lang) {
+        return getRecord(url, uuid, lang, () -> fetch(url, uuid, lang));
+    }
+
+    static CSWIsoRecord getRecord(String url, String uuid, String lang, Supplier<CSWIsoRecord> fetcher) {
+        return CACHE.get(getKey(url, uuid, lang), key -> fetcher.get());
+    }
+
+    /**
+     * Requests the records that are not cached yet in the background. Prefetches are dropped
+     * if the service is slower than new ones are requested.
+     * @param url CSW service url
+     * @param uuids metadata fileIdentifiers
+     * @param lang language for localized values
+     */
+    public static void prefetch(String url, Collection<String> uuids, String lang) {
+        if (url == null || lang == null) {
+            return;
+        }
+        ThreadPoolExecutor executor = getPrefetcher();
+        for (String uuid : uuids) {
+            if (uuid == null || CACHE.get(getKey(url, uuid, lang)) != null) {
+                continue;
+            }
+            executor.execute(() -> {
+                try {
+                    getRecord(url, uuid, lang);
+                } catch (Exception e) {
+                    LOG.debug("Prefetching metadata", uuid, "failed:", e.getMessage());
+                }
+            });
+        }
+    }
+
+    public static void flush() {
+        CACHE.flush(true);
+    }
+
+    protected static String getKey(String url, String uuid, String lang) {
+        return url + "|" + lang + "|" + uuid;
+    }
+
+    private static CSWIsoRecord fetch(String url, String uuid, String lang) {
+        try {
+            return new CSWService(url).getRecordById(uuid, lang);
+        } catch (Exception e) {
+            throw new ServiceRuntimeException(e.getMessage(), e);
+        }
+    }
+
+    private static synchronized ThreadPoolExecutor getPrefetcher() {
+        if (prefetcher == null) {
+            int threads = Math.max(1, PropertyUtil.getOptional(PROP_PREFETCH_THREADS, 2));
+            prefetcher = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(PREFETCH_QUEUE_SIZE),
+                    r -> {
+                        Thread t = new Thread(r, "oskari-metadata-prefetch");
+                        t.setDaemon(true);
+                        return t;
+                    },
+                    new ThreadPoolExecutor.DiscardPolicy());
+            prefetcher.allowCoreThreadTimeOut(true);
+        }
+        return prefetcher;
+    }
+}
@@ -29,7 +29,12 @@ import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * getMetadata and getMetadataById to help linking schema catalogue and metadata
@@ -42,6 +47,7 @@ public class CSWService {
     public static final String PROP_SERVICE_URL = "service.metadata.url";
     private static final Logger log = LogFactory
             .getLogger(CSWService.class);
+    private static final Queue<CSWISORecordParser> PARSERS = new ConcurrentLinkedQueue<>();
 
     String baseURL;
     private CoordinateReferenceSystem targetCRS;
@@ -107,6 +113,32 @@ public class CSWService {
         return record;
     }
 
+    /**
+     * Loads multiple metadata records with one GetRecordById request. CSW 2.0.2 allows a comma separated
+     * list of ids, but some catalogues only return the first record or none at all. Callers should
+     * check the fileIdentifiers of the returned records and fetch the missing ones with getRecordById().
+     *
+     * @param uuids
+     * @param lang
+     * @return records in the order of the response
+     */
+    public List<CSWIsoRecord> getRecordsById(Collection<String> uuids, String lang) throws IOException, TransformException, XPathExpressionException, ParseException {
+        final URL url = getGetRecordByIdUrl(String.join(",", uuids), lang);
+        List<Node> elements = invokeCswGetRecordsById(url);
+        List<CSWIsoRecord> records = new ArrayList<>(elements.size());
+        for (Node el : elements) {
+            if (!CSWISORecordNamespaceContext.GMDNS.equals(el.getNamespaceURI())) {
+                throw new IOException("Invalid response");
+            }
+            CSWIsoRecord record = mapIsoRecordElementToObject(el, lang);
+            // link to the single record like getRecordById() does
+            String id = record.getFileIdentifier();
+            record.setMetadataURL(id == null ? url : getGetRecordByIdUrl(id, lang));
+            records.add(record);
+        }
+        return records;
+    }
+
     protected URL getGetRecordByIdUrl(String id, String lang) throws MalformedURLException {
         final String elementSetName = "full";
         // This is basically just the 'right' way to say csw:IsoRecord
@@ -138,6 +170,19 @@ public class CSWService {
      */
     protected Node invokeCswGetRecordById(final URL url)
             throws IOException {
+        List<Node> elements = invokeCswGetRecordsById(url);
+        // keep the last one like before
+        return elements.isEmpty() ? null : elements.get(elements.size() - 1);
+    }
+
+    /**
+     * helper to invoke csw query that may return multiple records
+     *
+     * @return MD_Metadata elements of the response
+     * @throws IOException
+     */
+    protected List<Node> invokeCswGetRecordsById(final URL url)
+            throws IOException {
 
         HttpURLConnection con = IOHelper.followRedirect(
                 IOHelper.getConnection(url.toString()), 5);
@@ -146,23 +191,23 @@ public class CSWService {
         }
         try (InputStream in = con.getInputStream()) {
             // TODO: return getMetadataRootFuture(in);
-            return getMetadataRootCurrent(in);
+            return parseMetadataElements(in);
         } catch (Exception e) {
             throw new IOException("Unable to parse XML from " + url, e);
         }
     }
 
-    private Node getMetadataRootCurrent(InputStream in) throws Exception {
+    protected List<Node> parseMetadataElements(InputStream in) throws Exception {
         DocumentBuilderFactory dbf = fi.nls.oskari.util.XmlHelper.newDocumentBuilderFactory();
         dbf.setNamespaceAware(true);
         DocumentBuilder db = dbf.newDocumentBuilder();
         Document doc = db.parse(in);
         Node root = doc.getDocumentElement();
         NodeList children = root.getChildNodes();
-        Node ret = null;
+        List<Node> ret = new ArrayList<>();
         for (int i = 0; i < children.getLength(); i++) {
             if ("MD_Metadata".equals(children.item(i).getLocalName())) {
-                ret = children.item(i);
+                ret.add(children.item(i));
             }
         }
         return ret;
@@ -181,9 +226,17 @@ public class CSWService {
 
 
     protected CSWIsoRecord mapIsoRecordElementToObject(Node el, String lang) throws XPathExpressionException, TransformException, ParseException {
-        CSWISORecordParser parser = new CSWISORecordParser();
-        Locale locale = new Locale(lang);
-        return parser.parse(el, locale, transform);
+        // parsers are pooled since compiling the xpaths takes longer than parsing a record
+        CSWISORecordParser parser = PARSERS.poll();
+        if (parser == null) {
+            parser = new CSWISORecordParser();
+        }
+        try {
+            Locale locale = new Locale(lang);
+            return parser.parse(el, locale, transform);
+        } finally {
+            PARSERS.offer(parser);
+        }
     }
 
 }
\ No newline at end of file
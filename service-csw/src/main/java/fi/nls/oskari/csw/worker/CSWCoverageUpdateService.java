@@ -7,28 +7,38 @@ import fi.nls.oskari.csw.domain.CSWIsoRecord;
 import fi.nls.oskari.csw.dto.OskariLayerMetadataDto;
 import fi.nls.oskari.csw.service.CSWService;
 import fi.nls.oskari.db.DatasourceHelper;
-import fi.nls.oskari.domain.map.OskariLayer;
 import fi.nls.oskari.log.LogFactory;
 import fi.nls.oskari.log.Logger;
-import fi.nls.oskari.map.layer.OskariLayerService;
-import fi.nls.oskari.map.layer.OskariLayerServiceMybatisImpl;
 import fi.nls.oskari.util.PropertyUtil;
 import fi.nls.oskari.worker.ScheduledJob;
 
 import javax.sql.DataSource;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Scheduled job for retrieving coverage data for maplayers having metadataids.
+ *
+ * Metadata is requested in batches of ids with GetRecordById and the batches are fetched concurrently.
+ * Records that have the same dateStamp as the saved metadata are not saved again.
+ *
+ * Configuration:
+ * - service.metadata.coverage.batch - number of ids per GetRecordById request (defaults to 10, 1 disables batching)
+ * - service.metadata.coverage.threads - number of requests to make at the same time (defaults to 4)
  */
 @Oskari("CSWCoverageImport")
 public class CSWCoverageUpdateService extends ScheduledJob {
     private static final Logger log = LogFactory.getLogger(CSWCoverageUpdateService.class);
 
-    final OskariLayerService layerService = new OskariLayerServiceMybatisImpl();
     final private static String PROPERTY_BASE_URL = "service.metadata.url";
+    final private static String PROPERTY_BATCH_SIZE = "service.metadata.coverage.batch";
+    final private static String PROPERTY_THREADS = "service.metadata.coverage.threads";
+
+    // set when the catalogue doesn't handle multiple ids in one request
+    private volatile boolean batchUnsupported = false;
 
     @Override
     public void execute(Map<String, Object> params) {
@@ -45,20 +55,69 @@ public class CSWCoverageUpdateService extends ScheduledJob {
             // no reason to go forward since we can't contact the service
             return;
         }
-
-        final Set<String> metadataIdSet = getMetadataIdSet();
-        if(metadataIdSet.isEmpty()) {
-            log.info("No layers with metadata id - quitting!");
-            return;
-        }
         final DataSource dataSource = getDatasource();
         if(dataSource == null) {
             log.error("Couldn't get datasource - quitting!");
             return;
         }
         final OskariLayerMetadataDao dao = new OskariLayerMetadataDao(dataSource);
-        for (String metadataId : metadataIdSet) {
-            final CSWIsoRecord csw = getMetadata(cswService, metadataId);
+        final Set<String> metadataIdSet = getMetadataIdSet(dao);
+        if(metadataIdSet.isEmpty()) {
+            log.info("No layers with metadata id - quitting!");
+            return;
+        }
+        final Map<String, OskariLayerMetadataDto> saved = dao.findDateStamps();
+        final String language = PropertyUtil.getDefaultLanguage();
+        final int batchSize = Math.max(1, PropertyUtil.getOptional(PROPERTY_BATCH_SIZE, 10));
+        final int threads = Math.max(1, PropertyUtil.getOptional(PROPERTY_THREADS, 4));
+        batchUnsupported = batchSize == 1;
+
+        final List<List<String>> batches = partition(metadataIdSet, batchSize);
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, batches.size()));
+        int count = 0;
+        try {
+            final List<Future<List<OskariLayerMetadataDto>>> futures = new ArrayList<>(batches.size());
+            for (List<String> batch : batches) {
+                futures.add(executor.submit(() -> getChangedMetadata(cswService, batch, language, saved)));
+            }
+            // save on this thread as the batches complete so the records don't pile up in memory
+            for (Future<List<OskariLayerMetadataDto>> future : futures) {
+                List<OskariLayerMetadataDto> changed = getResult(future);
+                dao.saveMetadata(changed);
+                count += changed.size();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        log.info("Done with the CSW coverage update service call. Saved", count, "/", metadataIdSet.size(), "metadata");
+    }
+
+    private List<OskariLayerMetadataDto> getResult(Future<List<OskariLayerMetadataDto>> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.error(e.getCause(), "Error fetching metadata");
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Fetches the metadata for a batch of ids and returns the ones that have changed since they were saved.
+     */
+    protected List<OskariLayerMetadataDto> getChangedMetadata(final CSWService cswService, final List<String> ids,
+                                                              final String language, final Map<String, OskariLayerMetadataDto> saved) {
+        final List<OskariLayerMetadataDto> result = new ArrayList<>();
+        for (Map.Entry<String, CSWIsoRecord> entry : getMetadata(cswService, ids, language).entrySet()) {
+            final String metadataId = entry.getKey();
+            final CSWIsoRecord csw = entry.getValue();
+            final OskariLayerMetadataDto previous = saved.get(metadataId);
+            final String dateStamp = csw.getMetadataDateStampAsString();
+            if (previous != null && dateStamp != null && dateStamp.equals(previous.metadataDateStamp)) {
+                log.debug("Metadata not modified:", metadataId);
+                continue;
+            }
             final Geometry geom = getGeometry(csw);
             if(geom == null) {
                 // no geometry on metadata, move to next
@@ -66,13 +125,30 @@ public class CSWCoverageUpdateService extends ScheduledJob {
                 continue;
             }
             final OskariLayerMetadataDto dto = new OskariLayerMetadataDto();
+            dto.id = previous == null ? null : previous.id;
             dto.metadataId  = metadataId;
             // NOTE! wkt is WGS:84
             dto.wkt = geom.getEnvelope().toText();
             dto.json = csw.toJSON().toString();
-            dao.saveMetadata(dto);
+            result.add(dto);
+        }
+        return result;
+    }
+
+    protected static List<List<String>> partition(Collection<String> ids, int size) {
+        final List<List<String>> batches = new ArrayList<>();
+        List<String> batch = new ArrayList<>(size);
+        for (String id : ids) {
+            batch.add(id);
+            if (batch.size() == size) {
+                batches.add(batch);
+                batch = new ArrayList<>(size);
+            }
         }
-        log.info("Done with the CSW coverage update service call");
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
     }
 
     private DataSource getDatasource() {
@@ -89,21 +165,46 @@ public class CSWCoverageUpdateService extends ScheduledJob {
      * Returns a set of metadata ids which should be updated
      * @return
      */
-    public Set<String> getMetadataIdSet() {
-        final Set<String> result = new HashSet<String>();
-        // TODO: make it a query in DB rather than looping here for distinct values
-        for(OskariLayer layer : layerService.findAll()) {
-            final String uuid = layer.getMetadataId();
-            if(uuid != null && !uuid.trim().isEmpty()) {
-                result.add(layer.getMetadataId());
+    public Set<String> getMetadataIdSet(final OskariLayerMetadataDao dao) {
+        return new LinkedHashSet<>(dao.findLayerMetadataIds());
+    }
+
+    /**
+     * Fetches the records with one request when possible. Ids missing from the response are fetched one by one.
+     * @return records keyed by the requested id
+     */
+    private Map<String, CSWIsoRecord> getMetadata(final CSWService cswService, final List<String> ids, final String language) {
+        final Map<String, CSWIsoRecord> result = new LinkedHashMap<>();
+        final boolean batched = ids.size() > 1 && !batchUnsupported;
+        if (batched) {
+            try {
+                for (CSWIsoRecord record : cswService.getRecordsById(ids, language)) {
+                    if (ids.contains(record.getFileIdentifier())) {
+                        result.putIfAbsent(record.getFileIdentifier(), record);
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("Error fetching metadata for ids:", ids, "-", e.getMessage());
             }
         }
+        final int fromBatch = result.size();
+        for (String metadataId : ids) {
+            if (!result.containsKey(metadataId)) {
+                final CSWIsoRecord record = getMetadata(cswService, metadataId, language);
+                if (record != null) {
+                    result.put(metadataId, record);
+                }
+            }
+        }
+        if (batched && fromBatch <= 1 && result.size() > fromBatch) {
+            // records exist but the catalogue only returns one (or none) per request
+            log.info("Catalogue doesn't return multiple records for one request - fetching metadata one by one");
+            batchUnsupported = true;
+        }
         return result;
     }
 
-
-    private CSWIsoRecord getMetadata(final CSWService cswService, final String metadataId) {
-        final String language = PropertyUtil.getDefaultLanguage();
+    private CSWIsoRecord getMetadata(final CSWService cswService, final String metadataId, final String language) {
         try {
             return cswService.getRecordById(metadataId, language);
         } catch (Exception e) {
@@ -15,18 +15,28 @@ import fi.mml.portti.service.search.IllegalSearchCriteriaException;
 import fi.mml.portti.service.search.SearchCriteria;
 import fi.mml.portti.service.search.SearchResultItem;
 import fi.nls.oskari.annotation.Oskari;
+import fi.nls.oskari.cache.Cache;
+import fi.nls.oskari.cache.CacheManager;
 import fi.nls.oskari.control.metadata.MetadataField;
+import fi.nls.oskari.csw.service.CSWRecordCache;
 import fi.nls.oskari.log.LogFactory;
 import fi.nls.oskari.log.Logger;
 import fi.nls.oskari.map.geometry.GeometryHelper;
 import fi.nls.oskari.map.geometry.WKTHelper;
+import fi.nls.oskari.util.ConversionHelper;
 import fi.nls.oskari.util.IOHelper;
 import fi.nls.oskari.util.PropertyUtil;
 import org.oskari.xml.XmlHelper;
+import org.oskari.xml.XmlStreamHelper;
 import org.w3c.dom.Element;
 
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -51,6 +61,11 @@ import static fi.nls.oskari.csw.service.CSWService.PROP_SERVICE_URL;
  *      - filterOp: used for creating query and mapped in code to Deegree filter operations (defaults to LIKE operations)
  *      - mustMatch: true means the field will be treated as AND filter instead of OR when creating query filter (defaults to false)
  *      - blacklist: is a list of response values that will be filtered out
+ * - Caching: search.channel.METADATA_CATALOGUE_CHANNEL.cache.minutes is how long responses are cached by query (defaults to 10, 0 disables)
+ *      - cache.limit: max amount of cached responses (defaults to 20)
+ *      - cache.maxKB: responses larger than this are not cached (defaults to 2048)
+ * - Prefetching: search.channel.METADATA_CATALOGUE_CHANNEL.prefetch is the amount of records from the start of the results
+ *      that are loaded to CSWRecordCache in the background for GetCSWData (defaults to 5, 0 disables)
  *
  */
 @Oskari(MetadataCatalogueChannelSearchService.ID)
@@ -65,15 +80,28 @@ public class MetadataCatalogueChannelSearchService extends SearchChannel {
 
     private final static List<MetadataField> fields = new ArrayList<>();
 
-    private MetadataCatalogueResultParser RESULT_PARSER = null;
+    private MetadataCatalogueResultStreamParser RESULT_PARSER = null;
     private final MetadataCatalogueQueryHelper QUERY_HELPER = new MetadataCatalogueQueryHelper();
+    // raw responses are cached as result items are modified after parsing
+    private Cache<byte[]> responseCache;
+    private int maxCachedBytes;
+    private int prefetchCount;
 
     @Override
     public void init() {
         super.init();
         queryType = getProperty("queryType", "summary");
         queryFields = getProperty("queryFields", "csw:anyText").split("\\s*,\\s*");
-        RESULT_PARSER = new MetadataCatalogueResultParser();
+        RESULT_PARSER = new MetadataCatalogueResultStreamParser();
+        int cacheMinutes = ConversionHelper.getInt(getProperty("cache.minutes", null), 10);
+        if (cacheMinutes > 0) {
+            responseCache = CacheManager.getCache(MetadataCatalogueChannelSearchService.class.getName());
+            responseCache.setExpiration(TimeUnit.MINUTES.toMillis(cacheMinutes));
+            // responses can be megabytes so the amount needs to be kept small
+            responseCache.setLimit(Math.max(1, ConversionHelper.getInt(getProperty("cache.limit", null), 20)));
+            maxCachedBytes = ConversionHelper.getInt(getProperty("cache.maxKB", null), 2048) * 1024;
+        }
+        prefetchCount = ConversionHelper.getInt(getProperty("prefetch", null), 5);
     }
 
     /**
@@ -131,8 +159,24 @@ public class MetadataCatalogueChannelSearchService extends SearchChannel {
 
         ChannelSearchResult channelSearchResult;
         try {
-            Element root = makeQuery(searchCriteria);
-            channelSearchResult = parseResults(root, searchCriteria);
+            final String payload = QUERY_HELPER.getQueryPayload(searchCriteria, queryType, queryFields);
+            if (payload == null) {
+                // no point in making the query without payload
+                throw new ServiceRuntimeException("Couldn't create query for metadata service");
+            }
+            byte[] response = responseCache == null ? null : responseCache.get(payload);
+            final boolean cached = response != null;
+            if (!cached) {
+                response = makeQuery(payload);
+            }
+            channelSearchResult = parseResults(response, searchCriteria);
+            if (!channelSearchResult.isQueryFailed()) {
+                if (!cached && responseCache != null && response.length <= maxCachedBytes) {
+                    // only cache responses that could be parsed
+                    responseCache.put(payload, response);
+                }
+                prefetchRecords(channelSearchResult.getSearchResultItems(), searchCriteria.getLocale());
+            }
         } catch (Exception x) {
             log.error(x, "Failed to search");
             channelSearchResult = new ChannelSearchResult();
@@ -153,19 +197,53 @@ public class MetadataCatalogueChannelSearchService extends SearchChannel {
         return XmlHelper.getChildElements(results, "MD_Metadata");
     }
 
+    /**
+     * Parses the response with StAX. The DOM based parser is used as a fallback if the streaming parser fails.
+     */
+    public ChannelSearchResult parseResults(byte[] response, SearchCriteria searchCriteria) throws Exception {
+        final long start = System.currentTimeMillis();
+        XMLStreamReader reader = null;
+        try {
+            reader = XmlStreamHelper.createReader(response, null);
+            List<SearchResultItem> results = RESULT_PARSER.parseResults(reader);
+            log.debug("Parsing metadata service response took", (System.currentTimeMillis() - start), "ms");
+            return toChannelSearchResult(results, searchCriteria);
+        } catch (XMLStreamException | RuntimeException e) {
+            log.info("Couldn't parse metadata service response with StAX, trying DOM:", e.getMessage());
+        } finally {
+            XmlStreamHelper.close(reader);
+        }
+        Element root = XmlHelper.parseXML(new ByteArrayInputStream(response));
+        log.debug("Parsing metadata service took", (System.currentTimeMillis() - start), "ms");
+        return parseResults(root, searchCriteria);
+    }
+
     public ChannelSearchResult parseResults(Element root, SearchCriteria searchCriteria) {
-        ChannelSearchResult channelSearchResult = new ChannelSearchResult();
-        final String srs = searchCriteria.getSRS();
+        ChannelSearchResult channelSearchResult;
         try {
-            final long start = System.currentTimeMillis();
             List<SearchResultItem> results = getResults(root)
                     .map(metadata -> RESULT_PARSER.parseResult(metadata))
                     .collect(Collectors.toList());
+            channelSearchResult = toChannelSearchResult(results, searchCriteria);
+        } catch (Exception x) {
+            log.error(x, "Failed to search");
+            channelSearchResult = new ChannelSearchResult();
+            channelSearchResult.setException(x);
+            channelSearchResult.setQueryFailed(true);
+        }
+        return channelSearchResult;
+    }
+
+    private ChannelSearchResult toChannelSearchResult(List<SearchResultItem> results, SearchCriteria searchCriteria) {
+        ChannelSearchResult channelSearchResult = new ChannelSearchResult();
+        final String srs = searchCriteria.getSRS();
+        try {
+            final long start = System.currentTimeMillis();
             channelSearchResult.getSearchResultItems().addAll(results);
             // enhance results with coverage geometry
             results.forEach(item -> item.addValue("geom", getWKT(item, WKTHelper.PROJ_EPSG_4326, srs)));
             final long end =  System.currentTimeMillis();
-            log.debug("Parsing metadata results took", (end-start), "ms");
+            log.debug("Creating geometries for metadata results took", (end-start), "ms");
             channelSearchResult.setQueryFailed(false);
         } catch (Exception x) {
             log.error(x, "Failed to search");
@@ -212,14 +290,22 @@ public class MetadataCatalogueChannelSearchService extends SearchChannel {
         return null;
     }
 
-    private Element makeQuery(SearchCriteria searchCriteria) throws Exception {
-        final long start = System.currentTimeMillis();
-        final String payload = QUERY_HELPER.getQueryPayload(searchCriteria, queryType, queryFields);
-        if (payload == null) {
-            // no point in making the query without payload
-            return null;
+    /**
+     * Loads the first records of the results to CSWRecordCache so opening the metadata doesn't need to wait for the service.
+     */
+    private void prefetchRecords(List<SearchResultItem> results, String lang) {
+        if (prefetchCount <= 0 || results.isEmpty()) {
+            return;
         }
+        List<String> uuids = results.stream()
+                .limit(prefetchCount)
+                .map(SearchResultItem::getResourceId)
+                .collect(Collectors.toList());
+        CSWRecordCache.prefetch(getServerURL(), uuids, lang);
+    }
 
+    protected byte[] makeQuery(String payload) throws Exception {
+        final long start = System.currentTimeMillis();
         // POSTing GetRecords request
         HttpURLConnection conn = getConnection(getServerURL());
         conn.setUseCaches(false);
@@ -228,8 +314,8 @@ public class MetadataCatalogueChannelSearchService extends SearchChannel {
 
         final long end =  System.currentTimeMillis();
         log.debug("Querying metadata service took", (end-start), "ms");
-        Element root = XmlHelper.parseXML(IOHelper.debugResponse(conn.getInputStream()));
-        log.debug("Parsing metadata service took", (System.currentTimeMillis()-end), "ms");
-        return root;
+        try (InputStream in = IOHelper.debugResponse(conn.getInputStream())) {
+            return IOHelper.readBytes(in);
+        }
     }
 }
\ No newline at end of file
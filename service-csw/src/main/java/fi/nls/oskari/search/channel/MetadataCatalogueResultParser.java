@@ -35,32 +35,25 @@ public class MetadataCatalogueResultParser {
     }
 
     public SearchResultItem parseResult(final Element elem) {
-        final SearchResultItem item = new SearchResultItem();
+        final MetadataValues values = new MetadataValues();
         // id / uuid
-        String uuid = XmlHelper.getChildValue(
+        values.uuid = XmlHelper.getChildValue(
                 XmlHelper.getFirstChild(elem, "fileIdentifier"),
                 "CharacterString");
-        item.setResourceId(uuid);
         // lang
         Element languageCode = XmlHelper.getFirstChild(
                 XmlHelper.getFirstChild(elem, "language"),
                 "LanguageCode");
-        String lang3code = XmlHelper.getAttributeValue(languageCode, "codeListValue");
-        item.setLang(ISO3letterOskariLangMapping.getOrDefault(lang3code, lang3code));
+        values.lang3code = XmlHelper.getAttributeValue(languageCode, "codeListValue");
 
         // hierarchyLevel
         Element MD_ScopeCode = XmlHelper.getFirstChild(
                 XmlHelper.getFirstChild(elem, "hierarchyLevel"),
                 "MD_ScopeCode");
-        String codeListValue = XmlHelper.getAttributeValue(MD_ScopeCode, "codeListValue");
-        if (codeListValue != null) {
-            item.setNatureOfTarget(codeListValue);
-            item.addValue(KEY_NATUREOFTHETARGET, item.getNatureOfTarget());
-        }
-        String datasetType = XmlHelper.getChildValue(
+        values.scopeCode = XmlHelper.getAttributeValue(MD_ScopeCode, "codeListValue");
+        values.datasetType = XmlHelper.getChildValue(
                 XmlHelper.getFirstChild(elem, "hierarchyLevelName"),
                 "CharacterString");
-        item.setType(datasetType);
 /*
 // 2021-12-10T20:16:47
         String timestamp = XmlHelper.getChildValue(
@@ -76,41 +69,34 @@ public class MetadataCatalogueResultParser {
         Element citation = XmlHelper.getFirstChild(
                 XmlHelper.getFirstChild(dataIdentity, "citation"),
                 "CI_Citation");
-        String title = XmlHelper.getChildValue(
+        values.title = XmlHelper.getChildValue(
                 XmlHelper.getFirstChild(citation, "title"),
                 "CharacterString");
-        item.setTitle(title);
 
         Element CI_Date = XmlHelper.getFirstChild(
                 XmlHelper.getFirstChild(citation, "date"),
                 "CI_Date");
         // 2020-01-01
-        String date = XmlHelper.getChildValue(
+        values.date = XmlHelper.getChildValue(
                 XmlHelper.getFirstChild(CI_Date, "date"),
                 "Date");
         // publication
-        String dateType = XmlHelper.getAttributeValue(
+        values.dateType = XmlHelper.getAttributeValue(
                 XmlHelper.getFirstChild(
                         XmlHelper.getFirstChild(CI_Date, "dateType"), "CI_DateTypeCode"),
                 "codeListValue");
 
-        JSONObject identification = new JSONObject();
-        JSONHelper.putValue(identification, KEY_IDENTIFICATION_CODELIST, dateType);
-        JSONHelper.putValue(identification, KEY_IDENTIFICATION_DATE, date);
-        item.addValue(KEY_IDENTIFICATION, identification);
-
-        item.setDescription(XmlHelper.getChildValue(
+        values.description = XmlHelper.getChildValue(
                 XmlHelper.getFirstChild(dataIdentity, "abstract"),
-                "CharacterString"));
+                "CharacterString");
 
         // organization
         Element CI_ResponsibleParty = XmlHelper.getFirstChild(
                 XmlHelper.getFirstChild(dataIdentity, "pointOfContact"),
                 "CI_ResponsibleParty");
-        String org = XmlHelper.getChildValue(
+        values.organization = XmlHelper.getChildValue(
                 XmlHelper.getFirstChild(CI_ResponsibleParty, "organisationName"),
                 "CharacterString");
-        item.addValue(MetadataField.RESULT_KEY_ORGANIZATION, org);
 
         // bbox
         Element EX_Extent = XmlHelper.getFirstChild(
@@ -120,7 +106,38 @@ public class MetadataCatalogueResultParser {
         Element bbox = XmlHelper.getFirstChild(
                 XmlHelper.getFirstChild(EX_Extent, "geographicElement"),
                 "EX_GeographicBoundingBox");
-        setupBBox(item, bbox);
+        if (bbox != null) {
+            values.hasBbox = true;
+            values.west = getBboxValue(bbox, "westBoundLongitude");
+            values.east = getBboxValue(bbox, "eastBoundLongitude");
+            values.south = getBboxValue(bbox, "southBoundLatitude");
+            values.north = getBboxValue(bbox, "northBoundLatitude");
+        }
+        return toItem(values);
+    }
+
+    /**
+     * Creates the search result from values parsed from MD_Metadata. Shared by the DOM and StAX parsers.
+     */
+    protected SearchResultItem toItem(final MetadataValues values) {
+        final SearchResultItem item = new SearchResultItem();
+        item.setResourceId(values.uuid);
+        item.setLang(ISO3letterOskariLangMapping.getOrDefault(values.lang3code, values.lang3code));
+        if (values.scopeCode != null) {
+            item.setNatureOfTarget(values.scopeCode);
+            item.addValue(KEY_NATUREOFTHETARGET, item.getNatureOfTarget());
+        }
+        item.setType(values.datasetType);
+        item.setTitle(values.title);
+
+        JSONObject identification = new JSONObject();
+        JSONHelper.putValue(identification, KEY_IDENTIFICATION_CODELIST, values.dateType);
+        JSONHelper.putValue(identification, KEY_IDENTIFICATION_DATE, values.date);
+        item.addValue(KEY_IDENTIFICATION, identification);
+
+        item.setDescription(values.description);
+        item.addValue(MetadataField.RESULT_KEY_ORGANIZATION, values.organization);
+        setupBBox(item, values);
         return item;
     }
 
@@ -140,14 +157,14 @@ public class MetadataCatalogueResultParser {
             </gmd:northBoundLatitude>
 
      */
-    private void setupBBox(final SearchResultItem item, final Element bbox) {
-        if (bbox == null) {
+    private void setupBBox(final SearchResultItem item, final MetadataValues values) {
+        if (!values.hasBbox) {
             return;
         }
-        item.setWestBoundLongitude(getSanitizedValue(getBboxValue(bbox, "westBoundLongitude"), MAX_LONGITUDE));
-        item.setEastBoundLongitude(getSanitizedValue(getBboxValue(bbox, "eastBoundLongitude"), MAX_LONGITUDE));
-        item.setSouthBoundLatitude(getSanitizedValue(getBboxValue(bbox, "southBoundLatitude"), MAX_LATITUDE));
-        item.setNorthBoundLatitude(getSanitizedValue(getBboxValue(bbox, "northBoundLatitude"), MAX_LATITUDE));
+        item.setWestBoundLongitude(getSanitizedValue(values.west, MAX_LONGITUDE));
+        item.setEastBoundLongitude(getSanitizedValue(values.east, MAX_LONGITUDE));
+        item.setSouthBoundLatitude(getSanitizedValue(values.south, MAX_LATITUDE));
+        item.setNorthBoundLatitude(getSanitizedValue(values.north, MAX_LATITUDE));
     }
     private String getBboxValue(Element bbox, String coord) {
         return XmlHelper.getChildValue(
@@ -204,4 +221,24 @@ public class MetadataCatalogueResultParser {
         return value;
 
     }
+
+    /**
+     * Values used for search results from a single MD_Metadata element
+     */
+    protected static class MetadataValues {
+        String uuid;
+        String lang3code;
+        String scopeCode;
+        String datasetType;
+        String title;
+        String date;
+        String dateType;
+        String description;
+        String organization;
+        boolean hasBbox;
+        String west;
+        String south;
+        String east;
+        String north;
+    }
 }
@@ -0,0 +1,167 @@
+package fi.nls.oskari.search.channel;
+
+import fi.mml.portti.service.search.SearchResultItem;
+import fi.nls.oskari.service.ServiceRuntimeException;
+import org.oskari.xml.XmlStreamHelper;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.util.*;
+
+/**
+ * Parses GetRecords responses with StAX producing the same results as MetadataCatalogueResultParser.
+ * Only the ISO 19139 elements used for search results are read, everything else in the records is skipped
+ * so the response is handled in a single pass without building a DOM.
+ *
+ * Like XmlHelper.getFirstChild() only the first child with a given name is followed on each level.
+ */
+public class MetadataCatalogueResultStreamParser extends MetadataCatalogueResultParser {
+
+    private static final String DATA_ID = "identificationInfo/MD_DataIdentification";
+    private static final String SERVICE_ID = "identificationInfo/SV_ServiceIdentification";
+    private static final String[] BBOX_COORDS = {
+            "westBoundLongitude", "southBoundLatitude", "eastBoundLongitude", "northBoundLatitude"
+    };
+    // paths relative to MD_Metadata, attributes are referenced with @
+    private static final Set<String> VALUES = new HashSet<>();
+    // elements that contain values
+    private static final Set<String> PARENTS = new HashSet<>();
+
+    static {
+        addValue("fileIdentifier/CharacterString");
+        addValue("language/LanguageCode@codeListValue");
+        addValue("hierarchyLevel/MD_ScopeCode@codeListValue");
+        addValue("hierarchyLevelName/CharacterString");
+        for (String id : new String[] {DATA_ID, SERVICE_ID}) {
+            addValue(id + "/citation/CI_Citation/title/CharacterString");
+            addValue(id + "/citation/CI_Citation/date/CI_Date/date/Date");
+            addValue(id + "/citation/CI_Citation/date/CI_Date/dateType/CI_DateTypeCode@codeListValue");
+            addValue(id + "/abstract/CharacterString");
+            addValue(id + "/pointOfContact/CI_ResponsibleParty/organisationName/CharacterString");
+            for (String coord : BBOX_COORDS) {
+                addValue(id + "/extent/EX_Extent/geographicElement/EX_GeographicBoundingBox/" + coord + "/Decimal");
+            }
+        }
+    }
+
+    private static void addValue(String path) {
+        VALUES.add(path);
+        String element = path.contains("@") ? path.substring(0, path.indexOf('@')) : path;
+        int i = element.indexOf('/');
+        while (i > 0) {
+            PARENTS.add(element.substring(0, i));
+            i = element.indexOf('/', i + 1);
+        }
+        if (path.contains("@")) {
+            PARENTS.add(element);
+        }
+    }
+
+    /**
+     * @param reader positioned on the root element
+     * @return search results for MD_Metadata elements in SearchResults
+     * @throws XMLStreamException
+     * @throws ServiceRuntimeException if the response is not a GetRecordsResponse
+     */
+    public List<SearchResultItem> parseResults(XMLStreamReader reader) throws XMLStreamException {
+        String rootEl = XmlStreamHelper.getLocalName(reader);
+        if (!"GetRecordsResponse".equals(rootEl)) {
+            throw new ServiceRuntimeException("Unexpected response. Expected root element 'GetRecordsResponse'");
+        }
+        List<SearchResultItem> results = null;
+        StringBuilder children = new StringBuilder();
+        while (XmlStreamHelper.nextChildElement(reader)) {
+            String name = XmlStreamHelper.getLocalName(reader);
+            children.append(name);
+            if ("SearchResults".equals(name) && results == null) {
+                results = parseSearchResults(reader);
+            } else {
+                XmlStreamHelper.skipElement(reader);
+            }
+        }
+        if (results == null) {
+            throw new ServiceRuntimeException("Unexpected XML element: '" + rootEl + "' with children: " + children);
+        }
+        return results;
+    }
+
+    private List<SearchResultItem> parseSearchResults(XMLStreamReader reader) throws XMLStreamException {
+        List<SearchResultItem> results = new ArrayList<>();
+        while (XmlStreamHelper.nextChildElement(reader)) {
+            if ("MD_Metadata".equals(XmlStreamHelper.getLocalName(reader))) {
+                results.add(parseResult(reader));
+            } else {
+                XmlStreamHelper.skipElement(reader);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * @param reader positioned on MD_Metadata, left on the matching END_ELEMENT
+     * @return
+     * @throws XMLStreamException
+     */
+    public SearchResultItem parseResult(XMLStreamReader reader) throws XMLStreamException {
+        Map<String, String> found = new HashMap<>();
+        readChildren(reader, "", found);
+
+        MetadataValues values = new MetadataValues();
+        values.uuid = found.get("fileIdentifier/CharacterString");
+        values.lang3code = found.get("language/LanguageCode@codeListValue");
+        values.scopeCode = found.get("hierarchyLevel/MD_ScopeCode@codeListValue");
+        values.datasetType = found.get("hierarchyLevelName/CharacterString");
+
+        // service identification is only used when there's no data identification
+        String id = found.containsKey(DATA_ID) ? DATA_ID : SERVICE_ID;
+        values.title = found.get(id + "/citation/CI_Citation/title/CharacterString");
+        values.date = found.get(id + "/citation/CI_Citation/date/CI_Date/date/Date");
+        values.dateType = found.get(id + "/citation/CI_Citation/date/CI_Date/dateType/CI_DateTypeCode@codeListValue");
+        values.description = found.get(id + "/abstract/CharacterString");
+        values.organization = found.get(id + "/pointOfContact/CI_ResponsibleParty/organisationName/CharacterString");
+
+        String bbox = id + "/extent/EX_Extent/geographicElement/EX_GeographicBoundingBox";
+        if (found.containsKey(bbox)) {
+            values.hasBbox = true;
+            values.west = found.get(bbox + "/westBoundLongitude/Decimal");
+            values.south = found.get(bbox + "/southBoundLatitude/Decimal");
+            values.east = found.get(bbox + "/eastBoundLongitude/Decimal");
+            values.north = found.get(bbox + "/northBoundLatitude/Decimal");
+        }
+        return toItem(values);
+    }
+
+    /**
+     * Reads values from the first child of each name. Parent elements that were found are added to the map
+     * with null value so the caller can check if an element exists.
+     */
+    private void readChildren(XMLStreamReader reader, String parentPath, Map<String, String> found)
+            throws XMLStreamException {
+        Set<String> seen = new HashSet<>();
+        while (XmlStreamHelper.nextChildElement(reader)) {
+            String name = XmlStreamHelper.getLocalName(reader);
+            String path = parentPath.isEmpty() ? name : parentPath + "/" + name;
+            if (!seen.add(name)) {
+                // only the first child with the same name is used
+                XmlStreamHelper.skipElement(reader);
+            } else if (VALUES.contains(path)) {
+                found.put(path, XmlStreamHelper.readText(reader));
+            } else if (PARENTS.contains(path)) {
+                found.put(path, null);
+                readAttributes(reader, path, found);
+                readChildren(reader, path, found);
+            } else {
+                XmlStreamHelper.skipElement(reader);
+            }
+        }
+    }
+
+    private void readAttributes(XMLStreamReader reader, String path, Map<String, String> found) {
+        for (Map.Entry<String, String> attr : XmlStreamHelper.getAttributesAsMap(reader).entrySet()) {
+            String key = path + "@" + attr.getKey();
+            if (VALUES.contains(key)) {
+                found.put(key, attr.getValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package fi.nls.oskari.csw.service;
+
+import fi.nls.oskari.csw.domain.CSWIsoRecord;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class CSWRecordCacheTest {
+
+    private static final String URL = "https://my.domain/csw";
+    private static final String UUID = "metadata-uuid";
+
+    @Before
+    public void setup() {
+        CSWRecordCache.flush();
+    }
+
+    @Test
+    public void testRecordIsFetchedOnce() {
+        AtomicInteger fetches = new AtomicInteger();
+        CSWIsoRecord record = new CSWIsoRecord();
+        CSWIsoRecord first = CSWRecordCache.getRecord(URL, UUID, "fi", () -> {
+            fetches.incrementAndGet();
+            return record;
+        });
+        CSWIsoRecord second = CSWRecordCache.getRecord(URL, UUID, "fi", () -> {
+            fetches.incrementAndGet();
+            return new CSWIsoRecord();
+        });
+        assertSame(record, first);
+        assertSame("Record is read from cache", record, second);
+        assertEquals(1, fetches.get());
+
+        CSWRecordCache.getRecord(URL, UUID, "en", () -> {
+            fetches.incrementAndGet();
+            return new CSWIsoRecord();
+        });
+        CSWRecordCache.getRecord(URL + "2", UUID, "fi", () -> {
+            fetches.incrementAndGet();
+            return new CSWIsoRecord();
+        });
+        CSWRecordCache.getRecord(URL, UUID + "2", "fi", () -> {
+            fetches.incrementAndGet();
+            return new CSWIsoRecord();
+        });
+        assertEquals("Language, url and uuid are part of the key", 4, fetches.get());
+    }
+
+    @Test
+    public void testConcurrentRequestsFetchOnce() throws Exception {
+        AtomicInteger fetches = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<CSWIsoRecord> first = executor.submit(() -> CSWRecordCache.getRecord(URL, UUID, "fi", () -> {
+                fetches.incrementAndGet();
+                started.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return new CSWIsoRecord();
+            }));
+            started.await(10, TimeUnit.SECONDS);
+            Future<CSWIsoRecord> second = executor.submit(() -> CSWRecordCache.getRecord(URL, UUID, "fi", () -> {
+                fetches.incrementAndGet();
+                return new CSWIsoRecord();
+            }));
+            release.countDown();
+            assertSame(first.get(10, TimeUnit.SECONDS), second.get(10, TimeUnit.SECONDS));
+            assertEquals(1, fetches.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -13,7 +13,10 @@ import org.w3c.dom.NodeList;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 import static org.junit.Assert.*;
 
@@ -68,4 +71,27 @@ public class CSWServiceTest {
         JSONObject expected = new JSONObject(IOHelper.readString(getClass().getResourceAsStream(testfile + "-expected.json")));
         assertTrue("JSON should match", JSONHelper.isEqual(actual, expected));
     }
+
+    @Test
+    public void parseMetadataElementsMultipleRecords() throws Exception {
+        // GetRecordById response for two ids
+        String first = IOHelper.readString(getClass().getResourceAsStream("CSWService-Metadata.xml"));
+        String second = IOHelper.readString(getClass().getResourceAsStream("CSWService-Metadata-multilang.xml"));
+        String response = first.substring(0, first.lastIndexOf("</csw:GetRecordByIdResponse>"))
+                + second.substring(second.indexOf("<gmd:MD_Metadata"));
+
+        CSWService service = new CSWService("http://for.testing.org");
+        List<Node> elements = service.parseMetadataElements(new ByteArrayInputStream(response.getBytes(StandardCharsets.UTF_8)));
+        assertEquals("Should find both records", 2, elements.size());
+
+        CSWIsoRecord rec = service.mapIsoRecordElementToObject(elements.get(0), "fi");
+        assertEquals("821b33a7-35b3-489c-93ab-9ef8f4422f2a", rec.getFileIdentifier());
+        JSONObject expected = new JSONObject(IOHelper.readString(getClass().getResourceAsStream("CSWService-Metadata-expected.json")));
+        assertTrue("JSON should match", JSONHelper.isEqual(rec.toJSON(), expected));
+
+        rec = service.mapIsoRecordElementToObject(elements.get(1), "fi");
+        assertEquals("cfe54093-aa87-46e2-bfa2-a20def7b036f", rec.getFileIdentifier());
+        expected = new JSONObject(IOHelper.readString(getClass().getResourceAsStream("CSWService-Metadata-multilang-expected.json")));
+        assertTrue("JSON should match", JSONHelper.isEqual(rec.toJSON(), expected));
+    }
 }
\ No newline at end of file
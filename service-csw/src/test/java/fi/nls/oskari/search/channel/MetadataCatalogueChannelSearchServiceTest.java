@@ -0,0 +1,102 @@
+package fi.nls.oskari.search.channel;
+
+import fi.mml.portti.service.search.ChannelSearchResult;
+import fi.mml.portti.service.search.SearchCriteria;
+import fi.nls.oskari.cache.CacheManager;
+import fi.nls.oskari.util.IOHelper;
+import fi.nls.oskari.util.PropertyUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MetadataCatalogueChannelSearchServiceTest {
+
+    private static final String PREFIX = "search.channel." + CountingSearchService.class.getSimpleName() + ".";
+
+    @Before
+    public void setup() throws Exception {
+        PropertyUtil.addProperty(PREFIX + "prefetch", "0", true);
+        CacheManager.getCache(MetadataCatalogueChannelSearchService.class.getName()).flush(true);
+    }
+
+    @After
+    public void teardown() {
+        PropertyUtil.clearProperties();
+        CacheManager.getCache(MetadataCatalogueChannelSearchService.class.getName()).flush(true);
+    }
+
+    @Test
+    public void testParsedResponseIsCached() throws Exception {
+        CountingSearchService service = new CountingSearchService(readResponse());
+        service.init();
+
+        ChannelSearchResult result = service.doSearch(getCriteria("kunnat"));
+        assertFalse(result.isQueryFailed());
+        assertFalse(result.getSearchResultItems().isEmpty());
+        service.doSearch(getCriteria("kunnat"));
+        assertEquals("Second search should use the cached response", 1, service.queries.get());
+
+        service.doSearch(getCriteria("tiet"));
+        assertEquals("Different query is not cached", 2, service.queries.get());
+    }
+
+    @Test
+    public void testResponseIsNotCachedWhenParsingFails() throws Exception {
+        CountingSearchService service = new CountingSearchService("not xml".getBytes(StandardCharsets.UTF_8));
+        service.init();
+
+        assertTrue(service.doSearch(getCriteria("kunnat")).isQueryFailed());
+        assertTrue(service.doSearch(getCriteria("kunnat")).isQueryFailed());
+        assertEquals("Failed responses are not cached", 2, service.queries.get());
+    }
+
+    @Test
+    public void testLargeResponseIsNotCached() throws Exception {
+        byte[] response = readResponse();
+        // limit is given in kilobytes, make it smaller than the response
+        PropertyUtil.addProperty(PREFIX + "cache.maxKB", Integer.toString(response.length / 1024 - 1), true);
+        CountingSearchService service = new CountingSearchService(response);
+        service.init();
+
+        assertFalse(service.doSearch(getCriteria("kunnat")).isQueryFailed());
+        assertFalse(service.doSearch(getCriteria("kunnat")).isQueryFailed());
+        assertEquals("Responses over cache.maxKB are not cached", 2, service.queries.get());
+    }
+
+    private byte[] readResponse() throws Exception {
+        try (InputStream in = getClass().getResourceAsStream("GetRecords-response.xml")) {
+            return IOHelper.readBytes(in);
+        }
+    }
+
+    private SearchCriteria getCriteria(String query) {
+        SearchCriteria criteria = new SearchCriteria();
+        criteria.setSearchString(query);
+        criteria.setSRS("EPSG:3067");
+        criteria.setLocale("fi");
+        return criteria;
+    }
+
+    static class CountingSearchService extends MetadataCatalogueChannelSearchService {
+        private final AtomicInteger queries = new AtomicInteger();
+        private final byte[] response;
+
+        CountingSearchService(byte[] response) {
+            this.response = response;
+        }
+
+        @Override
+        protected byte[] makeQuery(String payload) {
+            queries.incrementAndGet();
+            return response;
+        }
+    }
+}
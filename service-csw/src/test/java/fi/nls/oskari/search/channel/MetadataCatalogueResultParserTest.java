@@ -9,8 +9,11 @@ import org.apache.axiom.om.OMXMLParserWrapper;
 import org.json.JSONArray;
 import org.junit.Test;
 import org.oskari.xml.XmlHelper;
+import org.oskari.xml.XmlStreamHelper;
 import org.w3c.dom.Element;
 
+import javax.xml.stream.XMLStreamReader;
+
 import java.util.Iterator;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Stream;
@@ -49,6 +52,26 @@ public class MetadataCatalogueResultParserTest {
         });
         assertTrue("JSON should match", JSONHelper.isEqual(new JSONArray(json), response));
     }
+
+    @Test
+    public void parseResultsStreaming() throws Exception {
+        assertStreamingMatches("GetRecords-response.xml", "GetRecords-expected.json");
+        assertStreamingMatches("GetRecords-response-asdi.xml", "GetRecords-expected-asdi.json");
+    }
+
+    private void assertStreamingMatches(String input, String expected) throws Exception {
+        String json = ResourceHelper.readStringResource(expected, this);
+        MetadataCatalogueResultStreamParser parser = new MetadataCatalogueResultStreamParser();
+        XMLStreamReader reader = XmlStreamHelper.createReader(getClass().getResourceAsStream(input));
+        JSONArray response = new JSONArray();
+        try {
+            parser.parseResults(reader).forEach(item -> response.put(item.toJSON()));
+        } finally {
+            XmlStreamHelper.close(reader);
+        }
+        assertTrue("JSON should match for " + input, JSONHelper.isEqual(new JSONArray(json), response));
+    }
+
     protected Stream<Element> getResults(Element root) {
         if (!"GetRecordsResponse".equals(XmlHelper.getLocalName(root))) {
             throw new ServiceRuntimeException("Unexpected response. Expected root element 'GetRecordsResponse'");
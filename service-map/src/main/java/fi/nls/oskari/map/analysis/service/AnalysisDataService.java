@@ -17,7 +17,13 @@ import fi.nls.oskari.util.JSONHelper;
 import fi.nls.oskari.util.PropertyUtil;
 import org.json.JSONObject;
 
+import java.io.BufferedWriter;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
 import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -32,6 +38,7 @@ public class AnalysisDataService {
 
     private static final String NUMERIC_FIELD_TYPE = "numeric";
     private static final String STRING_FIELD_TYPE = "string";
+    private static final int WFST_CHUNK_SIZE = 64 * 1024;
 
     private static final Logger log = LogFactory
             .getLogger(AnalysisDataService.class);
@@ -93,29 +100,33 @@ public class AnalysisDataService {
             // ----------------------------------
             final AnalysisMethodParams params = analysislayer.getAnalysisMethodParams();
             final String geometryProperty = transformationService.stripNamespace(params.getGeom());
-            // FIXME: wpsToWfst populates fields list AND returns the wfst
+            // FIXME: wpsToWfst populates fields list AND writes the wfst
             // payload
             // this should be refactored so it returns an object with the fields
             // list and the payload
             // and remove the fields parameter from call
             List<String> fields = new ArrayList<String>();
-            final String wfst = transformationService.wpsFeatureCollectionToWfst(featureset, analysis.getUuid(),
-                    analysis.getId(), fields, analysislayer.getFieldtypeMap(), geometryProperty, params.getResponsePrefix());
-            log.debug("Produced WFS-T:\n" + wfst);
-
+            // the transaction is streamed to GeoServer while the WPS result is transformed
             final HttpURLConnection conn = IOHelper.getConnection(wfsURL, wpsUser, wpsUserPass);
-            IOHelper.post(conn, "application/xml", wfst);
-            final String response = IOHelper.readString(conn.getInputStream());
-            log.debug("Posted WFS-T, got", response);
+            conn.setRequestMethod("POST");
+            conn.setDoOutput(true);
+            conn.setDoInput(true);
+            IOHelper.setContentType(conn, "application/xml");
+            conn.setChunkedStreamingMode(WFST_CHUNK_SIZE);
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(conn.getOutputStream(), StandardCharsets.UTF_8))) {
+                transformationService.wpsFeatureCollectionToWfst(new StringReader(featureset), out, analysis.getUuid(),
+                        analysis.getId(), fields, analysislayer.getFieldtypeMap(), geometryProperty, params.getResponsePrefix());
+            }
 
-            // If exceptions, return null
-            // Check, if exception result set
-            if (response.indexOf("ows:Exception") > -1) {
-                return null;
+            // Throws on exception report
+            final int inserted;
+            try (InputStream in = conn.getInputStream()) {
+                inserted = transformationService.getTotalInserted(in);
             }
+            log.debug("Posted WFS-T, inserted", inserted, "features");
 
             // Check, if any inserted data
-            if (response.indexOf("totalInserted>0") > -1) {
+            if (inserted == 0) {
                 return null;
             }
 
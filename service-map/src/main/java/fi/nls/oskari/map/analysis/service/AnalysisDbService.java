@@ -6,6 +6,7 @@ import fi.nls.oskari.service.ServiceException;
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.oskari.service.user.UserLayerTile;
 
 import java.util.HashMap;
 import java.util.List;
@@ -25,4 +26,5 @@ public abstract class AnalysisDbService extends OskariComponent {
         public abstract long updatePublisherName(final long id, final String uuid, final String name);
 
         public abstract SimpleFeatureCollection getFeatures(int layerId, ReferencedEnvelope bbox, CoordinateReferenceSystem crs) throws ServiceException;
+        public abstract byte[] getMVT(int layerId, UserLayerTile tile) throws ServiceException;
 }
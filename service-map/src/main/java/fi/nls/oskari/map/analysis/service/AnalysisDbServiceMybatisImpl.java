@@ -27,6 +27,7 @@ import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.oskari.geojson.GeoJSONWriter;
+import org.oskari.service.user.UserLayerTile;
 
 import javax.sql.DataSource;
 import java.time.OffsetDateTime;
@@ -338,6 +339,22 @@ public class AnalysisDbServiceMybatisImpl extends AnalysisDbService {
         }
     }
 
+    @Override
+    public byte[] getMVT(int layerId, UserLayerTile tile) throws ServiceException {
+        try (SqlSession session = factory.openSession()) {
+            final AnalysisMapper mapper = session.getMapper(AnalysisMapper.class);
+            int nativeSrid = getSRID(PropertyUtil.get("oskari.native.srs", "EPSG:3857"));
+            List<byte[]> rows = mapper.getMVT(layerId, tile, nativeSrid);
+            if (rows.isEmpty() || rows.get(0) == null) {
+                return new byte[0];
+            }
+            return rows.get(0);
+        } catch (Exception e) {
+            log.warn(e, "Exception when trying to get MVT for analysis:", layerId);
+            throw new ServiceException(e.getMessage(), e);
+        }
+    }
+
     private SimpleFeatureCollection toSimpleFeatureCollection(List<AnalysisData> features) throws ServiceException {
         try {
             if (features == null || features.isEmpty()) {
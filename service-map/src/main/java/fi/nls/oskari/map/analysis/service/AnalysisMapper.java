@@ -5,6 +5,7 @@ import fi.nls.oskari.domain.map.analysis.AnalysisData;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.ResultMap;
 import org.apache.ibatis.annotations.Select;
+import org.oskari.service.user.UserLayerTile;
 
 import java.util.HashMap;
 import java.util.List;
@@ -65,4 +66,48 @@ public interface AnalysisMapper {
                                      @Param("maxX") double maxX,
                                      @Param("maxY") double maxY,
                                      @Param("srid") int srid);
+
+    /**
+     * Encodes the features of the analysis on the tile as MVT with the same properties as features encoded
+     * in Java: the row id is used as the feature id and as the "_oid" property, properties that are hidden
+     * from the user (analysis_id, uuid, created) and dates are left out and numbers default to 0.
+     * Points get a larger buffer so symbols aren't clipped at tile edges.
+     * @return one row with the encoded tile (NULL on older PostGIS versions if there are no features)
+     */
+    @Select("SELECT ST_AsMVT(mvt, #{tile.layerName}, #{tile.extent}, 'geom', 'fid') FROM (" +
+            " SELECT " +
+            "  id AS fid, " +
+            "  id::text AS \"_oid\", " +
+            "  id, " +
+            "  t1, " +
+            "  t2, " +
+            "  t3, " +
+            "  t4, " +
+            "  t5, " +
+            "  t6, " +
+            "  t7, " +
+            "  t8, " +
+            "  COALESCE(n1, 0)::float8 AS n1, " +
+            "  COALESCE(n2, 0)::float8 AS n2, " +
+            "  COALESCE(n3, 0)::float8 AS n3, " +
+            "  COALESCE(n4, 0)::float8 AS n4, " +
+            "  COALESCE(n5, 0)::float8 AS n5, " +
+            "  COALESCE(n6, 0)::float8 AS n6, " +
+            "  COALESCE(n7, 0)::float8 AS n7, " +
+            "  COALESCE(n8, 0)::float8 AS n8, " +
+            "  ST_AsMVTGeom(ST_Transform(geometry, #{tile.srid}), " +
+            "   ST_MakeEnvelope(#{tile.minX}, #{tile.minY}, #{tile.maxX}, #{tile.maxY}, #{tile.srid})::box2d, " +
+            "   #{tile.extent}, " +
+            "   CASE WHEN GeometryType(geometry) IN ('POINT', 'MULTIPOINT') THEN #{tile.pointBuffer} ELSE #{tile.buffer} END, " +
+            "   true) AS geom " +
+            " FROM analysis_data " +
+            " WHERE " +
+            " analysis_id = #{analysisId} " +
+            " AND " +
+            " geometry && ST_Transform(ST_Expand(" +
+            "   ST_MakeEnvelope(#{tile.minX}, #{tile.minY}, #{tile.maxX}, #{tile.maxY}, #{tile.srid}), #{tile.margin}), #{nativeSrid})" +
+            ") mvt WHERE mvt.geom IS NOT NULL")
+    List<byte[]> getMVT(@Param("analysisId") int analysisId,
+                        @Param("tile") UserLayerTile tile,
+                        @Param("nativeSrid") int nativeSrid);
 }
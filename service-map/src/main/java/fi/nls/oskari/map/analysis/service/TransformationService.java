@@ -1,7 +1,11 @@
 package fi.nls.oskari.map.analysis.service;
 
 import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -11,7 +15,12 @@ import java.util.Map;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.OutputKeys;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.dom.DOMSource;
@@ -38,19 +47,36 @@ public class TransformationService {
     private static final String NUMERIC_FIELD_TYPE = "numeric";
 
     private static final Logger log = LogFactory.getLogger(TransformationService.class);
-    private static final String WFSTTEMPLATESTART = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
-            + "<wfs:Transaction xmlns:wfs=\"http://www.opengis.net/wfs\" service=\"WFS\" version=\"1.1.0\" xsi:schemaLocation=\"http://www.opengis.net/wfs http://schemas.opengis.net/wfs/1.1.0/wfs.xsd\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" xmlns:ogc=\"http://www.opengis.net/ogc\" xmlns:gml=\"http://www.opengis.net/gml\" xmlns:cgf=\"http://www.opengis.net/cite/geometry\" >\n";
 
-    private static final String WFSTTEMPLATEEND = "</wfs:Transaction>\n";
+    private static final String WFS_NS = "http://www.opengis.net/wfs";
+    private static final String GML_NS = "http://www.opengis.net/gml";
+    private static final String XSI_NS = "http://www.w3.org/2001/XMLSchema-instance";
+    private static final String ANALYSIS_NS = "http://www.oskari.org";
+    private static final String ANALYSIS_PREFIX = "feature";
+    // elements with this prefix in the geometry are moved to gml namespace
+    private static final String GEOMETRY_PREFIX = "feature";
 
-    private static final String WFSTINSERTSTART = "   <wfs:Insert>\n"
-            + "       <feature:analysis_data xmlns:feature=\"http://www.oskari.org\">\n";
-
-    private static final String WFSTINSERTEND = "       </feature:analysis_data>\n" + "   </wfs:Insert>\n";
+    private static final XMLInputFactory XIF = createInputFactory();
+    private static final XMLOutputFactory XOF = createOutputFactory();
 
     private static final String FEATURE_MEMBER_TAG_NAME = "featureMember";
     private static final String FEATURE_MEMBERS_TAG_NAME = "featureMembers";
 
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory xif = XMLInputFactory.newInstance();
+        xif.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        xif.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        xif.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return xif;
+    }
+
+    private static XMLOutputFactory createOutputFactory() {
+        XMLOutputFactory xof = XMLOutputFactory.newInstance();
+        // declares namespaces of elements copied from the geometry as needed
+        xof.setProperty(XMLOutputFactory.IS_REPAIRING_NAMESPACES, true);
+        return xof;
+    }
+
     public String stripNamespace(final String tag) {
 
         String splitted[] = tag.split(":");
@@ -163,148 +189,331 @@ public class TransformationService {
         return getStringFromDocument(wpsDoc);
     }
 
+    /**
+     * Transforms WPS result featurecollection to WFS-T insert transaction for analysis_data
+     * @see #wpsFeatureCollectionToWfst(Reader, Writer, String, long, List, Map, String, String)
+     */
     public String wpsFeatureCollectionToWfst(final String wps, String uuid, long analysis_id, List<String> fields,
             Map<String, String> fieldTypes, String geometryProperty, String ns_prefix) throws ServiceException {
+        StringWriter out = new StringWriter();
+        wpsFeatureCollectionToWfst(new StringReader(wps), out, uuid, analysis_id, fields, fieldTypes,
+                geometryProperty, ns_prefix);
+        return out.toString();
+    }
 
-        final Document wpsDoc = createDoc(wps);
-        StringBuilder sb = new StringBuilder(WFSTTEMPLATESTART);
+    /**
+     * Streams WPS result featurecollection to WFS-T insert transaction for analysis_data.
+     * Only one feature is handled at a time so memory usage doesn't depend on the number of features.
+     * Features are read from featureMember elements or from the children of featureMembers element.
+     * The first 8 text and numeric properties are mapped to t1..t8 and n1..n8, the mapping is added to fields
+     * as "t1=propertyName".
+     *
+     * @param wps WPS result (GML featurecollection)
+     * @param out writer for the WFS-T transaction
+     * @param fields list that is populated with the column mapping
+     * @param fieldTypes field types like in WFS DescribeFeatureType
+     * @param geometryProperty name of the geometry property
+     * @param ns_prefix prefix of the feature namespace in WPS result
+     */
+    public void wpsFeatureCollectionToWfst(final Reader wps, final Writer out, String uuid, long analysis_id,
+            List<String> fields, Map<String, String> fieldTypes, String geometryProperty, String ns_prefix)
+            throws ServiceException {
+        XMLStreamReader reader = null;
+        XMLStreamWriter writer = null;
+        try {
+            reader = XIF.createXMLStreamReader(wps);
+            writer = XOF.createXMLStreamWriter(out);
+            WfstFeatureWriter featureWriter = new WfstFeatureWriter(writer, uuid, analysis_id, fields,
+                    fieldTypes, geometryProperty, ns_prefix);
+
+            writeStartTransaction(writer);
+            while (reader.hasNext()) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                String localName = reader.getLocalName();
+                if (FEATURE_MEMBER_TAG_NAME.equals(localName)) {
+                    // featureMember has one feature
+                    readFeatureMember(reader, featureWriter, ns_prefix);
+                } else if (FEATURE_MEMBERS_TAG_NAME.equals(localName)) {
+                    // each child of featureMembers is a feature
+                    while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                        featureWriter.write(reader);
+                    }
+                }
+            }
+            writer.writeEndElement();
+            writer.writeEndDocument();
+            writer.flush();
+        } catch (XMLStreamException e) {
+            throw new ServiceException("Unable to transform WPS result to WFS-T", e);
+        } finally {
+            close(reader);
+            close(writer);
+        }
+    }
 
-        Boolean membersCase = isMembersCase(wpsDoc);
-        NodeList featureMembers = getFeatureMembers(wpsDoc, membersCase);
+    /**
+     * Reads totalInserted from WFS 1.1.0 TransactionResponse without keeping the response in memory
+     * @param response TransactionResponse
+     * @return number of inserted features or -1 if the response doesn't include it
+     * @throws ServiceException if the response is an exception report or can't be parsed
+     */
+    public int getTotalInserted(final InputStream response) throws ServiceException {
+        XMLStreamReader reader = null;
+        try {
+            reader = XIF.createXMLStreamReader(response);
+            while (reader.hasNext()) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                String localName = reader.getLocalName();
+                if ("ExceptionReport".equals(localName) || "ServiceExceptionReport".equals(localName)) {
+                    throw new ServiceException("WFS-T insert failed: " + readExceptionText(reader));
+                }
+                if ("totalInserted".equals(localName)) {
+                    return Integer.parseInt(reader.getElementText().trim());
+                }
+            }
+            return -1;
+        } catch (XMLStreamException | NumberFormatException e) {
+            throw new ServiceException("Unable to parse WFS-T response", e);
+        } finally {
+            close(reader);
+        }
+    }
 
-        handleFeatureMembers(uuid, analysis_id, fields, fieldTypes, geometryProperty, ns_prefix, sb, membersCase,
-                featureMembers);
+    private String readExceptionText(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            if (reader.next() == XMLStreamConstants.START_ELEMENT
+                    && ("ExceptionText".equals(reader.getLocalName()) || "ServiceException".equals(reader.getLocalName()))) {
+                return reader.getElementText().trim();
+            }
+        }
+        return "";
+    }
 
-        sb.append(WFSTTEMPLATEEND);
-        return sb.toString();
+    private void readFeatureMember(XMLStreamReader reader, WfstFeatureWriter featureWriter, String ns_prefix)
+            throws XMLStreamException {
+        boolean found = false;
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            // we trust that featureMember only has one feature in the feature namespace
+            if (!found && ns_prefix.equals(reader.getPrefix())) {
+                featureWriter.write(reader);
+                found = true;
+            } else {
+                skipElement(reader);
+            }
+        }
+    }
+
+    private static void writeStartTransaction(XMLStreamWriter writer) throws XMLStreamException {
+        writer.writeStartDocument("UTF-8", "1.0");
+        writer.writeStartElement("wfs", "Transaction", WFS_NS);
+        writer.writeNamespace("wfs", WFS_NS);
+        writer.writeNamespace("xsi", XSI_NS);
+        writer.writeNamespace("ogc", "http://www.opengis.net/ogc");
+        writer.writeNamespace("gml", GML_NS);
+        writer.writeNamespace("cgf", "http://www.opengis.net/cite/geometry");
+        writer.writeAttribute("service", "WFS");
+        writer.writeAttribute("version", "1.1.0");
+        writer.writeAttribute("xsi", XSI_NS, "schemaLocation",
+                "http://www.opengis.net/wfs http://schemas.opengis.net/wfs/1.1.0/wfs.xsd");
+    }
+
+    /**
+     * Skips the current element and its children. After the call the reader is at the END_ELEMENT.
+     */
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
     }
 
-    private void handleFeatureMembers(String uuid, long analysis_id, List<String> fields,
-            Map<String, String> fieldTypes, String geometryProperty, String ns_prefix, StringBuilder sb,
-            Boolean membersCase, NodeList featureMembers) throws ServiceException {
-
-        List<String> cols = new ArrayList<String>();
-        List<String> geomcols = new ArrayList<String>();
-        geomcols.add(ns_prefix + ":" + geometryProperty);
-        geomcols.add(ns_prefix + ":geometry"); // default geometry
-        geomcols.add(ns_prefix + ":geom"); // geoserver uses geom in resultset
-
-        MutableInt ncount = new MutableInt(0);
-        MutableInt tcount = new MutableInt(0);
-
-        for (int i = 0; i < featureMembers.getLength(); i++) {
-            Node featureMember = featureMembers.item(i);
-            // we're only interested in featureMembers... or features
-            String nodeNameWithoutNamespace = featureMember.getNodeName()
-                    .substring(featureMember.getNodeName().indexOf(":") + 1);
-            if (!FEATURE_MEMBER_TAG_NAME.equals(nodeNameWithoutNamespace) && !membersCase) {
-                continue;
+    /**
+     * Same as DOM getTextContent(), concatenates all text under the current element.
+     * After the call the reader is at the END_ELEMENT.
+     */
+    private static String readTextContent(XMLStreamReader reader) throws XMLStreamException {
+        StringBuilder sb = new StringBuilder();
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+                    || event == XMLStreamConstants.SPACE) {
+                sb.append(reader.getText());
             }
-            handleFeatureMember(featureMember, uuid, analysis_id, fields, fieldTypes, ns_prefix, sb, membersCase, cols,
-                    geomcols, ncount, tcount);
         }
+        return sb.toString();
     }
 
-    private void handleFeatureMember(Node featureMember, String uuid, long analysis_id, List<String> fields,
-            Map<String, String> fieldTypes, String ns_prefix, StringBuilder sb, Boolean membersCase, List<String> cols,
-            List<String> geomcols, MutableInt ncount, MutableInt tcount) throws ServiceException {
+    private static String getQName(XMLStreamReader reader) {
+        String prefix = reader.getPrefix();
+        return prefix == null || prefix.isEmpty() ? reader.getLocalName() : prefix + ":" + reader.getLocalName();
+    }
 
-        NodeList featureMembersChilds = featureMember.getChildNodes();
-        NodeList features = null;
-        if (membersCase) {
-            features = featureMembersChilds;
-        } else {
-            features = getFeatures(ns_prefix, featureMembersChilds, features);
+    private static void close(XMLStreamReader reader) {
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (XMLStreamException ignore) {
+                // nothing to do
+            }
         }
+    }
 
-        List<String> textFeatures = new ArrayList<String>();
-        List<Double> numericFeatures = new ArrayList<Double>();
-        if (ncount.intValue() == 0) {
-            ncount.setValue(1);
-            tcount.setValue(1);
+    private static void close(XMLStreamWriter writer) {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (XMLStreamException ignore) {
+                // nothing to do
+            }
         }
+    }
 
-        Node geometry = null;
-        String geomcol = "";
-        for (int j = 0; j < features.getLength(); j++) {
-            Node feature = features.item(j);
-
-            // it's a feature, check if it's geometry
-            if (geomcols.contains(feature.getNodeName())) {
-                // geometry, store aside for now
-                geomcol = feature.getNodeName();
-                geometry = feature;
-            } else if (feature.getNodeName().indexOf(ns_prefix + ":") == 0) {
-                // only parse 8 first text ( numeric results invalid behavior later use only
-                // text)
-                // TODO: fix management of Date dateTime types later
-                // (excluding geometry)
-                if (textFeatures.size() < 8 && numericFeatures.size() < 8 && this.isHiddenField(feature) == false) {
-                    // get node value
-                    String strVal = feature.getTextContent();
-                    String col = this.stripNamespace(feature.getNodeName());
-                    Double numericVal = this.getFieldAsNumeric(col, strVal, fieldTypes);
+    /**
+     * Writes one wfs:Insert per feature. Keeps track of the column mapping between features.
+     */
+    private class WfstFeatureWriter {
+        private final XMLStreamWriter writer;
+        private final String uuid;
+        private final long analysis_id;
+        private final List<String> fields;
+        private final Map<String, String> fieldTypes;
+        private final String ns_prefix;
+        private final List<String> geomcols = new ArrayList<>();
+        private final List<String> cols = new ArrayList<>();
+        private final MutableInt ncount = new MutableInt(1);
+        private final MutableInt tcount = new MutableInt(1);
+
+        WfstFeatureWriter(XMLStreamWriter writer, String uuid, long analysis_id, List<String> fields,
+                Map<String, String> fieldTypes, String geometryProperty, String ns_prefix) {
+            this.writer = writer;
+            this.uuid = uuid;
+            this.analysis_id = analysis_id;
+            this.fields = fields;
+            this.fieldTypes = fieldTypes;
+            this.ns_prefix = ns_prefix;
+            geomcols.add(ns_prefix + ":" + geometryProperty);
+            geomcols.add(ns_prefix + ":geometry"); // default geometry
+            geomcols.add(ns_prefix + ":geom"); // geoserver uses geom in resultset
+        }
 
+        /**
+         * Reader must be at the START_ELEMENT of the feature. After the call the reader is at the END_ELEMENT.
+         */
+        void write(XMLStreamReader reader) throws XMLStreamException {
+            List<String> textFeatures = new ArrayList<>();
+            List<Double> numericFeatures = new ArrayList<>();
+            boolean hasGeometry = false;
+
+            writer.writeStartElement("wfs", "Insert", WFS_NS);
+            writer.writeStartElement(ANALYSIS_PREFIX, "analysis_data", ANALYSIS_NS);
+            writer.writeNamespace(ANALYSIS_PREFIX, ANALYSIS_NS);
+
+            while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                String nodeName = getQName(reader);
+                if (geomcols.contains(nodeName) && !hasGeometry) {
+                    // geometry is written as is, the properties are written after it
+                    copyGeometry(reader);
+                    hasGeometry = true;
+                } else if (!geomcols.contains(nodeName) && nodeName.indexOf(ns_prefix + ":") == 0
+                        // only parse 8 first text ( numeric results invalid behavior later use only text)
+                        // TODO: fix management of Date dateTime types later
+                        && textFeatures.size() < 8 && numericFeatures.size() < 8
+                        && !HIDDEN_FIELDS.contains(reader.getLocalName())) {
+                    String col = reader.getLocalName();
+                    String strVal = readTextContent(reader);
+                    Double numericVal = getFieldAsNumeric(col, strVal, fieldTypes);
                     if (null != numericVal) {
                         handleNumericFeature(fields, ncount, cols, numericFeatures, numericVal, col);
                     } else {
                         handleTextFeature(fields, tcount, cols, textFeatures, strVal, col);
                     }
+                } else {
+                    skipElement(reader);
                 }
             }
-        }
-        buildWfsInsertElement(sb, geometry, geomcol, textFeatures, numericFeatures, uuid, analysis_id);
-    }
 
-    /**
-     * Get features, i.e. all child elements in feature namespace. We trust that
-     * featureMember only has one feature find the child feature.
-     * 
-     * @param String   ns_prefix
-     * @param NodeList meh
-     * @param NodeList features
-     * @return NodeList features
-     */
-    private NodeList getFeatures(String ns_prefix, NodeList featureMembersChilds, NodeList features) {
-        for (int j = 0; j < featureMembersChilds.getLength(); j++) {
-            if (featureMembersChilds.item(j).getNodeName().indexOf(ns_prefix + ":") == 0) {
-                features = featureMembersChilds.item(j).getChildNodes();
-                break;
+            // add text feature nodes (1-based)
+            for (int j = 0; j < textFeatures.size(); j++) {
+                writeProperty("t" + (j + 1), formatStringValue(textFeatures.get(j)));
             }
+            // add numeric feature nodes (1-based)
+            for (int j = 0; j < numericFeatures.size(); j++) {
+                writeProperty("n" + (j + 1), numericFeatures.get(j).toString());
+            }
+            writeProperty("analysis_id", Long.toString(analysis_id));
+            writeProperty("uuid", uuid);
+            writer.writeEndElement();
+            writer.writeEndElement();
         }
-        return features;
-    }
-
-    private NodeList getFeatureMembers(final Document wpsDoc, Boolean members_case) {
-        NodeList featureMembers = wpsDoc.getElementsByTagNameNS("*", FEATURE_MEMBER_TAG_NAME);
 
-        if (featureMembers.getLength() == 0) {
-            featureMembers = wpsDoc.getElementsByTagNameNS("*", FEATURE_MEMBERS_TAG_NAME);
+        private void writeProperty(String name, String value) throws XMLStreamException {
+            writer.writeStartElement(ANALYSIS_PREFIX, name, ANALYSIS_NS);
+            if (value != null) {
+                writer.writeCharacters(value);
+            }
+            writer.writeEndElement();
         }
-        if (members_case) {
-            // select features as featureMembers
-            featureMembers = wpsDoc.getElementsByTagName(featureMembers.item(0).getFirstChild().getNodeName());
+
+        /**
+         * Copies geometry property as gml:geometry. Child elements and attributes
+         * in "feature" prefix are moved to gml namespace.
+         */
+        private void copyGeometry(XMLStreamReader reader) throws XMLStreamException {
+            writer.writeStartElement("gml", "geometry", GML_NS);
+            int depth = 1;
+            while (depth > 0) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                    if (GEOMETRY_PREFIX.equals(reader.getPrefix())) {
+                        writer.writeStartElement("gml", reader.getLocalName(), GML_NS);
+                    } else {
+                        writer.writeStartElement(nonNull(reader.getPrefix()), reader.getLocalName(),
+                                nonNull(reader.getNamespaceURI()));
+                    }
+                    for (int i = 0; i < reader.getAttributeCount(); i++) {
+                        copyAttribute(reader, i);
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                    writer.writeEndElement();
+                } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+                        || event == XMLStreamConstants.SPACE) {
+                    writer.writeCharacters(reader.getText());
+                }
+            }
         }
-        return featureMembers;
-    }
 
-    private Boolean isMembersCase(final Document wpsDoc) {
-        Boolean members_case = wpsDoc.getElementsByTagNameNS("*", FEATURE_MEMBER_TAG_NAME).getLength() == 0
-                && wpsDoc.getElementsByTagNameNS("*", FEATURE_MEMBERS_TAG_NAME).getLength() > 0;
-        return members_case;
+        private void copyAttribute(XMLStreamReader reader, int i) throws XMLStreamException {
+            String prefix = reader.getAttributePrefix(i);
+            String localName = reader.getAttributeLocalName(i);
+            String value = reader.getAttributeValue(i);
+            if (prefix == null || prefix.isEmpty()) {
+                writer.writeAttribute(localName, value);
+            } else if (GEOMETRY_PREFIX.equals(prefix)) {
+                writer.writeAttribute("gml", GML_NS, localName, value);
+            } else {
+                writer.writeAttribute(prefix, reader.getAttributeNamespace(i), localName, value);
+            }
+        }
     }
 
-    private static String nodeToString(Node node) throws ServiceException {
-        try {
-            StringWriter sw = new StringWriter();
-            Transformer t = XmlHelper.newTransformerFactory().newTransformer();
-            t.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
-            t.setOutputProperty(OutputKeys.INDENT, "yes");
-            t.transform(new DOMSource(node), new StreamResult(sw));
-            return sw.toString();
-        } catch (Exception ex) {
-            throw new ServiceException("Unable to write XML node to string");
-        }
+    private static String nonNull(String s) {
+        return s == null ? "" : s;
     }
 
     private Document createDoc(final String content) throws ServiceException {
@@ -319,14 +528,6 @@ public class TransformationService {
         }
     }
 
-    private boolean isHiddenField(Node feature) {
-        String[] acol = feature.getNodeName().split(":");
-        if (acol.length > 1)
-            return HIDDEN_FIELDS.contains(acol[1]);
-
-        return false;
-    }
-
     /**
      *
      * @param fieldName
@@ -399,35 +600,6 @@ public class TransformationService {
         }
     }
 
-    private void buildWfsInsertElement(StringBuilder sb, Node geometry, String geomcol, List<String> textFeatures,
-            List<Double> numericFeatures, String uuid, long analysis_id) throws ServiceException {
-        // build wfs:Insert element
-        sb.append(WFSTINSERTSTART);
-        // add geometry node
-        String g = nodeToString(geometry);
-        // change geom tag to geometry
-        g = g.replace(geomcol, "gml:geometry");
-        // change namespace of geometry's child elements from feature to gml
-        g = g.replace("feature:", "gml:");
-        sb.append(g);
-        // add text feature nodes (1-based)
-        for (int j = 0; j < textFeatures.size(); j++) {
-            String feature = "         <feature:t" + (j + 1) + ">" + formatStringValue(textFeatures.get(j))
-                    + "</feature:t" + (j + 1) + ">\n";
-            sb.append(feature);
-        }
-        // add numeric feature nodes (1-based)
-        for (int j = 0; j < numericFeatures.size(); j++) {
-            sb.append("         <feature:n" + (j + 1) + ">" + numericFeatures.get(j) + "</feature:n" + (j + 1) + ">\n");
-        }
-
-        sb.append("         <feature:analysis_id>" + Long.toString(analysis_id) + "</feature:analysis_id>\n");
-
-        sb.append("         <feature:uuid>" + uuid + "</feature:uuid>\n");
-
-        sb.append(WFSTINSERTEND);
-    }
-
     private String formatStringValue(String s) {
         s = removeLineBreaks(s);
         return replaceMultipleSpacesWithSingleSpace(s);
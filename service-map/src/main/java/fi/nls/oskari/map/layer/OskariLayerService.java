@@ -19,6 +19,16 @@ public abstract class OskariLayerService extends OskariComponent {
     public abstract Map<String, List<Integer>> findNamesAndIdsByUrl(final String url, final String type);
     public abstract int insert(final OskariLayer layer);
     public abstract void update(final OskariLayer layer);
+
+    /**
+     * Updates multiple layers. Implementations can override this to update them in a single batch.
+     * @param layers
+     */
+    public void updateAll(final List<OskariLayer> layers) {
+        for (OskariLayer layer : layers) {
+            update(layer);
+        }
+    }
     public abstract void delete(final int layerId);
 
 }
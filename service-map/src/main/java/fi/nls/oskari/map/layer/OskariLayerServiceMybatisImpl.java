@@ -15,9 +15,11 @@ import fi.nls.oskari.cache.Cache;
 import fi.nls.oskari.cache.CacheManager;
 import fi.nls.oskari.mybatis.MyBatisHelper;
 import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ExecutorType;
 import org.apache.ibatis.session.SqlSession;
 import org.apache.ibatis.session.SqlSessionFactory;
 import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.oskari.capabilities.LayerCapabilitiesCache;
 import org.oskari.service.util.ServiceFactory;
 
 import fi.nls.oskari.annotation.Oskari;
@@ -237,6 +239,7 @@ public class OskariLayerServiceMybatisImpl extends OskariLayerService {
 
     private void flushFromCache(int id) {
         layerCache.remove(Integer.toString(id));
+        LayerCapabilitiesCache.remove(id);
     }
 
     private OskariLayer findFromDB(int id) {
@@ -384,6 +387,29 @@ public class OskariLayerServiceMybatisImpl extends OskariLayerService {
         }
     }
 
+    /**
+     * Updates the layers with a batch executor in a single transaction
+     */
+    @Override
+    public void updateAll(final List<OskariLayer> layers) {
+        if (layers.isEmpty()) {
+            return;
+        }
+        LOG.debug("update", layers.size(), "layers");
+        try (SqlSession session = factory.openSession(ExecutorType.BATCH)) {
+            final OskariLayerMapper mapper = session.getMapper(OskariLayerMapper.class);
+            for (OskariLayer layer : layers) {
+                mapper.update(layer);
+            }
+            session.commit();
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to update", e);
+        }
+        for (OskariLayer layer : layers) {
+            flushFromCache(layer.getId());
+        }
+    }
+
     public synchronized int insert(final OskariLayer layer) {
         LOG.debug("insert new layer");
         final SqlSession session = factory.openSession();
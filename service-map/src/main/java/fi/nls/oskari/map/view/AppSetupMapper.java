@@ -40,6 +40,8 @@ public interface AppSetupMapper {
     void resetUsersDefaultViews(long userId);
     void update(View view);
     void updateUsage(View view);
+    @Update("UPDATE oskari_appsetup SET used = now(), usagecount = usagecount + #{count} WHERE id = #{id}")
+    void addUsage(@Param("id") long id, @Param("count") long count);
     void addBundle(Bundle bundle);
     int updateBundleSettingsInView(final Map<String, Object> params);
 
@@ -9,11 +9,14 @@ import fi.nls.oskari.domain.map.view.View;
 import fi.nls.oskari.domain.map.view.ViewTypes;
 import fi.nls.oskari.log.LogFactory;
 import fi.nls.oskari.log.Logger;
+import fi.nls.oskari.map.view.util.AppSetupResponseCache;
 import fi.nls.oskari.mybatis.MyBatisHelper;
 import fi.nls.oskari.service.ServiceException;
+import fi.nls.oskari.service.ServiceRuntimeException;
 import fi.nls.oskari.util.ConversionHelper;
 import fi.nls.oskari.util.PropertyUtil;
 import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ExecutorType;
 import org.apache.ibatis.session.SqlSession;
 import org.apache.ibatis.session.SqlSessionFactory;
 import org.apache.ibatis.session.SqlSessionFactoryBuilder;
@@ -239,6 +242,7 @@ public class AppSetupServiceMybatisImpl extends ViewService {
             final AppSetupMapper mapper = session.getMapper(AppSetupMapper.class);
             mapper.updateAccessFlag(view);
             session.commit();
+            AppSetupResponseCache.flush(view.getId());
         } catch (Exception e) {
             LOG.warn(e, "Exception while updating access flag");
         }
@@ -254,6 +258,7 @@ public class AppSetupServiceMybatisImpl extends ViewService {
             mapper.deleteBundleByView(id);
             mapper.deleteView(id);
             session.commit();
+            AppSetupResponseCache.flush(id);
         } catch (Exception e) {
             throw new DeleteViewException("Error deleting a view with id:" + id, e);
         }
@@ -266,6 +271,7 @@ public class AppSetupServiceMybatisImpl extends ViewService {
             final AppSetupMapper mapper = session.getMapper(AppSetupMapper.class);
             mapper.deleteViewByUser(userId);
             session.commit();
+            AppSetupResponseCache.flush();
         } catch (Exception e) {
             throw new DeleteViewException("Error deleting a view with user id:" + userId, e);
         }
@@ -290,6 +296,7 @@ public class AppSetupServiceMybatisImpl extends ViewService {
             final AppSetupMapper mapper = session.getMapper(AppSetupMapper.class);
             mapper.update(view);
             session.commit();
+            AppSetupResponseCache.flush(view.getId());
         } catch (Exception e) {
             LOG.warn(e, "Exception while updating view");
         }
@@ -307,6 +314,23 @@ public class AppSetupServiceMybatisImpl extends ViewService {
         }
     }
 
+    public void updateViewUsage(Map<Long, Long> usageCounts) {
+        if (usageCounts == null || usageCounts.isEmpty()) {
+            return;
+        }
+        LOG.debug("Update usage for", usageCounts.size(), "views");
+
+        try (final SqlSession session = factory.openSession(ExecutorType.BATCH)) {
+            final AppSetupMapper mapper = session.getMapper(AppSetupMapper.class);
+            for (Map.Entry<Long, Long> entry : usageCounts.entrySet()) {
+                mapper.addUsage(entry.getKey(), entry.getValue());
+            }
+            session.commit();
+        } catch (Exception e) {
+            throw new ServiceRuntimeException("Exception while updating view usage", e);
+        }
+    }
+
     public void updatePublishedView(final View view) throws ViewException {
         LOG.debug("Update published view");
         long id = view.getId();
@@ -320,6 +344,7 @@ public class AppSetupServiceMybatisImpl extends ViewService {
                 mapper.addBundle(bundle);
             }
             session.commit();
+            AppSetupResponseCache.flush(id);
         } catch (Exception e) {
             throw new ViewException("Error updating a view with id:" + id, e);
         }
@@ -344,6 +369,7 @@ public class AppSetupServiceMybatisImpl extends ViewService {
                 throw new ViewException("Failed to update - bundle not found in view?");
             }
             session.commit();
+            AppSetupResponseCache.flush(viewId);
         } catch (Exception e) {
             throw new ViewException("Failed to update", e);
         }
@@ -8,6 +8,7 @@ import fi.nls.oskari.service.OskariComponent;
 import fi.nls.oskari.service.ServiceException;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public abstract class ViewService extends OskariComponent {
 
@@ -36,6 +37,15 @@ public abstract class ViewService extends OskariComponent {
 
     public abstract long getDefaultViewId();
     public abstract void updateViewUsage(View view);
+
+    /**
+     * Adds usage counts for multiple views at once. Used for flushing usage data
+     * that has been collected in memory instead of updating it on each view load.
+     *
+     * @param usageCounts view id -> number of times the view has been loaded since last update
+     * @throws fi.nls.oskari.service.ServiceRuntimeException if the counts couldn't be written
+     */
+    public abstract void updateViewUsage(Map<Long, Long> usageCounts);
     public abstract void resetUsersDefaultViews(long userId);
 
     /**
@@ -223,6 +223,11 @@ public class ViewServiceMemory extends ViewService {
         // Not implemented in POJO model
     }
 
+    @Override
+    public void updateViewUsage(Map<Long, Long> usageCounts) {
+        // Not implemented in POJO model
+    }
+
     @Override
     public long getDefaultViewId() {
         return defaultView;
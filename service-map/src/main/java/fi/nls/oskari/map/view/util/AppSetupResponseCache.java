@@ -0,0 +1,116 @@
+package fi.nls.oskari.map.view.util;
+
+import fi.nls.oskari.cache.Cache;
+import fi.nls.oskari.cache.CacheManager;
+import fi.nls.oskari.util.PropertyUtil;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds the modified startup sequence and configuration for views that can be shared between
+ * users (published maps viewed by guests). Entries are keyed by view id and the request specific
+ * parts that affect the result so a single view can have multiple entries.
+ *
+ * Keys also include a version token of the view. Flushing a view removes the token so on a cluster
+ * every node stops using the responses it has cached for the view, not just the ones the flushing node has.
+ *
+ * Flushed when views, layers or permissions are modified.
+ */
+public class AppSetupResponseCache {
+
+    public static final String CACHE_NAME = "GetAppSetup.response";
+    private static final String PROP_ENABLED = "actionhandler.GetAppSetup.cache.enabled";
+    private static final String KEY_SEPARATOR = "|";
+
+    private static final Cache<JSONObject> CACHE = CacheManager.getCache(CACHE_NAME);
+    // view id -> version token used in keys, removals are propagated to other nodes by the cache
+    private static final Cache<String> VERSIONS = CacheManager.getCache(CACHE_NAME + ".versions");
+    private static final AtomicLong VERSION_COUNTER = new AtomicLong();
+    private static final String NODE_PREFIX = Long.toString(System.nanoTime(), 36) + "-";
+    private static final boolean ENABLED = PropertyUtil.getOptional(PROP_ENABLED, true);
+
+    static {
+        CACHE.setExpiration(TimeUnit.MINUTES.toMillis(PropertyUtil.getOptional("actionhandler.GetAppSetup.cache.minutes", 10)));
+        VERSIONS.setExpiration(CACHE.getExpiration());
+        VERSIONS.setLimit(CACHE.getLimit());
+    }
+
+    private AppSetupResponseCache() {}
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Creates a cache key for the view. The parts should include anything that might change the result.
+     * @param viewId view id
+     * @param parts request specific parts
+     * @return key for the cache
+     */
+    public static String getKey(long viewId, Object... parts) {
+        StringBuilder key = new StringBuilder();
+        key.append(viewId).append(KEY_SEPARATOR).append(getVersion(viewId));
+        for (Object part : parts) {
+            key.append(KEY_SEPARATOR).append(part);
+        }
+        return key.toString();
+    }
+
+    private static synchronized String getVersion(long viewId) {
+        final String id = Long.toString(viewId);
+        String version = VERSIONS.get(id);
+        if (version == null) {
+            version = NODE_PREFIX + VERSION_COUNTER.incrementAndGet();
+            VERSIONS.put(id, version);
+        }
+        return version;
+    }
+
+    /**
+     * The returned value should be treated as read-only since it's shared between requests
+     * @param key see getKey()
+     * @return cached JSON or null if not cached
+     */
+    public static JSONObject get(String key) {
+        if (!ENABLED) {
+            return null;
+        }
+        return CACHE.get(key);
+    }
+
+    public static void put(String key, JSONObject value) {
+        if (!ENABLED) {
+            return;
+        }
+        CACHE.put(key, value);
+    }
+
+    /**
+     * Removes cached responses for given view on all nodes
+     * @param viewId view that was modified
+     */
+    public static void flush(long viewId) {
+        // other nodes drop their version of the view so keys for their cached responses are no longer used
+        VERSIONS.remove(Long.toString(viewId));
+        // free the memory of the responses cached on this node, other nodes let them expire
+        final String prefix = viewId + KEY_SEPARATOR;
+        List<String> keys = new ArrayList<>();
+        for (String key : CACHE.getKeys()) {
+            if (key.startsWith(prefix)) {
+                keys.add(key);
+            }
+        }
+        keys.forEach(CACHE::remove);
+    }
+
+    /**
+     * Removes all cached responses. Used when layers or permissions are modified.
+     */
+    public static void flush() {
+        CACHE.flush(true);
+    }
+}
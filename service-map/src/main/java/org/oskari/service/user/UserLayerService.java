@@ -45,4 +45,25 @@ public abstract class UserLayerService extends OskariComponent {
     }
 
     public abstract SimpleFeatureCollection getFeatures(String layerId, OskariLayer layer, ReferencedEnvelope bbox, CoordinateReferenceSystem crs) throws ServiceException;
+
+    /**
+     * Services storing the features in PostGIS can override this and getMVT() to skip
+     * reading the features to the JVM for vector tiles.
+     * @param layerId
+     * @return true if getMVT() can be used for the layer
+     */
+    public boolean supportsMVT(String layerId) {
+        return false;
+    }
+
+    /**
+     * Encodes the features of the layer as a Mapbox Vector Tile in the database.
+     * Assumes that layer permissions are checked elsewhere like with getFeatures().
+     * @param layerId
+     * @param tile
+     * @return uncompressed MVT, empty array if there are no features on the tile
+     */
+    public byte[] getMVT(String layerId, UserLayerTile tile) throws ServiceException {
+        throw new ServiceException("Not implemented");
+    }
 }
@@ -0,0 +1,82 @@
+package org.oskari.service.user;
+
+/**
+ * Parameters for encoding a vector tile of user content in the database with ST_AsMVT().
+ * Coordinates are in the CRS of the tile grid identified by srid.
+ */
+public class UserLayerTile {
+
+    private final double minX;
+    private final double minY;
+    private final double maxX;
+    private final double maxY;
+    private final int srid;
+    private final String layerName;
+    private final int extent;
+    private final int buffer;
+    private final int pointBuffer;
+
+    /**
+     * @param bbox tile extent as [minX, minY, maxX, maxY]
+     * @param srid srid of the tile grid
+     * @param layerName name of the layer inside the tile
+     * @param extent tile extent in tile coordinate space
+     * @param buffer buffer in tile coordinate space for lines and polygons
+     * @param pointBuffer buffer in tile coordinate space for points so symbols aren't clipped at tile edges
+     */
+    public UserLayerTile(double[] bbox, int srid, String layerName, int extent, int buffer, int pointBuffer) {
+        this.minX = bbox[0];
+        this.minY = bbox[1];
+        this.maxX = bbox[2];
+        this.maxY = bbox[3];
+        this.srid = srid;
+        this.layerName = layerName;
+        this.extent = extent;
+        this.buffer = buffer;
+        this.pointBuffer = pointBuffer;
+    }
+
+    public double getMinX() {
+        return minX;
+    }
+
+    public double getMinY() {
+        return minY;
+    }
+
+    public double getMaxX() {
+        return maxX;
+    }
+
+    public double getMaxY() {
+        return maxY;
+    }
+
+    public int getSrid() {
+        return srid;
+    }
+
+    public String getLayerName() {
+        return layerName;
+    }
+
+    public int getExtent() {
+        return extent;
+    }
+
+    public int getBuffer() {
+        return buffer;
+    }
+
+    public int getPointBuffer() {
+        return pointBuffer;
+    }
+
+    /**
+     * @return distance in tile CRS units the tile extent needs to be expanded with when selecting
+     * features so that features in the buffer area are included
+     */
+    public double getMargin() {
+        return (maxX - minX) * Math.max(buffer, pointBuffer) / extent;
+    }
+}
@@ -1,9 +1,13 @@
 package fi.nls.oskari.map.analysis.service;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -111,6 +115,55 @@ public class TransformationServiceTest {
         assertXmlIsValid(expected, result);
     }
 
+    @Test
+    public void testWpsFeatureCollectionToWfstEscapesText() throws Exception {
+        String wps = "<wfs:FeatureCollection xmlns:wfs=\"http://www.opengis.net/wfs\" xmlns:gml=\"http://www.opengis.net/gml\" xmlns:feature=\"http://www.oskari.org\">"
+                + "<gml:featureMembers>"
+                + "<feature:f1><feature:geom><gml:Point><gml:pos>1 2</gml:pos></gml:Point></feature:geom><feature:name>a &amp; &lt;b&gt;</feature:name></feature:f1>"
+                + "<feature:f1><feature:geom><gml:Point><gml:pos>3 4</gml:pos></gml:Point></feature:geom><feature:name>c</feature:name></feature:f1>"
+                + "</gml:featureMembers></wfs:FeatureCollection>";
+        String expected = "<wfs:Transaction xmlns:wfs=\"http://www.opengis.net/wfs\" xmlns:gml=\"http://www.opengis.net/gml\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\""
+                + " service=\"WFS\" version=\"1.1.0\" xsi:schemaLocation=\"http://www.opengis.net/wfs http://schemas.opengis.net/wfs/1.1.0/wfs.xsd\">"
+                + "<wfs:Insert><feature:analysis_data xmlns:feature=\"http://www.oskari.org\">"
+                + "<gml:geometry><gml:Point><gml:pos>1 2</gml:pos></gml:Point></gml:geometry>"
+                + "<feature:t1>a &amp; &lt;b&gt;</feature:t1><feature:analysis_id>1</feature:analysis_id><feature:uuid>test-uuid</feature:uuid>"
+                + "</feature:analysis_data></wfs:Insert>"
+                + "<wfs:Insert><feature:analysis_data xmlns:feature=\"http://www.oskari.org\">"
+                + "<gml:geometry><gml:Point><gml:pos>3 4</gml:pos></gml:Point></gml:geometry>"
+                + "<feature:t1>c</feature:t1><feature:analysis_id>1</feature:analysis_id><feature:uuid>test-uuid</feature:uuid>"
+                + "</feature:analysis_data></wfs:Insert></wfs:Transaction>";
+
+        List<String> fields = new ArrayList<>();
+        StringWriter out = new StringWriter();
+        service.wpsFeatureCollectionToWfst(new StringReader(wps), out, UUID, ANALYSIS_ID, fields,
+                new HashMap<>(), GEOMETRY_PROPERTY, NS_PREFIX);
+
+        assertXmlIsValid(expected, out.toString());
+        assertEquals(Arrays.asList("t1=name"), fields);
+    }
+
+    @Test
+    public void testGetTotalInserted() throws ServiceException {
+        String response = "<wfs:TransactionResponse xmlns:wfs=\"http://www.opengis.net/wfs\" xmlns:ogc=\"http://www.opengis.net/ogc\" version=\"1.1.0\">"
+                + "<wfs:TransactionSummary><wfs:totalInserted>2</wfs:totalInserted><wfs:totalUpdated>0</wfs:totalUpdated></wfs:TransactionSummary>"
+                + "<wfs:InsertResults><wfs:Feature><ogc:FeatureId fid=\"analysis_data.1\"/></wfs:Feature></wfs:InsertResults>"
+                + "</wfs:TransactionResponse>";
+        assertEquals(2, service.getTotalInserted(toStream(response)));
+        assertEquals(-1, service.getTotalInserted(toStream("<wfs:TransactionResponse xmlns:wfs=\"http://www.opengis.net/wfs\"/>")));
+    }
+
+    @Test(expected = ServiceException.class)
+    public void testGetTotalInsertedExceptionReport() throws ServiceException {
+        String response = "<ows:ExceptionReport xmlns:ows=\"http://www.opengis.net/ows\" version=\"1.0.0\">"
+                + "<ows:Exception exceptionCode=\"InvalidParameterValue\"><ows:ExceptionText>Failed</ows:ExceptionText></ows:Exception>"
+                + "</ows:ExceptionReport>";
+        service.getTotalInserted(toStream(response));
+    }
+
+    private InputStream toStream(String s) {
+        return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+    }
+
     private void testWpsToWfs(String inputFilePath, String expectedFilePath, List<String> fields, Map<String, String> fieldTypes)
             throws ServiceException, IOException, SAXException {
         
@@ -0,0 +1,19 @@
+package org.oskari.service.user;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class UserLayerTileTest {
+
+    @Test
+    public void testMarginCoversLargestBuffer() {
+        double[] bbox = { 0, 0, 8192, 8192 };
+        UserLayerTile tile = new UserLayerTile(bbox, 3067, "layer", 4096, 256, 1024);
+        // 1024 / 4096 of the tile width
+        assertEquals(2048, tile.getMargin(), 0);
+        assertEquals(0, tile.getMinX(), 0);
+        assertEquals(8192, tile.getMaxY(), 0);
+        assertEquals(3067, tile.getSrid());
+    }
+}
@@ -9,6 +9,8 @@ import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.ResultMap;
 import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.annotations.Update;
+import org.apache.ibatis.cursor.Cursor;
+import org.oskari.service.user.UserLayerTile;
 
 import java.util.List;
 import java.util.Map;
@@ -55,6 +57,32 @@ public interface MyPlaceMapper {
             " category_id = #{categoryId} ")
     List<MyPlace> findAllByCategoryId(long categoryId);
 
+    /**
+     * Same as findAllByCategoryId() but the rows are fetched in batches while iterating
+     * so large categories can be exported without reading them to memory.
+     * The cursor must be consumed before the session is closed.
+     */
+    @ResultMap("MyPlacesResult")
+    @Options(fetchSize = 500)
+    @Select("SELECT " +
+            " id, " +
+            " uuid, " +
+            " category_id, " +
+            " name, " +
+            " attention_text, " +
+            " created, " +
+            " updated, " +
+            " place_desc, " +
+            " link, " +
+            " image_url, " +
+            " ST_ASTEXT(geometry) as wkt, "+
+            " ST_SRID(geometry) as srid "+
+            " FROM my_places " +
+            " WHERE "+
+            " category_id = #{categoryId} " +
+            " ORDER BY id")
+    Cursor<MyPlace> streamAllByCategoryId(long categoryId);
+
     @ResultMap("MyPlacesResult")
     @Select("SELECT " +
             " id, " +
@@ -101,6 +129,39 @@ public interface MyPlaceMapper {
                                 @Param("maxX") double maxX,
                                 @Param("maxY") double maxY,
                                 @Param("srid") int srid);
+
+    /**
+     * Encodes the places of the category on the tile as MVT with the same properties as features encoded
+     * in Java: the row id is used as the feature id and as the "_oid" property and only the properties
+     * shown to the user are included.
+     * Points get a larger buffer so symbols aren't clipped at tile edges.
+     * @return one row with the encoded tile (NULL on older PostGIS versions if there are no features)
+     */
+    @Select("SELECT ST_AsMVT(mvt, #{tile.layerName}, #{tile.extent}, 'geom', 'fid') FROM (" +
+            " SELECT " +
+            "  id AS fid, " +
+            "  id::text AS \"_oid\", " +
+            "  name, " +
+            "  attention_text, " +
+            "  place_desc, " +
+            "  link, " +
+            "  image_url, " +
+            "  ST_AsMVTGeom(ST_Transform(geometry, #{tile.srid}), " +
+            "   ST_MakeEnvelope(#{tile.minX}, #{tile.minY}, #{tile.maxX}, #{tile.maxY}, #{tile.srid})::box2d, " +
+            "   #{tile.extent}, " +
+            "   CASE WHEN GeometryType(geometry) IN ('POINT', 'MULTIPOINT') THEN #{tile.pointBuffer} ELSE #{tile.buffer} END, " +
+            "   true) AS geom " +
+            " FROM my_places " +
+            " WHERE " +
+            " category_id = #{categoryId} " +
+            " AND " +
+            " geometry && ST_Transform(ST_Expand(" +
+            "   ST_MakeEnvelope(#{tile.minX}, #{tile.minY}, #{tile.maxX}, #{tile.maxY}, #{tile.srid}), #{tile.margin}), #{nativeSrid})" +
+            ") mvt WHERE mvt.geom IS NOT NULL")
+    List<byte[]> getMVT(@Param("categoryId") int categoryId,
+                        @Param("tile") UserLayerTile tile,
+                        @Param("nativeSrid") int nativeSrid);
+
     MyPlace findPlace(long id);
     MyPlaceCategory find(long categoryId);
     @Update("update categories set " +
@@ -0,0 +1,39 @@
+package fi.nls.oskari.myplaces.service;
+
+import fi.nls.oskari.domain.map.MyPlace;
+import org.locationtech.jts.geom.Geometry;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Receives places one at a time from MyPlacesFeaturesService.writeFeaturesByCategoryId()
+ * so exports can be written without building the whole document in memory.
+ */
+public interface MyPlacesFeatureWriter extends Closeable {
+
+    /**
+     * Called once before any places are written
+     * @param srsName projection of the geometries passed to write()
+     */
+    void start(String srsName) throws IOException;
+
+    /**
+     * @param place place to write
+     * @param geometry geometry of the place transformed to the projection given to start()
+     */
+    void write(MyPlace place, Geometry geometry) throws IOException;
+
+    /**
+     * Called once after all the places have been written
+     */
+    void finish() throws IOException;
+
+    /**
+     * Releases any resources held by the writer. Should be called even if the export fails.
+     */
+    @Override
+    default void close() throws IOException {
+        // nothing to release by default
+    }
+}
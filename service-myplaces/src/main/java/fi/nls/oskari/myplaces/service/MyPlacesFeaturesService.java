@@ -2,11 +2,20 @@ package fi.nls.oskari.myplaces.service;
 
 import fi.nls.oskari.domain.map.MyPlace;
 import fi.nls.oskari.service.ServiceException;
+import fi.nls.oskari.util.JSONHelper;
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.oskari.geojson.GeoJSON;
+import org.oskari.geojson.GeoJSONReader;
+import org.oskari.service.user.UserLayerTile;
 
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 
 public interface MyPlacesFeaturesService {
@@ -19,8 +28,51 @@ public interface MyPlacesFeaturesService {
     public JSONObject getFeaturesByUserId(String uuid, String crs) throws ServiceException;
     public JSONObject getFeaturesByMyPlaceId(long[] ids, String crs) throws ServiceException;
 
+    /**
+     * Streams the places of the category to the writer. The default implementation reads the whole
+     * category with getFeaturesByCategoryId() so implementations should override it to stream the places.
+     * @return number of places written
+     */
+    public default int writeFeaturesByCategoryId(long categoryId, String crs, MyPlacesFeatureWriter writer) throws ServiceException {
+        JSONObject featureCollection = getFeaturesByCategoryId(categoryId, crs);
+        JSONArray features = featureCollection == null ? null : featureCollection.optJSONArray(GeoJSON.FEATURES);
+        int count = 0;
+        try {
+            writer.start(crs);
+            for (int i = 0; features != null && i < features.length(); i++) {
+                JSONObject feature = features.getJSONObject(i);
+                JSONObject geometry = feature.optJSONObject(GeoJSON.GEOMETRY);
+                if (geometry == null) {
+                    continue;
+                }
+                writer.write(toMyPlace(feature, categoryId), GeoJSONReader.toGeometry(geometry));
+                count++;
+            }
+            writer.finish();
+        } catch (IOException | JSONException | IllegalArgumentException e) {
+            throw new ServiceException(e.getMessage(), e);
+        }
+        return count;
+    }
+
     public SimpleFeatureCollection getFeatures(int categoryId, ReferencedEnvelope bbox, CoordinateReferenceSystem crs) throws ServiceException;
 
+    /**
+     * Services storing the places in PostGIS can override this and getMVT() to skip
+     * reading the places to the JVM for vector tiles.
+     * @return true if getMVT() can be used
+     */
+    public default boolean supportsMVT() {
+        return false;
+    }
+
+    /**
+     * Returns the places of the category on the tile encoded as MVT (uncompressed)
+     */
+    public default byte[] getMVT(int categoryId, UserLayerTile tile) throws ServiceException {
+        throw new ServiceException("Not implemented");
+    }
+
     /**
      * Returns ids of inserted features
      * TODO: Just set the ids for the existing objects
@@ -29,4 +81,40 @@ public interface MyPlacesFeaturesService {
     public int update(List<MyPlace> places) throws ServiceException;
     public int delete(long[] ids) throws ServiceException;
 
+    /**
+     * Reads a place from a GeoJSON feature returned by getFeaturesByCategoryId(). Geometry is not set.
+     */
+    static MyPlace toMyPlace(JSONObject feature, long categoryId) {
+        MyPlace place = new MyPlace();
+        // WFS feature ids are prefixed with the typename like "my_places.123"
+        String id = feature.optString(GeoJSON.ID);
+        try {
+            place.setId(Long.parseLong(id.substring(id.lastIndexOf('.') + 1)));
+        } catch (NumberFormatException ignore) {}
+        place.setCategoryId(categoryId);
+        JSONObject properties = feature.optJSONObject(GeoJSON.PROPERTIES);
+        if (properties == null) {
+            return place;
+        }
+        place.setName(JSONHelper.optString(properties, "name", null));
+        place.setAttentionText(JSONHelper.optString(properties, "attention_text", null));
+        place.setDesc(JSONHelper.optString(properties, "place_desc", null));
+        place.setLink(JSONHelper.optString(properties, "link", null));
+        place.setImageUrl(JSONHelper.optString(properties, "image_url", null));
+        place.setCreated(toTime(JSONHelper.optString(properties, "created", null)));
+        place.setUpdated(toTime(JSONHelper.optString(properties, "updated", null)));
+        return place;
+    }
+
+    static OffsetDateTime toTime(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return OffsetDateTime.parse(value);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
 }
@@ -0,0 +1,94 @@
+package org.oskari.myplaces.export;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.DefaultIndenter;
+import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
+import fi.nls.oskari.domain.map.MyPlace;
+import fi.nls.oskari.myplaces.service.MyPlacesFeatureWriter;
+import org.locationtech.jts.geom.Geometry;
+import org.oskari.geojson.GeoJSON;
+import org.oskari.geojson.GeoJSONWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Writes places as a GeoJSON FeatureCollection directly to the stream.
+ * The output matches the one built by MyPlacesFeaturesServiceMybatisImpl.getFeaturesByCategoryId().
+ */
+public class GeoJSONMyPlacesWriter implements MyPlacesFeatureWriter {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private final JsonGenerator json;
+    private final GeoJSONWriter geojsonWriter = new GeoJSONWriter();
+
+    /**
+     * @param out stream to write to, not closed by the writer
+     * @param indent number of spaces to indent with, 0 or less for compact output
+     */
+    public GeoJSONMyPlacesWriter(OutputStream out, int indent) throws IOException {
+        json = FACTORY.createGenerator(out);
+        json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        if (indent > 0) {
+            char[] spaces = new char[indent];
+            Arrays.fill(spaces, ' ');
+            DefaultIndenter indenter = new DefaultIndenter(new String(spaces), DefaultIndenter.SYS_LF);
+            DefaultPrettyPrinter printer = new DefaultPrettyPrinter();
+            printer.indentObjectsWith(indenter);
+            printer.indentArraysWith(indenter);
+            json.setPrettyPrinter(printer);
+        }
+    }
+
+    @Override
+    public void start(String srsName) throws IOException {
+        json.writeStartObject();
+        json.writeStringField(GeoJSON.TYPE, GeoJSON.FEATURE_COLLECTION);
+        json.writeFieldName("crs");
+        json.writeRawValue(geojsonWriter.writeCRSObject(srsName).toString());
+        json.writeFieldName(GeoJSON.FEATURES);
+        json.writeStartArray();
+    }
+
+    @Override
+    public void write(MyPlace place, Geometry geometry) throws IOException {
+        json.writeStartObject();
+        json.writeNumberField("id", place.getId());
+        json.writeStringField("geometry_name", GeoJSON.GEOMETRY);
+        json.writeStringField(GeoJSON.TYPE, GeoJSON.FEATURE);
+        json.writeFieldName(GeoJSON.GEOMETRY);
+        json.writeRawValue(geojsonWriter.writeGeometry(geometry).toString());
+
+        json.writeFieldName(GeoJSON.PROPERTIES);
+        json.writeStartObject();
+        writeOptional("attention_text", place.getAttentionText());
+        json.writeNumberField("category_id", place.getCategoryId());
+        writeOptional("created", place.getCreated());
+        writeOptional("image_url", place.getImageUrl());
+        writeOptional("link", place.getLink());
+        writeOptional("name", place.getName());
+        writeOptional("place_desc", place.getDesc());
+        writeOptional("updated", place.getUpdated());
+        json.writeEndObject();
+
+        json.writeEndObject();
+    }
+
+    @Override
+    public void finish() throws IOException {
+        json.writeEndArray();
+        json.writeEndObject();
+        // flushes, doesn't close the target
+        json.close();
+    }
+
+    private void writeOptional(String key, Object value) throws IOException {
+        // skip nulls like JSONObject.put() does
+        if (value != null) {
+            json.writeStringField(key, value.toString());
+        }
+    }
+}
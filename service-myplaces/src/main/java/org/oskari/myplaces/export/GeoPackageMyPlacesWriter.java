@@ -0,0 +1,145 @@
+package org.oskari.myplaces.export;
+
+import fi.nls.oskari.domain.map.MyPlace;
+import fi.nls.oskari.map.geometry.WKTHelper;
+import fi.nls.oskari.myplaces.service.MyPlacesFeatureWriter;
+import org.geotools.data.DataStore;
+import org.geotools.data.DataStoreFinder;
+import org.geotools.data.DefaultTransaction;
+import org.geotools.data.FeatureWriter;
+import org.geotools.data.Transaction;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.locationtech.jts.geom.Geometry;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.sql.Timestamp;
+import java.time.OffsetDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes places to a GeoPackage. GeoPackage is an SQLite database so the features are written
+ * to a temp file that is copied to the stream in finish() and removed in close().
+ */
+public class GeoPackageMyPlacesWriter implements MyPlacesFeatureWriter {
+
+    private static final String GEOM_ATTRIBUTE = "geom";
+
+    private final OutputStream out;
+    private final String typeName;
+    private File file;
+    private DataStore store;
+    private Transaction transaction;
+    private FeatureWriter<SimpleFeatureType, SimpleFeature> writer;
+
+    /**
+     * @param out stream to write to, not closed by the writer
+     * @param typeName name of the feature table
+     */
+    public GeoPackageMyPlacesWriter(OutputStream out, String typeName) {
+        this.out = out;
+        this.typeName = typeName;
+    }
+
+    @Override
+    public void start(String srsName) throws IOException {
+        file = File.createTempFile("oskari-myplaces-", ".gpkg");
+        Map<String, Serializable> params = new HashMap<>();
+        params.put("dbtype", "geopkg");
+        params.put("database", file);
+        try {
+            store = DataStoreFinder.getDataStore(params);
+            store.createSchema(createType(srsName));
+            transaction = new DefaultTransaction();
+            writer = store.getFeatureWriterAppend(typeName, transaction);
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private SimpleFeatureType createType(String srsName) {
+        SimpleFeatureTypeBuilder builder = new SimpleFeatureTypeBuilder();
+        builder.setName(typeName);
+        builder.setCRS(WKTHelper.getCRS(srsName));
+        builder.add(GEOM_ATTRIBUTE, Geometry.class);
+        builder.add("id", Long.class);
+        builder.add("category_id", Long.class);
+        builder.add("name", String.class);
+        builder.add("attention_text", String.class);
+        builder.add("place_desc", String.class);
+        builder.add("link", String.class);
+        builder.add("image_url", String.class);
+        builder.add("created", Timestamp.class);
+        builder.add("updated", Timestamp.class);
+        builder.setDefaultGeometry(GEOM_ATTRIBUTE);
+        return builder.buildFeatureType();
+    }
+
+    @Override
+    public void write(MyPlace place, Geometry geometry) throws IOException {
+        SimpleFeature f = writer.next();
+        f.setAttribute(GEOM_ATTRIBUTE, geometry);
+        f.setAttribute("id", place.getId());
+        f.setAttribute("category_id", place.getCategoryId());
+        f.setAttribute("name", place.getName());
+        f.setAttribute("attention_text", place.getAttentionText());
+        f.setAttribute("place_desc", place.getDesc());
+        f.setAttribute("link", place.getLink());
+        f.setAttribute("image_url", place.getImageUrl());
+        f.setAttribute("created", toTimestamp(place.getCreated()));
+        f.setAttribute("updated", toTimestamp(place.getUpdated()));
+        writer.write();
+    }
+
+    @Override
+    public void finish() throws IOException {
+        try {
+            writer.close();
+            writer = null;
+            transaction.commit();
+            transaction.close();
+            transaction = null;
+            store.dispose();
+            store = null;
+            Files.copy(file.toPath(), out);
+            out.flush();
+        } finally {
+            close();
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (writer != null) {
+                writer.close();
+                writer = null;
+            }
+            if (transaction != null) {
+                transaction.close();
+                transaction = null;
+            }
+        } catch (IOException ignore) {
+            // nothing to do, the file is removed anyway
+        }
+        if (store != null) {
+            store.dispose();
+            store = null;
+        }
+        if (file != null) {
+            file.delete();
+            file = null;
+        }
+    }
+
+    private static Timestamp toTimestamp(OffsetDateTime time) {
+        return time == null ? null : Timestamp.from(time.toInstant());
+    }
+}
@@ -10,9 +10,11 @@ import fi.nls.oskari.log.Logger;
 import fi.nls.oskari.map.geometry.WKTHelper;
 import fi.nls.oskari.mybatis.MyBatisHelper;
 import fi.nls.oskari.myplaces.MyPlaceMapper;
+import fi.nls.oskari.myplaces.service.MyPlacesFeatureWriter;
 import fi.nls.oskari.myplaces.service.MyPlacesFeaturesService;
 import fi.nls.oskari.service.ServiceException;
 import fi.nls.oskari.util.PropertyUtil;
+import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.SqlSession;
 import org.apache.ibatis.session.SqlSessionFactory;
@@ -35,10 +37,14 @@ import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.opengis.referencing.operation.MathTransform;
 import org.oskari.geojson.GeoJSON;
 import org.oskari.geojson.GeoJSONWriter;
+import org.oskari.myplaces.tile.MyPlacesTileCache;
+import org.oskari.service.user.UserLayerTile;
 
 import javax.sql.DataSource;
 import java.time.OffsetDateTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import static fi.nls.oskari.map.geometry.ProjectionHelper.getSRID;
@@ -113,6 +119,39 @@ public class MyPlacesFeaturesServiceMybatisImpl implements MyPlacesFeaturesServi
         }
     }
 
+    @Override
+    public int writeFeaturesByCategoryId(long categoryId, String crs, MyPlacesFeatureWriter writer) throws ServiceException {
+        try (SqlSession session = factory.openSession()) {
+            LOG.debug("Export features by category id: ", categoryId, crs);
+            final MyPlaceMapper mapper = session.getMapper(MyPlaceMapper.class);
+            final CoordinateReferenceSystem targetCRS = WKTHelper.getCRS(crs);
+            // places are usually stored in the same projection, resolve the transform once per srid
+            final Map<Integer, MathTransform> transforms = new HashMap<>();
+            int count = 0;
+            writer.start(crs);
+            try (Cursor<MyPlace> places = mapper.streamAllByCategoryId(categoryId)) {
+                for (MyPlace place : places) {
+                    Geometry geom = parseWKT(place.getWkt());
+                    if (geom == null) {
+                        continue;
+                    }
+                    MathTransform transform = transforms.get(place.getDatabaseSRID());
+                    if (transform == null) {
+                        transform = CRS.findMathTransform(WKTHelper.getCRS("EPSG:" + place.getDatabaseSRID()), targetCRS, true);
+                        transforms.put(place.getDatabaseSRID(), transform);
+                    }
+                    writer.write(place, JTS.transform(geom, transform));
+                    count++;
+                }
+            }
+            writer.finish();
+            return count;
+        } catch (Exception e) {
+            LOG.warn(e, "Exception when trying to export features by category id ", categoryId);
+            throw new ServiceException(e.getMessage(), e);
+        }
+    }
+
     @Override
     public SimpleFeatureCollection getFeatures(int categoryId, ReferencedEnvelope bbox, CoordinateReferenceSystem crs)  throws ServiceException{
         try (SqlSession session = factory.openSession()) {
@@ -129,6 +168,27 @@ public class MyPlacesFeaturesServiceMybatisImpl implements MyPlacesFeaturesServi
         }
     }
 
+    @Override
+    public boolean supportsMVT() {
+        return true;
+    }
+
+    @Override
+    public byte[] getMVT(int categoryId, UserLayerTile tile) throws ServiceException {
+        try (SqlSession session = factory.openSession()) {
+            final MyPlaceMapper mapper = session.getMapper(MyPlaceMapper.class);
+            int nativeSrid = getSRID(PropertyUtil.get("oskari.native.srs", "EPSG:3857"));
+            List<byte[]> rows = mapper.getMVT(categoryId, tile, nativeSrid);
+            if (rows.isEmpty() || rows.get(0) == null) {
+                return new byte[0];
+            }
+            return rows.get(0);
+        } catch (Exception e) {
+            LOG.warn(e, "Exception when trying to get MVT for category:", categoryId);
+            throw new ServiceException(e.getMessage(), e);
+        }
+    }
+
     private SimpleFeatureCollection toSimpleFeatureCollection(List<MyPlace> features) throws ServiceException {
         try {
             if (features == null || features.isEmpty()) {
@@ -198,6 +258,7 @@ public class MyPlacesFeaturesServiceMybatisImpl implements MyPlacesFeaturesServi
                 LOG.info("inserted myplace: ", place.getId());
             }
             session.commit();
+            flushTiles(places);
             return places.stream().mapToLong(MyPlace::getId).toArray();
         } catch (Exception e) {
             LOG.warn(e, "Exception when trying to add MyPlaces: ");
@@ -211,6 +272,8 @@ public class MyPlacesFeaturesServiceMybatisImpl implements MyPlacesFeaturesServi
         try (SqlSession session = factory.openSession()) {
             LOG.debug("Adding new places: ", places);
             final MyPlaceMapper mapper = session.getMapper(MyPlaceMapper.class);
+            // places might be moved to another category
+            List<MyPlace> previous = mapper.findAllByPlaceIdIn(places.stream().mapToLong(MyPlace::getId).toArray());
             for (MyPlace place : places) {
                 String sourceSRSName = "EPSG:" + place.getGeometry().getSRID();
                 Geometry transformed = this.transformGeometry(place.getGeometry(), sourceSRSName, targetSRSName);
@@ -220,6 +283,8 @@ public class MyPlacesFeaturesServiceMybatisImpl implements MyPlacesFeaturesServi
                 LOG.info("updated myplace: ", place.getId());
             }
             session.commit();
+            flushTiles(previous);
+            flushTiles(places);
             return places.size();
         } catch (Exception e) {
             LOG.warn(e, "Exception when trying to add MyPlaces ");
@@ -232,11 +297,13 @@ public class MyPlacesFeaturesServiceMybatisImpl implements MyPlacesFeaturesServi
         try (SqlSession session = factory.openSession()) {
             LOG.debug("Deleting from myPlaces: ", ids);
             final MyPlaceMapper mapper = session.getMapper(MyPlaceMapper.class);
+            List<MyPlace> deleted = mapper.findAllByPlaceIdIn(ids);
             for (long id : ids) {
                 mapper.deleteMyPlace(id);
                 LOG.info("deleted myplace: ", id);
             }
             session.commit();
+            flushTiles(deleted);
             return ids.length;
         } catch (Exception e) {
             LOG.warn(e, "Exception when trying to add MyPlaces ");
@@ -244,6 +311,13 @@ public class MyPlacesFeaturesServiceMybatisImpl implements MyPlacesFeaturesServi
         }
     }
 
+    private void flushTiles(List<MyPlace> places) {
+        places.stream()
+                .mapToLong(MyPlace::getCategoryId)
+                .distinct()
+                .forEach(MyPlacesTileCache::flush);
+    }
+
     private Geometry transformGeometry(Geometry geometry, String sourceSRSName, String targetSRSName) {
         try {
             CoordinateReferenceSystem targetCRS, sourceCRS;
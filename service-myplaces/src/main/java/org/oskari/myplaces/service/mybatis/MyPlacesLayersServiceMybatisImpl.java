@@ -28,6 +28,7 @@ import fi.nls.oskari.mybatis.JSONObjectMybatisTypeHandler;
 import fi.nls.oskari.mybatis.MyBatisHelper;
 import fi.nls.oskari.myplaces.service.MyPlacesLayersService;
 import fi.nls.oskari.service.ServiceException;
+import org.oskari.myplaces.tile.MyPlacesTileCache;
 
 /**
  * MyBatis implementation of MyPlacesLayersService
@@ -118,6 +119,8 @@ public class MyPlacesLayersServiceMybatisImpl implements MyPlacesLayersService {
                 cache.remove(UserContentMyPlacesService.getPlaceCacheKey(category.getId()));
             }
             session.commit();
+            // flush after commit so tiles rendered meanwhile don't cache the old style again
+            categories.forEach(category -> MyPlacesTileCache.flush(category.getId()));
             return n;
         }
     }
@@ -132,6 +135,9 @@ public class MyPlacesLayersServiceMybatisImpl implements MyPlacesLayersService {
                 cache.remove(UserContentMyPlacesService.getPlaceCacheKey(id));
             }
             session.commit();
+            for (long id : ids) {
+                MyPlacesTileCache.flush(id);
+            }
             return n;
         }
     }
@@ -0,0 +1,99 @@
+package org.oskari.myplaces.tile;
+
+import fi.nls.oskari.cache.Cache;
+import fi.nls.oskari.cache.CacheManager;
+import fi.nls.oskari.util.PropertyUtil;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds rendered myplaces tiles per category together with the renderer (style) used for them.
+ * The whole entry of a category is removed when places or the category are modified. Removing
+ * a key is cluster aware so the tiles of the category are dropped on all nodes.
+ *
+ * Memory use is bounded by the number of categories times the size limit of tiles per category,
+ * 32 x 2 MB with the defaults.
+ *
+ * Configuration:
+ * - oskari.cache.limit.MyPlacesTile - number of categories to keep tiles for (defaults to 32)
+ * - myplaces.tile.cache.size - number of tiles to keep per category (defaults to 256)
+ * - myplaces.tile.cache.kb - total size of tiles to keep per category (defaults to 2048)
+ */
+public class MyPlacesTileCache {
+
+    private static final int TILES_PER_CATEGORY = PropertyUtil.getOptional("myplaces.tile.cache.size", 256);
+    private static final long BYTES_PER_CATEGORY = PropertyUtil.getOptional("myplaces.tile.cache.kb", 2048) * 1024L;
+    private static final Cache<CategoryTiles> CACHE = CacheManager.getCache("MyPlacesTile");
+
+    static {
+        CACHE.setLimit(32);
+        CACHE.setExpiration(TimeUnit.HOURS.toMillis(1));
+    }
+
+    private MyPlacesTileCache() {}
+
+    /**
+     * @param categoryId
+     * @return cached tiles of the category or null if there are none
+     */
+    public static CategoryTiles get(long categoryId) {
+        return CACHE.get(Long.toString(categoryId));
+    }
+
+    /**
+     * Starts caching tiles for the category
+     * @param categoryId
+     * @param renderer renderer with the current style of the category
+     * @return the created entry
+     */
+    public static CategoryTiles create(long categoryId, MyPlacesTileRenderer renderer) {
+        CategoryTiles tiles = new CategoryTiles(renderer);
+        CACHE.put(Long.toString(categoryId), tiles);
+        return tiles;
+    }
+
+    /**
+     * Removes cached tiles and style of the category
+     * @param categoryId category that was modified
+     */
+    public static void flush(long categoryId) {
+        CACHE.remove(Long.toString(categoryId));
+    }
+
+    public static class CategoryTiles {
+        private final MyPlacesTileRenderer renderer;
+        // least recently used first
+        private final LinkedHashMap<String, byte[]> tiles = new LinkedHashMap<>(16, 0.75f, true);
+        private long bytes;
+
+        private CategoryTiles(MyPlacesTileRenderer renderer) {
+            this.renderer = renderer;
+        }
+
+        public MyPlacesTileRenderer getRenderer() {
+            return renderer;
+        }
+
+        public synchronized byte[] get(String key) {
+            return tiles.get(key);
+        }
+
+        public synchronized void put(String key, byte[] tile) {
+            if (tile.length > BYTES_PER_CATEGORY) {
+                return;
+            }
+            byte[] previous = tiles.put(key, tile);
+            if (previous != null) {
+                bytes -= previous.length;
+            }
+            bytes += tile.length;
+            Iterator<byte[]> it = tiles.values().iterator();
+            while (it.hasNext() && (tiles.size() > TILES_PER_CATEGORY || bytes > BYTES_PER_CATEGORY)) {
+                bytes -= it.next().length;
+                it.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package org.oskari.myplaces.tile;
+
+import org.json.JSONObject;
+import org.locationtech.jts.awt.PointShapeFactory;
+import org.locationtech.jts.awt.ShapeWriter;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Polygonal;
+import org.locationtech.jts.geom.Puntal;
+
+import javax.imageio.ImageIO;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * Renders myplaces to PNG tiles with the default feature style of the category (Oskari style JSON).
+ * Supports the subset of the style that GeoServer SLD for myplaces used: fill color for areas,
+ * stroke color and width for lines and area borders and fill color and size for points.
+ * Points are drawn as circles.
+ */
+public class MyPlacesTileRenderer {
+
+    // same scale as print uses for markers, see service-print StyleUtil
+    private static final int ICON_SIZE = 32;
+    private static final Color DEFAULT_COLOR = Color.BLACK;
+    private static final Color POINT_BORDER = new Color(0x33, 0x33, 0x33);
+
+    private final Color fill;
+    private final Color lineColor;
+    private final Stroke lineStroke;
+    private final Color areaColor;
+    private final Stroke areaStroke;
+    private final Color pointFill;
+    private final int pointSize;
+    private final int margin;
+
+    public MyPlacesTileRenderer(JSONObject featureStyle) {
+        JSONObject style = featureStyle == null ? new JSONObject() : featureStyle;
+        JSONObject stroke = optObject(style, "stroke");
+        JSONObject strokeArea = optObject(stroke, "area");
+        JSONObject image = optObject(style, "image");
+
+        fill = parseColor(optObject(style, "fill").optString("color", null), null);
+        lineColor = parseColor(stroke.optString("color", null), DEFAULT_COLOR);
+        float lineWidth = (float) stroke.optDouble("width", 1);
+        lineStroke = new BasicStroke(lineWidth, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+        areaColor = parseColor(strokeArea.optString("color", null), DEFAULT_COLOR);
+        float areaWidth = (float) strokeArea.optDouble("width", 1);
+        areaStroke = new BasicStroke(areaWidth, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+        pointFill = parseColor(optObject(image, "fill").optString("color", null), DEFAULT_COLOR);
+        int size = image.optInt("size", 3);
+        double scale = size < 1 || size > 5 ? 1 : 0.6 + size / 10.0;
+        pointSize = (int) Math.round(ICON_SIZE * scale);
+        margin = (int) Math.ceil(Math.max(pointSize / 2.0 + 1, Math.max(lineWidth, areaWidth)));
+    }
+
+    /**
+     * @return pixels that a feature outside the tile can extend into it
+     */
+    public int getMargin() {
+        return margin;
+    }
+
+    /**
+     * @param geometries geometries in the same projection as bbox
+     * @param bbox extent of the tile
+     * @param width tile width in pixels
+     * @param height tile height in pixels
+     * @return PNG image
+     */
+    public byte[] render(Collection<Geometry> geometries, Envelope bbox, int width, int height) throws IOException {
+        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = img.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            // Flip y-axis, BufferedImages (0,0) is at top left
+            AffineTransform worldToPixel = new AffineTransform(
+                    width / bbox.getWidth(), 0, 0, -height / bbox.getHeight(),
+                    -bbox.getMinX() * width / bbox.getWidth(), bbox.getMaxY() * height / bbox.getHeight());
+            ShapeWriter writer = new ShapeWriter(
+                    (src, dest) -> worldToPixel.transform(new Point2D.Double(src.x, src.y), dest),
+                    new PointShapeFactory.Circle(pointSize));
+            // draw areas first so lines and points stay visible
+            for (Geometry geom : geometries) {
+                if (geom instanceof Polygonal) {
+                    drawArea(g, writer.toShape(geom));
+                }
+            }
+            for (Geometry geom : geometries) {
+                if (!(geom instanceof Polygonal) && !(geom instanceof Puntal)) {
+                    g.setColor(lineColor);
+                    g.setStroke(lineStroke);
+                    g.draw(writer.toShape(geom));
+                }
+            }
+            for (Geometry geom : geometries) {
+                if (geom instanceof Puntal) {
+                    drawPoint(g, writer.toShape(geom));
+                }
+            }
+        } finally {
+            g.dispose();
+        }
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ImageIO.write(img, "png", baos);
+        return baos.toByteArray();
+    }
+
+    private void drawArea(Graphics2D g, Shape shape) {
+        if (fill != null) {
+            g.setColor(fill);
+            g.fill(shape);
+        }
+        g.setColor(areaColor);
+        g.setStroke(areaStroke);
+        g.draw(shape);
+    }
+
+    private void drawPoint(Graphics2D g, Shape shape) {
+        g.setColor(pointFill);
+        g.fill(shape);
+        g.setColor(POINT_BORDER);
+        g.setStroke(new BasicStroke(1));
+        g.draw(shape);
+    }
+
+    private static JSONObject optObject(JSONObject json, String key) {
+        JSONObject value = json.optJSONObject(key);
+        return value == null ? new JSONObject() : value;
+    }
+
+    /**
+     * @param color "#RRGGBB" or "RRGGBB"
+     */
+    protected static Color parseColor(String color, Color defaultValue) {
+        if (color == null || color.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return new Color(Integer.parseInt(color.charAt(0) == '#' ? color.substring(1) : color, 16));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
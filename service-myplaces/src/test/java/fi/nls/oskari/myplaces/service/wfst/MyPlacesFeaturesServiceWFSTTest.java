@@ -3,6 +3,7 @@ package fi.nls.oskari.myplaces.service.wfst;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
@@ -15,6 +16,7 @@ import org.json.JSONObject;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import org.oskari.myplaces.export.GeoJSONMyPlacesWriter;
 import org.locationtech.jts.geom.LineString;
 import org.locationtech.jts.geom.MultiLineString;
 import org.locationtech.jts.geom.Point;
@@ -94,6 +96,35 @@ public class MyPlacesFeaturesServiceWFSTTest {
         assertEquals(1, numDeleted);
     }
 
+    @Test
+    public void testWriteFeaturesByCategoryId() throws Exception {
+        JSONObject featureCollection = new JSONObject("{\"type\":\"FeatureCollection\",\"features\":["
+                + "{\"type\":\"Feature\",\"id\":\"12\",\"geometry\":{\"type\":\"Point\",\"coordinates\":[100,200]},"
+                + "\"properties\":{\"name\":\"first\",\"place_desc\":\"desc\",\"created\":\"2020-01-02T03:04:05Z\"}},"
+                + "{\"type\":\"Feature\",\"id\":\"13\",\"geometry\":null,\"properties\":{\"name\":\"no geometry\"}}]}");
+        MyPlacesFeaturesService featureService = new MyPlacesFeaturesServiceWFST() {
+            @Override
+            public JSONObject getFeaturesByCategoryId(long categoryId, String crs) {
+                return featureCollection;
+            }
+        };
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        int count = featureService.writeFeaturesByCategoryId(5, "EPSG:3067", new GeoJSONMyPlacesWriter(baos, 0));
+        assertEquals("Places without geometry are skipped", 1, count);
+
+        JSONArray features = new JSONObject(new String(baos.toByteArray(), StandardCharsets.UTF_8)).getJSONArray("features");
+        assertEquals(1, features.length());
+        JSONObject feature = features.getJSONObject(0);
+        assertEquals(12, feature.getLong("id"));
+        assertEquals(100, feature.getJSONObject("geometry").getJSONArray("coordinates").getDouble(0), 0);
+        JSONObject properties = feature.getJSONObject("properties");
+        assertEquals("first", properties.getString("name"));
+        assertEquals("desc", properties.getString("place_desc"));
+        assertEquals(5, properties.getLong("category_id"));
+        assertEquals("2020-01-02T03:04:05Z", properties.getString("created"));
+    }
+
     private List<MyPlace> parseMyPlaces() throws JSONException, IOException {
         byte[] payloadBytes;
         try (InputStream in = getClass().getClassLoader().getResourceAsStream("payload_4326.json")) {
@@ -0,0 +1,72 @@
+package org.oskari.myplaces.export;
+
+import fi.nls.oskari.domain.map.MyPlace;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class GeoJSONMyPlacesWriterTest {
+
+    private final GeometryFactory gf = new GeometryFactory();
+
+    @Test
+    public void testWritesFeatureCollection() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        GeoJSONMyPlacesWriter writer = new GeoJSONMyPlacesWriter(baos, 0);
+        writer.start("EPSG:3067");
+        writer.write(createPlace(1, "first", "desc"), gf.createPoint(new Coordinate(100, 200)));
+        writer.write(createPlace(2, "second", null), gf.createPoint(new Coordinate(300, 400)));
+        writer.finish();
+
+        JSONObject json = new JSONObject(new String(baos.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals("FeatureCollection", json.getString("type"));
+        assertEquals("EPSG:3067", json.getJSONObject("crs").getJSONObject("properties").getString("name"));
+
+        JSONArray features = json.getJSONArray("features");
+        assertEquals(2, features.length());
+
+        JSONObject first = features.getJSONObject(0);
+        assertEquals(1, first.getLong("id"));
+        assertEquals("Point", first.getJSONObject("geometry").getString("type"));
+        assertEquals(100, first.getJSONObject("geometry").getJSONArray("coordinates").getDouble(0), 0);
+        JSONObject properties = first.getJSONObject("properties");
+        assertEquals("first", properties.getString("name"));
+        assertEquals("desc", properties.getString("place_desc"));
+        assertEquals(5, properties.getLong("category_id"));
+        assertEquals("2020-01-02T03:04:05Z", properties.getString("created"));
+
+        // nulls are left out
+        assertFalse(features.getJSONObject(1).getJSONObject("properties").has("place_desc"));
+    }
+
+    @Test
+    public void testEmptyCollection() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        GeoJSONMyPlacesWriter writer = new GeoJSONMyPlacesWriter(baos, 2);
+        writer.start("EPSG:4326");
+        writer.finish();
+
+        JSONObject json = new JSONObject(new String(baos.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals(0, json.getJSONArray("features").length());
+    }
+
+    private MyPlace createPlace(long id, String name, String desc) {
+        MyPlace place = new MyPlace();
+        place.setId(id);
+        place.setCategoryId(5);
+        place.setName(name);
+        place.setDesc(desc);
+        place.setCreated(OffsetDateTime.of(2020, 1, 2, 3, 4, 5, 0, ZoneOffset.UTC));
+        return place;
+    }
+}
@@ -0,0 +1,36 @@
+package org.oskari.myplaces.tile;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class MyPlacesTileCacheTest {
+
+    private static final long CATEGORY_ID = -1;
+
+    @After
+    public void teardown() {
+        MyPlacesTileCache.flush(CATEGORY_ID);
+    }
+
+    @Test
+    public void testTilesAreBoundedBySize() {
+        MyPlacesTileCache.CategoryTiles tiles = MyPlacesTileCache.create(CATEGORY_ID, null);
+        byte[] tile = new byte[1024 * 1024];
+        tiles.put("0/0/0", tile);
+        tiles.put("1/0/0", tile);
+        // use the first one so the second one is the least recently used
+        assertNotNull(tiles.get("0/0/0"));
+        tiles.put("1/0/1", tile);
+
+        assertNull("Least recently used tile is dropped over the size limit", tiles.get("1/0/0"));
+        assertNotNull(tiles.get("0/0/0"));
+        assertNotNull(tiles.get("1/0/1"));
+
+        tiles.put("too/large", new byte[2048 * 1024 + 1]);
+        assertNull("Tiles over the size limit are not cached", tiles.get("too/large"));
+        assertNotNull("Other tiles are kept", tiles.get("0/0/0"));
+    }
+}
@@ -0,0 +1,68 @@
+package org.oskari.myplaces.tile;
+
+import org.json.JSONObject;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class MyPlacesTileRendererTest {
+
+    private final GeometryFactory gf = new GeometryFactory();
+
+    @Test
+    public void testRendersPolygonWithFill() throws Exception {
+        JSONObject style = new JSONObject("{\"fill\":{\"color\":\"#ff0000\"},\"stroke\":{\"area\":{\"color\":\"#0000ff\",\"width\":1}}}");
+        MyPlacesTileRenderer renderer = new MyPlacesTileRenderer(style);
+        Geometry polygon = gf.createPolygon(new Coordinate[] {
+                new Coordinate(100, 100), new Coordinate(150, 100), new Coordinate(150, 150),
+                new Coordinate(100, 150), new Coordinate(100, 100)
+        });
+        BufferedImage img = read(renderer.render(Collections.singletonList(polygon), new Envelope(100, 200, 100, 200), 256, 256));
+
+        assertEquals(256, img.getWidth());
+        // lower left quarter of the tile (y-axis is flipped)
+        assertEquals(Color.RED.getRGB(), img.getRGB(64, 192));
+        // rest is transparent
+        assertEquals(0, img.getRGB(192, 64) >>> 24);
+    }
+
+    @Test
+    public void testRendersPoint() throws Exception {
+        JSONObject style = new JSONObject("{\"image\":{\"fill\":{\"color\":\"#00ff00\"},\"size\":3}}");
+        MyPlacesTileRenderer renderer = new MyPlacesTileRenderer(style);
+        BufferedImage img = read(renderer.render(Arrays.asList(gf.createPoint(new Coordinate(150, 150))),
+                new Envelope(100, 200, 100, 200), 256, 256));
+        assertEquals(Color.GREEN.getRGB(), img.getRGB(128, 128));
+        assertEquals(0, img.getRGB(10, 10) >>> 24);
+    }
+
+    @Test
+    public void testMarginCoversPointSymbol() {
+        MyPlacesTileRenderer renderer = new MyPlacesTileRenderer(new JSONObject());
+        // default size 3 -> 32 * 0.9 px wide circle
+        assertEquals(16, renderer.getMargin());
+    }
+
+    @Test
+    public void testParseColor() {
+        assertEquals(new Color(0xFAEBD7), MyPlacesTileRenderer.parseColor("#FAEBD7", null));
+        assertEquals(Color.BLACK, MyPlacesTileRenderer.parseColor("not a color", Color.BLACK));
+        assertNull(MyPlacesTileRenderer.parseColor(null, null));
+    }
+
+    private BufferedImage read(byte[] png) throws Exception {
+        return ImageIO.read(new ByteArrayInputStream(png));
+    }
+}
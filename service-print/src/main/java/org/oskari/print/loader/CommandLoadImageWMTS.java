@@ -8,7 +8,7 @@ import java.util.Set;
 import java.util.concurrent.Future;
 
 import fi.nls.oskari.domain.map.OskariLayer;
-import org.oskari.capabilities.CapabilitiesService;
+import org.oskari.capabilities.LayerCapabilitiesCache;
 import org.oskari.capabilities.ogc.LayerCapabilitiesWMTS;
 import org.oskari.capabilities.ogc.wmts.*;
 import org.oskari.print.request.PrintLayer;
@@ -70,7 +70,7 @@ public class CommandLoadImageWMTS extends CommandLoadImageBase {
     @Override
     public BufferedImage run() throws Exception {
         LayerCapabilitiesWMTS caps = getLayerCapabilities();
-        TileMatrixSet tms = getTileMatrixSet(caps.getTileMatrixLinks());
+        TileMatrixSet tms = getTileMatrixSet(caps.getTileMatrixLinks(srs));
         TileMatrix tm = getTileMatrix(tms);
 
         int tileWidth = tm.getTileWidth();
@@ -193,9 +193,9 @@ public class CommandLoadImageWMTS extends CommandLoadImageBase {
     private LayerCapabilitiesWMTS getLayerCapabilities() throws IllegalArgumentException {
         OskariLayer oskariLayer = layer.getOskariLayer();
         if (oskariLayer != null) {
-            JSONObject capabilies = layer.getOskariLayer().getCapabilities();
-            if (capabilies != null) {
-                return CapabilitiesService.fromJSON(layer.getOskariLayer().getCapabilities().toString(), OskariLayer.TYPE_WMTS);
+            LayerCapabilitiesWMTS caps = LayerCapabilitiesCache.get(oskariLayer);
+            if (caps != null) {
+                return caps;
             }
         }
         throw new IllegalArgumentException("Could not find layer from Capabilities");
@@ -218,11 +218,9 @@ public class CommandLoadImageWMTS extends CommandLoadImageBase {
     private TileMatrixSet getTileMatrixSet(List<TileMatrixLink> tileMatrixLinks) throws IllegalArgumentException {
         List<TileMatrixSet> possibleTileMatrixSets = new ArrayList<>();
 
+        // links are already filtered to the requested crs
         for (TileMatrixLink link : tileMatrixLinks) {
-            TileMatrixSet tms = link.getTileMatrixSet();
-            if (srs.equals(ProjectionHelper.shortSyntaxEpsg(tms.getCrs()))) {
-                possibleTileMatrixSets.add(tms);
-            }
+            possibleTileMatrixSets.add(link.getTileMatrixSet());
         }
 
         if (possibleTileMatrixSets.isEmpty()) {
@@ -2,7 +2,6 @@ package fi.nls.oskari.scheduler;
 
 import fi.nls.oskari.log.LogFactory;
 import fi.nls.oskari.log.Logger;
-import org.quartz.Job;
 import org.quartz.JobDataMap;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
@@ -15,7 +14,7 @@ import java.lang.reflect.Method;
  *
  * Requires JobData entries for "className" and "methodName", which contain the obvious parameters.
 */
-public class ArbitraryStaticMethodCallJob implements Job {
+public class ArbitraryStaticMethodCallJob extends ExclusiveJob {
 
     private static final Logger log = LogFactory.getLogger(ArbitraryStaticMethodCallJob.class);
 
@@ -24,7 +23,7 @@ public class ArbitraryStaticMethodCallJob implements Job {
     private static final String METHOD_NAME = "methodName";
 
     @Override
-    public void execute(final JobExecutionContext context) throws JobExecutionException {
+    protected void executeJob(final JobExecutionContext context) throws JobExecutionException {
         final JobDataMap data = context.getMergedJobDataMap();
         try {
             final Class<?> clazz = Class.forName(data.getString(CLASS_NAME));
@@ -39,6 +38,8 @@ public class ArbitraryStaticMethodCallJob implements Job {
             log.error(e, "no such method", data.getString(CLASS_NAME), data.getString(METHOD_NAME));
         } catch (final InvocationTargetException e) {
             log.error(e, "invocation failed", data.getString(CLASS_NAME), data.getString(METHOD_NAME));
+            // let ExclusiveJob record the run as failed
+            throw new JobExecutionException(e.getCause());
         }
     }
 }
@@ -0,0 +1,112 @@
+package fi.nls.oskari.scheduler;
+
+import fi.nls.oskari.cache.JedisManager;
+import fi.nls.oskari.log.LogFactory;
+import fi.nls.oskari.log.Logger;
+import fi.nls.oskari.util.PropertyUtil;
+import org.oskari.cluster.ClusterManager;
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+
+import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base class for Quartz jobs that should run on only one node of a cluster for each trigger.
+ *
+ * Each node has its own scheduler so in a clustered environment (ClusterManager.isClustered()) all nodes fire
+ * the same triggers. Before running the job a node needs to:
+ * - claim the trigger with a Redis key based on the scheduled fire time. Cron fire times are the same on all nodes
+ *   so only the first node gets to run the job for each trigger.
+ * - take the lease of the job. The lease is kept alive while the job is running so the next trigger doesn't start
+ *   the job on another node while it's still running. If the node dies the lease expires and the job is run by
+ *   another node on the next trigger.
+ *
+ * The lease time can be configured with "oskari.scheduler.lease.seconds" (defaults to 60). Jobs that need to run
+ * on every node can be configured with "oskari.scheduler.job.[job name].allNodes=true".
+ * Note! If Redis can't be reached the jobs are skipped on all nodes.
+ *
+ * Executions are recorded in JobHistory.
+ */
+public abstract class ExclusiveJob implements Job {
+
+    private static final Logger log = LogFactory.getLogger(ExclusiveJob.class);
+
+    public static final String PROP_LEASE_SECONDS = "oskari.scheduler.lease.seconds";
+    private static final String KEY_PREFIX = "oskari_scheduler_";
+    // long enough to cover clock differences between nodes
+    private static final int TRIGGER_TTL_SECONDS = 600;
+
+    private static ScheduledExecutorService heartbeat;
+
+    @Override
+    public final void execute(final JobExecutionContext context) throws JobExecutionException {
+        final String jobName = context.getJobDetail().getKey().getName();
+        if (!ClusterManager.isClustered()
+                || PropertyUtil.getOptional("oskari.scheduler.job." + jobName + ".allNodes", false)) {
+            run(jobName, context);
+            return;
+        }
+        final String nodeId = ClusterManager.getId();
+        final Date fireTime = context.getScheduledFireTime();
+        if (fireTime != null && !JedisManager.setnx(
+                KEY_PREFIX + jobName + "_trigger_" + fireTime.getTime(), TRIGGER_TTL_SECONDS, nodeId)) {
+            log.debug("Scheduled job", jobName, "was triggered on another node");
+            return;
+        }
+        final String leaseKey = KEY_PREFIX + jobName + "_lease";
+        final int leaseSeconds = Math.max(3, PropertyUtil.getOptional(PROP_LEASE_SECONDS, 60));
+        if (!JedisManager.setnx(leaseKey, leaseSeconds, nodeId)) {
+            log.info("Scheduled job", jobName, "is still running on another node - skipping");
+            return;
+        }
+        final long refreshSeconds = leaseSeconds / 3;
+        final ScheduledFuture<?> refresh = getHeartbeat().scheduleWithFixedDelay(() -> {
+            if (!JedisManager.expireIfEquals(leaseKey, leaseSeconds, nodeId)) {
+                log.warn("Lost the lease for scheduled job", jobName);
+            }
+        }, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+        try {
+            run(jobName, context);
+        } finally {
+            refresh.cancel(false);
+            JedisManager.delIfEquals(leaseKey, nodeId);
+        }
+    }
+
+    private void run(final String jobName, final JobExecutionContext context) throws JobExecutionException {
+        final long start = System.currentTimeMillis();
+        Throwable error = null;
+        try {
+            executeJob(context);
+        } catch (Throwable t) {
+            error = t;
+            throw t;
+        } finally {
+            JobHistory.record(new JobExecution(jobName, ClusterManager.getId(), start,
+                    System.currentTimeMillis() - start, error));
+        }
+    }
+
+    private static synchronized ScheduledExecutorService getHeartbeat() {
+        if (heartbeat == null) {
+            heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "oskari-scheduler-lease");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return heartbeat;
+    }
+
+    /**
+     * Runs the actual job
+     * @param context
+     * @throws JobExecutionException
+     */
+    protected abstract void executeJob(final JobExecutionContext context) throws JobExecutionException;
+}
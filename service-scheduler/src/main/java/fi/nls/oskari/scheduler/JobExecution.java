@@ -0,0 +1,92 @@
+package fi.nls.oskari.scheduler;
+
+import fi.nls.oskari.util.JSONHelper;
+import org.json.JSONObject;
+
+/**
+ * Details of a single run of a scheduled job for JobHistory.
+ */
+public class JobExecution {
+
+    private static final String KEY_JOB = "job";
+    private static final String KEY_NODE = "node";
+    private static final String KEY_START = "start";
+    private static final String KEY_DURATION = "duration";
+    private static final String KEY_ERROR = "error";
+    private static final String KEY_SUCCESS = "success";
+
+    private final String jobName;
+    private final String node;
+    private final long start;
+    private final long duration;
+    private final boolean success;
+    private final String error;
+
+    public JobExecution(String jobName, String node, long start, long duration, Throwable error) {
+        this(jobName, node, start, duration, error == null,
+                error == null ? null : error.getClass().getName() + ": " + error.getMessage());
+    }
+
+    private JobExecution(String jobName, String node, long start, long duration, boolean success, String error) {
+        this.jobName = jobName;
+        this.node = node;
+        this.start = start;
+        this.duration = duration;
+        this.success = success;
+        this.error = error;
+    }
+
+    public String getJobName() {
+        return jobName;
+    }
+
+    /**
+     * @return id of the cluster node that ran the job
+     */
+    public String getNode() {
+        return node;
+    }
+
+    /**
+     * @return start time in epoch milliseconds
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * @return duration in milliseconds
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public JSONObject toJSON() {
+        JSONObject json = new JSONObject();
+        JSONHelper.putValue(json, KEY_JOB, jobName);
+        JSONHelper.putValue(json, KEY_NODE, node);
+        JSONHelper.putValue(json, KEY_START, start);
+        JSONHelper.putValue(json, KEY_DURATION, duration);
+        JSONHelper.putValue(json, KEY_SUCCESS, success);
+        JSONHelper.putValue(json, KEY_ERROR, error);
+        return json;
+    }
+
+    public static JobExecution fromJSON(JSONObject json) {
+        return new JobExecution(
+                json.optString(KEY_JOB, null),
+                json.optString(KEY_NODE, null),
+                json.optLong(KEY_START),
+                json.optLong(KEY_DURATION),
+                json.optBoolean(KEY_SUCCESS),
+                json.optString(KEY_ERROR, null));
+    }
+}
@@ -0,0 +1,76 @@
+package fi.nls.oskari.scheduler;
+
+import fi.nls.oskari.cache.JedisManager;
+import fi.nls.oskari.log.LogFactory;
+import fi.nls.oskari.log.Logger;
+import fi.nls.oskari.util.JSONHelper;
+import fi.nls.oskari.util.PropertyUtil;
+import org.json.JSONObject;
+import org.oskari.cluster.ClusterManager;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * Keeps the latest executions of scheduled jobs. In a clustered environment the history is stored in Redis
+ * so runs on all nodes are listed. The amount of executions kept for each job can be configured with
+ * "oskari.scheduler.history.size" (defaults to 20).
+ */
+public class JobHistory {
+
+    private static final Logger log = LogFactory.getLogger(JobHistory.class);
+
+    public static final String PROP_HISTORY_SIZE = "oskari.scheduler.history.size";
+    private static final String KEY_PREFIX = "oskari_scheduler_history_";
+
+    private static final Map<String, Deque<JobExecution>> LOCAL = new ConcurrentHashMap<>();
+
+    private JobHistory() {}
+
+    public static void record(JobExecution execution) {
+        if (execution.isSuccess()) {
+            log.info("Scheduled job", execution.getJobName(), "finished in", execution.getDuration(), "ms");
+        } else {
+            log.warn("Scheduled job", execution.getJobName(), "failed after", execution.getDuration(), "ms:",
+                    execution.getError());
+        }
+        final int size = Math.max(1, PropertyUtil.getOptional(PROP_HISTORY_SIZE, 20));
+        if (ClusterManager.isClustered()) {
+            final String key = KEY_PREFIX + execution.getJobName();
+            long length = JedisManager.pushToList(key, execution.toJSON().toString());
+            if (length > size) {
+                // oldest executions are at the head of the list
+                JedisManager.popList(key, (int) (length - size));
+            }
+            return;
+        }
+        Deque<JobExecution> executions = LOCAL.computeIfAbsent(execution.getJobName(), k -> new ConcurrentLinkedDeque<>());
+        executions.addLast(execution);
+        while (executions.size() > size) {
+            executions.pollFirst();
+        }
+    }
+
+    /**
+     * @param jobName
+     * @return executions of the job, oldest first
+     */
+    public static List<JobExecution> getHistory(String jobName) {
+        if (!ClusterManager.isClustered()) {
+            Deque<JobExecution> executions = LOCAL.get(jobName);
+            return executions == null ? new ArrayList<>() : new ArrayList<>(executions);
+        }
+        List<JobExecution> list = new ArrayList<>();
+        for (String value : JedisManager.getList(KEY_PREFIX + jobName)) {
+            JSONObject json = JSONHelper.createJSONObject(value);
+            if (json != null) {
+                list.add(JobExecution.fromJSON(json));
+            }
+        }
+        return list;
+    }
+}
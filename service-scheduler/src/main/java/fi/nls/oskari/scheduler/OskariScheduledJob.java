@@ -3,7 +3,6 @@ package fi.nls.oskari.scheduler;
 import fi.nls.oskari.log.LogFactory;
 import fi.nls.oskari.log.Logger;
 import fi.nls.oskari.worker.ScheduledJob;
-import org.quartz.Job;
 import org.quartz.JobDataMap;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
@@ -13,14 +12,14 @@ import org.quartz.JobExecutionException;
  *
  * Requires JobData entry for "className" which should point to a class extending fi.nls.oskari.worker.ScheduledJob.
 */
-public class OskariScheduledJob implements Job {
+public class OskariScheduledJob extends ExclusiveJob {
 
     private static final Logger log = LogFactory.getLogger(OskariScheduledJob.class);
 
     protected static final String CLASS_NAME = "className";
 
     @Override
-    public void execute(final JobExecutionContext context) throws JobExecutionException {
+    protected void executeJob(final JobExecutionContext context) throws JobExecutionException {
         final JobDataMap data = context.getMergedJobDataMap();
 
         try {
@@ -0,0 +1,35 @@
+package fi.nls.oskari.scheduler;
+
+import fi.nls.oskari.util.PropertyUtil;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class JobHistoryTest {
+
+    @After
+    public void tearDown() {
+        PropertyUtil.clearProperties();
+    }
+
+    @Test
+    public void recordKeepsLatestExecutions() throws Exception {
+        PropertyUtil.addProperty(JobHistory.PROP_HISTORY_SIZE, "3", true);
+        for (int i = 0; i < 5; i++) {
+            JobHistory.record(new JobExecution("historyTest", "node", i, 10, null));
+        }
+        JobHistory.record(new JobExecution("historyTest", "node", 5, 20, new IllegalStateException("failed")));
+
+        List<JobExecution> history = JobHistory.getHistory("historyTest");
+        Assert.assertEquals(3, history.size());
+        Assert.assertEquals("Oldest first", 3, history.get(0).getStart());
+        Assert.assertTrue(history.get(0).isSuccess());
+        JobExecution latest = history.get(2);
+        Assert.assertFalse(latest.isSuccess());
+        Assert.assertEquals(20, latest.getDuration());
+        Assert.assertEquals("java.lang.IllegalStateException: failed", latest.getError());
+        Assert.assertTrue(JobHistory.getHistory("unknown").isEmpty());
+    }
+}
@@ -4,6 +4,7 @@ import fi.nls.oskari.util.PropertyUtil;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -34,6 +35,9 @@ public class SchedulerServiceTest {
             TimeUnit.SECONDS.sleep(2);
             ss.shutdownScheduler();
             Assert.assertTrue("Quartz called the requested method", METHOD_CALLED.get());
+            List<JobExecution> history = JobHistory.getHistory("page_google");
+            Assert.assertFalse("Execution was recorded", history.isEmpty());
+            Assert.assertTrue("Execution succeeded", history.get(0).isSuccess());
         } finally {
             PropertyUtil.clearProperties();
         }
@@ -3,6 +3,7 @@ package fi.nls.oskari.control.statistics;
 import java.io.*;
 import java.net.HttpURLConnection;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -13,6 +14,7 @@ import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.feature.DefaultFeatureCollection;
 import org.geotools.feature.FeatureIterator;
 import org.geotools.geojson.feature.FeatureJSON;
+import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.geometry.jts.JTS;
 import org.geotools.referencing.CRS;
 import org.json.JSONException;
@@ -27,6 +29,14 @@ import org.oskari.geojson.GeoJSON;
 import org.oskari.geojson.GeoJSONWriter;
 
 import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.Polygonal;
+import org.locationtech.jts.index.strtree.STRtree;
+import org.locationtech.jts.operation.linemerge.LineMerger;
+import org.locationtech.jts.operation.polygonize.Polygonizer;
+import org.locationtech.jts.operation.union.UnaryUnionOp;
+import org.locationtech.jts.simplify.TopologyPreservingSimplifier;
 
 import fi.nls.oskari.control.statistics.db.RegionSet;
 import fi.nls.oskari.domain.geo.Point;
@@ -45,6 +55,17 @@ public class RegionSetHelper {
     private static final String RESOURCES_URL_PREFIX = "resources://";
     private static final FeatureJSON FJ = new FeatureJSON();
 
+    /**
+     * Resolution level for geometries as they are on the source data
+     */
+    public static final int RESOLUTION_FULL = 0;
+    /**
+     * Simplification tolerances for resolution levels as a fraction of the regionset extent.
+     * Index is the resolution level so larger level means less detail (and smaller payload).
+     */
+    private static final double[] SIMPLIFY_TOLERANCE_RATIO = { 0, 0.0001, 0.0005, 0.0025 };
+    public static final int MAX_RESOLUTION = SIMPLIFY_TOLERANCE_RATIO.length - 1;
+
     public static List<Region> getRegions(RegionSet regionset, String requestedSRS)
             throws FactoryException, MismatchedDimensionException, TransformException, ServiceException, IOException {
         SimpleFeatureCollection fc = getFeatureCollection(regionset, requestedSRS);
@@ -53,6 +74,26 @@ public class RegionSetHelper {
         return parse(fc, propId, propName);
     }
 
+    /**
+     * Reads and reprojects the regionset once and generates the regions for every resolution level
+     * from 0 (full resolution) to MAX_RESOLUTION. The geometries are simplified as a coverage
+     * so neighbouring regions share the same simplified borders, see simplify(List, double).
+     * @return list of regions where list index is the resolution level
+     */
+    public static List<List<Region>> getRegionsForAllResolutions(RegionSet regionset, String requestedSRS)
+            throws FactoryException, MismatchedDimensionException, TransformException, ServiceException, IOException {
+        SimpleFeatureCollection fc = getFeatureCollection(regionset, requestedSRS);
+        final String propId = regionset.getIdProperty();
+        final String propName = regionset.getNameProperty();
+        final ReferencedEnvelope bounds = fc.getBounds();
+        final double extent = bounds == null || bounds.isEmpty() ? 0 : Math.max(bounds.getWidth(), bounds.getHeight());
+        final List<List<Region>> result = new ArrayList<>(SIMPLIFY_TOLERANCE_RATIO.length);
+        for (double ratio : SIMPLIFY_TOLERANCE_RATIO) {
+            result.add(parse(fc, propId, propName, extent * ratio));
+        }
+        return result;
+    }
+
     protected static SimpleFeatureCollection getFeatureCollection(RegionSet regionset, String requestedSRS)
             throws FactoryException, MismatchedDimensionException, TransformException, ServiceException, IOException {
         String url = regionset.getFeaturesUrl();
@@ -155,8 +196,14 @@ public class RegionSetHelper {
 
     protected static List<Region> parse(SimpleFeatureCollection fc, String idProperty, String nameProperty)
             throws ServiceException {
+        return parse(fc, idProperty, nameProperty, 0);
+    }
+
+    protected static List<Region> parse(SimpleFeatureCollection fc, String idProperty, String nameProperty, double tolerance)
+            throws ServiceException {
         final List<String> duplicateIdCheckList = new ArrayList<>();
-        final List<Region> result = new ArrayList<>();
+        final List<Region> regions = new ArrayList<>();
+        final List<Geometry> geometries = new ArrayList<>();
         try (SimpleFeatureIterator it = fc.features()){
             while (it.hasNext()) {
                 final SimpleFeature feature = it.next();
@@ -176,19 +223,112 @@ public class RegionSetHelper {
                 Region region = new Region(id, name);
                 try {
                     region.setPointOnSurface(getPointOnSurface(feature));
-                    region.setGeojson(toGeoJSON((Geometry) feature.getDefaultGeometry(), id, name));
-                    result.add(region);
+                    regions.add(region);
+                    geometries.add((Geometry) feature.getDefaultGeometry());
                     duplicateIdCheckList.add(id);
                 } catch (Exception ex) {
                     LOG.warn("Region had invalid geometry:", region, "Error:", ex.getMessage());
                 }
             }
-            if (result.isEmpty()) {
-                throw new ServiceException("Empty result, check configuration for region id-property=" +
-                        idProperty + " and name-property=" + nameProperty);
+        }
+        final List<Geometry> simplified = simplify(geometries, tolerance);
+        final List<Region> result = new ArrayList<>(regions.size());
+        for (int i = 0; i < regions.size(); i++) {
+            Region region = regions.get(i);
+            try {
+                region.setGeojson(toGeoJSON(simplified.get(i), region.getCode(), region.getName()));
+                result.add(region);
+            } catch (Exception ex) {
+                LOG.warn("Region had invalid geometry:", region, "Error:", ex.getMessage());
             }
+        }
+        if (result.isEmpty()) {
+            throw new ServiceException("Empty result, check configuration for region id-property=" +
+                    idProperty + " and name-property=" + nameProperty);
+        }
+        return result;
+    }
+
+    /**
+     * Simplifies the regions as a coverage so borders shared by neighbouring regions are simplified
+     * only once and the regions don't get gaps or overlaps between them. Shared borders are found by
+     * noding the boundaries of all regions, simplified as separate edges with their end points kept
+     * in place and the simplified edges are polygonized back to regions.
+     * @param geometries regions in the same order as the result
+     * @param tolerance distance tolerance for simplification
+     * @return simplified geometries with the same indexes as the parameter
+     */
+    protected static List<Geometry> simplify(List<Geometry> geometries, double tolerance) {
+        if (tolerance <= 0 || geometries.isEmpty()) {
+            return geometries;
+        }
+        final List<Geometry> result = new ArrayList<>(geometries);
+        final List<Integer> polygonal = new ArrayList<>();
+        final List<Geometry> boundaries = new ArrayList<>();
+        for (int i = 0; i < geometries.size(); i++) {
+            Geometry geom = geometries.get(i);
+            if (geom instanceof Polygonal && !geom.isEmpty()) {
+                polygonal.add(i);
+                boundaries.add(geom.getBoundary());
+            } else {
+                result.set(i, simplify(geom, tolerance));
+            }
+        }
+        if (polygonal.isEmpty()) {
+            return result;
+        }
+        final GeometryFactory gf = geometries.get(polygonal.get(0)).getFactory();
+        final Collection<Polygon> faces;
+        try {
+            // union nodes the boundaries so each shared border becomes a single edge
+            LineMerger merger = new LineMerger();
+            merger.add(UnaryUnionOp.union(boundaries));
+            Geometry edges = gf.buildGeometry(merger.getMergedLineStrings());
+            Polygonizer polygonizer = new Polygonizer();
+            polygonizer.add(TopologyPreservingSimplifier.simplify(edges, tolerance));
+            faces = polygonizer.getPolygons();
+        } catch (Exception e) {
+            LOG.warn("Couldn't simplify regions as a coverage, simplifying them separately. Error:", e.getMessage());
+            polygonal.forEach(i -> result.set(i, simplify(geometries.get(i), tolerance)));
             return result;
         }
+
+        final STRtree index = new STRtree();
+        for (Integer i : polygonal) {
+            index.insert(geometries.get(i).getEnvelopeInternal(), i);
+        }
+        final Map<Integer, List<Polygon>> facesByRegion = new HashMap<>();
+        for (Polygon face : faces) {
+            // faces that don't belong to any region are holes in the coverage
+            org.locationtech.jts.geom.Point p = face.getInteriorPoint();
+            for (Object candidate : index.query(p.getEnvelopeInternal())) {
+                Integer i = (Integer) candidate;
+                if (geometries.get(i).contains(p)) {
+                    facesByRegion.computeIfAbsent(i, k -> new ArrayList<>()).add(face);
+                    break;
+                }
+            }
+        }
+        for (Integer i : polygonal) {
+            List<Polygon> parts = facesByRegion.get(i);
+            if (parts == null) {
+                // region collapsed on simplification, keep it on the map
+                result.set(i, simplify(geometries.get(i), tolerance));
+            } else if (parts.size() == 1) {
+                result.set(i, parts.get(0));
+            } else {
+                // union so faces that became adjacent on simplification are merged to a valid geometry
+                result.set(i, UnaryUnionOp.union(parts));
+            }
+        }
+        return result;
+    }
+
+    protected static Geometry simplify(Geometry geom, double tolerance) {
+        if (tolerance <= 0) {
+            return geom;
+        }
+        return TopologyPreservingSimplifier.simplify(geom, tolerance);
     }
 
     protected static JSONObject toGeoJSON(Geometry geom, String id, String name) throws JSONException {
@@ -36,7 +36,7 @@ public final class DataSourceCachePopulator extends DataSourceUpdater {
     }
 
     @Override
-    protected void addToWorkQueue(StatisticalIndicator indicator) {
+    protected synchronized void addToWorkQueue(StatisticalIndicator indicator) {
         workQueue.add(indicator);
         if (workQueue.size() > 30 || Instant.now().isAfter(lastSync.plus(SYNC_INTERVAL))) {
             storeIndicatorList(getIndicators());
@@ -44,7 +44,7 @@ public final class DataSourceCachePopulator extends DataSourceUpdater {
     }
 
     @Override
-    protected List<StatisticalIndicator> getIndicators() {
+    protected synchronized List<StatisticalIndicator> getIndicators() {
         List<StatisticalIndicator> indicators = new ArrayList<>();
         indicators.addAll(plugin.getProcessedIndicators());
         indicators.addAll(workQueue);
@@ -52,10 +52,12 @@ public final class DataSourceCachePopulator extends DataSourceUpdater {
     }
 
     @Override
-    protected void storeIndicatorList(List<StatisticalIndicator> indicators) {
+    protected synchronized void storeIndicatorList(List<StatisticalIndicator> indicators) {
         super.storeIndicatorList(indicators);
         workQueue.clear();
         lastSync = Instant.now();
+        // indicators of the processed items are now in the indicator list
+        commitProcessedItems();
     }
 
     @Override
@@ -26,43 +26,69 @@ public final class DataSourceCacheUpdater extends DataSourceUpdater {
 
     private static final Logger LOG = LogFactory.getLogger(DataSourceCacheUpdater.class);
     private static final ObjectMapper MAPPER = new ObjectMapper();
+    // number of items written to/read from the Redis work queue with one command
+    private static final int BATCH_SIZE = 100;
+
+    private final List<String> pending = new ArrayList<>();
 
     public DataSourceCacheUpdater(StatisticalDatasourcePlugin plugin) {
         super(plugin);
     }
 
-    protected void addToWorkQueue(StatisticalIndicator indicator) {
-        // maybe add a metric how many indicators are processed/timeunit at some point
+    protected synchronized void addToWorkQueue(StatisticalIndicator indicator) {
         try {
-            String json = MAPPER.writeValueAsString(indicator);
-            JedisManager.pushToList(getIndicatorListWorkKey(), json);
+            pending.add(MAPPER.writeValueAsString(indicator));
         } catch (JsonProcessingException ex) {
             LOG.error(ex, "Error updating indicator list");
         }
+        if (pending.size() >= BATCH_SIZE) {
+            flushWorkQueue();
+        }
+    }
+
+    /**
+     * Writes buffered indicators to the Redis work queue with a single RPUSH
+     */
+    private synchronized void flushWorkQueue() {
+        if (!pending.isEmpty()) {
+            JedisManager.pushToList(getIndicatorListWorkKey(), pending.toArray(new String[0]));
+            pending.clear();
+        }
+        // indicators of the processed items are now in the work queue
+        commitProcessedItems();
     }
 
     @Override
     protected void updateStarted() {
         super.updateStarted();
+        if (resumed) {
+            // previous update didn't finish. Keep the indicators it already processed
+            // so they are included in the list even if this update fails as well.
+            LOG.info("Resuming interrupted update for datasource:", plugin.getSource().getId());
+            return;
+        }
         // remove any previous work fron Redis
         JedisManager.del(getIndicatorListWorkKey());
     }
 
     @Override
     protected List<StatisticalIndicator> getIndicators() {
+        flushWorkQueue();
         final String workCacheKey = getIndicatorListWorkKey();
         final List<StatisticalIndicator> processIndicators = new ArrayList<>();
 
         // read work queue to Java objects
-        String json = JedisManager.popList(workCacheKey, true);
-        while(json != null) {
-            try {
-                StatisticalIndicator indicator = MAPPER.readValue(json, StatisticalIndicator.class);
-                processIndicators.add(indicator);
-            } catch (IOException ex) {
-                LOG.error(ex, "Couldn't read indicator data from work queue:", json);
+        List<String> batch = JedisManager.popList(workCacheKey, BATCH_SIZE);
+        while (!batch.isEmpty()) {
+            for (String json : batch) {
+                try {
+                    StatisticalIndicator indicator = MAPPER.readValue(json, StatisticalIndicator.class);
+                    processIndicators.add(indicator);
+                } catch (IOException ex) {
+                    LOG.error(ex, "Couldn't read indicator data from work queue:", json);
+                }
             }
-            json = JedisManager.popList(workCacheKey, true);
+            batch = JedisManager.popList(workCacheKey, BATCH_SIZE);
         }
         return processIndicators;
     }
@@ -4,22 +4,40 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import fi.nls.oskari.cache.JedisManager;
 import fi.nls.oskari.control.statistics.data.StatisticalIndicator;
+import fi.nls.oskari.control.statistics.util.CacheKeys;
 import fi.nls.oskari.log.LogFactory;
 import fi.nls.oskari.log.Logger;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Used to preload and -process statistical indicator data from a datasource
+ *
+ * Plugins can mark parts of the datasource (like tables) as processed with onItemProcessed().
+ * The ids are stored in Redis once the indicators of the item have been stored so an update that
+ * is interrupted (f.ex. server restart) can skip them when it's resumed (see isProcessed()).
  */
 public abstract class DataSourceUpdater implements Runnable {
 
     private static final Logger LOG = LogFactory.getLogger(DataSourceUpdater.class);
+    // how often progress is written to the status in Redis
+    private static final int PROGRESS_INTERVAL = 50;
 
     protected StatisticalDatasourcePlugin plugin;
+    // true if the previous update didn't finish (f.ex. server was restarted during update)
+    protected boolean resumed = false;
+    private final AtomicLong processed = new AtomicLong();
+    private long started;
+    // items processed by the interrupted update this one resumes
+    private final Set<String> processedItems = ConcurrentHashMap.newKeySet();
+    // items whose indicators have not been stored yet
+    private final List<String> pendingItems = new ArrayList<>();
 
     public DataSourceUpdater(StatisticalDatasourcePlugin plugin) {
         this.plugin = plugin;
@@ -39,15 +57,86 @@ public abstract class DataSourceUpdater implements Runnable {
 
     protected void updateStarted() {
         DataStatus status = plugin.getStatus();
+        resumed = status.getUpdateStarted() != null;
         status.startUpdate();
+        processed.set(0);
+        started = System.currentTimeMillis();
+        processedItems.clear();
+        if (resumed) {
+            processedItems.addAll(JedisManager.getList(getProcessedItemsKey()));
+            LOG.info("Resuming update for datasource:", plugin.getSource().getId(), "- skipping",
+                    processedItems.size(), "processed items");
+        } else {
+            JedisManager.del(getProcessedItemsKey());
+        }
         JedisManager.setex(plugin.getStatusKey(), JedisManager.EXPIRY_TIME_DAY * 7, status.toString());
     }
 
     protected void updateCompleted() {
         storeIndicatorList(getIndicators());
+        JedisManager.del(getProcessedItemsKey());
         DataStatus status = plugin.getStatus();
         status.finishUpdate();
+        status.setProcessed(processed.get());
         JedisManager.setex(plugin.getStatusKey(), JedisManager.EXPIRY_TIME_DAY * 7, status.toString());
+        LOG.info("Updated datasource:", plugin.getSource().getId(), "- processed", processed.get(),
+                "indicators in", System.currentTimeMillis() - started, "ms");
+    }
+
+    /**
+     * Called by the plugin for each indicator it has processed
+     */
+    protected void onIndicatorProcessed(StatisticalIndicator indicator) {
+        addToWorkQueue(indicator);
+        long count = processed.incrementAndGet();
+        if (count % PROGRESS_INTERVAL == 0) {
+            // write progress so it can be monitored while the update is running
+            DataStatus status = plugin.getStatus();
+            status.setProcessed(count);
+            JedisManager.setex(plugin.getStatusKey(), JedisManager.EXPIRY_TIME_DAY * 7, status.toString());
+        }
+    }
+
+    /**
+     * Called by the plugin when all the indicators of an item (like a table) have been passed to onIndicatorProcessed()
+     * @param itemId id of the item that is unique within the datasource
+     */
+    protected synchronized void onItemProcessed(String itemId) {
+        pendingItems.add(itemId);
+    }
+
+    /**
+     * @param itemId id of the item that is unique within the datasource
+     * @return true if this update resumes an interrupted update that already processed the item
+     */
+    protected boolean isProcessed(String itemId) {
+        return processedItems.contains(itemId);
+    }
+
+    /**
+     * Stores the ids of processed items to Redis. Subclasses should call this after the indicators that have been
+     * passed to addToWorkQueue() have been stored so the items are not skipped if the update is resumed.
+     */
+    protected synchronized void commitProcessedItems() {
+        if (pendingItems.isEmpty()) {
+            return;
+        }
+        JedisManager.pushToList(getProcessedItemsKey(), pendingItems.toArray(new String[0]));
+        pendingItems.clear();
+    }
+
+    /**
+     * Returns a Redis key that holds ids of the items processed by the currently running update
+     */
+    private String getProcessedItemsKey() {
+        return CacheKeys.buildCacheKey(plugin.getSource().getId(), "processeditems");
+    }
+
+    /**
+     * @return number of indicators processed by this update
+     */
+    public long getProcessedCount() {
+        return processed.get();
     }
 
     /**
@@ -62,16 +151,10 @@ public abstract class DataSourceUpdater implements Runnable {
         // One node might be faster and store an indicator while another still has it in it's workqueue.
         // When the slower one saves, it combines the processed from redis + workqueue on its memory
         // where processed already might contain indicators that are in the workqueue of the node that is saving/adding it's queue
-        List<StatisticalIndicator> nonDuplicates = new ArrayList<>(indicators.size());
-        Set<String> indicatorIds = new HashSet<>(indicators.size());
-        indicators.stream().forEach(ind -> {
-            if (indicatorIds.contains(ind.getId())) {
-                return;
-            }
-            nonDuplicates.add(ind);
-            indicatorIds.add(ind.getId());
-        });
-
+        // The latest entry is kept since an indicator might be processed again by a resumed update
+        Map<String, StatisticalIndicator> latest = new LinkedHashMap<>(indicators.size());
+        indicators.forEach(ind -> latest.put(ind.getId(), ind));
+        List<StatisticalIndicator> nonDuplicates = new ArrayList<>(latest.values());
 
         final ObjectMapper listMapper = new ObjectMapper();
         // skip f.ex. description and source when writing list
@@ -13,9 +13,11 @@ public class DataStatus {
 
     private static final String KEY_LAST = "lastUpdate";
     private static final String KEY_START = "updateStart";
+    private static final String KEY_PROCESSED = "processed";
 
     private Instant lastUpdate;
     private Instant updateStarted;
+    private long processed;
 
     public DataStatus(String status) {
         this(status == null ? null : JSONHelper.createJSONObject(status));
@@ -29,6 +31,7 @@ public class DataStatus {
         long start = status.optLong(KEY_START, -1);
         this.lastUpdate = last == -1 ? null : Instant.ofEpochMilli(last);
         this.updateStarted = start == -1 ? null : Instant.ofEpochMilli(start);
+        this.processed = status.optLong(KEY_PROCESSED, 0);
     }
 
     @Override
@@ -40,6 +43,7 @@ public class DataStatus {
         JSONObject json = new JSONObject();
         JSONHelper.putValue(json, KEY_LAST, lastUpdate == null ? -1 : lastUpdate.toEpochMilli());
         JSONHelper.putValue(json, KEY_START, updateStarted == null ? -1 : updateStarted.toEpochMilli());
+        JSONHelper.putValue(json, KEY_PROCESSED, processed);
         return json;
     }
 
@@ -51,8 +55,20 @@ public class DataStatus {
         return updateStarted;
     }
 
+    /**
+     * Number of indicators processed by the currently running update or the latest finished one
+     */
+    public long getProcessed() {
+        return processed;
+    }
+
+    public void setProcessed(long processed) {
+        this.processed = processed;
+    }
+
     public void startUpdate() {
         this.updateStarted = Instant.now();
+        this.processed = 0;
     }
 
     public void finishUpdate() {
@@ -50,6 +50,8 @@ import java.util.stream.Collectors;
  * Before that, we can pretty much cache all the values using Jedis.
  *
  * On adapter implementations implement update(). Update() should call onIndicatorProcessed() after each indicator.
+ * Plugins that process the datasource in parts can call onItemProcessed() after each part and skip the parts
+ * where isProcessed() returns true so an interrupted update doesn't need to start from the beginning.
  * Optionally you can override getIndicatorSet() and getIndicator() if results can be returned fast enough.
  *
  * You should also consider overriding hasPermission() as the default implementation always returns true.
@@ -236,7 +238,7 @@ public abstract class StatisticalDatasourcePlugin {
     public void onIndicatorProcessed(StatisticalIndicator indicator) {
         // add work queue to be written for indicator listing
         if(updater != null) {
-            updater.addToWorkQueue(indicator);
+            updater.onIndicatorProcessed(indicator);
         } else {
             // should we save it to listing directly?
         }
@@ -244,6 +246,25 @@ public abstract class StatisticalDatasourcePlugin {
         writeToCache(indicator);
     }
 
+    /**
+     * Plugins can call this after all indicators of a part of the datasource (like a table) have been
+     * passed to onIndicatorProcessed() so the part can be skipped if the update is interrupted and resumed.
+     * @param itemId id of the part that is unique within the datasource
+     */
+    public void onItemProcessed(String itemId) {
+        if(updater != null) {
+            updater.onItemProcessed(itemId);
+        }
+    }
+
+    /**
+     * @param itemId id of a part of the datasource (like a table)
+     * @return true if the running update resumes an interrupted one that already processed the part
+     */
+    public boolean isProcessed(String itemId) {
+        return updater != null && updater.isProcessed(itemId);
+    }
+
     private void writeToCache(StatisticalIndicator indicator) {
         try {
             String json = MAPPER.writeValueAsString(indicator);
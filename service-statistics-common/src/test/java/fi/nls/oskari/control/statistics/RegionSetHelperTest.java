@@ -2,14 +2,19 @@ package fi.nls.oskari.control.statistics;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.junit.Ignore;
 import org.junit.Test;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.io.WKTReader;
 import org.opengis.geometry.MismatchedDimensionException;
 import org.opengis.referencing.FactoryException;
 import org.opengis.referencing.operation.TransformException;
@@ -85,6 +90,50 @@ public class RegionSetHelperTest {
         assertEquals(16, regions.size());
     }
 
+    @Test
+    public void testSimplifiedResolutions() throws MismatchedDimensionException, FactoryException, TransformException, ServiceException, IOException, JSONException {
+        String endPoint = "resources://kunnat2013.json";
+        RegionSet kunnatJSON = new RegionSet();
+        kunnatJSON.setId(-1);
+        kunnatJSON.setName("oskari:kunnat2013");
+        kunnatJSON.setSrs_name("EPSG:3067");
+        kunnatJSON.setAttributes(getAttributes("kuntakoodi", "kuntanimi", endPoint));
+        List<List<Region>> levels = RegionSetHelper.getRegionsForAllResolutions(kunnatJSON, "EPSG:3067");
+        assertEquals(RegionSetHelper.MAX_RESOLUTION + 1, levels.size());
+        int fullSize = -1;
+        int previousSize = Integer.MAX_VALUE;
+        for (List<Region> regions : levels) {
+            assertEquals("All regions should be present on every resolution", 320, regions.size());
+            int size = 0;
+            for (Region region : regions) {
+                size += region.getGeojson().getJSONObject(GeoJSON.GEOMETRY).toString().length();
+            }
+            assertTrue("Geometries should not grow with simplification", size <= previousSize);
+            if (fullSize == -1) {
+                fullSize = size;
+            }
+            previousSize = size;
+        }
+        assertTrue("Lowest resolution should be smaller than full resolution", previousSize < fullSize);
+    }
+
+    @Test
+    public void testSimplifiedNeighboursShareBorder() throws Exception {
+        WKTReader reader = new WKTReader();
+        // the shared border zigzags less than the tolerance
+        Geometry left = reader.read("POLYGON((0 0, 10 0, 10.1 2, 9.9 4, 10.1 6, 9.9 8, 10 10, 0 10, 0 0))");
+        Geometry right = reader.read("POLYGON((10 0, 20 0, 20 10, 10 10, 9.9 8, 10.1 6, 9.9 4, 10.1 2, 10 0))");
+        List<Geometry> simplified = RegionSetHelper.simplify(Arrays.asList(left, right), 0.5);
+
+        assertEquals(2, simplified.size());
+        assertTrue("Shared border should be simplified", simplified.get(0).getNumPoints() < left.getNumPoints());
+        assertEquals("Regions should not overlap", 0, simplified.get(0).intersection(simplified.get(1)).getArea(), 0.0001);
+        Geometry union = simplified.get(0).union(simplified.get(1));
+        assertEquals("Regions should not have gaps", 1, union.getNumGeometries());
+        assertEquals(0, ((Polygon) union).getNumInteriorRing());
+        assertEquals(left.union(right).getArea(), union.getArea(), 0.0001);
+    }
+
     @Test
     public void testFeaturesUrl() throws MismatchedDimensionException, FactoryException, TransformException, ServiceException, IOException, JSONException {
         String endPoint = "https://my.domain";
@@ -0,0 +1,186 @@
+package fi.nls.oskari.control.statistics.plugins;
+
+import fi.nls.oskari.cache.JedisManager;
+import fi.nls.oskari.control.statistics.data.IndicatorValue;
+import fi.nls.oskari.control.statistics.data.StatisticalIndicator;
+import fi.nls.oskari.control.statistics.data.StatisticalIndicatorDataModel;
+import fi.nls.oskari.control.statistics.data.StatisticalIndicatorLayer;
+import fi.nls.oskari.control.statistics.plugins.db.StatisticalDatasource;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.invocation.InvocationOnMock;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(JedisManager.class)
+@PowerMockIgnore({"javax.management.*"})
+public class DataSourceCacheUpdaterTest {
+
+    private static final List<String> TABLES = Arrays.asList("a", "b", "c", "d");
+    // the work queue is written in batches of 100 so the first batch has "a" and part of "b"
+    private static final int INDICATORS_PER_TABLE = 60;
+
+    private final Map<String, String> values = new HashMap<>();
+    private final Map<String, List<String>> lists = new HashMap<>();
+
+    @Before
+    public void setUp() {
+        // Redis in memory
+        PowerMockito.mockStatic(JedisManager.class);
+        PowerMockito.when(JedisManager.get(anyString())).thenAnswer(inv -> values.get(inv.getArgument(0)));
+        PowerMockito.when(JedisManager.setex(anyString(), anyInt(), anyString())).thenAnswer(inv -> {
+            values.put(inv.getArgument(0), inv.getArgument(2));
+            return "OK";
+        });
+        PowerMockito.when(JedisManager.del(any())).thenAnswer(inv -> {
+            getStringArgs(inv, 0).forEach(key -> {
+                values.remove(key);
+                lists.remove(key);
+            });
+            return 1L;
+        });
+        PowerMockito.when(JedisManager.pushToList(anyString(), any())).thenAnswer(inv -> {
+            List<String> list = lists.computeIfAbsent(inv.getArgument(0), k -> new ArrayList<>());
+            list.addAll(getStringArgs(inv, 1));
+            return (long) list.size();
+        });
+        PowerMockito.when(JedisManager.getList(anyString())).thenAnswer(inv ->
+                new ArrayList<>(lists.getOrDefault(inv.getArgument(0), Collections.emptyList())));
+        PowerMockito.when(JedisManager.popList(anyString(), anyInt())).thenAnswer(inv -> {
+            List<String> list = lists.getOrDefault(inv.getArgument(0), new ArrayList<>());
+            int count = Math.min(inv.getArgument(1), list.size());
+            List<String> items = new ArrayList<>(list.subList(0, count));
+            list.subList(0, count).clear();
+            return items;
+        });
+    }
+
+    @Test
+    public void testResumeInterruptedUpdate() {
+        TablePlugin plugin = new TablePlugin();
+
+        // first update is interrupted (f.ex. server restart) before table "d"
+        plugin.run = 1;
+        plugin.failAt = "d";
+        DataSourceCacheUpdater first = new DataSourceCacheUpdater(plugin);
+        plugin.updater = first;
+        first.updateStarted();
+        try {
+            plugin.update();
+            fail("Update should have been interrupted");
+        } catch (IllegalStateException expected) {
+            // updateCompleted() is not called when the server goes down
+        }
+        assertEquals(Arrays.asList("a", "b", "c"), plugin.parsedTables);
+
+        // next update resumes the interrupted one
+        plugin.run = 2;
+        plugin.failAt = null;
+        plugin.parsedTables.clear();
+        DataSourceCacheUpdater second = new DataSourceCacheUpdater(plugin);
+        plugin.updater = second;
+        second.run();
+
+        assertEquals("Table stored by the interrupted update should be skipped",
+                Arrays.asList("b", "c", "d"), plugin.parsedTables);
+        List<StatisticalIndicator> indicators = plugin.getProcessedIndicators();
+        assertEquals("Indicators from both updates should be listed once",
+                TABLES.size() * INDICATORS_PER_TABLE, indicators.size());
+        Map<String, String> runById = indicators.stream()
+                .collect(Collectors.toMap(StatisticalIndicator::getId, ind -> ind.getName("en")));
+        assertEquals("Skipped table should be listed from the interrupted update", "run 1", runById.get("a_0"));
+        assertEquals("Latest version of an indicator should be listed", "run 2", runById.get("b_0"));
+        assertNull("Update should be completed", plugin.getStatus().getUpdateStarted());
+    }
+
+    private static List<String> getStringArgs(InvocationOnMock inv, int from) {
+        // varargs might be passed expanded or as an array
+        List<String> args = new ArrayList<>();
+        Object[] arguments = inv.getArguments();
+        for (int i = from; i < arguments.length; i++) {
+            if (arguments[i] instanceof String[]) {
+                args.addAll(Arrays.asList((String[]) arguments[i]));
+            } else if (arguments[i] != null) {
+                args.add((String) arguments[i]);
+            }
+        }
+        return args;
+    }
+
+    /**
+     * Plugin that processes the datasource in tables
+     */
+    private static class TablePlugin extends StatisticalDatasourcePlugin {
+        private final List<String> parsedTables = new ArrayList<>();
+        private DataSourceUpdater updater;
+        private String failAt;
+        private int run;
+
+        TablePlugin() {
+            StatisticalDatasource source = new StatisticalDatasource();
+            source.setId(1);
+            init(source);
+        }
+
+        @Override
+        public void update() {
+            for (String table : TABLES) {
+                if (isProcessed(table)) {
+                    continue;
+                }
+                if (table.equals(failAt)) {
+                    throw new IllegalStateException("Interrupted");
+                }
+                parsedTables.add(table);
+                for (int i = 0; i < INDICATORS_PER_TABLE; i++) {
+                    StatisticalIndicator indicator = new StatisticalIndicator();
+                    indicator.setId(table + "_" + i);
+                    indicator.addName("en", "run " + run);
+                    onIndicatorProcessed(indicator);
+                }
+                onItemProcessed(table);
+            }
+        }
+
+        // the updater is normally started by getIndicatorSet()
+        @Override
+        public void onIndicatorProcessed(StatisticalIndicator indicator) {
+            updater.onIndicatorProcessed(indicator);
+        }
+
+        @Override
+        public void onItemProcessed(String itemId) {
+            updater.onItemProcessed(itemId);
+        }
+
+        @Override
+        public boolean isProcessed(String itemId) {
+            return updater.isProcessed(itemId);
+        }
+
+        @Override
+        public Map<String, IndicatorValue> getIndicatorValues(StatisticalIndicator indicator,
+                StatisticalIndicatorDataModel params, StatisticalIndicatorLayer regionset) {
+            return Collections.emptyMap();
+        }
+    }
+}
@@ -21,6 +21,8 @@ public class PxwebConfig {
     private Set<String> ignoredVariables = new HashSet<>();
     private String timeVariableId = null;
     private Map<String, MetadataItem> metadata;
+    // how many tables are fetched concurrently from the service
+    private int concurrency = 4;
 
     public PxwebConfig(JSONObject json, long id) {
         datasourceId = id;
@@ -33,6 +35,7 @@ public class PxwebConfig {
 
         // allow override with db config
         timeVariableId = json.optString("timeVariable", timeVariableId);
+        concurrency = Math.max(1, json.optInt("concurrency", concurrency));
         JSONArray ignored = json.optJSONArray("ignoredVariables");
         if (ignored != null) {
             for (int i = 0; i < ignored.length(); i++) {
@@ -73,6 +76,10 @@ public class PxwebConfig {
         return ignoredVariables;
     }
 
+    public int getConcurrency() {
+        return concurrency;
+    }
+
     public String getTimeVariableId() {
         return timeVariableId;
     }
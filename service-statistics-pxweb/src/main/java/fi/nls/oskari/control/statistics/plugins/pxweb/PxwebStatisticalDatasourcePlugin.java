@@ -18,8 +18,8 @@ import org.json.JSONObject;
 import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class PxwebStatisticalDatasourcePlugin extends StatisticalDatasourcePlugin {
 
@@ -32,19 +32,24 @@ public class PxwebStatisticalDatasourcePlugin extends StatisticalDatasourcePlugi
 
     @Override
     public void update() {
-        List<StatisticalIndicator> indicators = indicatorsParser.parse(getSource().getLayers());
-        int skippedIndicators = 0;
-        for (StatisticalIndicator ind : indicators) {
-            if(!ind.getDataModel().isHasRegionInfo()) {
-                // skip indicators without region info
-                skippedIndicators++;
-                continue;
+        AtomicInteger indicatorCount = new AtomicInteger();
+        AtomicInteger skippedIndicators = new AtomicInteger();
+        // tables processed by an interrupted update are skipped. Indicators are processed as each table is parsed
+        indicatorsParser.parse(getSource().getLayers(), table -> isProcessed(table), (table, indicators) -> {
+            for (StatisticalIndicator ind : indicators) {
+                indicatorCount.incrementAndGet();
+                if(!ind.getDataModel().isHasRegionInfo()) {
+                    // skip indicators without region info
+                    skippedIndicators.incrementAndGet();
+                    continue;
+                }
+                onIndicatorProcessed(ind);
             }
-            onIndicatorProcessed(ind);
-        }
-        if (skippedIndicators > 0) {
-            LOG.info("Updated datasource:", config.getUrl(), "with", skippedIndicators,
-                    "of", indicators.size(), "indicators skipped for not having region info.");
+            onItemProcessed(table);
+        });
+        if (skippedIndicators.get() > 0) {
+            LOG.info("Updated datasource:", config.getUrl(), "with", skippedIndicators.get(),
+                    "of", indicatorCount.get(), "indicators skipped for not having region info.");
         }
     }
 
@@ -21,7 +21,16 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
 
 public class PxwebIndicatorsParser {
     private final static Logger LOG = LogFactory.getLogger(PxwebIndicatorsParser.class);
@@ -38,62 +47,144 @@ public class PxwebIndicatorsParser {
         return parse(null, layers);
     }
 
+    /**
+     * Parses the indicators one table at a time so they can be processed while the rest of the service is parsed.
+     * @param layers
+     * @param skipTable tables that don't need to be parsed (f.ex. already processed by an interrupted update)
+     * @param consumer called with the table id and the indicators of the table in the order of the tables.
+     *                 Called from the calling thread after the table has been parsed.
+     */
+    public void parse(List<DatasourceLayer> layers, Predicate<String> skipTable,
+                      BiConsumer<String, List<StatisticalIndicator>> consumer) {
+        parse(null, layers, skipTable, consumer);
+    }
+
     protected List<StatisticalIndicator> parse(String path, List<DatasourceLayer> layers) {
+        List<StatisticalIndicator> indicatorList = new ArrayList<>();
+        parse(path, layers, table -> false, (table, indicators) -> indicatorList.addAll(indicators));
+        return indicatorList;
+    }
+
+    protected void parse(String path, List<DatasourceLayer> layers, Predicate<String> skipTable,
+                         BiConsumer<String, List<StatisticalIndicator>> consumer) {
         final String url = getUrl(path);
 
         Collection<String> languages = getLanguages();
-        List<StatisticalIndicator> indicatorList;
+        BiConsumer<String, List<StatisticalIndicator>> setup = (table, indicators) -> {
+            setupLayers(indicators, layers, url);
+            setupMetadata(indicators, languages);
+            consumer.accept(table, indicators);
+        };
         if(url.endsWith(".px")) {
             // No id for indicator, assume the service has a separate indicator key config.
-            indicatorList = parsePxFileToMultipleIndicators(path, languages);
+            if (!skipTable.test(url)) {
+                setup.accept(url, parsePxFileToMultipleIndicators(path, languages));
+            }
         } else {
-            indicatorList = parseStructuredService(path, languages);
+            parseStructuredService(path, languages, skipTable, setup);
         }
-        setupLayers(indicatorList, layers, url);
-        setupMetadata(indicatorList, languages);
-        return indicatorList;
     }
 
-    protected List<StatisticalIndicator> parseStructuredService(String path, Collection<String> languages) {
+    protected void parseStructuredService(String path, Collection<String> languages, Predicate<String> skipTable,
+                                          BiConsumer<String, List<StatisticalIndicator>> consumer) {
+        // walk the folder structure first and then process the tables concurrently
+        //  since processing a table requires a request per language
+        Map<String, Callable<List<StatisticalIndicator>>> tasks = new LinkedHashMap<>();
+        collectTableTasks(path, languages, skipTable, tasks);
+        runTasks(tasks, consumer);
+    }
+
+    private void collectTableTasks(String path, Collection<String> languages, Predicate<String> skipTable,
+                                   Map<String, Callable<List<StatisticalIndicator>>> tasks) {
         final String url = getUrl(path);
-        List<StatisticalIndicator> indicators = new ArrayList<>();
         List<PxFolderItem> list = readFolderListing(url);
         for(PxFolderItem item : list) {
             if("l".equalsIgnoreCase(item.type)) {
                 // recurse to pxweb "folder"
-                indicators.addAll(parseStructuredService(getPath(path, item.id), languages));
+                collectTableTasks(getPath(path, item.id), languages, skipTable, tasks);
                 continue;
             }
             if(!"t".equalsIgnoreCase(item.type)) {
                 // only recognize l and t types
                 continue;
             }
+            final String table = getPath(path, item.id);
+            if (skipTable.test(table)) {
+                continue;
+            }
             if(config.hasIndicatorKey()) {
                 // go to the px-file
-                indicators.addAll(parsePxFileToMultipleIndicators(getPath(path, item.id), languages));
+                tasks.put(table, () -> parsePxFileToMultipleIndicators(table, languages));
                 continue;
             }
-            HashMap<String, StatisticalIndicator> indicatorMap = new HashMap<>();
-            languages.forEach(lang -> {
+            tasks.put(table, () -> parseTable(path, item, languages));
+        }
+    }
+
+    /**
+     * Runs the tasks with the concurrency configured for the datasource. Results are passed to the consumer
+     * in the order of the tables. Tables that fail are not passed to the consumer.
+     */
+    private void runTasks(Map<String, Callable<List<StatisticalIndicator>>> tasks,
+                          BiConsumer<String, List<StatisticalIndicator>> consumer) {
+        int concurrency = Math.min(config.getConcurrency(), tasks.size());
+        if (concurrency <= 1) {
+            tasks.forEach((table, task) -> {
+                List<StatisticalIndicator> indicators;
                 try {
-                    PxTableItem table = getPxTable(path, lang, item.id);
-                    String indicatorId = createIndicatorId(table);
-                    StatisticalIndicator ind = indicatorMap.get(indicatorId);
-                    if (ind == null) {
-                        ind = new StatisticalIndicator();
-                        ind.setId(indicatorId);
-                        indicatorMap.put(indicatorId, ind);
-                        indicators.add(ind);
-                        // only populate model for first (== primary) language as it doesn't support localized labels for variables/selectors
-                        ind.setDataModel(getModel(table));
-                    }
-                    ind.addName(lang, item.text);
-                    // TODO: add "mergeModels(lang, model)" that would populate localized labels for variable
-                } catch (IOException e) {
+                    indicators = task.call();
+                } catch (Exception e) {
                     LOG.error(e, "Error getting indicators from Pxweb datasource:", config.getUrl());
+                    return;
                 }
+                consumer.accept(table, indicators);
             });
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        try {
+            Map<String, Future<List<StatisticalIndicator>>> results = new LinkedHashMap<>();
+            tasks.forEach((table, task) -> results.put(table, executor.submit(task)));
+            for (Map.Entry<String, Future<List<StatisticalIndicator>>> result : results.entrySet()) {
+                List<StatisticalIndicator> indicators;
+                try {
+                    indicators = result.getValue().get();
+                } catch (ExecutionException e) {
+                    LOG.error(e.getCause(), "Error getting indicators from Pxweb datasource:", config.getUrl());
+                    continue;
+                }
+                consumer.accept(result.getKey(), indicators);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.warn("Interrupted while getting indicators from Pxweb datasource:", config.getUrl());
+        } finally {
+            executor.shutdownNow();
         }
+    }
+
+    private List<StatisticalIndicator> parseTable(String path, PxFolderItem item, Collection<String> languages) {
+        List<StatisticalIndicator> indicators = new ArrayList<>();
+        HashMap<String, StatisticalIndicator> indicatorMap = new HashMap<>();
+        languages.forEach(lang -> {
+            try {
+                PxTableItem table = getPxTable(path, lang, item.id);
+                String indicatorId = createIndicatorId(table);
+                StatisticalIndicator ind = indicatorMap.get(indicatorId);
+                if (ind == null) {
+                    ind = new StatisticalIndicator();
+                    ind.setId(indicatorId);
+                    indicatorMap.put(indicatorId, ind);
+                    indicators.add(ind);
+                    // only populate model for first (== primary) language as it doesn't support localized labels for variables/selectors
+                    ind.setDataModel(getModel(table));
+                }
+                ind.addName(lang, item.text);
+                // TODO: add "mergeModels(lang, model)" that would populate localized labels for variable
+            } catch (IOException e) {
+                LOG.error(e, "Error getting indicators from Pxweb datasource:", config.getUrl());
+            }
+        });
         return indicators;
     }
 
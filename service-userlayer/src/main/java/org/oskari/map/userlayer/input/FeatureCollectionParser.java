@@ -2,6 +2,7 @@ package org.oskari.map.userlayer.input;
 
 import java.io.File;
 
+import org.geotools.data.DataUtilities;
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
@@ -9,7 +10,24 @@ import fi.nls.oskari.service.ServiceException;
 
 public interface FeatureCollectionParser {
 
-    public SimpleFeatureCollection parse(File file, CoordinateReferenceSystem sourceCRS, CoordinateReferenceSystem targetCRS) throws ServiceException;
+    /**
+     * Parses the features and copies them to memory
+     */
+    public default SimpleFeatureCollection parse(File file, CoordinateReferenceSystem sourceCRS, CoordinateReferenceSystem targetCRS) throws ServiceException {
+        return parse(file, sourceCRS, targetCRS, DataUtilities::collection);
+    }
+
+    /**
+     * Parses the file and passes the features to the handler while the underlying data source is still open.
+     * The collection might read and transform the features lazily so the handler should iterate it only once
+     * and not keep references to it after returning.
+     */
+    public <T> T parse(File file, CoordinateReferenceSystem sourceCRS, CoordinateReferenceSystem targetCRS, Handler<T> handler) throws ServiceException;
     public String getSuffix();
 
+    @FunctionalInterface
+    public interface Handler<T> {
+        T handle(SimpleFeatureCollection fc) throws ServiceException;
+    }
+
 }
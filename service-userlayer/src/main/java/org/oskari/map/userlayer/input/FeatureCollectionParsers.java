@@ -3,7 +3,7 @@ package org.oskari.map.userlayer.input;
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.data.simple.SimpleFeatureSource;
-import org.geotools.feature.DefaultFeatureCollection;
+import org.geotools.feature.collection.BaseSimpleFeatureCollection;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
 import org.geotools.geometry.jts.JTS;
@@ -13,11 +13,13 @@ import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.referencing.FactoryException;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.opengis.referencing.operation.MathTransform;
+import org.opengis.referencing.operation.TransformException;
 import org.oskari.map.userlayer.service.UserLayerException;
 
 import org.locationtech.jts.geom.Geometry;
 
 import fi.nls.oskari.service.ServiceException;
+import fi.nls.oskari.service.ServiceRuntimeException;
 
 public class FeatureCollectionParsers {
 
@@ -56,9 +58,10 @@ public class FeatureCollectionParsers {
     }
 
     /**
-     * Read Features from FeatureSource to memory (ensure they won't
-     * disappear when DataStore#dispose() is called) while transforming
-     * their geometries from source projection to target projection
+     * Returns a collection that reads the features from FeatureSource while transforming
+     * their geometries from source projection to target projection. Features are read one
+     * at a time when the collection is iterated so the DataStore must not be disposed before
+     * the collection has been consumed.
      * @throws UserLayerException lots can go wrong
      */
     public static SimpleFeatureCollection read(SimpleFeatureSource src,
@@ -66,26 +69,7 @@ public class FeatureCollectionParsers {
         MathTransform transform = getTransform(sourceCRS, targetCRS);
         try {
             SimpleFeatureType newSchema = SimpleFeatureTypeBuilder.retype(src.getSchema(), targetCRS);
-            SimpleFeatureBuilder b = new SimpleFeatureBuilder(newSchema);
-            DefaultFeatureCollection fc = new DefaultFeatureCollection(null, newSchema);
-            SimpleFeatureCollection sfc = src.getFeatures();
-
-            try (SimpleFeatureIterator it = sfc.features()) {
-                while (it.hasNext()) {
-                    SimpleFeature f = it.next();
-                    for (int i = 0; i < f.getAttributeCount(); i++) {
-                        b.set(i, f.getAttribute(i));
-                    }
-                    SimpleFeature copy = b.buildFeature(f.getID());
-                    Object g = f.getDefaultGeometry();
-                    if (g != null) {
-                        Geometry transformed = JTS.transform((Geometry) g, transform);
-                        copy.setDefaultGeometry(transformed);
-                    }
-                    fc.add(copy);
-                }
-            }
-            return fc;
+            return new TransformingFeatureCollection(src.getFeatures(), newSchema, transform);
         } catch (Exception e) {
             throw new UserLayerException("Failed to read feature collection from source: " + e.getMessage(),
                         UserLayerException.ErrorType.PARSER, UserLayerException.ErrorType.INVALID_FORMAT);
@@ -109,4 +93,67 @@ public class FeatureCollectionParsers {
         }
     }
 
+    static class TransformingFeatureCollection extends BaseSimpleFeatureCollection {
+
+        private final SimpleFeatureCollection delegate;
+        private final MathTransform transform;
+
+        TransformingFeatureCollection(SimpleFeatureCollection delegate, SimpleFeatureType schema, MathTransform transform) {
+            super(schema);
+            this.delegate = delegate;
+            this.transform = transform;
+        }
+
+        @Override
+        public int size() {
+            return delegate.size();
+        }
+
+        @Override
+        public SimpleFeatureIterator features() {
+            return new TransformingFeatureIterator(delegate.features(), getSchema(), transform);
+        }
+    }
+
+    static class TransformingFeatureIterator implements SimpleFeatureIterator {
+
+        private final SimpleFeatureIterator delegate;
+        private final SimpleFeatureBuilder builder;
+        private final MathTransform transform;
+
+        TransformingFeatureIterator(SimpleFeatureIterator delegate, SimpleFeatureType schema, MathTransform transform) {
+            this.delegate = delegate;
+            this.builder = new SimpleFeatureBuilder(schema);
+            this.transform = transform;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return delegate.hasNext();
+        }
+
+        @Override
+        public SimpleFeature next() {
+            SimpleFeature f = delegate.next();
+            for (int i = 0; i < f.getAttributeCount(); i++) {
+                builder.set(i, f.getAttribute(i));
+            }
+            SimpleFeature copy = builder.buildFeature(f.getID());
+            Object g = f.getDefaultGeometry();
+            if (g != null) {
+                try {
+                    copy.setDefaultGeometry(JTS.transform((Geometry) g, transform));
+                } catch (TransformException e) {
+                    throw new ServiceRuntimeException("Failed to transform feature: " + f.getID(), e);
+                }
+            }
+            return copy;
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+        }
+    }
+
 }
@@ -24,8 +24,8 @@ public class GPKGParser implements FeatureCollectionParser {
     }
 
     @Override
-    public SimpleFeatureCollection parse(File file, CoordinateReferenceSystem sourceCRS,
-            CoordinateReferenceSystem targetCRS) throws ServiceException {
+    public <T> T parse(File file, CoordinateReferenceSystem sourceCRS,
+            CoordinateReferenceSystem targetCRS, Handler<T> handler) throws ServiceException {
         Map<String, Serializable> params = new HashMap<>();
         params.put("dbtype", "geopkg");
         params.put("database", file);
@@ -43,7 +43,7 @@ public class GPKGParser implements FeatureCollectionParser {
                 }
                 SimpleFeatureCollection collection = FeatureCollectionParsers.read(source, sourceCRS, targetCRS);
                 if (!collection.isEmpty()) {
-                    return collection;
+                    return handler.handle(collection);
                 }
             }
             throw new UserLayerException("Failed to parse GPKG: Could not find non-empty feature collection",
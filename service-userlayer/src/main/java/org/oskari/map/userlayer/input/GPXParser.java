@@ -33,8 +33,8 @@ public class GPXParser implements FeatureCollectionParser {
     public static final String SUFFIX = "GPX";
 
     @Override
-    public SimpleFeatureCollection parse(File file, CoordinateReferenceSystem sourceCRS,
-            CoordinateReferenceSystem targetCRS) throws ServiceException {
+    public <T> T parse(File file, CoordinateReferenceSystem sourceCRS,
+            CoordinateReferenceSystem targetCRS, Handler<T> handler) throws ServiceException {
         try {
             // GPX always lon,lat 4326
             sourceCRS = CRS.decode("EPSG:4326", true);
@@ -47,33 +47,35 @@ public class GPXParser implements FeatureCollectionParser {
             // Tracks > Routes > Waypoints
             parsed = parse(file, GPX.trkType);
             if (!parsed.isEmpty()) {
-                return new ReprojectingFeatureCollection(parsed, sourceCRS, targetCRS);
+                return handler.handle(new ReprojectingFeatureCollection(parsed, sourceCRS, targetCRS));
             }
             parsed = parse10(file, GPX10.trkType);
             if (!parsed.isEmpty()) {
-                return new ReprojectingFeatureCollection(parsed, sourceCRS, targetCRS);
+                return handler.handle(new ReprojectingFeatureCollection(parsed, sourceCRS, targetCRS));
             }
 
             parsed = parse(file, GPX.rteType);
             if (!parsed.isEmpty()) {
-                return new ReprojectingFeatureCollection(parsed, sourceCRS, targetCRS);
+                return handler.handle(new ReprojectingFeatureCollection(parsed, sourceCRS, targetCRS));
             }
             parsed = parse10(file, GPX10.rteType);
             if (!parsed.isEmpty()) {
-                return new ReprojectingFeatureCollection(parsed, sourceCRS, targetCRS);
+                return handler.handle(new ReprojectingFeatureCollection(parsed, sourceCRS, targetCRS));
             }
 
             parsed = parse(file, GPX.wptType);
             if (!parsed.isEmpty()) {
-                return new ReprojectingFeatureCollection(parsed, sourceCRS, targetCRS);
+                return handler.handle(new ReprojectingFeatureCollection(parsed, sourceCRS, targetCRS));
             }
             parsed = parse10(file, GPX10.wptType);
             if (!parsed.isEmpty()) {
-                return new ReprojectingFeatureCollection(parsed, sourceCRS, targetCRS);
+                return handler.handle(new ReprojectingFeatureCollection(parsed, sourceCRS, targetCRS));
             }
 
-            // Return the empty FeatureCollection
-            return parsed;
+            // Handle the empty FeatureCollection
+            return handler.handle(parsed);
+        } catch (ServiceException e) {
+            throw e;
         } catch (Exception e) {
             throw new UserLayerException("Failed to parse GPX: " + e.getMessage(),
                     UserLayerException.ErrorType.PARSER, UserLayerException.ErrorType.INVALID_FORMAT);
@@ -11,7 +11,6 @@ import java.util.Set;
 
 import javax.xml.stream.XMLStreamException;
 
-import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.feature.DefaultFeatureCollection;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
@@ -48,8 +47,8 @@ public class KMLParser implements FeatureCollectionParser {
 
     @Override
     @SuppressWarnings("unchecked")
-    public SimpleFeatureCollection parse(File file, CoordinateReferenceSystem sourceCRS,
-            CoordinateReferenceSystem targetCRS) throws ServiceException {
+    public <T> T parse(File file, CoordinateReferenceSystem sourceCRS,
+            CoordinateReferenceSystem targetCRS, Handler<T> handler) throws ServiceException {
         try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
             /*--- Geotools Parser example ---
             Parser p = new Parser(new KMLConfiguration());
@@ -82,7 +81,7 @@ public class KMLParser implements FeatureCollectionParser {
                 }
                 fc.add(f);
             }
-            return processFeatures(targetCRS, fc, extendedData);
+            return handler.handle(processFeatures(targetCRS, fc, extendedData));
         } catch (XMLStreamException e) {
             throw new UserLayerException("XMLStreamException occured: " + e.getMessage(), UserLayerException.ErrorType.PARSER, UserLayerException.ErrorType.INVALID_FORMAT);
         } catch (IOException e) {
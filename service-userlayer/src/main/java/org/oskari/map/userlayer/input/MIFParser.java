@@ -9,7 +9,6 @@ import java.util.Map;
 
 import org.geotools.data.DataStore;
 import org.geotools.data.DataStoreFinder;
-import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureSource;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.oskari.map.userlayer.service.UserLayerException;
@@ -24,8 +23,8 @@ public class MIFParser implements FeatureCollectionParser {
     public static final String SUFFIX = "MIF";
 
     @Override
-    public SimpleFeatureCollection parse(File file, CoordinateReferenceSystem sourceCRS,
-            CoordinateReferenceSystem targetCRS) throws ServiceException {
+    public <T> T parse(File file, CoordinateReferenceSystem sourceCRS,
+            CoordinateReferenceSystem targetCRS, Handler<T> handler) throws ServiceException {
         URL url;
         try {
             url = file.toURI().toURL();
@@ -48,7 +47,7 @@ public class MIFParser implements FeatureCollectionParser {
             if (crs != null) {
                 sourceCRS = crs;
             }
-            return FeatureCollectionParsers.read(source, sourceCRS, targetCRS);
+            return handler.handle(FeatureCollectionParsers.read(source, sourceCRS, targetCRS));
         } catch (ServiceException e) {
             // forward error on read: if in file UserLayerException. if in service ServiceException
             throw e;
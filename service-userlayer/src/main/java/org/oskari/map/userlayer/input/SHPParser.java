@@ -11,7 +11,6 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 
 import org.geotools.data.shapefile.ShapefileDataStore;
-import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureSource;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.oskari.map.userlayer.service.UserLayerException;
@@ -30,8 +29,8 @@ public class SHPParser implements FeatureCollectionParser {
     public static final String SUFFIX = "SHP";
 
     @Override
-    public SimpleFeatureCollection parse(File file, CoordinateReferenceSystem sourceCRS,
-            CoordinateReferenceSystem targetCRS) throws ServiceException {
+    public <T> T parse(File file, CoordinateReferenceSystem sourceCRS,
+            CoordinateReferenceSystem targetCRS, Handler<T> handler) throws ServiceException {
         ShapefileDataStore store = null;
         try {
             store = new ShapefileDataStore(file.toURI().toURL());
@@ -44,7 +43,7 @@ public class SHPParser implements FeatureCollectionParser {
             if (crs != null) {
                 sourceCRS = crs;
             }
-            return FeatureCollectionParsers.read(source, sourceCRS, targetCRS);
+            return handler.handle(FeatureCollectionParsers.read(source, sourceCRS, targetCRS));
         } catch (ServiceException e) {
             // forward error on read: if in file UserLayerException. if in service ServiceException
             throw e;
@@ -0,0 +1,88 @@
+package org.oskari.map.userlayer.service;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.ByteOrderValues;
+import org.locationtech.jts.io.WKBWriter;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes user_layer_data rows in PostgreSQL binary COPY format so features can be streamed to the
+ * database without building SQL statements or intermediate text representations for the geometries.
+ * Geometries are written as EWKB which PostGIS accepts as the binary input of geometry columns.
+ *
+ * @see #COPY_SQL
+ */
+class UserLayerDataCopyWriter {
+
+    static final String COPY_SQL = "COPY user_layer_data (user_layer_id, uuid, feature_id, property_json, geometry) FROM STDIN (FORMAT BINARY)";
+
+    // PGCOPY\n\377\r\n\0
+    private static final byte[] SIGNATURE = { 'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0 };
+    private static final short FIELD_COUNT = 5;
+
+    private final DataOutputStream out;
+    private final long userLayerId;
+    private final byte[] uuid;
+    private final int srid;
+    private final WKBWriter wkb2d = new WKBWriter(2, ByteOrderValues.BIG_ENDIAN, true);
+    private final WKBWriter wkb3d = new WKBWriter(3, ByteOrderValues.BIG_ENDIAN, true);
+
+    UserLayerDataCopyWriter(OutputStream out, long userLayerId, String uuid, int srid) {
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+        this.userLayerId = userLayerId;
+        this.uuid = toBytes(uuid);
+        this.srid = srid;
+    }
+
+    void writeHeader() throws IOException {
+        out.write(SIGNATURE);
+        // flags
+        out.writeInt(0);
+        // header extension length
+        out.writeInt(0);
+    }
+
+    void writeRow(String featureId, String propertyJson, Geometry geometry) throws IOException {
+        out.writeShort(FIELD_COUNT);
+        out.writeInt(Long.BYTES);
+        out.writeLong(userLayerId);
+        writeField(uuid);
+        writeField(toBytes(featureId));
+        // binary representation of json is the json text
+        writeField(toBytes(propertyJson));
+        geometry.setSRID(srid);
+        writeField(getWKBWriter(geometry).write(geometry));
+    }
+
+    /**
+     * Writes the trailer and flushes the rows to the underlying stream. Doesn't close the stream.
+     */
+    void finish() throws IOException {
+        out.writeShort(-1);
+        out.flush();
+    }
+
+    private void writeField(byte[] value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(value.length);
+        out.write(value);
+    }
+
+    private WKBWriter getWKBWriter(Geometry geometry) {
+        Coordinate c = geometry.getCoordinate();
+        return c != null && !Double.isNaN(c.getZ()) ? wkb3d : wkb2d;
+    }
+
+    private static byte[] toBytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+}
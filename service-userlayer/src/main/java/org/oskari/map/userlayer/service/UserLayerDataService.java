@@ -68,7 +68,16 @@ public class UserLayerDataService {
         return userLayer;
     }
     public static UserLayer createUserLayer(SimpleFeatureCollection fc, String uuid, JSONObject locale, JSONObject style) {
-        final SimpleFeatureType ft = fc.getSchema();
+        final UserLayer userLayer = createUserLayer(fc.getSchema(), uuid, locale, style);
+        userLayer.setWkt(getWGS84ExtentAsWKT(fc.getBounds()));
+        return userLayer;
+    }
+
+    /**
+     * Creates the UserLayer without extent. Used when the features are streamed to the database
+     * and the extent is calculated while storing them.
+     */
+    public static UserLayer createUserLayer(SimpleFeatureType ft, String uuid, JSONObject locale, JSONObject style) {
         final UserLayer userLayer = new UserLayer();
         userLayer.setUuid(uuid);
         userLayer.setLayer_name(ft.getTypeName());
@@ -76,14 +85,17 @@ public class UserLayerDataService {
         WFSLayerOptions wfsOptions = userLayer.getWFSLayerOptions();
         wfsOptions.setDefaultFeatureStyle(style);
         userLayer.setFields(parseFields(ft));
-        userLayer.setWkt(getWGS84ExtentAsWKT(fc));
         return userLayer;
     }
 
     private static String getWGS84ExtentAsWKT(SimpleFeatureCollection fc) {
+        return getWGS84ExtentAsWKT(fc.getBounds());
+    }
+
+    public static String getWGS84ExtentAsWKT(ReferencedEnvelope bounds) {
         try {
             CoordinateReferenceSystem wgs84 = CRS.decode("EPSG:4326", true);
-            ReferencedEnvelope extentWGS84 = fc.getBounds().transform(wgs84, true);
+            ReferencedEnvelope extentWGS84 = bounds.transform(wgs84, true);
             return WKTHelper.getBBOX(extentWGS84.getMinX(),
                     extentWGS84.getMinY(),
                     extentWGS84.getMaxX(),
@@ -145,7 +157,26 @@ public class UserLayerDataService {
         return userLayerDataList;
     }
 
-    private static UserLayerData toUserLayerData(SimpleFeature f, String uuid) throws UserLayerException {
+    /**
+     * @return max number of features stored per userlayer or -1 if not limited
+     */
+    public static int getMaxFeaturesCount() {
+        return USERLAYER_MAX_FEATURES_COUNT;
+    }
+
+    /**
+     * @return non-geometry properties of the feature as JSON string or null if the feature doesn't have any
+     */
+    public static String getPropertiesJSON(SimpleFeature f, GeoJSONWriter writer) throws UserLayerException {
+        try {
+            JSONObject properties = writer.writeProperties(f);
+            return properties == null ? null : properties.toString();
+        } catch (JSONException e) {
+            throw new UserLayerException("Failed to encode feature properties as JSON", UserLayerException.ErrorType.INVALID_FEATURE);
+        }
+    }
+
+    public static UserLayerData toUserLayerData(SimpleFeature f, String uuid) throws UserLayerException {
         try {
             JSONObject geoJSON = new GeoJSONWriter().writeFeature(f);
             String id = geoJSON.optString(GeoJSON.ID);
@@ -7,13 +7,16 @@ import fi.nls.oskari.service.ServiceException;
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.oskari.service.user.UserLayerTile;
 
 import java.util.List;
+import java.util.function.LongConsumer;
 
 public abstract class UserLayerDbService extends OskariComponent {
 
     //UserLayer related
     public abstract int insertUserLayerAndData(final UserLayer userlayer, final List<UserLayerData> userLayerDataList) throws UserLayerException;
+    public abstract int insertUserLayerAndData(final UserLayer userlayer, final SimpleFeatureCollection fc, final LongConsumer progress) throws UserLayerException;
     public abstract int updateUserLayer(final UserLayer userlayer) throws UserLayerException;
     public abstract UserLayer getUserLayerById(long id);
     public abstract List<UserLayer> getUserLayerByUuid(String uuid);
@@ -27,5 +30,6 @@ public abstract class UserLayerDbService extends OskariComponent {
     public abstract int updateUserLayerData(final UserLayerData userlayerdata);
 
     public abstract SimpleFeatureCollection getFeatures(int layerId, ReferencedEnvelope bbox, CoordinateReferenceSystem crs) throws ServiceException;
+    public abstract byte[] getMVT(int layerId, UserLayerTile tile) throws ServiceException;
 
 }
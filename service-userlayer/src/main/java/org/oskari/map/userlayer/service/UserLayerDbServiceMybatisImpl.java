@@ -9,9 +9,9 @@ import fi.nls.oskari.domain.map.userlayer.UserLayer;
 import fi.nls.oskari.domain.map.userlayer.UserLayerData;
 import fi.nls.oskari.log.LogFactory;
 import fi.nls.oskari.log.Logger;
-import fi.nls.oskari.map.geometry.WKTHelper;
 import fi.nls.oskari.mybatis.MyBatisHelper;
 import fi.nls.oskari.service.ServiceException;
+import fi.nls.oskari.service.ServiceRuntimeException;
 import fi.nls.oskari.util.PropertyUtil;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ExecutorType;
@@ -19,24 +19,25 @@ import org.apache.ibatis.session.SqlSession;
 import org.apache.ibatis.session.SqlSessionFactory;
 import org.apache.ibatis.session.SqlSessionFactoryBuilder;
 import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.data.store.EmptyFeatureCollection;
 import org.geotools.feature.DefaultFeatureCollection;
-import org.geotools.feature.simple.SimpleFeatureBuilder;
-import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.locationtech.jts.geom.Geometry;
 import org.opengis.feature.simple.SimpleFeature;
-import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.oskari.geojson.GeoJSONWriter;
+import org.oskari.service.user.UserLayerTile;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
 
 import javax.sql.DataSource;
-import java.time.OffsetDateTime;
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.List;
+import java.util.function.LongConsumer;
 
 import static fi.nls.oskari.map.geometry.ProjectionHelper.getSRID;
-import static fi.nls.oskari.map.geometry.WKTHelper.GEOM_ATTRIBUTE;
-import static fi.nls.oskari.map.geometry.WKTHelper.parseWKT;
 
 @Oskari
 public class UserLayerDbServiceMybatisImpl extends UserLayerDbService {
@@ -44,6 +45,8 @@ public class UserLayerDbServiceMybatisImpl extends UserLayerDbService {
     private static final Logger log = LogFactory.getLogger(UserLayerDbServiceMybatisImpl.class);
     private static final String USERLAYER_MYBATIS_BATCH_SIZE = "userlayer.mybatis.batch.size";
     private static final String NATIVE_SRS = "oskari.native.srs";
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    private static final int PROGRESS_INTERVAL = 1000;
     final int batchSize = PropertyUtil.getOptional(USERLAYER_MYBATIS_BATCH_SIZE, 1000);
     private final int srid;
     private final Cache<UserLayer> cache;
@@ -107,6 +110,153 @@ public class UserLayerDbServiceMybatisImpl extends UserLayerDbService {
         }
     }
 
+    /**
+     * Stores the userlayer and streams the features to the database. The features are read from the collection
+     * one at a time so the collection can be backed by a lazily read file. On PostgreSQL the rows are written
+     * with COPY in binary format and other databases fall back to batched inserts.
+     * The extent and feature counts of the userlayer are updated based on the stored features.
+     *
+     * @param progress receives the number of features stored so far, can be null
+     * @return number of stored features
+     */
+    public int insertUserLayerAndData(final UserLayer userLayer, final SimpleFeatureCollection fc, final LongConsumer progress) throws UserLayerException {
+        validateUserLayer(userLayer);
+        final long start = System.currentTimeMillis();
+        try (SqlSession session = factory.openSession(ExecutorType.BATCH)) {
+            final UserLayerMapper mapper = getMapper(session);
+            if (userLayer.getWkt() == null) {
+                // updated after the features have been stored
+                userLayer.setWkt("");
+            }
+            mapper.insertUserLayer(userLayer);
+            session.flushStatements();
+            long userLayerId = userLayer.getId();
+            final UserLayer inserted = mapper.findUserLayer(userLayerId);
+            userLayer.setCreated(inserted.getCreated());
+            log.debug("got layer id", userLayerId);
+
+            final ReferencedEnvelope bounds = new ReferencedEnvelope(fc.getSchema().getCoordinateReferenceSystem());
+            final GeoJSONWriter writer = new GeoJSONWriter();
+            final PGConnection pgConnection = getPGConnection(session.getConnection());
+            final int count;
+            if (pgConnection != null) {
+                count = copyFeatures(pgConnection, userLayer, fc, bounds, writer, progress);
+            } else {
+                count = insertFeatures(session, mapper, userLayer, fc, bounds, progress);
+            }
+            if (count == 0) throw new UserLayerException("UserLayer doesn't contain features", UserLayerException.ErrorType.NO_FEATURES);
+
+            userLayer.setFeatures_count(count);
+            userLayer.setFeatures_skipped(Math.max(0, fc.size() - count));
+            userLayer.setWkt(UserLayerDataService.getWGS84ExtentAsWKT(bounds));
+            mapper.updateUserLayer(userLayer);
+            session.flushStatements();
+            session.commit();
+            log.info("Stored", count, "features for userlayer:", userLayerId, "in", System.currentTimeMillis() - start, "ms");
+            cache(userLayer);
+            return count;
+        } catch (UserLayerException e) {
+            log.error(e, "Rolling back, failed to insert userlayer with id:", +userLayer.getId());
+            throw e;
+        } catch (ServiceRuntimeException e) {
+            // thrown when reading or transforming features fails
+            log.error(e, "Rolling back, failed to insert userlayer with id:", +userLayer.getId());
+            throw new UserLayerException("Failed to read features: " + e.getMessage(),
+                    UserLayerException.ErrorType.PARSER, UserLayerException.ErrorType.INVALID_FORMAT);
+        } catch (Exception e) {
+            log.error(e, "Rolling back, failed to insert userlayer with id:", +userLayer.getId());
+            throw new UserLayerException("Failed to store features to database", UserLayerException.ErrorType.STORE);
+        }
+    }
+
+    private PGConnection getPGConnection(Connection conn) {
+        try {
+            if (conn.isWrapperFor(PGConnection.class)) {
+                return conn.unwrap(PGConnection.class);
+            }
+        } catch (SQLException e) {
+            log.debug("Couldn't unwrap PostgreSQL connection:", e.getMessage());
+        }
+        return null;
+    }
+
+    private int copyFeatures(PGConnection conn, UserLayer userLayer, SimpleFeatureCollection fc,
+                             ReferencedEnvelope bounds, GeoJSONWriter writer, LongConsumer progress) throws Exception {
+        PGCopyOutputStream out = new PGCopyOutputStream(conn, UserLayerDataCopyWriter.COPY_SQL, COPY_BUFFER_SIZE);
+        try {
+            UserLayerDataCopyWriter copy = new UserLayerDataCopyWriter(out, userLayer.getId(), userLayer.getUuid(), srid);
+            copy.writeHeader();
+            int count = forEachFeature(fc, bounds, progress, f -> copy.writeRow(
+                    f.getID(),
+                    UserLayerDataService.getPropertiesJSON(f, writer),
+                    (Geometry) f.getDefaultGeometry()));
+            copy.finish();
+            out.close();
+            return count;
+        } catch (Exception e) {
+            if (out.isActive()) {
+                out.cancelCopy();
+            }
+            throw e;
+        }
+    }
+
+    private int insertFeatures(SqlSession session, UserLayerMapper mapper, UserLayer userLayer, SimpleFeatureCollection fc,
+                               ReferencedEnvelope bounds, LongConsumer progress) throws Exception {
+        final long userLayerId = userLayer.getId();
+        final int[] inserted = { 0 };
+        int count = forEachFeature(fc, bounds, progress, f -> {
+            mapper.insertUserLayerData(UserLayerDataService.toUserLayerData(f, userLayer.getUuid()), userLayerId, srid);
+            // Flushes batch statements and clears local session cache
+            if (++inserted[0] % batchSize == 0) {
+                session.flushStatements();
+                session.clearCache();
+            }
+        });
+        session.flushStatements();
+        return count;
+    }
+
+    /**
+     * Passes features that have a geometry to the consumer until max features count is reached
+     * @return number of features passed to the consumer
+     */
+    private int forEachFeature(SimpleFeatureCollection fc, ReferencedEnvelope bounds, LongConsumer progress,
+                               FeatureConsumer consumer) throws Exception {
+        final int maxFeatures = UserLayerDataService.getMaxFeaturesCount();
+        int count = 0;
+        try (SimpleFeatureIterator it = fc.features()) {
+            while (it.hasNext()) {
+                SimpleFeature f = it.next();
+                Geometry geom = (Geometry) f.getDefaultGeometry();
+                if (geom == null) {
+                    continue;
+                }
+                consumer.accept(f);
+                bounds.expandToInclude(geom.getEnvelopeInternal());
+                count++;
+                if (count % PROGRESS_INTERVAL == 0) {
+                    log.debug("Stored", count, "features");
+                    if (progress != null) {
+                        progress.accept(count);
+                    }
+                }
+                if (maxFeatures != -1 && count == maxFeatures) {
+                    break;
+                }
+            }
+        }
+        if (progress != null) {
+            progress.accept(count);
+        }
+        return count;
+    }
+
+    @FunctionalInterface
+    private interface FeatureConsumer {
+        void accept(SimpleFeature f) throws Exception;
+    }
+
     /**
      * update UserLayer table row field mapping
      *
@@ -285,6 +435,20 @@ public class UserLayerDbServiceMybatisImpl extends UserLayerDbService {
         }
     }
 
+    @Override
+    public byte[] getMVT(int layerId, UserLayerTile tile) throws ServiceException {
+        try (SqlSession session = factory.openSession()) {
+            List<byte[]> rows = getMapper(session).getMVT(layerId, tile, srid);
+            if (rows.isEmpty() || rows.get(0) == null) {
+                return new byte[0];
+            }
+            return rows.get(0);
+        } catch (Exception e) {
+            log.warn(e, "Exception when trying to get MVT for userlayer:", layerId);
+            throw new ServiceException(e.getMessage(), e);
+        }
+    }
+
     private SimpleFeatureCollection toSimpleFeatureCollection(List<UserLayerData> features) throws ServiceException {
         try {
             if (features == null || features.isEmpty()) {
@@ -292,9 +456,11 @@ public class UserLayerDbServiceMybatisImpl extends UserLayerDbService {
             }
 
             DefaultFeatureCollection collection = new DefaultFeatureCollection();
+            UserLayerFeatureFactory featureFactory = new UserLayerFeatureFactory();
             for (UserLayerData feature: features) {
-                if (feature.getWkt() != null) {
-                    collection.add(toSimpleFeature(feature));
+                SimpleFeature f = featureFactory.create(feature);
+                if (f != null) {
+                    collection.add(f);
                 }
             }
 
@@ -304,35 +470,4 @@ public class UserLayerDbServiceMybatisImpl extends UserLayerDbService {
             throw new ServiceException("Failed to create SimpleFeatureCollection");
         }
     }
-
-    private SimpleFeature toSimpleFeature(UserLayerData feature) {
-        Geometry geom = parseWKT(feature.getWkt());
-        SimpleFeatureTypeBuilder featureTypeBuilder = getFeatureTypeBuilder(geom);
-        SimpleFeatureType simpleFeatureType = featureTypeBuilder.buildFeatureType();
-        SimpleFeatureBuilder featureBuilder = new SimpleFeatureBuilder(simpleFeatureType);
-        featureBuilder.set(GEOM_ATTRIBUTE, geom);
-        featureBuilder.set("id", feature.getId());
-        featureBuilder.set("user_layer_id", feature.getUser_layer_id());
-        featureBuilder.set("uuid", feature.getUuid());
-        featureBuilder.set("feature_id", feature.getFeature_id());
-        featureBuilder.set("property_json", feature.getProperty_json());
-        featureBuilder.set("created", feature.getCreated());
-        featureBuilder.set("updated", feature.getUpdated());
-
-        return featureBuilder.buildFeature(Long.valueOf(feature.getId()).toString());
-    }
-
-    private SimpleFeatureTypeBuilder getFeatureTypeBuilder(Geometry geometry) {
-        SimpleFeatureTypeBuilder featureTypeBuilder = WKTHelper.getFeatureTypeBuilder(geometry);
-        featureTypeBuilder.add("id", Long.class);
-        featureTypeBuilder.add("user_layer_id", String.class);
-        featureTypeBuilder.add("uuid", String.class);
-        featureTypeBuilder.add("feature_id", String.class);
-        featureTypeBuilder.add("property_json", String.class);
-        featureTypeBuilder.add("created", OffsetDateTime.class);
-        featureTypeBuilder.add("updated", OffsetDateTime.class);
-
-        return featureTypeBuilder;
-
-    }
 }
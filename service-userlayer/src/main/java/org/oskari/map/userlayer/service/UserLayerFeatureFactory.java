@@ -0,0 +1,71 @@
+package org.oskari.map.userlayer.service;
+
+import fi.nls.oskari.domain.map.userlayer.UserLayerData;
+import fi.nls.oskari.map.geometry.WKTHelper;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+import java.time.OffsetDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static fi.nls.oskari.map.geometry.WKTHelper.GEOM_ATTRIBUTE;
+
+/**
+ * Creates SimpleFeatures from user_layer_data rows read as WKB.
+ * The feature type only depends on the geometry type so the types are built once and shared.
+ * A single factory reuses the WKB reader and feature builders and is not thread-safe.
+ */
+class UserLayerFeatureFactory {
+
+    private static final Map<String, SimpleFeatureType> FEATURE_TYPES = new ConcurrentHashMap<>();
+
+    private final WKBReader reader = new WKBReader();
+    private final Map<String, SimpleFeatureBuilder> builders = new HashMap<>();
+
+    /**
+     * @return feature or null if the row doesn't have a geometry
+     */
+    SimpleFeature create(UserLayerData feature) throws ParseException {
+        if (feature.getWkb() == null) {
+            return null;
+        }
+        Geometry geom = reader.read(feature.getWkb());
+        SimpleFeatureBuilder featureBuilder = builders.computeIfAbsent(geom.getGeometryType(),
+                type -> new SimpleFeatureBuilder(getFeatureType(geom)));
+        featureBuilder.set(GEOM_ATTRIBUTE, geom);
+        featureBuilder.set("id", feature.getId());
+        featureBuilder.set("user_layer_id", feature.getUser_layer_id());
+        featureBuilder.set("uuid", feature.getUuid());
+        featureBuilder.set("feature_id", feature.getFeature_id());
+        featureBuilder.set("property_json", feature.getProperty_json());
+        featureBuilder.set("created", feature.getCreated());
+        featureBuilder.set("updated", feature.getUpdated());
+
+        return featureBuilder.buildFeature(Long.toString(feature.getId()));
+    }
+
+    static SimpleFeatureType getFeatureType(Geometry geometry) {
+        return FEATURE_TYPES.computeIfAbsent(geometry.getGeometryType(),
+                type -> getFeatureTypeBuilder(geometry).buildFeatureType());
+    }
+
+    static SimpleFeatureTypeBuilder getFeatureTypeBuilder(Geometry geometry) {
+        SimpleFeatureTypeBuilder featureTypeBuilder = WKTHelper.getFeatureTypeBuilder(geometry);
+        featureTypeBuilder.add("id", Long.class);
+        featureTypeBuilder.add("user_layer_id", String.class);
+        featureTypeBuilder.add("uuid", String.class);
+        featureTypeBuilder.add("feature_id", String.class);
+        featureTypeBuilder.add("property_json", String.class);
+        featureTypeBuilder.add("created", OffsetDateTime.class);
+        featureTypeBuilder.add("updated", OffsetDateTime.class);
+
+        return featureTypeBuilder;
+    }
+}
@@ -6,6 +6,7 @@ import fi.nls.oskari.service.ServiceException;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.ResultMap;
 import org.apache.ibatis.annotations.Select;
+import org.oskari.service.user.UserLayerTile;
 
 import java.util.List;
 
@@ -81,7 +82,7 @@ public interface UserLayerMapper {
             " uuid, " +
             " feature_id, " +
             " property_json, " +
-            " ST_ASTEXT(geometry) as wkt, " +
+            " ST_AsBinary(geometry) as wkb, " +
             " ST_SRID(geometry) as srid, " +
             " created, " +
             " updated " +
@@ -97,4 +98,36 @@ public interface UserLayerMapper {
                                       @Param("maxY") double maxY,
                                       @Param("srid") int srid);
 
+    /**
+     * Encodes the features of the layer on the tile as MVT with properties from property_json.
+     * Like features encoded in Java the row id is used as the feature id and as the "_oid" property
+     * and only scalar values of property_json are included.
+     * Points get a larger buffer so symbols aren't clipped at tile edges.
+     * @param layerId
+     * @param tile tile extent and encoding parameters
+     * @param nativeSrid srid of the stored geometries
+     * @return one row with the encoded tile (NULL on older PostGIS versions if there are no features)
+     */
+    @Select("SELECT ST_AsMVT(mvt, #{tile.layerName}, #{tile.extent}, 'geom', 'fid') FROM (" +
+            " SELECT " +
+            "  id AS fid, " +
+            "  ST_AsMVTGeom(ST_Transform(geometry, #{tile.srid}), " +
+            "   ST_MakeEnvelope(#{tile.minX}, #{tile.minY}, #{tile.maxX}, #{tile.maxY}, #{tile.srid})::box2d, " +
+            "   #{tile.extent}, " +
+            "   CASE WHEN GeometryType(geometry) IN ('POINT', 'MULTIPOINT') THEN #{tile.pointBuffer} ELSE #{tile.buffer} END, " +
+            "   true) AS geom, " +
+            "  jsonb_build_object('_oid', id::text) || COALESCE((" +
+            "   SELECT jsonb_object_agg(key, value) FROM jsonb_each(property_json::jsonb) " +
+            "   WHERE jsonb_typeof(value) IN ('string', 'number', 'boolean')), '{}'::jsonb) AS properties " +
+            " FROM user_layer_data " +
+            " WHERE " +
+            " user_layer_id = #{layerId} " +
+            " AND " +
+            " geometry && ST_Transform(ST_Expand(" +
+            "   ST_MakeEnvelope(#{tile.minX}, #{tile.minY}, #{tile.maxX}, #{tile.maxY}, #{tile.srid}), #{tile.margin}), #{nativeSrid})" +
+            ") mvt WHERE mvt.geom IS NOT NULL")
+    List<byte[]> getMVT(@Param("layerId") int layerId,
+                        @Param("tile") UserLayerTile tile,
+                        @Param("nativeSrid") int nativeSrid);
+
 }
@@ -0,0 +1,69 @@
+package org.oskari.map.userlayer.service;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.io.WKBReader;
+
+public class UserLayerDataCopyWriterTest {
+
+    @Test
+    public void testBinaryCopyFormat() throws Exception {
+        GeometryFactory gf = new GeometryFactory();
+        Geometry point = gf.createPoint(new Coordinate(385000.5, 6672000.25));
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        UserLayerDataCopyWriter writer = new UserLayerDataCopyWriter(baos, 7L, "user-uuid", 3067);
+        writer.writeHeader();
+        writer.writeRow("feature.1", "{\"name\":\"Ääkkönen\"}", point);
+        writer.writeRow("feature.2", null, point);
+        writer.finish();
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(baos.toByteArray()));
+        byte[] signature = new byte[11];
+        in.readFully(signature);
+        assertArrayEquals("PGCOPY\n\377\r\n\0".getBytes(StandardCharsets.ISO_8859_1), signature);
+        assertEquals("flags", 0, in.readInt());
+        assertEquals("header extension", 0, in.readInt());
+
+        // first row
+        assertEquals(5, in.readShort());
+        assertEquals(8, in.readInt());
+        assertEquals(7L, in.readLong());
+        assertEquals("user-uuid", readText(in));
+        assertEquals("feature.1", readText(in));
+        assertEquals("{\"name\":\"Ääkkönen\"}", readText(in));
+        byte[] wkb = new byte[in.readInt()];
+        in.readFully(wkb);
+        Geometry parsed = new WKBReader().read(wkb);
+        assertEquals(3067, parsed.getSRID());
+        assertTrue(point.equalsExact(parsed));
+
+        // second row with null properties
+        assertEquals(5, in.readShort());
+        in.skipBytes(4 + 8);
+        readText(in);
+        readText(in);
+        assertEquals("null value", -1, in.readInt());
+        in.skipBytes(in.readInt());
+
+        assertEquals("trailer", -1, in.readShort());
+        assertEquals(0, in.available());
+    }
+
+    private String readText(DataInputStream in) throws Exception {
+        byte[] b = new byte[in.readInt()];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+}
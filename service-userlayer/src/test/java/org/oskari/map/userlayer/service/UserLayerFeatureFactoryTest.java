@@ -0,0 +1,105 @@
+package org.oskari.map.userlayer.service;
+
+import static fi.nls.oskari.map.geometry.WKTHelper.GEOM_ATTRIBUTE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.JSONObject;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.WKBWriter;
+import org.opengis.feature.simple.SimpleFeature;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+
+import fi.nls.oskari.domain.map.userlayer.UserLayerData;
+import fi.nls.oskari.log.LogFactory;
+import fi.nls.oskari.log.Logger;
+import fi.nls.oskari.map.geometry.WKTHelper;
+
+public class UserLayerFeatureFactoryTest {
+
+    private static final Logger LOG = LogFactory.getLogger(UserLayerFeatureFactoryTest.class);
+
+    private static final String POLYGON = "POLYGON ((385000 6672000, 385100 6672000, 385100 6672100, 385000 6672100, 385000 6672000))";
+    private static final String POINT = "POINT (385000 6672000)";
+
+    @Test
+    public void testCreate() throws Exception {
+        UserLayerFeatureFactory factory = new UserLayerFeatureFactory();
+        SimpleFeature polygon = factory.create(createData(1, POLYGON));
+        SimpleFeature point = factory.create(createData(2, POINT));
+        SimpleFeature polygon2 = factory.create(createData(3, POLYGON));
+
+        assertEquals("1", polygon.getID());
+        assertEquals("feature.1", polygon.getAttribute("feature_id"));
+        assertTrue(WKTHelper.parseWKT(POLYGON).equalsExact((Geometry) polygon.getDefaultGeometry()));
+        assertTrue(WKTHelper.parseWKT(POINT).equalsExact((Geometry) point.getDefaultGeometry()));
+        assertSame("Feature type is shared for same geometry type", polygon.getFeatureType(), polygon2.getFeatureType());
+        assertEquals("3", polygon2.getID());
+        assertEquals("Builder doesn't leak values between features", "feature.3", polygon2.getAttribute("feature_id"));
+
+        assertNull(factory.create(new UserLayerData()));
+    }
+
+    /**
+     * Compares the per-feature cost of reading rows as WKT and building the feature type
+     * for each feature (previous implementation) to reading WKB with shared feature types.
+     */
+    @Test
+    @Ignore("Benchmark, run manually")
+    public void benchmarkFeatureCreation() throws Exception {
+        List<UserLayerData> rows = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            rows.add(createData(i, i % 2 == 0 ? POLYGON : POINT));
+        }
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            for (UserLayerData row : rows) {
+                createWithWKT(row);
+            }
+            long wkt = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            UserLayerFeatureFactory factory = new UserLayerFeatureFactory();
+            for (UserLayerData row : rows) {
+                factory.create(row);
+            }
+            long wkb = System.nanoTime() - start;
+            LOG.info("Round", round, "per feature: WKT + type per feature", wkt / rows.size(),
+                    "ns, WKB + shared types", wkb / rows.size(), "ns");
+        }
+    }
+
+    private SimpleFeature createWithWKT(UserLayerData feature) {
+        Geometry geom = WKTHelper.parseWKT(feature.getWkt());
+        SimpleFeatureBuilder featureBuilder = new SimpleFeatureBuilder(
+                UserLayerFeatureFactory.getFeatureTypeBuilder(geom).buildFeatureType());
+        featureBuilder.set(GEOM_ATTRIBUTE, geom);
+        featureBuilder.set("id", feature.getId());
+        featureBuilder.set("user_layer_id", feature.getUser_layer_id());
+        featureBuilder.set("uuid", feature.getUuid());
+        featureBuilder.set("feature_id", feature.getFeature_id());
+        featureBuilder.set("property_json", feature.getProperty_json());
+        featureBuilder.set("created", feature.getCreated());
+        featureBuilder.set("updated", feature.getUpdated());
+        return featureBuilder.buildFeature(Long.toString(feature.getId()));
+    }
+
+    private UserLayerData createData(long id, String wkt) {
+        UserLayerData data = new UserLayerData();
+        data.setId(id);
+        data.setUser_layer_id(1);
+        data.setUuid("user-uuid");
+        data.setFeature_id("feature." + id);
+        data.setProperty_json(new JSONObject().put("name", "feature " + id));
+        data.setWkt(wkt);
+        data.setWkb(new WKBWriter().write(WKTHelper.parseWKT(wkt)));
+        return data;
+    }
+}
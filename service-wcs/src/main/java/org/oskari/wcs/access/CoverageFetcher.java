@@ -0,0 +1,18 @@
+package org.oskari.wcs.access;
+
+import java.io.IOException;
+import org.oskari.wcs.request.GetCoverage;
+
+/**
+ * Sends the GetCoverage request to the service, implemented by the caller
+ * to keep service-wcs free of HTTP client dependencies
+ */
+@FunctionalInterface
+public interface CoverageFetcher {
+
+    /**
+     * @return GeoTIFF response
+     */
+    public byte[] fetch(GetCoverage request) throws IOException;
+
+}
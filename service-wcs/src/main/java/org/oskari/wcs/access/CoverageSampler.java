@@ -0,0 +1,457 @@
+package org.oskari.wcs.access;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import org.oskari.wcs.capabilities.Capabilities;
+import org.oskari.wcs.coverage.RectifiedGridCoverage;
+import org.oskari.wcs.geotiff.IFD;
+import org.oskari.wcs.geotiff.TIFFReader;
+import org.oskari.wcs.gml.RectifiedGrid;
+import org.oskari.wcs.request.GetCoverage;
+
+/**
+ * Point and profile sampling of a RectifiedGridCoverage (e.g. elevation model)
+ *
+ * The grid is split into square tiles that are requested from the service with
+ * GetCoverage and kept decoded in a CoverageTileCache. Tiles missing from the cache
+ * are fetched with as few requests as possible by combining adjacent tiles.
+ * Values are interpolated bilinearly from the four surrounding grid cell centers.
+ *
+ * Only north-up grids (axis aligned offset vectors, first axis growing east and
+ * second axis growing south) are supported. Coordinates are given in the axis order
+ * of the coverage. Coordinates outside the grid return NaN.
+ */
+public class CoverageSampler {
+
+    public static final int DEFAULT_TILE_SIZE = 256;
+    public static final int DEFAULT_MAX_TILES_PER_REQUEST = 16;
+
+    private static final String FORMAT = "image/tiff";
+    // Fetch at most this many times the missing tiles when combining them to a single request
+    private static final int MAX_UNNEEDED_RATIO = 2;
+
+    private final Capabilities wcs;
+    private final RectifiedGridCoverage coverage;
+    private final CoverageFetcher fetcher;
+    private final CoverageTileCache cache;
+    private final int tileSize;
+    private final int maxTilesPerRequest;
+
+    private final String axisX;
+    private final String axisY;
+    private final double originX;
+    private final double originY;
+    private final double resX;
+    private final double resY;
+    private final int lowI;
+    private final int lowJ;
+    private final int highI;
+    private final int highJ;
+
+    private int requestCount;
+
+    public CoverageSampler(Capabilities wcs, RectifiedGridCoverage coverage,
+            CoverageFetcher fetcher, CoverageTileCache cache) {
+        this(wcs, coverage, fetcher, cache, DEFAULT_TILE_SIZE, DEFAULT_MAX_TILES_PER_REQUEST);
+    }
+
+    public CoverageSampler(Capabilities wcs, RectifiedGridCoverage coverage,
+            CoverageFetcher fetcher, CoverageTileCache cache,
+            int tileSize, int maxTilesPerRequest) throws IllegalArgumentException {
+        if (!wcs.supportsFormat(FORMAT)) {
+            throw new IllegalArgumentException("Service doesn't support " + FORMAT);
+        }
+        RectifiedGrid grid = coverage.getDomainSet();
+        if (grid.getDimension() != 2) {
+            throw new IllegalArgumentException("Only 2D grids are supported");
+        }
+        double[] offsetX = grid.getOffsetVectors()[0].getPos();
+        double[] offsetY = grid.getOffsetVectors()[1].getPos();
+        if (offsetX[1] != 0 || offsetY[0] != 0 || offsetX[0] <= 0 || offsetY[1] >= 0) {
+            throw new IllegalArgumentException("Only north-up grids are supported");
+        }
+        this.wcs = wcs;
+        this.coverage = coverage;
+        this.fetcher = fetcher;
+        this.cache = cache;
+        this.tileSize = tileSize;
+        this.maxTilesPerRequest = maxTilesPerRequest;
+
+        String[] axes = coverage.getBoundedBy().getAxisLabels();
+        this.axisX = axes[0];
+        this.axisY = axes[1];
+        double[] origin = grid.getOrigin().getPos();
+        this.originX = origin[0];
+        this.originY = origin[1];
+        this.resX = offsetX[0];
+        this.resY = offsetY[1];
+        this.lowI = grid.getLimits().getLow()[0];
+        this.lowJ = grid.getLimits().getLow()[1];
+        this.highI = grid.getLimits().getHigh()[0];
+        this.highJ = grid.getLimits().getHigh()[1];
+    }
+
+    /**
+     * @return number of GetCoverage requests sent by this sampler
+     */
+    public synchronized int getRequestCount() {
+        return requestCount;
+    }
+
+    public double sample(double x, double y) throws IOException {
+        return sample(new double[] { x }, new double[] { y })[0];
+    }
+
+    /**
+     * Samples multiple points, missing tiles are fetched before interpolating any values
+     */
+    public double[] sample(double[] x, double[] y) throws IOException {
+        if (x.length != y.length) {
+            throw new IllegalArgumentException("x and y differ in length");
+        }
+        int n = x.length;
+        double[] gridI = new double[n];
+        double[] gridJ = new double[n];
+        TreeSet<Long> needed = new TreeSet<>();
+        for (int k = 0; k < n; k++) {
+            double i = (x[k] - originX) / resX;
+            double j = (y[k] - originY) / resY;
+            gridI[k] = i;
+            gridJ[k] = j;
+            if (!isInside(i, j)) {
+                continue;
+            }
+            int i0 = (int) Math.floor(i);
+            int j0 = (int) Math.floor(j);
+            // The four cells surrounding the point, clamped to the grid at the edges
+            for (int jj = j0; jj <= j0 + 1; jj++) {
+                for (int ii = i0; ii <= i0 + 1; ii++) {
+                    needed.add(tileKey(getTileCol(clampI(ii)), getTileRow(clampJ(jj))));
+                }
+            }
+        }
+
+        Map<Long, CoverageTile> tiles = getTiles(needed);
+
+        double[] values = new double[n];
+        for (int k = 0; k < n; k++) {
+            double i = gridI[k];
+            double j = gridJ[k];
+            if (!isInside(i, j)) {
+                values[k] = Double.NaN;
+                continue;
+            }
+            int i0 = (int) Math.floor(i);
+            int j0 = (int) Math.floor(j);
+            double tx = i - i0;
+            double ty = j - j0;
+            double v00 = getValue(tiles, clampI(i0), clampJ(j0));
+            double v10 = getValue(tiles, clampI(i0 + 1), clampJ(j0));
+            double v01 = getValue(tiles, clampI(i0), clampJ(j0 + 1));
+            double v11 = getValue(tiles, clampI(i0 + 1), clampJ(j0 + 1));
+            double top = v00 + (v10 - v00) * tx;
+            double bottom = v01 + (v11 - v01) * tx;
+            values[k] = top + (bottom - top) * ty;
+        }
+        return values;
+    }
+
+    /**
+     * Samples values at evenly spaced points along a line string
+     * @param coords x0,y0,x1,y1,...,xn,yn
+     * @param count number of points to sample, at least 2 (start and end of the line)
+     */
+    public double[] profile(double[] coords, int count) throws IOException {
+        if (coords.length < 4 || coords.length % 2 != 0) {
+            throw new IllegalArgumentException("Line needs at least two points");
+        }
+        if (count < 2) {
+            throw new IllegalArgumentException("count must be at least 2");
+        }
+        int segments = coords.length / 2 - 1;
+        double[] cumulative = new double[segments + 1];
+        for (int s = 0; s < segments; s++) {
+            double dx = coords[s * 2 + 2] - coords[s * 2];
+            double dy = coords[s * 2 + 3] - coords[s * 2 + 1];
+            cumulative[s + 1] = cumulative[s] + Math.sqrt(dx * dx + dy * dy);
+        }
+        double length = cumulative[segments];
+
+        double[] x = new double[count];
+        double[] y = new double[count];
+        int s = 0;
+        for (int k = 0; k < count; k++) {
+            double d = length * k / (count - 1);
+            while (s < segments - 1 && cumulative[s + 1] < d) {
+                s++;
+            }
+            double segLength = cumulative[s + 1] - cumulative[s];
+            double t = segLength == 0 ? 0 : (d - cumulative[s]) / segLength;
+            x[k] = coords[s * 2] + (coords[s * 2 + 2] - coords[s * 2]) * t;
+            y[k] = coords[s * 2 + 1] + (coords[s * 2 + 3] - coords[s * 2 + 1]) * t;
+        }
+        return sample(x, y);
+    }
+
+    private boolean isInside(double i, double j) {
+        // Allow half a cell outside the outermost cell centers
+        return i >= lowI - 0.5 && i <= highI + 0.5 && j >= lowJ - 0.5 && j <= highJ + 0.5;
+    }
+
+    private int clampI(int i) {
+        return Math.max(lowI, Math.min(highI, i));
+    }
+
+    private int clampJ(int j) {
+        return Math.max(lowJ, Math.min(highJ, j));
+    }
+
+    private int getTileCol(int i) {
+        return (i - lowI) / tileSize;
+    }
+
+    private int getTileRow(int j) {
+        return (j - lowJ) / tileSize;
+    }
+
+    private static long tileKey(int col, int row) {
+        // Sorts by row first
+        return ((long) row << 32) | col;
+    }
+
+    private static int getCol(long key) {
+        return (int) key;
+    }
+
+    private static int getRow(long key) {
+        return (int) (key >>> 32);
+    }
+
+    private double getValue(Map<Long, CoverageTile> tiles, int i, int j) {
+        int col = getTileCol(i);
+        int row = getTileRow(j);
+        CoverageTile tile = tiles.get(tileKey(col, row));
+        return tile.getValue(i - lowI - col * tileSize, j - lowJ - row * tileSize);
+    }
+
+    /**
+     * @param needed tile keys sorted by row and column
+     */
+    private Map<Long, CoverageTile> getTiles(TreeSet<Long> needed) throws IOException {
+        // Keep references to the tiles, the cache might evict them if it's small
+        Map<Long, CoverageTile> tiles = new HashMap<>();
+        TreeSet<Long> missing = new TreeSet<>();
+        for (long key : needed) {
+            CoverageTile tile = cache.get(getCacheKey(getCol(key), getRow(key)));
+            if (tile == null) {
+                missing.add(key);
+            } else {
+                tiles.put(key, tile);
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (int[] block : coalesce(missing)) {
+                fetch(block[0], block[1], block[2], block[3], tiles);
+            }
+        }
+        return tiles;
+    }
+
+    /**
+     * Combines missing tiles to rectangular blocks of tiles. If the missing tiles are
+     * close to each other they are all fetched in one block even if it contains some
+     * tiles that are not needed. Otherwise runs of adjacent tiles on a row are merged
+     * with an identical run on the previous row.
+     * @param missing tile keys sorted by row and column
+     * @return blocks as {minCol, minRow, maxCol, maxRow}
+     */
+    List<int[]> coalesce(TreeSet<Long> missing) {
+        List<int[]> blocks = new ArrayList<>();
+
+        int minCol = Integer.MAX_VALUE;
+        int maxCol = Integer.MIN_VALUE;
+        for (long key : missing) {
+            minCol = Math.min(minCol, getCol(key));
+            maxCol = Math.max(maxCol, getCol(key));
+        }
+        int minRow = getRow(missing.first());
+        int maxRow = getRow(missing.last());
+        int bboxTiles = (maxCol - minCol + 1) * (maxRow - minRow + 1);
+        if (bboxTiles <= maxTilesPerRequest && bboxTiles <= missing.size() * MAX_UNNEEDED_RATIO) {
+            blocks.add(new int[] { minCol, minRow, maxCol, maxRow });
+            return blocks;
+        }
+
+        List<int[]> open = new ArrayList<>();
+        List<int[]> runs = new ArrayList<>();
+        int currentRow = Integer.MIN_VALUE;
+        int[] run = null;
+        for (long key : missing) {
+            int col = getCol(key);
+            int row = getRow(key);
+            boolean continuesRun = run != null && row == currentRow && col == run[1] + 1
+                    && col - run[0] + 1 <= maxTilesPerRequest;
+            if (continuesRun) {
+                run[1] = col;
+                continue;
+            }
+            if (run != null) {
+                runs.add(run);
+            }
+            if (row != currentRow) {
+                open = mergeRuns(blocks, open, runs, currentRow);
+                runs = new ArrayList<>();
+                currentRow = row;
+            }
+            run = new int[] { col, col };
+        }
+        runs.add(run);
+        open = mergeRuns(blocks, open, runs, currentRow);
+        blocks.addAll(open);
+        return blocks;
+    }
+
+    /**
+     * Extends blocks from the previous row with runs of the current row, closes the rest
+     * @return blocks that can still be extended
+     */
+    private List<int[]> mergeRuns(List<int[]> blocks, List<int[]> open, List<int[]> runs, int row) {
+        List<int[]> next = new ArrayList<>();
+        for (int[] r : runs) {
+            int[] extended = null;
+            for (int[] block : open) {
+                int width = block[2] - block[0] + 1;
+                int height = block[3] - block[1] + 1;
+                if (block[0] == r[0] && block[2] == r[1] && block[3] == row - 1
+                        && width * (height + 1) <= maxTilesPerRequest) {
+                    extended = block;
+                    break;
+                }
+            }
+            if (extended != null) {
+                open.remove(extended);
+                extended[3] = row;
+                next.add(extended);
+            } else {
+                next.add(new int[] { r[0], row, r[1], row });
+            }
+        }
+        blocks.addAll(open);
+        return next;
+    }
+
+    private void fetch(int minCol, int minRow, int maxCol, int maxRow, Map<Long, CoverageTile> tiles)
+            throws IOException {
+        int i0 = lowI + minCol * tileSize;
+        int j0 = lowJ + minRow * tileSize;
+        int i1 = Math.min(highI, lowI + (maxCol + 1) * tileSize - 1);
+        int j1 = Math.min(highJ, lowJ + (maxRow + 1) * tileSize - 1);
+
+        // Inset the subset by a quarter of a cell from the cell edges so the
+        // server returns exactly the cells regardless of how it rounds the subset
+        double x0 = originX + (i0 - 0.25) * resX;
+        double x1 = originX + (i1 + 0.25) * resX;
+        double y0 = originY + (j1 + 0.25) * resY;
+        double y1 = originY + (j0 - 0.25) * resY;
+
+        GetCoverage request = new GetCoverage(wcs, coverage, FORMAT)
+                .subset(axisX, x0, x1)
+                .subset(axisY, y0, y1);
+        byte[] response = fetcher.fetch(request);
+        synchronized (this) {
+            requestCount++;
+        }
+
+        CoverageTile raster = readRaster(response);
+        if (raster.getWidth() != i1 - i0 + 1 || raster.getHeight() != j1 - j0 + 1) {
+            throw new IOException(String.format("Expected %dx%d coverage, got %dx%d",
+                    i1 - i0 + 1, j1 - j0 + 1, raster.getWidth(), raster.getHeight()));
+        }
+
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int col = minCol; col <= maxCol; col++) {
+                int x = (col - minCol) * tileSize;
+                int y = (row - minRow) * tileSize;
+                int w = Math.min(tileSize, raster.getWidth() - x);
+                int h = Math.min(tileSize, raster.getHeight() - y);
+                CoverageTile tile = raster.copy(x, y, w, h);
+                cache.put(getCacheKey(col, row), tile);
+                tiles.put(tileKey(col, row), tile);
+            }
+        }
+    }
+
+    private String getCacheKey(int col, int row) {
+        return CoverageTileCache.getKey(coverage.getCoverageId(), col, row);
+    }
+
+    /**
+     * Reads the first image of a (Geo)TIFF file to a single tile
+     */
+    static CoverageTile readRaster(byte[] tiff) throws IOException {
+        TIFFReader reader;
+        try {
+            reader = new TIFFReader(tiff);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IOException("Invalid GeoTIFF response", e);
+        }
+        if (reader.getIFDCount() == 0) {
+            throw new IOException("GeoTIFF response contains no images");
+        }
+        IFD ifd = reader.getIFD(0);
+        int width = ifd.getWidth();
+        int height = ifd.getHeight();
+        boolean isFloat = ifd.getSampleFormat() != null && ifd.getSampleFormat()[0] == 3;
+        boolean unsigned = ifd.getSampleFormat() == null || ifd.getSampleFormat()[0] == 1;
+        boolean tiled = ifd.getTileOffsets() != null;
+        int blockWidth = tiled ? ifd.getTileWidth() : width;
+        int blockHeight = tiled ? ifd.getTileHeight() : ifd.getRowsPerStrip() > 0 ? ifd.getRowsPerStrip() : height;
+        int blocksAcross = (width + blockWidth - 1) / blockWidth;
+        int blockCount = tiled ? ifd.getTileOffsets().length : ifd.getStripOffsets().length;
+
+        TIFFReader.DecodeBuffer buffer = new TIFFReader.DecodeBuffer();
+        try {
+            if (isFloat) {
+                float[] values = new float[width * height];
+                float[] block = new float[blockWidth * blockHeight];
+                for (int b = 0; b < blockCount; b++) {
+                    if (tiled) {
+                        reader.readTile(0, b, block, buffer);
+                    } else {
+                        reader.readStrip(0, b, block, buffer);
+                    }
+                    int x0 = (b % blocksAcross) * blockWidth;
+                    int y0 = (b / blocksAcross) * blockHeight;
+                    int w = Math.min(blockWidth, width - x0);
+                    for (int row = 0; row < blockHeight && y0 + row < height; row++) {
+                        System.arraycopy(block, row * blockWidth, values, (y0 + row) * width + x0, w);
+                    }
+                }
+                return CoverageTile.ofFloats(width, height, values);
+            }
+            short[] values = new short[width * height];
+            short[] block = new short[blockWidth * blockHeight];
+            for (int b = 0; b < blockCount; b++) {
+                if (tiled) {
+                    reader.readTile(0, b, block, buffer);
+                } else {
+                    reader.readStrip(0, b, block, buffer);
+                }
+                int x0 = (b % blocksAcross) * blockWidth;
+                int y0 = (b / blocksAcross) * blockHeight;
+                int w = Math.min(blockWidth, width - x0);
+                for (int row = 0; row < blockHeight && y0 + row < height; row++) {
+                    System.arraycopy(block, row * blockWidth, values, (y0 + row) * width + x0, w);
+                }
+            }
+            return CoverageTile.ofShorts(width, height, values, unsigned);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unsupported GeoTIFF response", e);
+        }
+    }
+
+}
@@ -0,0 +1,71 @@
+package org.oskari.wcs.access;
+
+/**
+ * Decoded block of coverage values stored as a primitive array in row-major order
+ */
+public class CoverageTile {
+
+    private final int width;
+    private final int height;
+    private final float[] floats;
+    private final short[] shorts;
+    private final boolean unsigned;
+
+    private CoverageTile(int width, int height, float[] floats, short[] shorts, boolean unsigned) {
+        if (width * height > (floats != null ? floats.length : shorts.length)) {
+            throw new IllegalArgumentException("Not enough values for " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.floats = floats;
+        this.shorts = shorts;
+        this.unsigned = unsigned;
+    }
+
+    public static CoverageTile ofFloats(int width, int height, float[] values) {
+        return new CoverageTile(width, height, values, null, false);
+    }
+
+    public static CoverageTile ofShorts(int width, int height, short[] values, boolean unsigned) {
+        return new CoverageTile(width, height, null, values, unsigned);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public double getValue(int col, int row) {
+        int i = row * width + col;
+        if (floats != null) {
+            return floats[i];
+        }
+        return unsigned ? shorts[i] & 0xFFFF : shorts[i];
+    }
+
+    public int getSizeInBytes() {
+        return floats != null ? floats.length * 4 : shorts.length * 2;
+    }
+
+    /**
+     * @return copy of the specified area
+     */
+    public CoverageTile copy(int x, int y, int w, int h) {
+        if (floats != null) {
+            float[] dst = new float[w * h];
+            for (int row = 0; row < h; row++) {
+                System.arraycopy(floats, (y + row) * width + x, dst, row * w, w);
+            }
+            return ofFloats(w, h, dst);
+        }
+        short[] dst = new short[w * h];
+        for (int row = 0; row < h; row++) {
+            System.arraycopy(shorts, (y + row) * width + x, dst, row * w, w);
+        }
+        return ofShorts(w, h, dst, unsigned);
+    }
+
+}
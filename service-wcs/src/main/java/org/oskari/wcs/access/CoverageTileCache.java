@@ -0,0 +1,59 @@
+package org.oskari.wcs.access;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of decoded coverage tiles bounded by the size of the value arrays.
+ * Keys are based on coverageId so use one cache per WCS service.
+ */
+public class CoverageTileCache {
+
+    private final long maxBytes;
+    private final Map<String, CoverageTile> tiles = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+
+    public CoverageTileCache(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be positive");
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    static String getKey(String coverageId, int tileCol, int tileRow) {
+        return coverageId + '/' + tileCol + '/' + tileRow;
+    }
+
+    public synchronized CoverageTile get(String key) {
+        return tiles.get(key);
+    }
+
+    public synchronized void put(String key, CoverageTile tile) {
+        CoverageTile old = tiles.put(key, tile);
+        if (old != null) {
+            bytes -= old.getSizeInBytes();
+        }
+        bytes += tile.getSizeInBytes();
+        // Remove least recently used tiles, never the one that was just added
+        Iterator<CoverageTile> it = tiles.values().iterator();
+        while (bytes > maxBytes && tiles.size() > 1) {
+            bytes -= it.next().getSizeInBytes();
+            it.remove();
+        }
+    }
+
+    public synchronized int getTileCount() {
+        return tiles.size();
+    }
+
+    public synchronized long getSizeInBytes() {
+        return bytes;
+    }
+
+    public synchronized void clear() {
+        tiles.clear();
+        bytes = 0;
+    }
+
+}
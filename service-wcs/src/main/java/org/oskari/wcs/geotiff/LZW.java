@@ -0,0 +1,118 @@
+package org.oskari.wcs.geotiff;
+
+/**
+ * Decoder for TIFF flavour of LZW compression (MSB-first codes, 9-12 bits, early change)
+ *
+ * See TIFF 6.0 specification, section 13: LZW Compression
+ */
+class LZW {
+
+    private static final int CLEAR_CODE = 256;
+    private static final int EOI_CODE = 257;
+    private static final int FIRST_CODE = 258;
+    private static final int MAX_CODES = 4096;
+
+    private LZW() {}
+
+    /**
+     * @return number of bytes written to dst
+     */
+    static int decode(byte[] src, int srcOff, int len, byte[] dst, int dstLen) {
+        int[] prefix = new int[MAX_CODES];
+        byte[] suffix = new byte[MAX_CODES];
+        byte[] first = new byte[MAX_CODES];
+        int[] length = new int[MAX_CODES];
+        for (int i = 0; i < 256; i++) {
+            suffix[i] = (byte) i;
+            first[i] = (byte) i;
+            length[i] = 1;
+        }
+
+        int pos = srcOff;
+        int end = srcOff + len;
+        int bitBuf = 0;
+        int bitCount = 0;
+
+        int codeLen = 9;
+        int next = FIRST_CODE;
+        int old = -1;
+        int o = 0;
+
+        while (o < dstLen) {
+            // Read next code
+            while (bitCount < codeLen && pos < end) {
+                bitBuf = (bitBuf << 8) | (src[pos++] & 0xFF);
+                bitCount += 8;
+            }
+            if (bitCount < codeLen) {
+                break;
+            }
+            int code = (bitBuf >>> (bitCount - codeLen)) & ((1 << codeLen) - 1);
+            bitCount -= codeLen;
+
+            if (code == EOI_CODE) {
+                break;
+            }
+            if (code == CLEAR_CODE) {
+                codeLen = 9;
+                next = FIRST_CODE;
+                old = -1;
+                continue;
+            }
+
+            if (old == -1) {
+                if (code > 255) {
+                    throw new IllegalArgumentException("Invalid LZW code " + code);
+                }
+                dst[o++] = (byte) code;
+                old = code;
+                continue;
+            }
+
+            byte firstByte;
+            if (code < next) {
+                o = write(code, prefix, suffix, length, dst, o, dstLen);
+                firstByte = first[code];
+            } else if (code == next) {
+                // KwKwK case, string of old code + its first byte
+                o = write(old, prefix, suffix, length, dst, o, dstLen);
+                firstByte = first[old];
+                if (o < dstLen) {
+                    dst[o++] = firstByte;
+                }
+            } else {
+                throw new IllegalArgumentException("Invalid LZW code " + code);
+            }
+
+            if (next < MAX_CODES) {
+                prefix[next] = old;
+                suffix[next] = firstByte;
+                first[next] = first[old];
+                length[next] = length[old] + 1;
+                next++;
+            }
+            // TIFF LZW switches code length one code early
+            if (next >= (1 << codeLen) - 1 && codeLen < 12) {
+                codeLen++;
+            }
+            old = code;
+        }
+        return o;
+    }
+
+    private static int write(int code, int[] prefix, byte[] suffix, int[] length,
+            byte[] dst, int o, int dstLen) {
+        int len = length[code];
+        // Skip the end of the string if it doesn't fit
+        int c = code;
+        for (int i = o + len - 1; i >= dstLen; i--) {
+            c = prefix[c];
+        }
+        for (int i = Math.min(o + len, dstLen) - 1; i >= o; i--) {
+            dst[i] = suffix[c];
+            c = prefix[c];
+        }
+        return Math.min(o + len, dstLen);
+    }
+
+}
@@ -1,18 +1,41 @@
 package org.oskari.wcs.geotiff;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
 /**
  * Very basic TIFF file reader
  *
+ * Supports uncompressed, LZW, Deflate and PackBits compressed strips and tiles
+ * with horizontal differencing and floating point predictors.
+ *
+ * Strips and tiles are decoded only when they are read so reading values from
+ * a part of a large file only touches the tiles that cover that part. Use
+ * {@link #open(Path)} to memory map a file instead of reading it to memory.
+ *
  * For a nice summary of the TIFF file format
  * @see http://www.fileformat.info/format/tiff/egff.htm
  */
 public class TIFFReader {
 
+    private static final int COMPRESSION_NONE = 1;
+    private static final int COMPRESSION_LZW = 5;
+    private static final int COMPRESSION_DEFLATE = 8;
+    private static final int COMPRESSION_PACKBITS = 32773;
+    private static final int COMPRESSION_DEFLATE_OLD = 32946;
+
+    private static final int PREDICTOR_NONE = 1;
+    private static final int PREDICTOR_HORIZONTAL = 2;
+    private static final int PREDICTOR_FLOATING_POINT = 3;
+
     private final ByteBuffer bb;
     private final List<IFD> ifds;
 
@@ -27,6 +50,20 @@ public class TIFFReader {
         parseIFDs();
     }
 
+    /**
+     * Memory maps the file, the mapping stays valid after the channel is closed
+     * @param channel channel of a file smaller than 2GB
+     */
+    public TIFFReader(FileChannel channel) throws IOException, IllegalArgumentException {
+        this(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+
+    public static TIFFReader open(Path path) throws IOException, IllegalArgumentException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new TIFFReader(channel);
+        }
+    }
+
     private void parseHeader() throws IllegalArgumentException {
         ByteOrder order;
 
@@ -67,105 +104,143 @@ public class TIFFReader {
         return ifds.get(i);
     }
 
+    /**
+     * @return index of the strip containing row y
+     */
+    public int getStripIndex(int ifdIdx, int y) {
+        IFD ifd = ifds.get(ifdIdx);
+        return y / getRowsPerStrip(ifd);
+    }
+
+    /**
+     * @return index of the tile containing pixel (x, y)
+     */
+    public int getTileIndex(int ifdIdx, int x, int y) {
+        IFD ifd = ifds.get(ifdIdx);
+        int tilesAcross = (ifd.getWidth() + ifd.getTileWidth() - 1) / ifd.getTileWidth();
+        return (y / ifd.getTileHeight()) * tilesAcross + (x / ifd.getTileWidth());
+    }
+
     public float[] readStrip(int ifdIdx, int stripIdx, float[] dst) {
+        return readStrip(ifdIdx, stripIdx, dst, null);
+    }
+
+    /**
+     * @param buffer reusable buffer for decoding, can be null
+     */
+    public float[] readStrip(int ifdIdx, int stripIdx, float[] dst, DecodeBuffer buffer) {
         IFD ifd = ifds.get(ifdIdx);
 
         if (ifd.getStripOffsets() == null) {
             throw new IllegalArgumentException("Specified IFD is not striped");
         }
 
-        for (int sf : ifd.getSampleFormat()) {
-            if (sf != 3) {
-                throw new IllegalArgumentException("Specified IFD sampleFormat is not Float32");
-            }
-        }
+        checkFloat32(ifd);
 
-        ByteBuffer.wrap(getStripData(ifd, stripIdx, null))
-                .order(bb.order())
-                .asFloatBuffer()
-                .get(dst);
+        ByteBuffer data = getStripData(ifd, stripIdx, buffer);
+        data.asFloatBuffer().get(dst, 0, Math.min(dst.length, data.remaining() / 4));
 
         return dst;
     }
 
     public short[] readStrip(int ifdIdx, int stripIdx, short[] dst) {
+        return readStrip(ifdIdx, stripIdx, dst, null);
+    }
+
+    /**
+     * @param buffer reusable buffer for decoding, can be null
+     */
+    public short[] readStrip(int ifdIdx, int stripIdx, short[] dst, DecodeBuffer buffer) {
         IFD ifd = ifds.get(ifdIdx);
 
         if (ifd.getStripOffsets() == null) {
             throw new IllegalArgumentException("Specified IFD is not striped");
         }
 
-        for (int sf : ifd.getSampleFormat()) {
-            if (sf != 1 && sf != 2) {
-                throw new IllegalArgumentException("Specified IFD sampleFormat is not (un)signed integer");
-            }
-        }
-
-        for (int bps : ifd.getBitsPerSample()) {
-            if (bps != 16) {
-                throw new IllegalArgumentException("Specified IFD bits per sample is not 16");
-            }
-        }
+        checkInt16(ifd);
 
-        ByteBuffer.wrap(getStripData(ifd, stripIdx, null))
-                .order(bb.order())
-                .asShortBuffer()
-                .get(dst);
+        ByteBuffer data = getStripData(ifd, stripIdx, buffer);
+        data.asShortBuffer().get(dst, 0, Math.min(dst.length, data.remaining() / 2));
 
         return dst;
     }
 
-    private byte[] getStripData(IFD ifd, int stripIdx, byte[] data)
+    private ByteBuffer getStripData(IFD ifd, int stripIdx, DecodeBuffer buffer)
             throws IllegalArgumentException {
         int off = ifd.getStripOffsets()[stripIdx];
         int len = ifd.getStripByteCounts()[stripIdx];
 
-        int c = ifd.getCompression();
-        switch (c) {
-        case 1:
-            if (data == null || data.length != len) {
-                data = new byte[len];
-            }
-            bb.position(off);
-            bb.get(data);
-            break;
-        default:
-            throw new IllegalArgumentException("Can't decompress compression " + c);
-        }
+        // Last strip might contain less rows
+        int rowsPerStrip = getRowsPerStrip(ifd);
+        int rows = Math.min(rowsPerStrip, ifd.getHeight() - stripIdx * rowsPerStrip);
 
-        return data;
+        return decode(ifd, off, len, ifd.getWidth(), rows, buffer);
     }
 
     public float[] readTile(int ifdIdx, int tileIdx, float[] dst)
             throws IllegalArgumentException {
+        return readTile(ifdIdx, tileIdx, dst, null);
+    }
+
+    /**
+     * @param buffer reusable buffer for decoding, can be null
+     */
+    public float[] readTile(int ifdIdx, int tileIdx, float[] dst, DecodeBuffer buffer)
+            throws IllegalArgumentException {
         IFD ifd = ifds.get(ifdIdx);
 
         if (ifd.getTileOffsets() == null) {
             throw new IllegalArgumentException("Specified IFD is not tiled");
         }
 
-        for (int sf : ifd.getSampleFormat()) {
-            if (sf != 3) {
-                throw new IllegalArgumentException("Specified IFD sampleFormat is not Float32");
-            }
-        }
+        checkFloat32(ifd);
 
-        ByteBuffer.wrap(getTileData(ifd, tileIdx, null))
-                .order(bb.order())
-                .asFloatBuffer()
-                .get(dst);
+        ByteBuffer data = getTileData(ifd, tileIdx, buffer);
+        data.asFloatBuffer().get(dst, 0, Math.min(dst.length, data.remaining() / 4));
 
         return dst;
     }
 
     public short[] readTile(int ifdIdx, int tileIdx, short[] dst)
             throws IllegalArgumentException {
+        return readTile(ifdIdx, tileIdx, dst, null);
+    }
+
+    /**
+     * @param buffer reusable buffer for decoding, can be null
+     */
+    public short[] readTile(int ifdIdx, int tileIdx, short[] dst, DecodeBuffer buffer)
+            throws IllegalArgumentException {
         IFD ifd = ifds.get(ifdIdx);
 
         if (ifd.getTileOffsets() == null) {
             throw new IllegalArgumentException("Specified IFD is not tiled");
         }
 
+        checkInt16(ifd);
+
+        ByteBuffer data = getTileData(ifd, tileIdx, buffer);
+        data.asShortBuffer().get(dst, 0, Math.min(dst.length, data.remaining() / 2));
+
+        return dst;
+    }
+
+    private ByteBuffer getTileData(IFD ifd, int tileIdx, DecodeBuffer buffer)
+            throws IllegalArgumentException {
+        int off = ifd.getTileOffsets()[tileIdx];
+        int len = ifd.getTileByteCounts()[tileIdx];
+        return decode(ifd, off, len, ifd.getTileWidth(), ifd.getTileHeight(), buffer);
+    }
+
+    private void checkFloat32(IFD ifd) throws IllegalArgumentException {
+        for (int sf : ifd.getSampleFormat()) {
+            if (sf != 3) {
+                throw new IllegalArgumentException("Specified IFD sampleFormat is not Float32");
+            }
+        }
+    }
+
+    private void checkInt16(IFD ifd) throws IllegalArgumentException {
         for (int sf : ifd.getSampleFormat()) {
             if (sf != 1 && sf != 2) {
                 throw new IllegalArgumentException("Specified IFD sampleFormat is not (un)signed integer");
@@ -177,34 +252,218 @@ public class TIFFReader {
                 throw new IllegalArgumentException("Specified IFD bits per sample is not 16");
             }
         }
+    }
 
-        ByteBuffer.wrap(getTileData(ifd, tileIdx, null))
-                .order(bb.order())
-                .asShortBuffer()
-                .get(dst);
+    private static int getRowsPerStrip(IFD ifd) {
+        // RowsPerStrip defaults to 2^32-1 (whole image is a single strip)
+        int rowsPerStrip = ifd.getRowsPerStrip();
+        return rowsPerStrip <= 0 ? ifd.getHeight() : rowsPerStrip;
+    }
 
-        return dst;
+    private static int getSamplesPerPixel(IFD ifd) {
+        if (ifd.getPlanarConfiguration() == 2) {
+            // Each plane is stored in separate strips/tiles
+            return 1;
+        }
+        return Math.max(1, ifd.getSamplesPerPixel());
     }
 
-    private byte[] getTileData(IFD ifd, int tileIdx, byte[] data)
+    private static int getBytesPerSample(IFD ifd) {
+        int[] bitsPerSample = ifd.getBitsPerSample();
+        return bitsPerSample == null ? 1 : Math.max(1, bitsPerSample[0] / 8);
+    }
+
+    /**
+     * Decompresses a strip or a tile and reverts the predictor
+     * @return decoded data in the byte order of the file
+     */
+    private ByteBuffer decode(IFD ifd, int off, int len, int rowWidth, int rows, DecodeBuffer buffer)
             throws IllegalArgumentException {
-        int off = ifd.getTileOffsets()[tileIdx];
-        int len = ifd.getTileByteCounts()[tileIdx];
+        if (buffer == null) {
+            buffer = new DecodeBuffer();
+        }
+
+        int samplesPerRow = rowWidth * getSamplesPerPixel(ifd);
+        int bytesPerSample = getBytesPerSample(ifd);
+        int decodedLen = samplesPerRow * bytesPerSample * rows;
 
         int c = ifd.getCompression();
+        if (c == COMPRESSION_NONE) {
+            byte[] data = buffer.getDecoded(len);
+            ByteBuffer src = bb.duplicate();
+            src.position(off);
+            src.get(data, 0, len);
+            return ByteBuffer.wrap(data, 0, len).order(bb.order());
+        }
+
+        // Avoid copying the compressed data if we already have it in a byte array
+        byte[] src;
+        int srcOff;
+        if (bb.hasArray()) {
+            src = bb.array();
+            srcOff = bb.arrayOffset() + off;
+        } else {
+            src = buffer.getCompressed(len);
+            srcOff = 0;
+            ByteBuffer dup = bb.duplicate();
+            dup.position(off);
+            dup.get(src, 0, len);
+        }
+
+        byte[] data = buffer.getDecoded(decodedLen);
         switch (c) {
-        case 1:
-            if (data == null || data.length != len) {
-                data = new byte[len];
-            }
-            bb.position(off);
-            bb.get(data);
+        case COMPRESSION_LZW:
+            LZW.decode(src, srcOff, len, data, decodedLen);
+            break;
+        case COMPRESSION_DEFLATE:
+        case COMPRESSION_DEFLATE_OLD:
+            inflate(src, srcOff, len, data, decodedLen);
+            break;
+        case COMPRESSION_PACKBITS:
+            unpackBits(src, srcOff, len, data, decodedLen);
             break;
         default:
             throw new IllegalArgumentException("Can't decompress compression " + c);
         }
 
-        return data;
+        int predictor = ifd.getPredictor();
+        switch (predictor) {
+        case 0:
+        case PREDICTOR_NONE:
+            break;
+        case PREDICTOR_HORIZONTAL:
+            undoHorizontalDifferencing(data, rows, samplesPerRow, bytesPerSample, getSamplesPerPixel(ifd), bb.order());
+            break;
+        case PREDICTOR_FLOATING_POINT:
+            undoFloatingPointPredictor(data, rows, samplesPerRow, bytesPerSample, getSamplesPerPixel(ifd),
+                    bb.order(), buffer.getRow(samplesPerRow * bytesPerSample));
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown predictor " + predictor);
+        }
+
+        return ByteBuffer.wrap(data, 0, decodedLen).order(bb.order());
+    }
+
+    private static void inflate(byte[] src, int srcOff, int len, byte[] dst, int dstLen)
+            throws IllegalArgumentException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(src, srcOff, len);
+            int n = 0;
+            while (n < dstLen && !inflater.finished() && !inflater.needsInput()) {
+                n += inflater.inflate(dst, n, dstLen - n);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Invalid Deflate data", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    static void unpackBits(byte[] src, int srcOff, int len, byte[] dst, int dstLen) {
+        int i = srcOff;
+        int end = srcOff + len;
+        int o = 0;
+        while (i < end && o < dstLen) {
+            int n = src[i++];
+            if (n >= 0) {
+                // Copy next n + 1 bytes literally
+                int count = Math.min(n + 1, Math.min(end - i, dstLen - o));
+                System.arraycopy(src, i, dst, o, count);
+                i += count;
+                o += count;
+            } else if (n != -128 && i < end) {
+                // Repeat next byte -n + 1 times
+                int count = Math.min(1 - n, dstLen - o);
+                byte b = src[i++];
+                for (int j = 0; j < count; j++) {
+                    dst[o++] = b;
+                }
+            }
+        }
+    }
+
+    static void undoHorizontalDifferencing(byte[] data, int rows, int samplesPerRow,
+            int bytesPerSample, int samplesPerPixel, ByteOrder order) {
+        ByteBuffer bb = ByteBuffer.wrap(data).order(order);
+        int rowBytes = samplesPerRow * bytesPerSample;
+        for (int row = 0; row < rows; row++) {
+            int rowOff = row * rowBytes;
+            for (int i = samplesPerPixel; i < samplesPerRow; i++) {
+                int pos = rowOff + i * bytesPerSample;
+                int prev = pos - samplesPerPixel * bytesPerSample;
+                switch (bytesPerSample) {
+                case 1:
+                    data[pos] += data[prev];
+                    break;
+                case 2:
+                    bb.putShort(pos, (short) (bb.getShort(pos) + bb.getShort(prev)));
+                    break;
+                case 4:
+                    bb.putInt(pos, bb.getInt(pos) + bb.getInt(prev));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported bytes per sample " + bytesPerSample);
+                }
+            }
+        }
+    }
+
+    /**
+     * Floating point predictor (Adobe Photoshop TIFF Technical Note 3) stores each row
+     * as byte planes (most significant bytes first) that are horizontally differenced byte by byte
+     */
+    static void undoFloatingPointPredictor(byte[] data, int rows, int samplesPerRow,
+            int bytesPerSample, int samplesPerPixel, ByteOrder order, byte[] tmp) {
+        int rowBytes = samplesPerRow * bytesPerSample;
+        boolean bigEndian = order == ByteOrder.BIG_ENDIAN;
+        for (int row = 0; row < rows; row++) {
+            int rowOff = row * rowBytes;
+            for (int i = rowOff + samplesPerPixel; i < rowOff + rowBytes; i++) {
+                data[i] += data[i - samplesPerPixel];
+            }
+            System.arraycopy(data, rowOff, tmp, 0, rowBytes);
+            for (int i = 0; i < samplesPerRow; i++) {
+                for (int b = 0; b < bytesPerSample; b++) {
+                    int plane = bigEndian ? b : bytesPerSample - b - 1;
+                    data[rowOff + i * bytesPerSample + b] = tmp[plane * samplesPerRow + i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Reusable buffers for decoding strips and tiles. Not thread safe,
+     * use one instance per thread when reading multiple tiles.
+     */
+    public static class DecodeBuffer {
+
+        private byte[] compressed;
+        private byte[] decoded;
+        private byte[] row;
+
+        private byte[] getCompressed(int len) {
+            if (compressed == null || compressed.length < len) {
+                compressed = new byte[len];
+            }
+            return compressed;
+        }
+
+        private byte[] getDecoded(int len) {
+            if (decoded == null || decoded.length < len) {
+                decoded = new byte[len];
+            }
+            return decoded;
+        }
+
+        private byte[] getRow(int len) {
+            if (row == null || row.length < len) {
+                row = new byte[len];
+            }
+            return row;
+        }
+
     }
 
 }
@@ -0,0 +1,190 @@
+package org.oskari.wcs.access;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.Before;
+import org.junit.Test;
+import org.oskari.utils.xml.XML;
+import org.oskari.wcs.capabilities.Capabilities;
+import org.oskari.wcs.coverage.CoverageDescription;
+import org.oskari.wcs.coverage.RectifiedGridCoverage;
+import org.oskari.wcs.parser.CapabilitiesParser;
+import org.oskari.wcs.parser.CoverageDescriptionsParser;
+import org.oskari.wcs.request.GetCoverage;
+import org.w3c.dom.Document;
+
+public class CoverageSamplerTest {
+
+    // korkeusmalli_10m grid in coveragedescriptions.xml
+    private static final double ORIGIN_X = 44005.0;
+    private static final double ORIGIN_Y = 7781995.0;
+    private static final double RES = 10.0;
+    private static final Pattern SUBSET = Pattern.compile("\\w+\\(([-0-9.]+),([-0-9.]+)\\)");
+
+    private Capabilities wcs;
+    private RectifiedGridCoverage coverage;
+
+    @Before
+    public void setUp() throws Exception {
+        Document doc;
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream("capabilities.xml")) {
+            doc = XML.readDocument(in);
+        }
+        wcs = CapabilitiesParser.parse(doc);
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream("coveragedescriptions.xml")) {
+            doc = XML.readDocument(in);
+        }
+        List<CoverageDescription> coverageDescriptions = CoverageDescriptionsParser.parse(doc);
+        coverage = (RectifiedGridCoverage) coverageDescriptions.get(0);
+    }
+
+    @Test
+    public void testBilinearInterpolation() throws IOException {
+        CoverageSampler sampler = new CoverageSampler(wcs, coverage, CoverageSamplerTest::fetch,
+                new CoverageTileCache(1024 * 1024), 4, 16);
+        // Between cell centers i = 10, 11 and j = 20, 21
+        double value = sampler.sample(x(10.5), y(20.25));
+        assertEquals(expected(10.5, 20.25), value, 1e-9);
+        // At cell center
+        assertEquals(expected(3, 7), sampler.sample(x(3), y(7)), 1e-9);
+    }
+
+    @Test
+    public void testOutsideGridIsNaN() throws IOException {
+        CoverageSampler sampler = new CoverageSampler(wcs, coverage, CoverageSamplerTest::fetch,
+                new CoverageTileCache(1024 * 1024), 4, 16);
+        double[] values = sampler.sample(new double[] { x(-1), x(1) }, new double[] { y(1), y(1) });
+        assertTrue(Double.isNaN(values[0]));
+        assertEquals(expected(1, 1), values[1], 1e-9);
+    }
+
+    @Test
+    public void testAdjacentTilesAreFetchedWithOneRequest() throws IOException {
+        CoverageSampler sampler = new CoverageSampler(wcs, coverage, CoverageSamplerTest::fetch,
+                new CoverageTileCache(1024 * 1024), 4, 16);
+        // 4 tiles across, 2 tiles down
+        double[] x = { x(1), x(5), x(9), x(13), x(1), x(13) };
+        double[] y = { y(1), y(1), y(1), y(1), y(5), y(5) };
+        double[] values = sampler.sample(x, y);
+        assertEquals(1, sampler.getRequestCount());
+        assertEquals(expected(13, 5), values[5], 1e-9);
+
+        // Served from cache
+        sampler.sample(x, y);
+        assertEquals(1, sampler.getRequestCount());
+    }
+
+    @Test
+    public void testDistantTilesAreFetchedSeparately() throws IOException {
+        CoverageSampler sampler = new CoverageSampler(wcs, coverage, CoverageSamplerTest::fetch,
+                new CoverageTileCache(1024 * 1024), 4, 16);
+        double[] x = { x(1), x(5), x(201) };
+        double[] y = { y(1), y(1), y(1) };
+        double[] values = sampler.sample(x, y);
+        assertEquals(2, sampler.getRequestCount());
+        assertEquals(expected(201, 1), values[2], 1e-9);
+    }
+
+    @Test
+    public void testProfile() throws IOException {
+        CoverageTileCache cache = new CoverageTileCache(1024 * 1024);
+        CoverageSampler sampler = new CoverageSampler(wcs, coverage, CoverageSamplerTest::fetch, cache, 4, 16);
+        double[] line = { x(0), y(2), x(10), y(2), x(10), y(12) };
+        double[] values = sampler.profile(line, 21);
+        assertEquals(21, values.length);
+        for (int k = 0; k <= 10; k++) {
+            assertEquals(expected(k, 2), values[k], 1e-9);
+            assertEquals(expected(10, 2 + k), values[10 + k], 1e-9);
+        }
+        assertEquals(1, sampler.getRequestCount());
+    }
+
+    @Test
+    public void testTilesAreEvictedFromSmallCache() throws IOException {
+        // Room for a single 4x4 float tile
+        CoverageTileCache cache = new CoverageTileCache(4 * 4 * 4);
+        CoverageSampler sampler = new CoverageSampler(wcs, coverage, CoverageSamplerTest::fetch, cache, 4, 16);
+        double[] values = sampler.sample(new double[] { x(1), x(9) }, new double[] { y(1), y(1) });
+        assertEquals(expected(1, 1), values[0], 1e-9);
+        assertEquals(expected(9, 1), values[1], 1e-9);
+        assertEquals(1, cache.getTileCount());
+        assertEquals(64, cache.getSizeInBytes());
+    }
+
+    private static double x(double i) {
+        return ORIGIN_X + i * RES;
+    }
+
+    private static double y(double j) {
+        return ORIGIN_Y - j * RES;
+    }
+
+    private static double expected(double i, double j) {
+        return i * 2 + j * 3;
+    }
+
+    /**
+     * Responds with an uncompressed Float32 TIFF, value at grid cell (i, j) is i * 2 + j * 3
+     */
+    private static byte[] fetch(GetCoverage request) {
+        Map<String, String[]> kvp = request.toKVP();
+        double[] e = parseSubset(kvp.get("subset")[0]);
+        double[] n = parseSubset(kvp.get("subset")[1]);
+        int i0 = (int) Math.ceil((e[0] - ORIGIN_X) / RES - 0.5);
+        int i1 = (int) Math.floor((e[1] - ORIGIN_X) / RES + 0.5);
+        int j0 = (int) Math.ceil((ORIGIN_Y - n[1]) / RES - 0.5);
+        int j1 = (int) Math.floor((ORIGIN_Y - n[0]) / RES + 0.5);
+        int width = i1 - i0 + 1;
+        int height = j1 - j0 + 1;
+        float[] values = new float[width * height];
+        for (int row = 0; row < height; row++) {
+            for (int col = 0; col < width; col++) {
+                values[row * width + col] = (float) expected(i0 + col, j0 + row);
+            }
+        }
+        return createTIFF(width, height, values);
+    }
+
+    private static double[] parseSubset(String subset) {
+        Matcher m = SUBSET.matcher(subset);
+        assertTrue(m.matches());
+        return new double[] { Double.parseDouble(m.group(1)), Double.parseDouble(m.group(2)) };
+    }
+
+    private static byte[] createTIFF(int width, int height, float[] values) {
+        int tagCount = 10;
+        int dataOffset = 8 + 2 + tagCount * 12 + 4;
+        ByteBuffer bb = ByteBuffer.allocate(dataOffset + values.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        bb.put((byte) 'I').put((byte) 'I').putShort((short) 42).putInt(8);
+        bb.putShort((short) tagCount);
+        putTag(bb, 256, 4, width);
+        putTag(bb, 257, 4, height);
+        putTag(bb, 258, 3, 32);
+        putTag(bb, 259, 3, 1);
+        putTag(bb, 262, 3, 1);
+        putTag(bb, 273, 4, dataOffset);
+        putTag(bb, 277, 3, 1);
+        putTag(bb, 278, 4, height);
+        putTag(bb, 279, 4, values.length * 4);
+        putTag(bb, 339, 3, 3);
+        bb.putInt(0);
+        for (float v : values) {
+            bb.putFloat(v);
+        }
+        return bb.array();
+    }
+
+    private static void putTag(ByteBuffer bb, int id, int type, int value) {
+        bb.putShort((short) id).putShort((short) type).putInt(1).putInt(value);
+    }
+
+}
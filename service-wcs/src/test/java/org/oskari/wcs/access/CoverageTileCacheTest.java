@@ -0,0 +1,39 @@
+package org.oskari.wcs.access;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class CoverageTileCacheTest {
+
+    @Test
+    public void testEvictsLeastRecentlyUsedBySize() {
+        CoverageTileCache cache = new CoverageTileCache(2 * 16 * 4);
+        cache.put("a", CoverageTile.ofFloats(4, 4, new float[16]));
+        cache.put("b", CoverageTile.ofShorts(4, 4, new short[16], false));
+        cache.put("c", CoverageTile.ofShorts(4, 4, new short[16], true));
+        assertEquals(3, cache.getTileCount());
+        assertEquals(64 + 32 + 32, cache.getSizeInBytes());
+
+        // Access a so b becomes the least recently used
+        assertNotNull(cache.get("a"));
+        cache.put("d", CoverageTile.ofFloats(4, 4, new float[16]));
+        assertNull(cache.get("b"));
+        assertNull(cache.get("c"));
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("d"));
+        assertEquals(128, cache.getSizeInBytes());
+    }
+
+    @Test
+    public void testReplacingTileUpdatesSize() {
+        CoverageTileCache cache = new CoverageTileCache(1024);
+        cache.put("a", CoverageTile.ofFloats(4, 4, new float[16]));
+        cache.put("a", CoverageTile.ofShorts(4, 4, new short[16], false));
+        assertEquals(1, cache.getTileCount());
+        assertEquals(32, cache.getSizeInBytes());
+    }
+
+}
@@ -85,6 +85,70 @@ public class TIFFReaderTest {
         }
     }
 
+    @Test
+    public void tiled_Float32_deflate_floatingPointPredictor() throws IOException {
+        // 100x70 Float32, 64x64 tiles, COMPRESS=DEFLATE, PREDICTOR=3, value = 100 + x * 0.5 - y * 1.25
+        TIFFReader r = new TIFFReader(readResource("float32_deflate_predictor3.tif"));
+        IFD ifd = r.getIFD(0);
+        assertEquals(8, ifd.getCompression());
+        assertEquals(3, ifd.getPredictor());
+
+        TIFFReader.DecodeBuffer buffer = new TIFFReader.DecodeBuffer();
+        float[] tile = new float[64 * 64];
+        for (int tileIndex = 0; tileIndex < 4; tileIndex++) {
+            r.readTile(0, tileIndex, tile, buffer);
+            int x0 = (tileIndex % 2) * 64;
+            int y0 = (tileIndex / 2) * 64;
+            for (int y = y0; y < Math.min(y0 + 64, 70); y++) {
+                for (int x = x0; x < Math.min(x0 + 64, 100); x++) {
+                    float expected = 100 + x * 0.5f - y * 1.25f;
+                    assertEquals(expected, tile[(y - y0) * 64 + (x - x0)], 0.0f);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void tiled_Int16_lzw_horizontalPredictor() throws IOException {
+        // 100x70 big-endian Int16, 64x64 tiles, COMPRESS=LZW, PREDICTOR=2, value = x * 7 - y * 13
+        TIFFReader r = new TIFFReader(readResource("int16_lzw_predictor2.tif"));
+        IFD ifd = r.getIFD(0);
+        assertEquals(5, ifd.getCompression());
+        assertEquals(2, ifd.getPredictor());
+
+        short[] tile = new short[64 * 64];
+        int x = 99;
+        int y = 69;
+        r.readTile(0, r.getTileIndex(0, x, y), tile);
+        assertEquals(3, r.getTileIndex(0, x, y));
+        assertEquals(x * 7 - y * 13, tile[(y - 64) * 64 + (x - 64)]);
+
+        r.readTile(0, 0, tile);
+        for (y = 0; y < 64; y++) {
+            for (x = 0; x < 64; x++) {
+                assertEquals(x * 7 - y * 13, tile[y * 64 + x]);
+            }
+        }
+    }
+
+    @Test
+    public void striped_UInt16_packBits() throws IOException {
+        // 100x70 UInt16, 16 rows per strip, COMPRESS=PACKBITS, value = (x / 8) * 1000 + y
+        TIFFReader r = new TIFFReader(readResource("uint16_packbits.tif"));
+        IFD ifd = r.getIFD(0);
+        assertEquals(32773, ifd.getCompression());
+        assertEquals(16, ifd.getRowsPerStrip());
+
+        TIFFReader.DecodeBuffer buffer = new TIFFReader.DecodeBuffer();
+        short[] strip = new short[100 * 16];
+        for (int y = 0; y < 70; y++) {
+            r.readStrip(0, r.getStripIndex(0, y), strip, buffer);
+            for (int x = 0; x < 100; x++) {
+                assertEquals((x / 8) * 1000 + y, strip[(y % 16) * 100 + x] & 0xFFFF);
+            }
+        }
+    }
+
     private byte[] readResource(String res) throws IOException {
         try (InputStream in = getClass().getClassLoader().getResourceAsStream(res)) {
             ByteArrayOutputStream baos = new ByteArrayOutputStream();
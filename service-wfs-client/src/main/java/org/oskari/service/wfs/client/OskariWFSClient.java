@@ -17,6 +17,8 @@ import org.opengis.filter.Filter;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
 import fi.nls.oskari.service.ServiceRuntimeException;
+import org.oskari.capabilities.LayerCapabilitiesCache;
+import org.oskari.capabilities.ogc.LayerCapabilitiesWFS;
 import org.oskari.geojson.GeoJSONReader2;
 import org.oskari.geojson.GeoJSONSchemaDetector;
 import org.oskari.service.user.UserLayerService;
@@ -180,8 +182,12 @@ public class OskariWFSClient {
         }
         if (capa.has(KEY_FORMATS)) {
             // new capabilities
-            List<String> formats = JSONHelper.getArrayAsList(JSONHelper.getJSONArray(capa, KEY_FORMATS));
-            return formats.contains(JSON_OUTPUT_FORMAT);
+            LayerCapabilitiesWFS caps = getCapabilities(layer);
+            if (caps == null) {
+                List<String> formats = JSONHelper.getArrayAsList(JSONHelper.getJSONArray(capa, KEY_FORMATS));
+                return formats.contains(JSON_OUTPUT_FORMAT);
+            }
+            return caps.getFormats().contains(JSON_OUTPUT_FORMAT);
         }
         return true;
     }
@@ -190,12 +196,29 @@ public class OskariWFSClient {
         if (maxFeatures > 0) {
             return maxFeatures;
         }
-        maxFeatures = layer.getCapabilities().optInt(KEY_MAX_FEATURES, -1);
+        LayerCapabilitiesWFS caps = getCapabilities(layer);
+        if (caps != null) {
+            maxFeatures = caps.getMaxFeatures();
+        } else if (layer.getCapabilities() != null) {
+            maxFeatures = layer.getCapabilities().optInt(KEY_MAX_FEATURES, -1);
+        }
         if (maxFeatures > 0) {
             return maxFeatures;
         }
         return DEFAULT_MAX_FEATURES;
     }
+    /**
+     * Capabilities JSON of a layer might be from an older version or otherwise not deserializable
+     * so callers should fall back to reading the JSON directly when this returns null.
+     */
+    private static LayerCapabilitiesWFS getCapabilities(OskariLayer layer) {
+        try {
+            return LayerCapabilitiesCache.get(layer, OskariLayer.TYPE_WFS);
+        } catch (ServiceRuntimeException | ClassCastException e) {
+            LOG.debug(e, "Unable to deserialize capabilities for layer:", layer.getId());
+            return null;
+        }
+    }
     protected static Filter getWFSFilter (String id, OskariLayer layer, ReferencedEnvelope bbox, Optional<UserLayerService> processor) {
         if (processor.isPresent()) {
             return processor.get().getWFSFilter(id, bbox);
@@ -15,6 +15,8 @@ public class OskariWFSClientTest {
     OskariWFSClient client = new OskariWFSClient();
     private static final String FILTER = "{\"filter\":{\"property\":{\"key\": \"foo\", \"value\": \"bar\"}}}";
     private static final String CAPABILITIES = "{\"geomName\":\"geomName\"}";
+    // keywords in a format that can't be deserialized to LayerCapabilitiesWFS
+    private static final String LEGACY_CAPABILITIES = "{\"name\":\"test\",\"formats\":[\"text/xml\"],\"maxFeatures\":500,\"keywords\":{\"fi\":[\"foo\"]}}";
     @Test
     public void noFilter() throws Exception {
         OskariLayer layer = new OskariLayer();
@@ -33,4 +35,13 @@ public class OskariWFSClientTest {
         Assert.assertNotNull("Layer should get filter", filter);
         Assert.assertEquals("foo = 'bar' AND BBOX(geomName, 0.0,0.0,10.0,10.0)", CQL.toCQL(filter));
     }
+    @Test
+    public void legacyCapabilities() throws Exception {
+        OskariLayer layer = new OskariLayer();
+        layer.setId(1);
+        layer.setType(OskariLayer.TYPE_WFS);
+        layer.setCapabilities(new JSONObject(LEGACY_CAPABILITIES));
+        Assert.assertEquals("Should read max features from JSON", 500, OskariWFSClient.getMaxFeatures(layer));
+        Assert.assertFalse("Should read formats from JSON", OskariWFSClient.tryGeoJSON(layer));
+    }
 }